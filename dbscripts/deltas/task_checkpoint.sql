@@ -0,0 +1,13 @@
+-- Adds TASK_CHECKPOINT, which records milestones reached partway through a long task, so a retried job can
+-- resume the task after its last checkpoint.
+
+CREATE TABLE `TASK_CHECKPOINT` (
+  `CHKPT_ID` bigint(20) NOT NULL AUTO_INCREMENT,
+  `CHKPT_TIME` datetime NOT NULL,
+  `CHKPT_NAME` varchar(64) NOT NULL,
+  `CHKPT_VALUE` varchar(255) DEFAULT NULL,
+  `FK_TASKHIST_ID` bigint(20) NOT NULL,
+  PRIMARY KEY (`CHKPT_ID`),
+  KEY `FK_TASK_CHECKPOINT_TASKHIST_ID` (`FK_TASKHIST_ID`),
+  CONSTRAINT `FK_TASK_CHECKPOINT_TASKHIST_ID` FOREIGN KEY (`FK_TASKHIST_ID`) REFERENCES `TASK_HISTORY` (`TASKHIST_ID`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
@@ -124,6 +124,25 @@ CREATE TABLE `PHYSICAL_DATABASE` (
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `TASK_CHECKPOINT`
+--
+
+DROP TABLE IF EXISTS `TASK_CHECKPOINT`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `TASK_CHECKPOINT` (
+  `CHKPT_ID` bigint(20) NOT NULL AUTO_INCREMENT,
+  `CHKPT_TIME` datetime NOT NULL,
+  `CHKPT_NAME` varchar(64) NOT NULL,
+  `CHKPT_VALUE` varchar(255) DEFAULT NULL,
+  `FK_TASKHIST_ID` bigint(20) NOT NULL,
+  PRIMARY KEY (`CHKPT_ID`),
+  KEY `FK_TASK_CHECKPOINT_TASKHIST_ID` (`FK_TASKHIST_ID`),
+  CONSTRAINT `FK_TASK_CHECKPOINT_TASKHIST_ID` FOREIGN KEY (`FK_TASKHIST_ID`) REFERENCES `TASK_HISTORY` (`TASKHIST_ID`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `TASK_HISTORY`
 --
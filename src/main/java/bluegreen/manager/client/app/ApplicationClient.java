@@ -1,7 +1,16 @@
 package bluegreen.manager.client.app;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.CookieStore;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.fluent.Executor;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.message.BasicNameValuePair;
@@ -10,6 +19,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
 
+import bluegreen.manager.client.http.AsyncHttpHelper;
 import bluegreen.manager.client.http.ExecutorFactory;
 import bluegreen.manager.client.http.HttpHelper;
 import bluegreen.manager.client.http.HttpMethodType;
@@ -18,33 +28,47 @@ import bluegreen.manager.utils.ThreadSleeper;
 
 /**
  * HTTP client that makes requests to a blue-green compliant application, and knows to try again if
- * it gets a lock error.
+ * it gets a lock error.  How many times and how long to wait in between is up to the {@link RetryPolicy}.
+ * <p/>
+ * Each request has a blocking form, and an async form that returns a future right away.  The async forms use a
+ * non-blocking http client and schedule their retries instead of sleeping, so one caller can talk to many applications
+ * at once without a thread per application.
  */
 public class ApplicationClient
 {
-  static final int MAX_NUM_TRIES = 3;
-  private static final long RETRY_DELAY_MILLISECONDS = 5000L;
   private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationClient.class);
   private static final String PARAMNAME_AUTHUSERNAME = "username";
   private static final String PARAMNAME_AUTHPASSWORD = "password";
 
   private ExecutorFactory executorFactory;
   private HttpHelper httpHelper;
+  private AsyncHttpHelper asyncHttpHelper;
   private Gson gson;
   private ThreadSleeper threadSleeper;
+  private ScheduledExecutorService retryScheduler;
+  private RetryPolicy retryPolicy;
+  private RetryMetrics retryMetrics;
   private String applicationUsername;
   private String applicationPassword;
 
   public ApplicationClient(ExecutorFactory executorFactory,
                            HttpHelper httpHelper,
+                           AsyncHttpHelper asyncHttpHelper,
                            Gson gson,
                            ThreadSleeper threadSleeper,
+                           ScheduledExecutorService retryScheduler,
+                           RetryPolicy retryPolicy,
+                           RetryMetrics retryMetrics,
                            String applicationUsername, String applicationPassword)
   {
     this.executorFactory = executorFactory;
     this.httpHelper = httpHelper;
+    this.asyncHttpHelper = asyncHttpHelper;
     this.gson = gson;
     this.threadSleeper = threadSleeper;
+    this.retryScheduler = retryScheduler;
+    this.retryPolicy = retryPolicy;
+    this.retryMetrics = retryMetrics;
     this.applicationUsername = applicationUsername;
     this.applicationPassword = applicationPassword;
   }
@@ -58,19 +82,83 @@ public class ApplicationClient
     Executor httpExecutor = executorFactory.makeExecutor();
     CookieStore cookieStore = new BasicCookieStore();
     httpExecutor.cookieStore(cookieStore);
-    NameValuePair[] authParams = new NameValuePair[] {
+    httpHelper.postAuthForCookie(httpExecutor, uri, makeAuthParams());
+    return new ApplicationSession(httpExecutor, cookieStore);
+  }
+
+  /**
+   * Async form of {@link #authenticate}.  The session's cookieStore is shared by its blocking executor and by async
+   * requests, so the session works with both forms of request.
+   */
+  public CompletableFuture<ApplicationSession> authenticateAsync(Application application)
+  {
+    String uri = application.makeHostnameUri() + "/" + DbFreezeRest.POST_LOGIN;
+    Executor httpExecutor = executorFactory.makeExecutor();
+    CookieStore cookieStore = new BasicCookieStore();
+    httpExecutor.cookieStore(cookieStore);
+    final ApplicationSession session = new ApplicationSession(httpExecutor, cookieStore);
+    return asyncHttpHelper.postAuthForCookie(cookieStore, uri, makeAuthParams()).thenApply(new Function<Void, ApplicationSession>()
+    {
+      @Override
+      public ApplicationSession apply(Void aVoid)
+      {
+        return session;
+      }
+    });
+  }
+
+  /**
+   * Logs in again on an existing session, whose old login the application no longer accepts.  The session keeps its
+   * executor and cookieStore, so anyone sharing it sees the new login.
+   */
+  void reauthenticate(Application application, ApplicationSession session)
+  {
+    LOGGER.info("Application " + application.makeHostnameUri() + " rejected our session, logging in again");
+    session.getCookieStore().clear();
+    httpHelper.postAuthForCookie(session.getHttpExecutor(),
+        application.makeHostnameUri() + "/" + DbFreezeRest.POST_LOGIN, makeAuthParams());
+  }
+
+  /**
+   * Async form of {@link #reauthenticate}.
+   */
+  private CompletableFuture<Void> reauthenticateAsync(Application application, ApplicationSession session)
+  {
+    LOGGER.info("Application " + application.makeHostnameUri() + " rejected our session, logging in again");
+    session.getCookieStore().clear();
+    return asyncHttpHelper.postAuthForCookie(session.getCookieStore(),
+        application.makeHostnameUri() + "/" + DbFreezeRest.POST_LOGIN, makeAuthParams());
+  }
+
+  /**
+   * True if the throwable was caused by the application refusing our credentials or session.
+   */
+  static boolean isAuthFailure(Throwable throwable)
+  {
+    for (Throwable cause = throwable; cause != null; cause = cause.getCause())
+    {
+      if (cause instanceof HttpResponseException)
+      {
+        int statusCode = ((HttpResponseException) cause).getStatusCode();
+        return statusCode == HttpStatus.SC_UNAUTHORIZED || statusCode == HttpStatus.SC_FORBIDDEN;
+      }
+    }
+    return false;
+  }
+
+  private NameValuePair[] makeAuthParams()
+  {
+    return new NameValuePair[] {
         new BasicNameValuePair(PARAMNAME_AUTHUSERNAME, applicationUsername),
         new BasicNameValuePair(PARAMNAME_AUTHPASSWORD, applicationPassword)
     };
-    httpHelper.postAuthForCookie(httpExecutor, uri, authParams);
-    return new ApplicationSession(httpExecutor, cookieStore);
   }
 
   /**
    * Requests dbfreeze progress from the application.
    * <p/>
-   * Tries up to MAX_NUM_TRIES times to get a non-null response with no lock error.  Try-messaging can include an
-   * optional outerTryNum if caller is in its own for-loop.
+   * Tries as often as the retry policy allows to get a non-null response with no lock error.  Try-messaging can
+   * include an optional outerTryNum if caller is in its own for-loop.
    */
   public DbFreezeProgress getDbFreezeProgress(Application application, ApplicationSession session, Integer outerTryNum)
   {
@@ -78,11 +166,31 @@ public class ApplicationClient
         DbFreezeRest.GET_DB_FREEZE_PROGRESS, DbFreezeProgress.class, outerTryNum);
   }
 
+  /**
+   * Requests dbfreeze progress from the application in long-poll mode: the application holds the response until its
+   * mode is no longer waitWhileMode, or until maxWaitSeconds elapse, whichever comes first.
+   * <p/>
+   * Only use this if the application has advertised {@link DbFreezeProgress#isLongPollSupported()}.  Retries the
+   * same as {@link #getDbFreezeProgress}.
+   */
+  public DbFreezeProgress getDbFreezeProgressLongPoll(Application application,
+                                                      ApplicationSession session,
+                                                      DbFreezeMode waitWhileMode,
+                                                      int maxWaitSeconds,
+                                                      Integer outerTryNum)
+  {
+    String methodPath = DbFreezeRest.GET_DB_FREEZE_PROGRESS
+        + "?" + DbFreezeRest.PARAMNAME_WAIT_WHILE_MODE + "=" + waitWhileMode
+        + "&" + DbFreezeRest.PARAMNAME_MAX_WAIT_SECONDS + "=" + maxWaitSeconds;
+    return (DbFreezeProgress) requestWithRetry(application, session, HttpMethodType.GET,
+        methodPath, DbFreezeProgress.class, outerTryNum);
+  }
+
   /**
    * Requests that the application enter/exit a dbfreeze, and returns initial progress.
    * <p/>
-   * Tries up to MAX_NUM_TRIES times to get a non-null response with no lock error.  Try-messaging can include an
-   * optional outerTryNum if caller is in its own for-loop.
+   * Tries as often as the retry policy allows to get a non-null response with no lock error.  Try-messaging can
+   * include an optional outerTryNum if caller is in its own for-loop.
    */
   public DbFreezeProgress putRequestTransition(Application application,
                                                ApplicationSession session,
@@ -96,8 +204,8 @@ public class ApplicationClient
   /**
    * Requests that the application discover its database.
    * <p/>
-   * Tries up to MAX_NUM_TRIES times to get a non-null response with no lock error.  Try-messaging can include an
-   * optional outerTryNum if caller is in its own for-loop.
+   * Tries as often as the retry policy allows to get a non-null response with no lock error.  Try-messaging can
+   * include an optional outerTryNum if caller is in its own for-loop.
    */
   public DiscoveryResult putDiscoverDb(Application application, ApplicationSession session, Integer outerTryNum)
   {
@@ -105,36 +213,239 @@ public class ApplicationClient
         DbFreezeRest.PUT_DISCOVER_DB, DiscoveryResult.class, outerTryNum);
   }
 
+  /**
+   * Async form of {@link #getDbFreezeProgress}.
+   */
+  public CompletableFuture<DbFreezeProgress> getDbFreezeProgressAsync(Application application,
+                                                                      ApplicationSession session,
+                                                                      Integer outerTryNum)
+  {
+    return requestWithRetryAsync(application, session, HttpMethodType.GET,
+        DbFreezeRest.GET_DB_FREEZE_PROGRESS, DbFreezeProgress.class, outerTryNum);
+  }
+
+  /**
+   * Async form of {@link #putRequestTransition}.
+   */
+  public CompletableFuture<DbFreezeProgress> putRequestTransitionAsync(Application application,
+                                                                       ApplicationSession session,
+                                                                       String transitionMethodPath,
+                                                                       Integer outerTryNum)
+  {
+    return requestWithRetryAsync(application, session, HttpMethodType.PUT,
+        transitionMethodPath, DbFreezeProgress.class, outerTryNum);
+  }
+
   /**
    * Makes an application request that responds with a Lockable.  If the application returns a lock error, then
-   * the client waits a bit and tries again.
+   * the client waits a bit and tries again, as decided by the retry policy.
+   * <p/>
+   * If the application rejects the session (e.g. it expired, or the application restarted), logs in again on the same
+   * session and repeats the request, once.
    */
   Lockable requestWithRetry(Application application, ApplicationSession session, HttpMethodType httpMethodType,
                             String methodPath, Class<? extends Lockable> responseClass, Integer outerTryNum)
   {
     String uri = application.makeHostnameUri() + "/" + methodPath;
+    String endpoint = endpointName(httpMethodType, methodPath);
     int tryNum = 0;
     Lockable response = null;
-    while (tryNum < MAX_NUM_TRIES)
+    boolean reauthenticated = false;
+    long delay = 0;
+    long totalDelay = 0;
+    boolean succeeded = false;
+    try
     {
-      response = tryRequest(httpMethodType, session, uri, responseClass, tryNum, outerTryNum);
-      if (response == null || response.isLockError())
+      while (tryNum < retryPolicy.getMaxNumTries())
       {
-        if (++tryNum < MAX_NUM_TRIES)
+        try
+        {
+          response = tryRequest(httpMethodType, session, uri, responseClass, tryNum, outerTryNum);
+        }
+        catch (RuntimeException e)
         {
-          sleep();
+          if (reauthenticated || !isAuthFailure(e))
+          {
+            throw e;
+          }
+          reauthenticate(application, session);
+          reauthenticated = true;
+          continue; //Same try again, with the new login
+        }
+        if (response == null || response.isLockError())
+        {
+          if (++tryNum < retryPolicy.getMaxNumTries())
+          {
+            delay = retryPolicy.nextDelayMilliseconds(tryNum, delay, response);
+            totalDelay += delay;
+            sleep(delay);
+          }
+          else
+          {
+            LOGGER.error("Request failed after " + tryNum + " tries, final response: " + response);
+          }
         }
         else
         {
-          LOGGER.error("Request failed after " + MAX_NUM_TRIES + " tries, final response: " + response);
+          succeeded = true;
+          break;
         }
       }
-      else
+    }
+    finally
+    {
+      retryMetrics.record(endpoint, Math.min(tryNum + 1, retryPolicy.getMaxNumTries()), totalDelay, succeeded);
+    }
+    return response;
+  }
+
+  /**
+   * Async form of {@link #requestWithRetry}: same tries and delays, but the delays are scheduled rather than slept.
+   * The future returns the final response, which may be null or a lock error if all tries failed.
+   */
+  <T extends Lockable> CompletableFuture<T> requestWithRetryAsync(Application application,
+                                                                  ApplicationSession session,
+                                                                  HttpMethodType httpMethodType,
+                                                                  String methodPath,
+                                                                  Class<T> responseClass,
+                                                                  Integer outerTryNum)
+  {
+    AsyncRequest<T> request = new AsyncRequest<T>(application, session, httpMethodType,
+        application.makeHostnameUri() + "/" + methodPath, endpointName(httpMethodType, methodPath), responseClass, outerTryNum);
+    tryRequestAsync(request);
+    return request.future;
+  }
+
+  /**
+   * Makes one try of an async request.  When the response arrives, either completes the future or schedules the
+   * next try.
+   */
+  private <T extends Lockable> void tryRequestAsync(final AsyncRequest<T> request)
+  {
+    final String tryNumString = tryNumString(request.tryNum, request.outerTryNum);
+    LOGGER.debug(tryNumString + " async " + request.httpMethodType + " " + request.uri);
+    httpExecuteAsync(request.httpMethodType, request.session, request.uri).whenComplete(new BiConsumer<String, Throwable>()
+    {
+      @Override
+      public void accept(String json, Throwable throwable)
       {
-        break;
+        if (throwable != null)
+        {
+          if (request.reauthenticated || !isAuthFailure(throwable))
+          {
+            finishAsync(request, null, throwable);
+          }
+          else
+          {
+            reauthenticateAsync(request.application, request.session).whenComplete(new BiConsumer<Void, Throwable>()
+            {
+              @Override
+              public void accept(Void aVoid, Throwable authThrowable)
+              {
+                if (authThrowable != null)
+                {
+                  finishAsync(request, null, authThrowable);
+                }
+                else
+                {
+                  request.reauthenticated = true;
+                  tryRequestAsync(request); //Same try again, with the new login
+                }
+              }
+            });
+          }
+          return;
+        }
+        try
+        {
+          T response = parseResponse(json, request.responseClass, request.httpMethodType, request.uri, tryNumString);
+          if (response != null && !response.isLockError())
+          {
+            finishAsync(request, response, null);
+          }
+          else if (request.tryNum + 1 < retryPolicy.getMaxNumTries())
+          {
+            ++request.tryNum;
+            request.delay = retryPolicy.nextDelayMilliseconds(request.tryNum, request.delay, response);
+            request.totalDelay += request.delay;
+            LOGGER.debug("Scheduling another try in " + request.delay + "ms");
+            retryScheduler.schedule(new Runnable()
+            {
+              @Override
+              public void run()
+              {
+                tryRequestAsync(request);
+              }
+            }, request.delay, TimeUnit.MILLISECONDS);
+          }
+          else
+          {
+            LOGGER.error("Request failed after " + (request.tryNum + 1) + " tries, final response: " + response);
+            finishAsync(request, response, null);
+          }
+        }
+        catch (RuntimeException e)
+        {
+          finishAsync(request, null, e);
+        }
       }
+    });
+  }
+
+  /**
+   * Records the retry metrics of a finished async request and completes its future.
+   */
+  private <T extends Lockable> void finishAsync(AsyncRequest<T> request, T response, Throwable throwable)
+  {
+    boolean succeeded = throwable == null && response != null && !response.isLockError();
+    retryMetrics.record(request.endpoint, request.tryNum + 1, request.totalDelay, succeeded);
+    if (throwable != null)
+    {
+      request.future.completeExceptionally(throwable);
+    }
+    else
+    {
+      request.future.complete(response);
+    }
+  }
+
+  /**
+   * Names the endpoint for retry metrics: http method and method path, without query string.
+   */
+  static String endpointName(HttpMethodType httpMethodType, String methodPath)
+  {
+    return httpMethodType + " " + StringUtils.substringBefore(methodPath, "?");
+  }
+
+  /**
+   * State of one async request across its tries.  Only one try is in flight at a time.
+   */
+  private static class AsyncRequest<T extends Lockable>
+  {
+    private final Application application;
+    private final ApplicationSession session;
+    private final HttpMethodType httpMethodType;
+    private final String uri;
+    private final String endpoint;
+    private final Class<T> responseClass;
+    private final Integer outerTryNum;
+    private final CompletableFuture<T> future = new CompletableFuture<T>();
+    private volatile int tryNum;
+    private volatile boolean reauthenticated;
+    private volatile long delay;
+    private volatile long totalDelay;
+
+    private AsyncRequest(Application application, ApplicationSession session, HttpMethodType httpMethodType,
+                         String uri, String endpoint, Class<T> responseClass, Integer outerTryNum)
+    {
+      this.application = application;
+      this.session = session;
+      this.httpMethodType = httpMethodType;
+      this.uri = uri;
+      this.endpoint = endpoint;
+      this.responseClass = responseClass;
+      this.outerTryNum = outerTryNum;
     }
-    return response;
   }
 
   /**
@@ -143,12 +454,20 @@ public class ApplicationClient
   Lockable tryRequest(HttpMethodType httpMethodType, ApplicationSession session, String uri,
                       Class<? extends Lockable> responseClass, int tryNum, Integer outerTryNum)
   {
-    Lockable response = null;
     String tryNumString = tryNumString(tryNum, outerTryNum);
     LOGGER.debug(tryNumString + " " + httpMethodType + " " + uri);
     String json = httpExecute(httpMethodType, session, uri);
+    return parseResponse(json, responseClass, httpMethodType, uri, tryNumString);
+  }
+
+  /**
+   * Parses the json response to a Lockable, and logs if it is null or a lock error.
+   */
+  private <T extends Lockable> T parseResponse(String json, Class<T> responseClass, HttpMethodType httpMethodType,
+                                               String uri, String tryNumString)
+  {
     LOGGER.debug("Response: " + json);
-    response = gson.fromJson(json, responseClass);
+    T response = gson.fromJson(json, responseClass);
     if (response == null)
     {
       LOGGER.warn(tryNumString + " null response parsed from " + httpMethodType + " " + uri + " (raw response content: " + json + ")");
@@ -193,15 +512,31 @@ public class ApplicationClient
     }
   }
 
+  /**
+   * Starts the request on the async http client, for the given http method.  Future returns the response body.
+   */
+  private CompletableFuture<String> httpExecuteAsync(HttpMethodType httpMethodType, ApplicationSession session, String uri)
+  {
+    switch (httpMethodType)
+    {
+      case GET:
+        return asyncHttpHelper.executeGet(session.getCookieStore(), uri);
+      case PUT:
+        return asyncHttpHelper.executePut(session.getCookieStore(), uri);
+      default:
+        throw new UnsupportedOperationException("Not expecting to send a '" + httpMethodType + "' request to a bluegreen application");
+    }
+  }
+
   /**
    * Sleeps for the try delay, and catches interrupt exceptions.
    */
-  private void sleep()
+  private void sleep(long delayMilliseconds)
   {
-    LOGGER.debug("Going to sleep, will try again");
+    LOGGER.debug("Going to sleep " + delayMilliseconds + "ms, will try again");
     try
     {
-      threadSleeper.sleep(RETRY_DELAY_MILLISECONDS);
+      threadSleeper.sleep(delayMilliseconds);
     }
     catch (InterruptedException e) //NOSONAR
     {
@@ -214,4 +549,10 @@ public class ApplicationClient
   {
     this.gson = gson;
   }
+
+  // Test purposes only
+  void setRetryPolicy(RetryPolicy retryPolicy)
+  {
+    this.retryPolicy = retryPolicy;
+  }
 }
@@ -1,14 +1,17 @@
 package bluegreen.manager.client.app;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import com.google.gson.Gson;
 
+import bluegreen.manager.client.http.AsyncHttpHelper;
 import bluegreen.manager.client.http.ExecutorFactory;
 import bluegreen.manager.client.http.HttpHelper;
 import bluegreen.manager.utils.ThreadSleeper;
+import bluegreen.manager.utils.WaiterScheduler;
 
 /**
  * Creates client objects that can communicate with bluegreen applications.
@@ -23,17 +26,31 @@ public class ApplicationClientFactory
   @Autowired
   private HttpHelper httpHelper;
 
+  @Autowired
+  private AsyncHttpHelper asyncHttpHelper;
+
   @Autowired
   private Gson gson;
 
   @Autowired
   private ThreadSleeper threadSleeper;
 
+  @Autowired
+  private WaiterScheduler waiterScheduler;
+
+  @Autowired
+  @Qualifier("applicationClient")
+  private RetryPolicy retryPolicy;
+
+  @Autowired
+  private RetryMetrics retryMetrics;
+
   /**
    * Creates a client that can communicate with a bluegreen application, using the specified credentials.
    */
   public ApplicationClient create(String applicationUsername, String applicationPassword)
   {
-    return new ApplicationClient(executorFactory, httpHelper, gson, threadSleeper, applicationUsername, applicationPassword);
+    return new ApplicationClient(executorFactory, httpHelper, asyncHttpHelper, gson, threadSleeper,
+        waiterScheduler.getScheduledExecutorService(), retryPolicy, retryMetrics, applicationUsername, applicationPassword);
   }
 }
@@ -0,0 +1,184 @@
+package bluegreen.manager.client.app;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import bluegreen.manager.model.domain.Application;
+
+/**
+ * Job-scoped cache of application clients and authenticated sessions, so the tasks of one job log into each
+ * application only once.
+ * <p/>
+ * A cached session is not checked up front.  If the application rejects it later, the client logs in again on the
+ * same session (see {@link ApplicationClient}), so every task holding the session sees the new login.
+ * <p/>
+ * Thread-safe: tasks of a job may run concurrently.
+ */
+@Lazy
+@Component
+@Scope("prototype")
+public class ApplicationSessionCache
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationSessionCache.class);
+
+  @Autowired
+  private ApplicationClientFactory applicationClientFactory;
+
+  private ConcurrentMap<Application, CacheEntry> entries = new ConcurrentHashMap<Application, CacheEntry>();
+
+  /**
+   * Returns the job's client for the application, creating it on first use.
+   */
+  public ApplicationClient getClient(Application application)
+  {
+    return findEntry(application).getApplicationClient();
+  }
+
+  /**
+   * Returns the job's authenticated session with the application, logging in on first use.
+   */
+  public ApplicationSession getSession(Application application)
+  {
+    CacheEntry entry = findEntry(application);
+    CompletableFuture<ApplicationSession> pendingLogin;
+    synchronized (entry)
+    {
+      pendingLogin = entry.getPendingLogin();
+      if (pendingLogin == null)
+      {
+        if (entry.getApplicationSession() == null)
+        {
+          entry.setApplicationSession(entry.getApplicationClient().authenticate(application));
+        }
+        else
+        {
+          LOGGER.debug("Reusing session with application " + application.makeHostnameUri());
+        }
+        return entry.getApplicationSession();
+      }
+    }
+    return awaitLogin(application, pendingLogin);
+  }
+
+  /**
+   * Async form of {@link #getSession}.  Callers asking while the first login is still in flight share it.  If the
+   * login fails, the next caller tries again.
+   */
+  public CompletableFuture<ApplicationSession> getSessionAsync(Application application)
+  {
+    final CacheEntry entry = findEntry(application);
+    synchronized (entry)
+    {
+      if (entry.getApplicationSession() != null)
+      {
+        LOGGER.debug("Reusing session with application " + application.makeHostnameUri());
+        return CompletableFuture.completedFuture(entry.getApplicationSession());
+      }
+      if (entry.getPendingLogin() != null)
+      {
+        return entry.getPendingLogin();
+      }
+      final CompletableFuture<ApplicationSession> login = entry.getApplicationClient().authenticateAsync(application);
+      entry.setPendingLogin(login);
+      login.whenComplete(new BiConsumer<ApplicationSession, Throwable>()
+      {
+        @Override
+        public void accept(ApplicationSession applicationSession, Throwable throwable)
+        {
+          synchronized (entry)
+          {
+            entry.setApplicationSession(applicationSession);
+            entry.setPendingLogin(null);
+          }
+        }
+      });
+      return login;
+    }
+  }
+
+  /**
+   * Waits for a login started by {@link #getSessionAsync}.
+   */
+  private ApplicationSession awaitLogin(Application application, CompletableFuture<ApplicationSession> login)
+  {
+    try
+    {
+      return login.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while logging into application " + application.makeHostnameUri(), e);
+    }
+    catch (ExecutionException e)
+    {
+      throw new RuntimeException("Failed to log into application " + application.makeHostnameUri(), e.getCause());
+    }
+  }
+
+  private CacheEntry findEntry(Application application)
+  {
+    CacheEntry entry = entries.get(application);
+    if (entry == null)
+    {
+      CacheEntry newEntry = new CacheEntry(applicationClientFactory.create(application.getUsername(), application.getPassword()));
+      entry = entries.putIfAbsent(application, newEntry);
+      if (entry == null)
+      {
+        entry = newEntry;
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Client and session for one application.  Session is null until the first login, and the pending login is
+   * non-null only while an async login is in flight.
+   */
+  private static class CacheEntry
+  {
+    private ApplicationClient applicationClient;
+    private ApplicationSession applicationSession;
+    private CompletableFuture<ApplicationSession> pendingLogin;
+
+    private CacheEntry(ApplicationClient applicationClient)
+    {
+      this.applicationClient = applicationClient;
+    }
+
+    public ApplicationClient getApplicationClient()
+    {
+      return applicationClient;
+    }
+
+    public ApplicationSession getApplicationSession()
+    {
+      return applicationSession;
+    }
+
+    public void setApplicationSession(ApplicationSession applicationSession)
+    {
+      this.applicationSession = applicationSession;
+    }
+
+    public CompletableFuture<ApplicationSession> getPendingLogin()
+    {
+      return pendingLogin;
+    }
+
+    public void setPendingLogin(CompletableFuture<ApplicationSession> pendingLogin)
+    {
+      this.pendingLogin = pendingLogin;
+    }
+  }
+}
@@ -39,6 +39,17 @@ public class DbFreezeProgress implements Lockable
    */
   private String transitionError;
 
+  /**
+   * True if the application supports long-poll progress requests, i.e. GET_DB_FREEZE_PROGRESS with
+   * waitWhileMode and maxWaitSeconds.  Older applications omit this field, which leaves it false.
+   */
+  private boolean longPollSupported;
+
+  /**
+   * With a lock error, the application may suggest how long to wait before asking again.  Null if it does not.
+   */
+  private Long retryAfterMilliseconds;
+
   public DbFreezeMode getMode()
   {
     return mode;
@@ -100,6 +111,27 @@ public class DbFreezeProgress implements Lockable
     this.transitionError = transitionError;
   }
 
+  public boolean isLongPollSupported()
+  {
+    return longPollSupported;
+  }
+
+  public void setLongPollSupported(boolean longPollSupported)
+  {
+    this.longPollSupported = longPollSupported;
+  }
+
+  @Override
+  public Long getRetryAfterMilliseconds()
+  {
+    return retryAfterMilliseconds;
+  }
+
+  public void setRetryAfterMilliseconds(Long retryAfterMilliseconds)
+  {
+    this.retryAfterMilliseconds = retryAfterMilliseconds;
+  }
+
   @Override
   public String toString()
   {
@@ -117,6 +149,13 @@ public class DbFreezeProgress implements Lockable
     sb.append(lockError);
     sb.append(", transitionError: ");
     sb.append(transitionError);
+    sb.append(", longPollSupported: ");
+    sb.append(longPollSupported);
+    if (retryAfterMilliseconds != null)
+    {
+      sb.append(", retryAfterMilliseconds: ");
+      sb.append(retryAfterMilliseconds);
+    }
     sb.append("]");
     return sb.toString();
   }
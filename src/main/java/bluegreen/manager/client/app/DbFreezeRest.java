@@ -14,6 +14,17 @@ public class DbFreezeRest
 
   public static final String GET_DB_FREEZE_PROGRESS = "dbFreezeProgress";
 
+  /**
+   * Long-poll parameter of GET_DB_FREEZE_PROGRESS: application holds the response while its mode equals this value.
+   */
+  public static final String PARAMNAME_WAIT_WHILE_MODE = "waitWhileMode";
+
+  /**
+   * Long-poll parameter of GET_DB_FREEZE_PROGRESS: application responds after this many seconds even if the mode
+   * has not changed.
+   */
+  public static final String PARAMNAME_MAX_WAIT_SECONDS = "maxWaitSeconds";
+
   public static final String PUT_ENTER_DB_FREEZE = "enterDbFreeze";
 
   public static final String PUT_EXIT_DB_FREEZE = "exitDbFreeze";
@@ -11,6 +11,11 @@ public class DiscoveryResult implements Lockable
 
   private String discoveryError;
 
+  /**
+   * With a lock error, the application may suggest how long to wait before trying again.  Null if it does not.
+   */
+  private Long retryAfterMilliseconds;
+
   public DiscoveryResult()
   {
   }
@@ -52,4 +57,15 @@ public class DiscoveryResult implements Lockable
   {
     this.discoveryError = discoveryError;
   }
+
+  @Override
+  public Long getRetryAfterMilliseconds()
+  {
+    return retryAfterMilliseconds;
+  }
+
+  public void setRetryAfterMilliseconds(Long retryAfterMilliseconds)
+  {
+    this.retryAfterMilliseconds = retryAfterMilliseconds;
+  }
 }
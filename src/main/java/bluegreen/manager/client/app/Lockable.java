@@ -6,4 +6,9 @@ package bluegreen.manager.client.app;
 public interface Lockable
 {
   boolean isLockError();
+
+  /**
+   * Application's hint of how long to wait before trying again after a lock error, or null if it gave none.
+   */
+  Long getRetryAfterMilliseconds();
 }
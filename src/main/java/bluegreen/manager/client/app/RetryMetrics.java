@@ -0,0 +1,125 @@
+package bluegreen.manager.client.app;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the lock-error retries of application requests, per endpoint (e.g. "GET dbFreezeProgress"), over the life of
+ * the jvm.  Shows which endpoints contend for the application's lock, and how much waiting the retries cost.
+ * <p/>
+ * Thread-safe.
+ */
+@Component
+public class RetryMetrics
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(RetryMetrics.class);
+
+  private ConcurrentMap<String, EndpointStats> endpointStats = new ConcurrentHashMap<String, EndpointStats>();
+
+  /**
+   * Records one finished request.
+   *
+   * @param numTries              Tries made, at least 1.
+   * @param totalDelayMilliseconds Time spent waiting between tries.
+   * @param succeeded             False if the request ended without a good response.
+   */
+  public void record(String endpoint, int numTries, long totalDelayMilliseconds, boolean succeeded)
+  {
+    EndpointStats stats = endpointStats.get(endpoint);
+    if (stats == null)
+    {
+      EndpointStats newStats = new EndpointStats();
+      stats = endpointStats.putIfAbsent(endpoint, newStats);
+      if (stats == null)
+      {
+        stats = newStats;
+      }
+    }
+    stats.record(numTries, totalDelayMilliseconds, succeeded);
+    if (numTries > 1 || !succeeded)
+    {
+      LOGGER.info("Retry metrics for " + endpoint + ": " + stats);
+    }
+  }
+
+  /**
+   * Returns the stats of the endpoint, or null if it has no requests yet.
+   */
+  public EndpointStats getEndpointStats(String endpoint)
+  {
+    return endpointStats.get(endpoint);
+  }
+
+  /**
+   * Returns one line per endpoint, sorted by endpoint.
+   */
+  @Override
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, EndpointStats> entry : new TreeMap<String, EndpointStats>(endpointStats).entrySet())
+    {
+      sb.append(entry.getKey());
+      sb.append(": ");
+      sb.append(entry.getValue());
+      sb.append("\n");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Running totals for one endpoint.
+   */
+  public static class EndpointStats
+  {
+    private AtomicLong numRequests = new AtomicLong();
+    private AtomicLong numRetries = new AtomicLong();
+    private AtomicLong numFailures = new AtomicLong();
+    private AtomicLong totalDelayMilliseconds = new AtomicLong();
+
+    private void record(int numTries, long delayMilliseconds, boolean succeeded)
+    {
+      numRequests.incrementAndGet();
+      numRetries.addAndGet(numTries - 1);
+      totalDelayMilliseconds.addAndGet(delayMilliseconds);
+      if (!succeeded)
+      {
+        numFailures.incrementAndGet();
+      }
+    }
+
+    public long getNumRequests()
+    {
+      return numRequests.get();
+    }
+
+    public long getNumRetries()
+    {
+      return numRetries.get();
+    }
+
+    public long getNumFailures()
+    {
+      return numFailures.get();
+    }
+
+    public long getTotalDelayMilliseconds()
+    {
+      return totalDelayMilliseconds.get();
+    }
+
+    @Override
+    public String toString()
+    {
+      return "requests: " + numRequests + ", retries: " + numRetries + ", failures: " + numFailures
+          + ", total retry delay: " + totalDelayMilliseconds + "ms";
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package bluegreen.manager.client.app;
+
+import bluegreen.manager.utils.PollSchedule;
+
+/**
+ * Decides how many times {@link ApplicationClient} tries a request that gets a lock error (or no response), and how
+ * long it waits before each retry.
+ * <p/>
+ * If the application's response says when to try again, that hint is used (capped at maxHintMilliseconds).
+ * Otherwise the delay comes from the backoff schedule, typically a capped exponential backoff with jitter so a
+ * briefly held lock costs only a short wait, while a long one still gets enough tries to outlast it.
+ */
+public class RetryPolicy
+{
+  private int maxNumTries;
+  private long maxHintMilliseconds;
+  private PollSchedule backoffSchedule;
+
+  public RetryPolicy()
+  {
+  }
+
+  public RetryPolicy(int maxNumTries, long maxHintMilliseconds, PollSchedule backoffSchedule)
+  {
+    this.maxNumTries = maxNumTries;
+    this.maxHintMilliseconds = maxHintMilliseconds;
+    this.backoffSchedule = backoffSchedule;
+  }
+
+  /**
+   * Returns the delay before the next try.
+   *
+   * @param retryNum                  Number of the upcoming retry, starting at 1.
+   * @param previousDelayMilliseconds Delay before the previous retry, or 0 if retryNum is 1.
+   * @param response                  Response to the try that just failed, or null.
+   */
+  public long nextDelayMilliseconds(int retryNum, long previousDelayMilliseconds, Lockable response)
+  {
+    Long hint = response == null ? null : response.getRetryAfterMilliseconds();
+    if (hint != null && hint >= 0)
+    {
+      return Math.min(hint, maxHintMilliseconds);
+    }
+    return backoffSchedule.nextDelayMilliseconds(retryNum, previousDelayMilliseconds, 0L);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "RetryPolicy[maxNumTries: " + maxNumTries + ", maxHint: " + maxHintMilliseconds + "ms, backoff: "
+        + backoffSchedule + "]";
+  }
+
+  public int getMaxNumTries()
+  {
+    return maxNumTries;
+  }
+
+  public void setMaxNumTries(int maxNumTries)
+  {
+    this.maxNumTries = maxNumTries;
+  }
+
+  public long getMaxHintMilliseconds()
+  {
+    return maxHintMilliseconds;
+  }
+
+  public void setMaxHintMilliseconds(long maxHintMilliseconds)
+  {
+    this.maxHintMilliseconds = maxHintMilliseconds;
+  }
+
+  public PollSchedule getBackoffSchedule()
+  {
+    return backoffSchedule;
+  }
+
+  public void setBackoffSchedule(PollSchedule backoffSchedule)
+  {
+    this.backoffSchedule = backoffSchedule;
+  }
+}
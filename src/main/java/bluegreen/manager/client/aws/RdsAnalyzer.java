@@ -11,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.rds.model.DBInstance;
+import com.amazonaws.services.rds.model.DBInstanceStatusInfo;
 import com.amazonaws.services.rds.model.DBParameterGroupStatus;
 import com.amazonaws.services.rds.model.VpcSecurityGroupMembership;
 
@@ -23,6 +24,7 @@ import com.amazonaws.services.rds.model.VpcSecurityGroupMembership;
 public class RdsAnalyzer
 {
   private static final Logger LOGGER = LoggerFactory.getLogger(RdsAnalyzer.class);
+  private static final String STATUS_TYPE_READ_REPLICATION = "read replication";
 
   /**
    * Finds the name of the instance's paramgroup whose name embeds the instname.  If not found, then simply returns
@@ -100,4 +102,22 @@ public class RdsAnalyzer
     }
     return null;
   }
+
+  /**
+   * Finds the read replication status info of a read replica instance, or null if none (e.g. not a replica).
+   */
+  public DBInstanceStatusInfo findReadReplicationStatusInfo(DBInstance dbInstance)
+  {
+    if (dbInstance != null && dbInstance.getStatusInfos() != null)
+    {
+      for (DBInstanceStatusInfo statusInfo : dbInstance.getStatusInfos())
+      {
+        if (StringUtils.equalsIgnoreCase(STATUS_TYPE_READ_REPLICATION, statusInfo.getStatusType()))
+        {
+          return statusInfo;
+        }
+      }
+    }
+    return null;
+  }
 }
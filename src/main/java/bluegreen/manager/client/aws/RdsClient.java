@@ -1,6 +1,7 @@
 package bluegreen.manager.client.aws;
 
 import java.util.Collection;
+import java.util.Date;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -10,6 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import com.amazonaws.services.rds.AmazonRDSClient;
 import com.amazonaws.services.rds.model.CopyDBParameterGroupRequest;
+import com.amazonaws.services.rds.model.CreateDBInstanceReadReplicaRequest;
 import com.amazonaws.services.rds.model.CreateDBSnapshotRequest;
 import com.amazonaws.services.rds.model.DBInstance;
 import com.amazonaws.services.rds.model.DBParameterGroup;
@@ -23,8 +25,10 @@ import com.amazonaws.services.rds.model.DescribeDBInstancesResult;
 import com.amazonaws.services.rds.model.DescribeDBSnapshotsRequest;
 import com.amazonaws.services.rds.model.DescribeDBSnapshotsResult;
 import com.amazonaws.services.rds.model.ModifyDBInstanceRequest;
+import com.amazonaws.services.rds.model.PromoteReadReplicaRequest;
 import com.amazonaws.services.rds.model.RebootDBInstanceRequest;
 import com.amazonaws.services.rds.model.RestoreDBInstanceFromDBSnapshotRequest;
+import com.amazonaws.services.rds.model.RestoreDBInstanceToPointInTimeRequest;
 
 /**
  * CRUD operations on Amazon RDS instances.
@@ -41,16 +45,31 @@ public class RdsClient
    */
   private AmazonRDSClient awsRdsClient;
 
+  /**
+   * Shared poller that coalesces describe requests with those of other clients, or null to describe one id at a time.
+   */
+  private RdsStatusPoller statusPoller;
+
   public RdsClient(AmazonRDSClient awsRdsClient)
   {
     this.awsRdsClient = awsRdsClient;
   }
 
+  public RdsClient(AmazonRDSClient awsRdsClient, RdsStatusPoller statusPoller)
+  {
+    this.awsRdsClient = awsRdsClient;
+    this.statusPoller = statusPoller;
+  }
+
   /**
    * Gets a description of the requested RDS instance.  Throws if not found.
    */
   public DBInstance describeInstance(String instanceName)
   {
+    if (statusPoller != null)
+    {
+      return statusPoller.describeInstance(instanceName);
+    }
     LOGGER.debug("describeDBInstances(instanceName: " + instanceName + ")");
     StopWatch stopWatch = new StopWatch();
     try
@@ -82,6 +101,10 @@ public class RdsClient
    */
   public DBSnapshot describeSnapshot(String snapshotId)
   {
+    if (statusPoller != null)
+    {
+      return statusPoller.describeSnapshot(snapshotId);
+    }
     LOGGER.debug("describeDBSnapshots(snapshotId: " + snapshotId + ")");
     StopWatch stopWatch = new StopWatch();
     try
@@ -180,6 +203,86 @@ public class RdsClient
     }
   }
 
+  /**
+   * Restores the source instance's automated backups, as of the given moment, to a brand new instance.
+   * <p/>
+   * Like restoring a snapshot, the new instance gets the default security group and paramgroup.  Restore time must
+   * be no later than the source instance's latestRestorableTime.
+   * <p/>
+   * Caller must wait for status=available afterwards.
+   */
+  public DBInstance restoreInstanceToPointInTime(String sourceInstanceName, String targetInstanceName,
+                                                 Date restoreTime, String subnetGroupName)
+  {
+    LOGGER.debug("restoreDBInstanceToPointInTime(sourceInstanceName: " + sourceInstanceName + ", targetInstanceName: "
+        + targetInstanceName + ", restoreTime: " + restoreTime + ", subnetGroupName: " + subnetGroupName + ")");
+    StopWatch stopWatch = new StopWatch();
+    try
+    {
+      stopWatch.start();
+      RestoreDBInstanceToPointInTimeRequest request = new RestoreDBInstanceToPointInTimeRequest(
+          sourceInstanceName, targetInstanceName);
+      request.setRestoreTime(restoreTime);
+      request.setDBSubnetGroupName(subnetGroupName);
+      return awsRdsClient.restoreDBInstanceToPointInTime(request);
+    }
+    finally
+    {
+      stopWatch.stop();
+      LOGGER.debug("restoreDBInstanceToPointInTime time elapsed: " + stopWatch);
+    }
+  }
+
+  /**
+   * Creates a read replica of the source instance, as a brand new instance that keeps replicating from the source.
+   * <p/>
+   * Like restoring a snapshot, the replica gets the default security group and paramgroup.  It is created in the
+   * source instance's subnet group.
+   * <p/>
+   * Caller must wait for status=available afterwards.
+   */
+  public DBInstance createReadReplica(String replicaInstanceName, String sourceInstanceName)
+  {
+    LOGGER.debug("createDBInstanceReadReplica(replicaInstanceName: " + replicaInstanceName + ", sourceInstanceName: "
+        + sourceInstanceName + ")");
+    StopWatch stopWatch = new StopWatch();
+    try
+    {
+      stopWatch.start();
+      CreateDBInstanceReadReplicaRequest request = new CreateDBInstanceReadReplicaRequest(
+          replicaInstanceName, sourceInstanceName);
+      return awsRdsClient.createDBInstanceReadReplica(request);
+    }
+    finally
+    {
+      stopWatch.stop();
+      LOGGER.debug("createDBInstanceReadReplica time elapsed: " + stopWatch);
+    }
+  }
+
+  /**
+   * Promotes a read replica to a standalone instance, which stops replicating from its source.
+   * <p/>
+   * Caller must wait for status=available, and for the instance to no longer name a replica source, afterwards.
+   */
+  public DBInstance promoteReadReplica(String instanceName)
+  {
+    LOGGER.debug("promoteReadReplica(instanceName: " + instanceName + ")");
+    StopWatch stopWatch = new StopWatch();
+    try
+    {
+      stopWatch.start();
+      PromoteReadReplicaRequest request = new PromoteReadReplicaRequest();
+      request.setDBInstanceIdentifier(instanceName);
+      return awsRdsClient.promoteReadReplica(request);
+    }
+    finally
+    {
+      stopWatch.stop();
+      LOGGER.debug("promoteReadReplica time elapsed: " + stopWatch);
+    }
+  }
+
   /**
    * Modifies the instance by applying new security groups and new parameter group.
    * <p/>
@@ -14,8 +14,14 @@ public class RdsClientFactory
   @Autowired
   private AwsClientFactory awsClientFactory;
 
+  @Autowired
+  private RdsStatusPoller rdsStatusPoller;
+
+  /**
+   * Returns a client whose describe-status calls are coalesced with those of all other clients.
+   */
   public RdsClient create()
   {
-    return new RdsClient(awsClientFactory.makeRegionalRdsClient());
+    return new RdsClient(awsClientFactory.makeRegionalRdsClient(), rdsStatusPoller);
   }
 }
@@ -0,0 +1,399 @@
+package bluegreen.manager.client.aws;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.rds.model.DBInstance;
+import com.amazonaws.services.rds.model.DBInstanceNotFoundException;
+import com.amazonaws.services.rds.model.DBSnapshot;
+import com.amazonaws.services.rds.model.DBSnapshotNotFoundException;
+import com.amazonaws.services.rds.model.DescribeDBInstancesRequest;
+import com.amazonaws.services.rds.model.DescribeDBInstancesResult;
+import com.amazonaws.services.rds.model.DescribeDBSnapshotsRequest;
+import com.amazonaws.services.rds.model.DescribeDBSnapshotsResult;
+import com.amazonaws.services.rds.model.Filter;
+
+import bluegreen.manager.utils.ThreadSleeper;
+
+/**
+ * Coalesces concurrent describe-status requests for RDS instances and snapshots.
+ * <p/>
+ * Every caller that asks for an identifier within the same tick is served by one filtered DescribeDBInstances (or
+ * DescribeDBSnapshots) call, and the results are fanned back out to the waiting callers.  No background thread: the
+ * first caller of a tick becomes the leader and makes the call on behalf of everyone, and keeps doing so while
+ * requests remain pending, up to a few rounds before handing off to a caller that is still waiting.  Callers that
+ * arrive while a call is in flight join the next round.  The leader waits out the coalescing window only if other
+ * callers are already waiting, so a lone caller is served right away.
+ * <p/>
+ * Shared by all RdsClients in the jvm, so progress checkers of concurrent waits and jobs don't multiply api traffic.
+ */
+@Lazy
+@Component
+public class RdsStatusPoller
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(RdsStatusPoller.class);
+
+  /**
+   * Rounds a leader serves before handing off, so one caller's thread is not held by everyone else's requests.
+   */
+  static final int DEFAULT_MAX_ROUNDS_PER_LEADER = 5;
+
+  static final String FILTER_INSTANCE_ID = "db-instance-id";
+  static final String FILTER_SNAPSHOT_ID = "db-snapshot-id";
+
+  @Autowired
+  private AwsClientFactory awsClientFactory;
+
+  @Autowired
+  private ThreadSleeper threadSleeper;
+
+  /**
+   * How long the first caller of a tick waits for other callers to join the batch.
+   */
+  @Value("${bluegreen.rds.statusPoller.coalesceMilliseconds}")
+  private long coalesceMilliseconds;
+
+  private int maxRoundsPerLeader = DEFAULT_MAX_ROUNDS_PER_LEADER;
+
+  private AmazonRDSClient awsRdsClient;
+
+  private final Batcher<DBInstance> instanceBatcher = new Batcher<DBInstance>("describeDBInstances")
+  {
+    @Override
+    Map<String, DBInstance> describeAll(List<String> ids)
+    {
+      Map<String, DBInstance> found = new HashMap<String, DBInstance>();
+      DescribeDBInstancesRequest request = new DescribeDBInstancesRequest();
+      request.setFilters(makeFilters(FILTER_INSTANCE_ID, ids));
+      do
+      {
+        DescribeDBInstancesResult result = getAwsRdsClient().describeDBInstances(request);
+        if (result == null)
+        {
+          break;
+        }
+        if (result.getDBInstances() != null)
+        {
+          for (DBInstance dbInstance : result.getDBInstances())
+          {
+            found.put(dbInstance.getDBInstanceIdentifier(), dbInstance);
+          }
+        }
+        request.setMarker(result.getMarker());
+      }
+      while (request.getMarker() != null);
+      return found;
+    }
+
+    @Override
+    RuntimeException notFound(String id)
+    {
+      return new DBInstanceNotFoundException("RDS cannot find instance '" + id + "'");
+    }
+  };
+
+  private final Batcher<DBSnapshot> snapshotBatcher = new Batcher<DBSnapshot>("describeDBSnapshots")
+  {
+    @Override
+    Map<String, DBSnapshot> describeAll(List<String> ids)
+    {
+      Map<String, DBSnapshot> found = new HashMap<String, DBSnapshot>();
+      DescribeDBSnapshotsRequest request = new DescribeDBSnapshotsRequest();
+      request.setFilters(makeFilters(FILTER_SNAPSHOT_ID, ids));
+      do
+      {
+        DescribeDBSnapshotsResult result = getAwsRdsClient().describeDBSnapshots(request);
+        if (result == null)
+        {
+          break;
+        }
+        if (result.getDBSnapshots() != null)
+        {
+          for (DBSnapshot dbSnapshot : result.getDBSnapshots())
+          {
+            found.put(dbSnapshot.getDBSnapshotIdentifier(), dbSnapshot);
+          }
+        }
+        request.setMarker(result.getMarker());
+      }
+      while (request.getMarker() != null);
+      return found;
+    }
+
+    @Override
+    RuntimeException notFound(String id)
+    {
+      return new DBSnapshotNotFoundException("RDS cannot find snapshot '" + id + "'");
+    }
+  };
+
+  /**
+   * Gets a description of the requested RDS instance, as of the next tick.  Throws DBInstanceNotFoundException if
+   * not found.
+   */
+  public DBInstance describeInstance(String instanceName)
+  {
+    return instanceBatcher.describe(instanceName);
+  }
+
+  /**
+   * Gets a description of the requested RDS snapshot, as of the next tick.  Throws DBSnapshotNotFoundException if
+   * not found.
+   */
+  public DBSnapshot describeSnapshot(String snapshotId)
+  {
+    return snapshotBatcher.describe(snapshotId);
+  }
+
+  private synchronized AmazonRDSClient getAwsRdsClient()
+  {
+    if (awsRdsClient == null)
+    {
+      awsRdsClient = awsClientFactory.makeRegionalRdsClient();
+    }
+    return awsRdsClient;
+  }
+
+  private static List<Filter> makeFilters(String filterName, List<String> ids)
+  {
+    List<Filter> filters = new ArrayList<Filter>();
+    filters.add(new Filter().withName(filterName).withValues(ids));
+    return filters;
+  }
+
+  /**
+   * Pending identifiers of one resource type, and the futures of the callers waiting on them.
+   * <p/>
+   * Every caller with a pending id is inside {@link #describe} until its future is done, so when a leader steps down
+   * with requests still pending there is always a waiting caller to take over.
+   */
+  private abstract class Batcher<R>
+  {
+    private final String operation;
+    private Map<String, CompletableFuture<R>> pending = new HashMap<String, CompletableFuture<R>>();
+    private boolean polling;
+    private int numCallers;
+
+    Batcher(String operation)
+    {
+      this.operation = operation;
+    }
+
+    /**
+     * Describes all the requested identifiers in one api call.  Identifiers missing from the result are not found.
+     */
+    abstract Map<String, R> describeAll(List<String> ids);
+
+    abstract RuntimeException notFound(String id);
+
+    /**
+     * Enqueues the id for the next tick, runs the ticks if nobody else is, and waits for the result.
+     */
+    R describe(String id)
+    {
+      CompletableFuture<R> future;
+      synchronized (this)
+      {
+        ++numCallers;
+        future = pending.get(id);
+        if (future == null)
+        {
+          future = new CompletableFuture<R>();
+          pending.put(id, future);
+        }
+      }
+      try
+      {
+        while (!future.isDone())
+        {
+          if (awaitLeadership(future))
+          {
+            runTicks();
+          }
+        }
+      }
+      finally
+      {
+        synchronized (this)
+        {
+          --numCallers;
+        }
+      }
+      try
+      {
+        return future.join();
+      }
+      catch (CompletionException e)
+      {
+        if (e.getCause() instanceof RuntimeException)
+        {
+          throw (RuntimeException) e.getCause();
+        }
+        if (e.getCause() instanceof Error)
+        {
+          throw (Error) e.getCause();
+        }
+        throw e;
+      }
+    }
+
+    /**
+     * Waits while another caller is leading.  Returns true if the caller is now the leader, or false if its future
+     * was completed meanwhile.
+     */
+    private synchronized boolean awaitLeadership(CompletableFuture<R> future)
+    {
+      while (polling && !future.isDone())
+      {
+        try
+        {
+          wait();
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Interrupted while waiting for " + operation, e);
+        }
+      }
+      if (future.isDone())
+      {
+        return false;
+      }
+      polling = true;
+      return true;
+    }
+
+    /**
+     * Serves ticks until no requests are pending, or until this leader has served its share of rounds.  Always
+     * steps down on the way out, even if a describe call throws, and wakes the waiting callers.
+     */
+    private void runTicks()
+    {
+      try
+      {
+        for (int round = 0; round < maxRoundsPerLeader; ++round)
+        {
+          coalesceIfOthersWaiting();
+          Map<String, CompletableFuture<R>> batch;
+          synchronized (this)
+          {
+            if (pending.isEmpty())
+            {
+              return;
+            }
+            batch = pending;
+            pending = new HashMap<String, CompletableFuture<R>>();
+          }
+          runTick(batch);
+          synchronized (this)
+          {
+            notifyAll(); //Callers served by this round
+          }
+        }
+      }
+      finally
+      {
+        synchronized (this)
+        {
+          polling = false;
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Makes one describe call for the whole batch and completes every future.
+     */
+    private void runTick(Map<String, CompletableFuture<R>> batch)
+    {
+      List<String> ids = new ArrayList<String>(batch.keySet());
+      LOGGER.debug(operation + "(" + ids.size() + " coalesced ids: " + ids + ")");
+      try
+      {
+        Map<String, R> found = describeAll(ids);
+        for (Map.Entry<String, CompletableFuture<R>> entry : batch.entrySet())
+        {
+          R description = found.get(entry.getKey());
+          if (description != null)
+          {
+            entry.getValue().complete(description);
+          }
+          else
+          {
+            entry.getValue().completeExceptionally(notFound(entry.getKey()));
+          }
+        }
+      }
+      catch (RuntimeException e)
+      {
+        completeAllExceptionally(batch, e);
+      }
+      catch (Error e)
+      {
+        completeAllExceptionally(batch, e);
+        throw e;
+      }
+    }
+
+    private void completeAllExceptionally(Map<String, CompletableFuture<R>> batch, Throwable throwable)
+    {
+      for (CompletableFuture<R> future : batch.values())
+      {
+        future.completeExceptionally(throwable);
+      }
+    }
+
+    /**
+     * Waits for more callers to join the batch, but only if the leader is not alone: a lone caller should not pay
+     * for a window nobody else is likely to use.
+     */
+    private void coalesceIfOthersWaiting()
+    {
+      synchronized (this)
+      {
+        if (coalesceMilliseconds <= 0 || numCallers <= 1)
+        {
+          return;
+        }
+      }
+      try
+      {
+        threadSleeper.sleep(coalesceMilliseconds);
+      }
+      catch (InterruptedException e) //NOSONAR
+      {
+        LOGGER.warn("Sleep was interrupted");
+      }
+    }
+  }
+
+  //Test purposes only
+  void setAwsRdsClient(AmazonRDSClient awsRdsClient)
+  {
+    this.awsRdsClient = awsRdsClient;
+  }
+
+  //Test purposes only
+  void setCoalesceMilliseconds(long coalesceMilliseconds)
+  {
+    this.coalesceMilliseconds = coalesceMilliseconds;
+  }
+
+  //Test purposes only
+  void setMaxRoundsPerLeader(int maxRoundsPerLeader)
+  {
+    this.maxRoundsPerLeader = maxRoundsPerLeader;
+  }
+}
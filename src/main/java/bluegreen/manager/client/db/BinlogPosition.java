@@ -0,0 +1,72 @@
+package bluegreen.manager.client.db;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A position in a MySQL server's binary log: log file name and byte offset within the file.
+ * <p/>
+ * Binlog file names share a prefix and end in a zero-padded sequence number, so positions order by file name first.
+ */
+public class BinlogPosition implements Comparable<BinlogPosition>
+{
+  private String file;
+  private long position;
+
+  public BinlogPosition(String file, long position)
+  {
+    this.file = file;
+    this.position = position;
+  }
+
+  public String getFile()
+  {
+    return file;
+  }
+
+  public long getPosition()
+  {
+    return position;
+  }
+
+  /**
+   * True if this position is at or beyond the other.
+   */
+  public boolean hasReached(BinlogPosition other)
+  {
+    return compareTo(other) >= 0;
+  }
+
+  @Override
+  public int compareTo(BinlogPosition other)
+  {
+    int fileComparison = StringUtils.defaultString(file).compareTo(StringUtils.defaultString(other.file));
+    if (fileComparison != 0)
+    {
+      return fileComparison;
+    }
+    return Long.compare(position, other.position);
+  }
+
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (obj instanceof BinlogPosition)
+    {
+      BinlogPosition other = (BinlogPosition) obj;
+      return StringUtils.equals(file, other.file) && position == other.position;
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return StringUtils.defaultString(file).hashCode() * 31 + (int) (position ^ (position >>> 32));
+  }
+
+  @Override
+  public String toString()
+  {
+    return file + ":" + position;
+  }
+}
@@ -0,0 +1,159 @@
+package bluegreen.manager.client.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs status queries directly against a MySQL server, such as an application's RDS database.
+ * <p/>
+ * Opens a new connection for each query, since the queries are few and far between.
+ */
+public class MysqlClient
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(MysqlClient.class);
+
+  private String driverClassName;
+  private String url;
+  private String username;
+  private String password;
+
+  public MysqlClient(String driverClassName, String url, String username, String password)
+  {
+    this.driverClassName = driverClassName;
+    this.url = url;
+    this.username = username;
+    this.password = password;
+  }
+
+  /**
+   * Returns the server's current time, truncated to the second.  The server clock is the one that stamps its binary log.
+   */
+  public Date getServerTime()
+  {
+    StopWatch stopWatch = new StopWatch();
+    try
+    {
+      stopWatch.start();
+      Connection connection = openConnection();
+      try
+      {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SELECT UNIX_TIMESTAMP()");
+        resultSet.next();
+        return new Date(resultSet.getLong(1) * 1000L);
+      }
+      finally
+      {
+        connection.close();
+      }
+    }
+    catch (SQLException e)
+    {
+      throw new RuntimeException("Failed to query current time of database at " + url, e);
+    }
+    finally
+    {
+      stopWatch.stop();
+      LOGGER.debug("SELECT UNIX_TIMESTAMP() time elapsed " + stopWatch);
+    }
+  }
+
+  /**
+   * Returns the server's current position in its own binary log, i.e. the position just past the last committed write.
+   */
+  public BinlogPosition getMasterStatus()
+  {
+    StopWatch stopWatch = new StopWatch();
+    try
+    {
+      stopWatch.start();
+      Connection connection = openConnection();
+      try
+      {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SHOW MASTER STATUS");
+        if (!resultSet.next())
+        {
+          throw new IllegalStateException("Database at " + url + " has binary logging disabled");
+        }
+        return new BinlogPosition(resultSet.getString("File"), resultSet.getLong("Position"));
+      }
+      finally
+      {
+        connection.close();
+      }
+    }
+    catch (SQLException e)
+    {
+      throw new RuntimeException("Failed to query master status of database at " + url, e);
+    }
+    finally
+    {
+      stopWatch.stop();
+      LOGGER.debug("SHOW MASTER STATUS time elapsed " + stopWatch);
+    }
+  }
+
+  /**
+   * Returns the position in the source's binary log up to which this replica has executed the source's writes, or null
+   * if this server is not a replica.
+   */
+  public BinlogPosition getReplicaExecutedPosition()
+  {
+    StopWatch stopWatch = new StopWatch();
+    try
+    {
+      stopWatch.start();
+      Connection connection = openConnection();
+      try
+      {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SHOW SLAVE STATUS");
+        if (!resultSet.next())
+        {
+          return null;
+        }
+        return new BinlogPosition(resultSet.getString("Relay_Master_Log_File"), resultSet.getLong("Exec_Master_Log_Pos"));
+      }
+      finally
+      {
+        connection.close();
+      }
+    }
+    catch (SQLException e)
+    {
+      throw new RuntimeException("Failed to query replica status of database at " + url, e);
+    }
+    finally
+    {
+      stopWatch.stop();
+      LOGGER.debug("SHOW SLAVE STATUS time elapsed " + stopWatch);
+    }
+  }
+
+  Connection openConnection() throws SQLException
+  {
+    try
+    {
+      Class.forName(driverClassName);
+    }
+    catch (ClassNotFoundException e)
+    {
+      throw new IllegalStateException("JDBC driver '" + driverClassName + "' not found", e);
+    }
+    return DriverManager.getConnection(url, username, password);
+  }
+
+  public String getUrl()
+  {
+    return url;
+  }
+}
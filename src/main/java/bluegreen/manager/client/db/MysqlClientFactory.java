@@ -0,0 +1,31 @@
+package bluegreen.manager.client.db;
+
+import org.springframework.stereotype.Component;
+
+import bluegreen.manager.model.domain.PhysicalDatabase;
+
+/**
+ * Simple factory class that simply constructs a MysqlClient.
+ * <p/>
+ * Pulling this into its own class makes the client classes more testable.
+ */
+@Component
+public class MysqlClientFactory
+{
+  /**
+   * Returns a client of the physical database, connecting with its url and credentials.
+   */
+  public MysqlClient create(PhysicalDatabase physicalDatabase)
+  {
+    return create(physicalDatabase, physicalDatabase.getUrl());
+  }
+
+  /**
+   * Returns a client of another server reached with the physical database's credentials, e.g. its read replica.
+   */
+  public MysqlClient create(PhysicalDatabase physicalDatabase, String url)
+  {
+    return new MysqlClient(physicalDatabase.getDriverClassName(), url, physicalDatabase.getUsername(),
+        physicalDatabase.getPassword());
+  }
+}
@@ -0,0 +1,156 @@
+package bluegreen.manager.client.http;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.http.Consts;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.StatusLine;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Non-blocking counterparts of the {@link HttpHelper} requests.  Each returns immediately with a future, which the
+ * async httpClient's i/o threads complete when the response arrives.
+ * <p/>
+ * Session cookies are kept in the caller's cookieStore, the same one a blocking executor would use.
+ * <p/>
+ * Futures complete exceptionally with RuntimeException, wrapping the IOException if any.
+ */
+@Lazy
+@Component
+public class AsyncHttpHelper
+{
+  @Autowired
+  private HttpAsyncClient httpAsyncClient;
+
+  @Autowired
+  private HttpHelper httpHelper;
+
+  /**
+   * Posts the authentication parameters to the given uri and validates the response cookie.
+   * Future completes normally if successful, else exceptionally.
+   */
+  public CompletableFuture<Void> postAuthForCookie(CookieStore cookieStore, final String uri, NameValuePair[] authParams)
+  {
+    final CompletableFuture<Void> future = new CompletableFuture<Void>();
+    HttpPost request = new HttpPost(uri);
+    request.setEntity(new UrlEncodedFormEntity(Arrays.asList(authParams), Consts.ISO_8859_1)); //Same charset as fluent bodyForm
+    execute(request, cookieStore, new ResponseHandler()
+    {
+      @Override
+      public void handle(HttpResponse httpResponse) throws IOException
+      {
+        httpHelper.checkAuthResponse(httpResponse, uri);
+        future.complete(null);
+      }
+    }, future, "POST uri: " + uri + ", authParams");
+    return future;
+  }
+
+  /**
+   * PUTs a uri (no content body) in an existing session.  Future returns the response body as a string.
+   */
+  public CompletableFuture<String> executePut(CookieStore cookieStore, String uri)
+  {
+    return executeForContent(new HttpPut(uri), cookieStore, "PUT uri: " + uri);
+  }
+
+  /**
+   * GETs a uri in an existing session.  Future returns the response body as a string.
+   */
+  public CompletableFuture<String> executeGet(CookieStore cookieStore, String uri)
+  {
+    return executeForContent(new HttpGet(uri), cookieStore, "GET uri: " + uri);
+  }
+
+  /**
+   * Executes the request and returns the response body as a string.  Like the fluent executor's returnContent,
+   * a status of 300 or more is an error.
+   */
+  private CompletableFuture<String> executeForContent(HttpUriRequest request, CookieStore cookieStore, String description)
+  {
+    final CompletableFuture<String> future = new CompletableFuture<String>();
+    execute(request, cookieStore, new ResponseHandler()
+    {
+      @Override
+      public void handle(HttpResponse httpResponse) throws IOException
+      {
+        StatusLine statusLine = httpResponse.getStatusLine();
+        if (statusLine.getStatusCode() >= 300)
+        {
+          throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
+        }
+        future.complete(httpResponse.getEntity() == null ? "" : EntityUtils.toString(httpResponse.getEntity()));
+      }
+    }, future, description);
+    return future;
+  }
+
+  /**
+   * Something to do with a response, on the i/o thread that receives it.
+   */
+  private interface ResponseHandler
+  {
+    void handle(HttpResponse httpResponse) throws IOException;
+  }
+
+  /**
+   * Starts the request in the cookieStore's session.  The handler completes the future, or else this completes it
+   * exceptionally.
+   */
+  private void execute(HttpUriRequest request,
+                       CookieStore cookieStore,
+                       final ResponseHandler responseHandler,
+                       final CompletableFuture<?> future,
+                       final String description)
+  {
+    HttpClientContext httpContext = HttpClientContext.create();
+    httpContext.setCookieStore(cookieStore);
+    httpAsyncClient.execute(request, httpContext, new FutureCallback<HttpResponse>()
+    {
+      @Override
+      public void completed(HttpResponse httpResponse)
+      {
+        try
+        {
+          responseHandler.handle(httpResponse);
+        }
+        catch (IOException e)
+        {
+          future.completeExceptionally(new RuntimeException(description, e));
+        }
+        catch (RuntimeException e)
+        {
+          future.completeExceptionally(e);
+        }
+      }
+
+      @Override
+      public void failed(Exception e)
+      {
+        future.completeExceptionally(new RuntimeException(description, e));
+      }
+
+      @Override
+      public void cancelled()
+      {
+        future.cancel(false);
+      }
+    });
+  }
+}
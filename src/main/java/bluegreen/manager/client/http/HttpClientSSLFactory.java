@@ -9,6 +9,7 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.HttpClientConnectionManager;
@@ -17,6 +18,9 @@ import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
@@ -25,6 +29,18 @@ import org.springframework.stereotype.Component;
 @Component
 public class HttpClientSSLFactory
 {
+  private static final int MAX_CONNECTIONS_PER_ROUTE = 50;
+  private static final int MAX_CONNECTIONS_TOTAL = 200;
+
+  @Value("${bluegreen.http.connectTimeoutMilliseconds}")
+  private int connectTimeoutMilliseconds;
+
+  /**
+   * Max silence on an open connection.  Must outlast the longest long-poll an application may hold a request.
+   */
+  @Value("${bluegreen.http.socketTimeoutMilliseconds}")
+  private int socketTimeoutMilliseconds;
+
   /**
    * Returns a thread-safe (pooled) httpClient, with freely trusting ssl for convenience.
    * Assumes https on internal networks.
@@ -32,7 +48,41 @@ public class HttpClientSSLFactory
   public HttpClient makeHttpClient()
   {
     HttpClientConnectionManager connectionManager = makeConnectionManager();
-    return HttpClientBuilder.create().setConnectionManager(connectionManager).build();
+    return HttpClientBuilder.create()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(makeRequestConfig())
+        .build();
+  }
+
+  /**
+   * Returns a started non-blocking httpClient, with the same timeouts, connection limits and freely trusting ssl as the
+   * blocking one.  A few i/o dispatch threads multiplex all its connections, so waiting on many applications at once
+   * does not tie up a thread per application.
+   */
+  public CloseableHttpAsyncClient makeHttpAsyncClient()
+  {
+    CloseableHttpAsyncClient httpAsyncClient = HttpAsyncClients.custom()
+        .setSSLContext(makeFreelyTrustingSSLContext())
+        .setHostnameVerifier(SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER)
+        .setMaxConnPerRoute(MAX_CONNECTIONS_PER_ROUTE)
+        .setMaxConnTotal(MAX_CONNECTIONS_TOTAL)
+        .setDefaultRequestConfig(makeRequestConfig())
+        .build();
+    httpAsyncClient.start();
+    return httpAsyncClient;
+  }
+
+  /**
+   * Makes the request timeouts shared by the blocking and non-blocking clients.  Waiting for a pooled connection is
+   * bounded by the connect timeout too.
+   */
+  private RequestConfig makeRequestConfig()
+  {
+    return RequestConfig.custom()
+        .setConnectTimeout(connectTimeoutMilliseconds)
+        .setConnectionRequestTimeout(connectTimeoutMilliseconds)
+        .setSocketTimeout(socketTimeoutMilliseconds)
+        .build();
   }
 
   /**
@@ -42,8 +92,8 @@ public class HttpClientSSLFactory
   {
     Registry<ConnectionSocketFactory> socketFactoryRegistry = makeConnectionSocketFactoryRegistry();
     PoolingHttpClientConnectionManager poolingHttpClientConnectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-    poolingHttpClientConnectionManager.setDefaultMaxPerRoute(50);
-    poolingHttpClientConnectionManager.setMaxTotal(200);
+    poolingHttpClientConnectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+    poolingHttpClientConnectionManager.setMaxTotal(MAX_CONNECTIONS_TOTAL);
     return poolingHttpClientConnectionManager;
   }
 
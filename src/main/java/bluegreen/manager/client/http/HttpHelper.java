@@ -45,25 +45,7 @@ public class HttpHelper
     {
       Request request = Request.Post(uri).bodyForm(authParams);
       HttpResponse httpResponse = executor.execute(request).returnResponse();
-      int statusCode = httpResponse.getStatusLine().getStatusCode();
-      Header cookieHeader = null;
-      String body = null;
-      if (200 <= statusCode && statusCode < 400)
-      {
-        cookieHeader = httpResponse.getFirstHeader(HEADERNAME_SET_COOKIE);
-        if (cookieHeader != null && StringUtils.isNotBlank(cookieHeader.getValue()))
-        {
-          body = EntityUtils.toString(httpResponse.getEntity());
-          LoginResult result = gson.fromJson(body, LoginResult.class);
-          if (result != null && result.isLoggedIn())
-          {
-            return; //success
-          }
-        }
-      }
-      throw new RuntimeException("Failed to obtain response cookie from uri " + uri + ", statusCode: " + statusCode
-          + ", cookieHeader: " + cookieToString(cookieHeader) + ", body: " + body);
-      //Note: if cookieStore already has valid cookie then response won't return a new cookie
+      checkAuthResponse(httpResponse, uri);
     }
     catch (IOException e)
     {
@@ -71,6 +53,33 @@ public class HttpHelper
     }
   }
 
+  /**
+   * Validates the response to an authentication post: must have a cookie and a logged-in result.
+   * Returns silently if successful, else throws.
+   */
+  void checkAuthResponse(HttpResponse httpResponse, String uri) throws IOException
+  {
+    int statusCode = httpResponse.getStatusLine().getStatusCode();
+    Header cookieHeader = null;
+    String body = null;
+    if (200 <= statusCode && statusCode < 400)
+    {
+      cookieHeader = httpResponse.getFirstHeader(HEADERNAME_SET_COOKIE);
+      if (cookieHeader != null && StringUtils.isNotBlank(cookieHeader.getValue()))
+      {
+        body = EntityUtils.toString(httpResponse.getEntity());
+        LoginResult result = gson.fromJson(body, LoginResult.class);
+        if (result != null && result.isLoggedIn())
+        {
+          return; //success
+        }
+      }
+    }
+    throw new RuntimeException("Failed to obtain response cookie from uri " + uri + ", statusCode: " + statusCode
+        + ", cookieHeader: " + cookieToString(cookieHeader) + ", body: " + body);
+    //Note: if cookieStore already has valid cookie then response won't return a new cookie
+  }
+
   /**
    * PUTs a uri (no content body) in an existing session, returns the response body as a string.
    */
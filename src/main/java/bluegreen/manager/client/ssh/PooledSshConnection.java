@@ -0,0 +1,118 @@
+package bluegreen.manager.client.ssh;
+
+import java.io.IOException;
+
+import ch.ethz.ssh2.Connection;
+import ch.ethz.ssh2.ConnectionMonitor;
+import ch.ethz.ssh2.Session;
+
+/**
+ * An authenticated ssh connection kept by {@link SshConnectionPool}, on which several borrowers may open sessions at
+ * the same time.  Lease bookkeeping is guarded by the pool.
+ */
+public class PooledSshConnection
+{
+  private final String key;
+  private final Connection connection;
+  private volatile boolean lost;
+  private int numLeases;
+  private boolean checking;
+  private long lastReleaseTime;
+
+  PooledSshConnection(String key, Connection connection)
+  {
+    this.key = key;
+    this.connection = connection;
+    connection.addConnectionMonitor(new ConnectionMonitor()
+    {
+      @Override
+      public void connectionLost(Throwable reason)
+      {
+        lost = true;
+      }
+    });
+  }
+
+  /**
+   * Opens a new session (channel) on the shared connection.  Caller must close it.
+   */
+  public Session openSession() throws IOException
+  {
+    return connection.openSession();
+  }
+
+  /**
+   * Sends an ssh ignore packet, which fails if the transport is gone.  Cheaper than a round trip command.
+   */
+  boolean isHealthy()
+  {
+    if (lost || !connection.isAuthenticationComplete())
+    {
+      return false;
+    }
+    try
+    {
+      connection.sendIgnorePacket();
+      return !lost;
+    }
+    catch (IOException e)
+    {
+      return false;
+    }
+  }
+
+  void close()
+  {
+    connection.close();
+  }
+
+  String getKey()
+  {
+    return key;
+  }
+
+  boolean isLost()
+  {
+    return lost;
+  }
+
+  int getNumLeases()
+  {
+    return numLeases;
+  }
+
+  void lease()
+  {
+    ++numLeases;
+  }
+
+  void release(long now)
+  {
+    --numLeases;
+    lastReleaseTime = now;
+  }
+
+  /**
+   * True while the one borrower of a formerly idle connection health-checks it.
+   */
+  boolean isChecking()
+  {
+    return checking;
+  }
+
+  void setChecking(boolean checking)
+  {
+    this.checking = checking;
+  }
+
+  long getLastReleaseTime()
+  {
+    return lastReleaseTime;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "PooledSshConnection[" + key + ", leases: " + numLeases + (lost ? ", lost" : "") + "]";
+  }
+}
@@ -2,6 +2,7 @@ package bluegreen.manager.client.ssh;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.time.StopWatch;
@@ -13,14 +14,22 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import bluegreen.manager.substituter.SubstituterResult;
+import bluegreen.manager.utils.LineListener;
+import bluegreen.manager.utils.OutputScanner;
+import bluegreen.manager.utils.OutputTail;
 import bluegreen.manager.utils.ShellResult;
-import ch.ethz.ssh2.Connection;
 import ch.ethz.ssh2.Session;
 
 /**
  * Ganymed-based ssh client.  Tries to be simple and only offer a minimum feature set.
  * Converts IOException to RuntimeException.
  * Assumes the sshTarget login produces a bash shell.
+ * <p/>
+ * Connections come from the {@link SshConnectionPool}, so clients of the same sshTarget share one login.  Each command
+ * borrows a connection only for as long as its session runs.
+ * <p/>
+ * Commands with a lot of output, or which run a long time, should be given a {@link LineListener}: output is then read
+ * line by line as it arrives, and only the last {@link #MAX_TAIL_LINES} lines are kept for the result.
  */
 @Lazy
 @Component
@@ -29,41 +38,28 @@ public class SshClient
 {
   private static final Logger LOGGER = LoggerFactory.getLogger(SshClient.class);
 
+  /**
+   * Lines of streamed output kept in the result.
+   */
+  static final int MAX_TAIL_LINES = 200;
+
   @Autowired
-  private SshConnectionFactory sshConnectionFactory;
+  private SshConnectionPool sshConnectionPool;
 
   private SshTarget sshTarget;
-  private Connection connection;
 
   public SshClient()
   {
   }
 
   /**
-   * Initializes the SshClient, which means internally connecting and authenticating to the given host.
+   * Initializes the SshClient, which means making sure we have an authenticated connection to the given host, from
+   * the pool or else new.
    */
   public SshClient init(SshTarget sshTarget)
   {
     this.sshTarget = sshTarget;
-    final String hostname = sshTarget.getHostname();
-    final String username = sshTarget.getUsername();
-    final int connectTimeout = (int) sshTarget.getSoTimeoutMilliseconds();
-    final int kexTimeout = (int) sshTarget.getKeyExchangeTimeoutMilliseconds();
-    connection = sshConnectionFactory.create(hostname);
-    boolean authenticated = false;
-    try
-    {
-      connection.connect(null, connectTimeout, kexTimeout);//Not specified: ServerHostKeyVerifier
-      authenticated = connection.authenticateWithPassword(username, sshTarget.getPassword());
-    }
-    catch (IOException e)
-    {
-      throw new RuntimeException("Failed to make ssh connection to hostname '" + hostname + "'", e);
-    }
-    if (!authenticated)
-    {
-      throw new RuntimeException("Failed to authenticate ssh to hostname '" + hostname + "' as user '" + username + "'");
-    }
+    sshConnectionPool.release(sshConnectionPool.acquire(sshTarget));
     return this;
   }
 
@@ -83,17 +79,30 @@ public class SshClient
    * the same configuration and are running the same command with presumably the same results.
    */
   public ShellResult execCommand(SubstituterResult command)
+  {
+    return execCommand(command, null);
+  }
+
+  /**
+   * Executes the command and hands each line of stdout/stderr to the lineListener as it arrives (unless null, in
+   * which case the combined output is read when the command is done).
+   * <p/>
+   * If the listener deems the output conclusive, the session is closed right away without waiting for the command to
+   * finish, and the exitValue is unknown (Integer.MIN_VALUE).  The result output is only the tail of the stream.
+   */
+  public ShellResult execCommand(SubstituterResult command, LineListener lineListener)
   {
     SubstituterResult wrappedCommand = wrapSubstituterResultForStdout(command);
     LOGGER.debug(context() + "Executing command '" + wrappedCommand.getExpurgated() + "'");
     StopWatch stopWatch = new StopWatch();
+    PooledSshConnection connection = sshConnectionPool.acquire(sshTarget);
     Session session = null;
     try
     {
       stopWatch.start();
       session = connection.openSession();
       session.execCommand(wrappedCommand.getSubstituted());
-      return makeResult(session);
+      return lineListener == null ? makeResult(session) : streamResult(session, lineListener);
     }
     catch (Throwable e)
     {
@@ -112,6 +121,7 @@ public class SshClient
       {
         session.close();
       }
+      sshConnectionPool.release(connection);
     }
   }
 
@@ -142,6 +152,36 @@ public class SshClient
     return new ShellResult(output, exitValueAsInt);
   }
 
+  /**
+   * Reads output line by line until the end of the stream or until the listener has seen enough, keeping the tail.
+   * Lines are logged as they arrive.
+   */
+  private ShellResult streamResult(Session session, final LineListener lineListener) throws IOException
+  {
+    final OutputTail outputTail = new OutputTail(MAX_TAIL_LINES);
+    boolean keepReading = !OutputScanner.scan(new InputStreamReader(session.getStdout()), new LineListener()
+    {
+      @Override
+      public boolean onLine(String line)
+      {
+        LOGGER.debug(context() + line);
+        outputTail.add(line);
+        return lineListener.onLine(line);
+      }
+    });
+    Integer exitValue = null;
+    if (keepReading)
+    {
+      exitValue = session.getExitStatus();
+    }
+    else
+    {
+      LOGGER.info(context() + "Output is conclusive after " + outputTail.getNumLines() + " lines, closing session early");
+    }
+    int exitValueAsInt = exitValue == null ? Integer.MIN_VALUE : exitValue;
+    return new ShellResult(outputTail.getText(), exitValueAsInt);
+  }
+
   /**
    * Desperate attempt to log something for diagnostics purposes, without allowing the session to throw during logging.
    * The caller has already caught an exception, and it will be re-thrown as soon as this returns.
@@ -160,4 +200,10 @@ public class SshClient
       LOGGER.error("Unable to capture full results from ssh session :(", e);
     }
   }
+
+  //Test purposes only
+  void setSshConnectionPool(SshConnectionPool sshConnectionPool)
+  {
+    this.sshConnectionPool = sshConnectionPool;
+  }
 }
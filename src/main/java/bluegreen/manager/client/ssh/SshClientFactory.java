@@ -0,0 +1,24 @@
+package bluegreen.manager.client.ssh;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates a new (uninitialized) SshClient, for callers that talk to several ssh targets at once.
+ * <p/>
+ * Pulling this into its own class makes the client classes more testable.
+ */
+@Lazy
+@Component
+public class SshClientFactory
+{
+  @Autowired
+  private ApplicationContext applicationContext;
+
+  public SshClient create()
+  {
+    return applicationContext.getBean(SshClient.class);
+  }
+}
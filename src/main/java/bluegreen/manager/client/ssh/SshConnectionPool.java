@@ -0,0 +1,291 @@
+package bluegreen.manager.client.ssh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import bluegreen.manager.utils.ThreadSleeper;
+import bluegreen.manager.utils.WaiterScheduler;
+import ch.ethz.ssh2.Connection;
+
+/**
+ * Keeps authenticated ssh connections per (user, host), so tasks and jobs that talk to the same sshTarget pay for
+ * the connect, key exchange and password auth only once.
+ * <p/>
+ * A connection is shared by up to maxSessionsPerConnection borrowers at a time, each opening its own session on it.
+ * A connection that has sat idle is health-checked before reuse, and closed once idle longer than
+ * maxIdleMilliseconds.
+ * <p/>
+ * Thread-safe.
+ */
+@Lazy
+@Component
+public class SshConnectionPool
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(SshConnectionPool.class);
+
+  @Autowired
+  private SshConnectionFactory sshConnectionFactory;
+
+  @Autowired
+  private ThreadSleeper threadSleeper;
+
+  @Autowired
+  private WaiterScheduler waiterScheduler;
+
+  @Value("${bluegreen.sshpool.maxSessionsPerConnection}")
+  private int maxSessionsPerConnection;
+
+  @Value("${bluegreen.sshpool.maxIdleMilliseconds}")
+  private long maxIdleMilliseconds;
+
+  private Map<String, List<PooledSshConnection>> connections = new HashMap<String, List<PooledSshConnection>>();
+
+  public SshConnectionPool()
+  {
+  }
+
+  public SshConnectionPool(SshConnectionFactory sshConnectionFactory,
+                           ThreadSleeper threadSleeper,
+                           int maxSessionsPerConnection,
+                           long maxIdleMilliseconds)
+  {
+    this.sshConnectionFactory = sshConnectionFactory;
+    this.threadSleeper = threadSleeper;
+    this.maxSessionsPerConnection = maxSessionsPerConnection;
+    this.maxIdleMilliseconds = maxIdleMilliseconds;
+  }
+
+  /**
+   * Evicts idle connections in the background, so they do not linger after the last job that used them.
+   */
+  @PostConstruct
+  public void init()
+  {
+    long period = Math.max(1000L, maxIdleMilliseconds / 2);
+    waiterScheduler.getScheduledExecutorService().scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        evictIdle();
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public synchronized void closeAll()
+  {
+    for (List<PooledSshConnection> list : connections.values())
+    {
+      for (PooledSshConnection pooledConnection : list)
+      {
+        pooledConnection.close();
+      }
+    }
+    connections.clear();
+  }
+
+  /**
+   * Leases a healthy authenticated connection to the target, reusing a pooled one if it has room for another
+   * session, else connecting anew.  Caller must {@link #release} it.
+   * <p/>
+   * An idle connection is health-checked outside the pool lock, since the check is a network write.  Meanwhile it is
+   * marked as checking, so other borrowers pass it by rather than share a connection that may be about to be
+   * discarded.
+   */
+  public PooledSshConnection acquire(SshTarget sshTarget)
+  {
+    String key = makeKey(sshTarget);
+    while (true)
+    {
+      PooledSshConnection pooledConnection;
+      boolean wasIdle;
+      synchronized (this)
+      {
+        pooledConnection = findAvailable(key);
+        if (pooledConnection == null)
+        {
+          break;
+        }
+        wasIdle = pooledConnection.getNumLeases() == 0;
+        pooledConnection.lease();
+        pooledConnection.setChecking(wasIdle);
+      }
+      if (!wasIdle || checkHealth(pooledConnection))
+      {
+        LOGGER.debug("Reusing " + pooledConnection);
+        return pooledConnection;
+      }
+      LOGGER.info("Discarding unhealthy ssh connection " + key);
+      discard(pooledConnection);
+    }
+    PooledSshConnection pooledConnection = new PooledSshConnection(key, connect(sshTarget));
+    synchronized (this)
+    {
+      pooledConnection.lease();
+      List<PooledSshConnection> list = connections.get(key);
+      if (list == null)
+      {
+        list = new ArrayList<PooledSshConnection>();
+        connections.put(key, list);
+      }
+      list.add(pooledConnection);
+    }
+    return pooledConnection;
+  }
+
+  /**
+   * Health-checks a connection marked as checking, then makes it available to other borrowers again.
+   */
+  private boolean checkHealth(PooledSshConnection pooledConnection)
+  {
+    try
+    {
+      return pooledConnection.isHealthy();
+    }
+    finally
+    {
+      synchronized (this)
+      {
+        pooledConnection.setChecking(false);
+      }
+    }
+  }
+
+  /**
+   * Returns a leased connection to the pool.  A lost connection is closed instead, once no one is using it.
+   */
+  public synchronized void release(PooledSshConnection pooledConnection)
+  {
+    pooledConnection.release(threadSleeper.currentTimeMillis());
+    if (pooledConnection.isLost() && pooledConnection.getNumLeases() == 0)
+    {
+      remove(pooledConnection);
+      pooledConnection.close();
+    }
+  }
+
+  /**
+   * Closes the connections nobody has used for longer than maxIdleMilliseconds.  Returns how many were closed.
+   */
+  public synchronized int evictIdle()
+  {
+    long now = threadSleeper.currentTimeMillis();
+    int numEvicted = 0;
+    for (Iterator<List<PooledSshConnection>> listIter = connections.values().iterator(); listIter.hasNext(); )
+    {
+      List<PooledSshConnection> list = listIter.next();
+      for (Iterator<PooledSshConnection> iter = list.iterator(); iter.hasNext(); )
+      {
+        PooledSshConnection pooledConnection = iter.next();
+        if (pooledConnection.getNumLeases() == 0 && now - pooledConnection.getLastReleaseTime() > maxIdleMilliseconds)
+        {
+          LOGGER.debug("Evicting idle ssh connection " + pooledConnection.getKey());
+          pooledConnection.close();
+          iter.remove();
+          ++numEvicted;
+        }
+      }
+      if (list.isEmpty())
+      {
+        listIter.remove();
+      }
+    }
+    return numEvicted;
+  }
+
+  /**
+   * Returns the pooled connection to the key with the fewest leases, if one has room for another session and is not
+   * being health-checked.
+   */
+  private PooledSshConnection findAvailable(String key)
+  {
+    List<PooledSshConnection> list = connections.get(key);
+    PooledSshConnection best = null;
+    if (list != null)
+    {
+      for (PooledSshConnection pooledConnection : list)
+      {
+        if (!pooledConnection.isLost() && !pooledConnection.isChecking()
+            && pooledConnection.getNumLeases() < maxSessionsPerConnection
+            && (best == null || pooledConnection.getNumLeases() < best.getNumLeases()))
+        {
+          best = pooledConnection;
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Gives up the caller's lease on an unhealthy connection, and closes it.
+   */
+  private synchronized void discard(PooledSshConnection pooledConnection)
+  {
+    pooledConnection.release(threadSleeper.currentTimeMillis());
+    remove(pooledConnection);
+    pooledConnection.close();
+  }
+
+  private void remove(PooledSshConnection pooledConnection)
+  {
+    List<PooledSshConnection> list = connections.get(pooledConnection.getKey());
+    if (list != null)
+    {
+      list.remove(pooledConnection);
+      if (list.isEmpty())
+      {
+        connections.remove(pooledConnection.getKey());
+      }
+    }
+  }
+
+  /**
+   * Connects and authenticates to the target.
+   */
+  private Connection connect(SshTarget sshTarget)
+  {
+    final String hostname = sshTarget.getHostname();
+    final String username = sshTarget.getUsername();
+    final int connectTimeout = (int) sshTarget.getSoTimeoutMilliseconds();
+    final int kexTimeout = (int) sshTarget.getKeyExchangeTimeoutMilliseconds();
+    LOGGER.debug("Opening ssh connection " + makeKey(sshTarget));
+    Connection connection = sshConnectionFactory.create(hostname);
+    boolean authenticated = false;
+    try
+    {
+      connection.connect(null, connectTimeout, kexTimeout);//Not specified: ServerHostKeyVerifier
+      authenticated = connection.authenticateWithPassword(username, sshTarget.getPassword());
+    }
+    catch (IOException e)
+    {
+      connection.close();
+      throw new RuntimeException("Failed to make ssh connection to hostname '" + hostname + "'", e);
+    }
+    if (!authenticated)
+    {
+      connection.close();
+      throw new RuntimeException("Failed to authenticate ssh to hostname '" + hostname + "' as user '" + username + "'");
+    }
+    return connection;
+  }
+
+  private String makeKey(SshTarget sshTarget)
+  {
+    return sshTarget.getUsername() + "@" + sshTarget.getHostname();
+  }
+}
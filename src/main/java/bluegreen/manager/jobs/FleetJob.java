@@ -0,0 +1,279 @@
+package bluegreen.manager.jobs;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import bluegreen.manager.model.domain.JobStatus;
+import bluegreen.manager.utils.NowFactory;
+
+/**
+ * Runs the jobs of a fleet manifest concurrently in one jvm, up to maxParallelJobs at a time.
+ * <p/>
+ * Two jobs that touch the same environment never run at the same time: a job waits until none of its envs are in
+ * use by a running job.  Otherwise jobs start in manifest order.  A failed job does not stop the others.
+ * <p/>
+ * Each job keeps its own job/task history and summary.  The fleet concludes with one consolidated summary.
+ */
+@Lazy
+@Component
+@Scope("prototype")
+public class FleetJob implements Job
+{
+  private static Logger LOGGER = LoggerFactory.getLogger(FleetJob.class);
+
+  @Autowired
+  private NowFactory nowFactory;
+
+  private String commandLine;
+  private List<Job> jobs;
+  private int maxParallelJobs;
+
+  private Date startTime;
+  private Date endTime;
+  private JobStatus[] jobStatuses;
+  private String[] jobErrors;
+
+  public FleetJob(String commandLine, List<Job> jobs, int maxParallelJobs)
+  {
+    if (maxParallelJobs < 1)
+    {
+      throw new IllegalArgumentException("maxParallelJobs must be positive, found " + maxParallelJobs);
+    }
+    this.commandLine = commandLine;
+    this.jobs = jobs;
+    this.maxParallelJobs = maxParallelJobs;
+  }
+
+  /**
+   * Runs all the jobs of the fleet.  Returns DONE if all of them are done, else ERROR.
+   */
+  @Override
+  public JobStatus process()
+  {
+    if (jobs == null || jobs.size() == 0)
+    {
+      throw new IllegalStateException("No jobs");
+    }
+    startTime = nowFactory.now();
+    jobStatuses = new JobStatus[jobs.size()];
+    jobErrors = new String[jobs.size()];
+    try
+    {
+      processJobs();
+    }
+    finally
+    {
+      endTime = nowFactory.now();
+      LOGGER.info("Summary of fleet results:\n" + summarizeFleet());
+    }
+    return getFleetStatus();
+  }
+
+  /**
+   * Launches each job as soon as there is a free slot and none of its envs are busy, until all jobs have finished.
+   */
+  private void processJobs()
+  {
+    LOGGER.info("Processing " + jobs.size() + " jobs with up to " + maxParallelJobs + " at a time");
+    ExecutorService executorService = Executors.newFixedThreadPool(maxParallelJobs);
+    CompletionService<JobStatus> completionService = new ExecutorCompletionService<JobStatus>(executorService);
+    Map<Future<JobStatus>, Integer> runningJobs = new HashMap<Future<JobStatus>, Integer>();
+    List<Integer> pendingJobs = new LinkedList<Integer>();
+    for (int idx = 0; idx < jobs.size(); ++idx)
+    {
+      pendingJobs.add(idx);
+    }
+    Set<String> busyEnvNames = new HashSet<String>();
+    try
+    {
+      while (true)
+      {
+        Iterator<Integer> iterator = pendingJobs.iterator();
+        while (iterator.hasNext() && runningJobs.size() < maxParallelJobs)
+        {
+          final int idx = iterator.next();
+          final Job job = jobs.get(idx);
+          List<String> envNames = envNamesOf(job);
+          if (!containsAny(busyEnvNames, envNames))
+          {
+            iterator.remove();
+            busyEnvNames.addAll(envNames);
+            LOGGER.info("FLEET JOB #" + (idx + 1) + " of " + jobs.size() + " BEGIN: " + job.getCommandLine());
+            runningJobs.put(completionService.submit(new Callable<JobStatus>()
+            {
+              @Override
+              public JobStatus call()
+              {
+                return job.process();
+              }
+            }), idx);
+          }
+        }
+        if (runningJobs.isEmpty())
+        {
+          break;
+        }
+        Future<JobStatus> future = completionService.take();
+        int idx = runningJobs.remove(future);
+        busyEnvNames.removeAll(envNamesOf(jobs.get(idx)));
+        recordResult(idx, future);
+        LOGGER.info("FLEET JOB #" + (idx + 1) + " of " + jobs.size() + " END: " + jobStatuses[idx]);
+      }
+    }
+    catch (InterruptedException e)
+    {
+      throw new RuntimeException("Interrupted while waiting for fleet jobs to finish", e);
+    }
+    finally
+    {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Saves the status of the finished job.  An exception counts as an error.
+   */
+  private void recordResult(int idx, Future<JobStatus> future) throws InterruptedException
+  {
+    try
+    {
+      jobStatuses[idx] = future.get();
+    }
+    catch (ExecutionException e)
+    {
+      LOGGER.error("Fleet job #" + (idx + 1) + " failed: " + jobs.get(idx).getCommandLine(), e.getCause());
+      jobStatuses[idx] = JobStatus.ERROR;
+      jobErrors[idx] = String.valueOf(e.getCause());
+    }
+  }
+
+  /**
+   * Returns the non-null env names of the job.
+   */
+  private List<String> envNamesOf(Job job)
+  {
+    List<String> envNames = new ArrayList<String>();
+    if (job.getEnv1() != null)
+    {
+      envNames.add(job.getEnv1());
+    }
+    if (job.getEnv2() != null)
+    {
+      envNames.add(job.getEnv2());
+    }
+    return envNames;
+  }
+
+  private boolean containsAny(Set<String> busyEnvNames, List<String> envNames)
+  {
+    for (String envName : envNames)
+    {
+      if (busyEnvNames.contains(envName))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private JobStatus getFleetStatus()
+  {
+    for (JobStatus jobStatus : jobStatuses)
+    {
+      if (jobStatus != JobStatus.DONE)
+      {
+        return JobStatus.ERROR;
+      }
+    }
+    return JobStatus.DONE;
+  }
+
+  /**
+   * Produces a loggable string that summarizes the fleet parameters and the result of each job.
+   */
+  String summarizeFleet()
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append("\n");
+    sb.append("=========================== FLEET SUMMARY ============================\n");
+    sb.append("\n");
+    sb.append("CommandLine: " + commandLine + "\n");
+    sb.append("\n");
+    sb.append("MaxParallelJobs: " + maxParallelJobs + "\n");
+    sb.append("StartTime:       " + startTime + "\n");
+    sb.append("EndTime:         " + endTime + "\n");
+    sb.append("FleetStatus:     " + getFleetStatus() + "\n");
+    sb.append("\n");
+    sb.append("Jobs:\n");
+    for (int idx = 0; idx < jobs.size(); ++idx)
+    {
+      Job job = jobs.get(idx);
+      sb.append("(" + (idx + 1) + ") " + job.getName() + " " + envNamesOf(job) + ": "
+          + (jobStatuses[idx] == null ? "NOT ATTEMPTED" : jobStatuses[idx]));
+      if (jobErrors[idx] != null)
+      {
+        sb.append(" - " + jobErrors[idx]);
+      }
+      sb.append("\n");
+      sb.append("      " + job.getCommandLine() + "\n");
+    }
+    sb.append("\n");
+    sb.append("======================================================================\n");
+    sb.append("\n");
+    return sb.toString();
+  }
+
+  //Test purposes only
+  void setNowFactory(NowFactory nowFactory)
+  {
+    this.nowFactory = nowFactory;
+  }
+
+  @Override
+  public String getName()
+  {
+    return getClass().getSimpleName();
+  }
+
+  /**
+   * A fleet has no environment of its own, its jobs do.
+   */
+  @Override
+  public String getEnv1()
+  {
+    return null;
+  }
+
+  @Override
+  public String getEnv2()
+  {
+    return null;
+  }
+
+  @Override
+  public String getCommandLine()
+  {
+    return commandLine;
+  }
+}
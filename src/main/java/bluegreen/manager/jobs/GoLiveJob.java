@@ -7,12 +7,14 @@ import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import bluegreen.manager.model.domain.JobHistory;
 import bluegreen.manager.tasks.DiscoveryTask;
 import bluegreen.manager.tasks.FixedElbFlipEc2Task;
 import bluegreen.manager.tasks.FreezeTask;
+import bluegreen.manager.tasks.LoadTestTask;
 import bluegreen.manager.tasks.LocalShellTask;
 import bluegreen.manager.tasks.ShellConfig;
 import bluegreen.manager.tasks.SmokeTestTask;
@@ -28,6 +30,7 @@ import bluegreen.manager.tasks.ThawTask;
  */
 @Lazy
 @Component
+@Scope("prototype")
 public class GoLiveJob extends TaskSequenceJob
 {
   @Autowired
@@ -48,7 +51,9 @@ public class GoLiveJob extends TaskSequenceJob
   }
 
   /**
-   * Instantiates the sequence of tasks for the go-live job.
+   * Instantiates the sequence of tasks for the go-live job.  Like the smoke test, the load test of the new live env
+   * (now on the live database) comes before the ELB flip, so that a failing gate stops the job before users are sent
+   * to the new live env.  It checks the latency budgets alone, since the old live env is frozen by then.
    * <p/>
    * Is PostConstruct to have access to applicationContext.
    */
@@ -63,6 +68,7 @@ public class GoLiveJob extends TaskSequenceJob
     tasks.add(applicationContext.getBean(SwapDatabasesTask.class).assign(position++, oldLiveEnvName, newLiveEnvName));
     tasks.add(applicationContext.getBean(DiscoveryTask.class).assign(position++, newLiveEnvName));
     tasks.add(applicationContext.getBean(SmokeTestTask.class).assign(position++, newLiveEnvName));
+    tasks.add(applicationContext.getBean(LoadTestTask.class).assign(position++, newLiveEnvName, null));
     tasks.add(applicationContext.getBean(FixedElbFlipEc2Task.class).assign(position++, oldLiveEnvName, newLiveEnvName, fixedLbName));
     tasks.add(applicationContext.getBean(ThawTask.class).assignTransition(position++, newLiveEnvName));
     this.tasks = tasks;
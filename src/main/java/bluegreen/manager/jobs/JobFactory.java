@@ -1,15 +1,21 @@
 package bluegreen.manager.jobs;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.text.StrMatcher;
+import org.apache.commons.lang3.text.StrTokenizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
@@ -30,6 +36,8 @@ public class JobFactory
   public static final String JOBNAME_STAGING_DEPLOY = "stagingDeploy";
   public static final String JOBNAME_GO_LIVE = "goLive";
   public static final String JOBNAME_TEARDOWN = "teardown";
+  public static final String JOBNAME_FLEET = "fleet";
+  public static final String JOBNAME_REPORT = "report";
 
   public static final String PARAMNAME_LIVE_ENV = "liveEnv";
   public static final String PARAMNAME_STAGE_ENV = "stageEnv";
@@ -40,11 +48,18 @@ public class JobFactory
   public static final String PARAMNAME_FIXED_LB = "fixedLB";
   public static final String PARAMNAME_DELETE_ENV = "deleteEnv";
   public static final String PARAMNAME_STOP_SERVICES = "stopServices";
+  public static final String PARAMNAME_MANIFEST = "manifest";
+  public static final String PARAMNAME_MAX_PARALLEL_JOBS = "maxParallelJobs";
+  public static final String PARAMNAME_JOB = "job";
+  public static final String PARAMNAME_ENV = "env";
+  public static final String PARAMNAME_MAX_AGE_DAYS = "maxAgeDays";
   public static final String PARAMNAME_NOOP = "noop";
   public static final String PARAMNAME_FORCE = "force";
 
   private static final long MAX_AGE_RELEVANT_PRIOR_JOB = 1000L * 60L * 60L * 24L; //1 day
   static final int UNLIMITED_NUM_VALUES = -1;
+  private static final String MANIFEST_COMMENT = "#";
+  private static final long MILLISECONDS_PER_DAY = 1000L * 60L * 60L * 24L;
 
   @Autowired
   private ApplicationContext applicationContext;
@@ -55,6 +70,18 @@ public class JobFactory
   @Autowired
   private EnvironmentTx environmentTx;
 
+  /**
+   * Default parallelism of a fleet job, if not specified on the cmdline.
+   */
+  @Value("${bluegreen.fleet.maxParallelJobs}")
+  private int defaultMaxParallelJobs;
+
+  /**
+   * Default days of history covered by a report job, if not specified on the cmdline.
+   */
+  @Value("${bluegreen.report.maxAgeDays}")
+  private int defaultReportMaxAgeDays;
+
   /**
    * Logs an explanation of valid jobs and their expected parameters.
    */
@@ -118,6 +145,30 @@ public class JobFactory
     sb.append("\t\t\tSpecify services running on the " + PARAMNAME_DELETE_ENV + " which we should\n");
     sb.append("\t\t\ttry to shutdown gracefully prior to vm deletion.\n");
     sb.append("\n");
+    sb.append("Job '" + JOBNAME_FLEET + "'\n");
+    sb.append("Description: Runs the jobs listed in a manifest concurrently, never running\n");
+    sb.append("             two jobs on the same env at the same time.\n");
+    sb.append("Required Parameters:\n");
+    sb.append("\t" + ArgumentParser.DOUBLE_HYPHEN + PARAMNAME_MANIFEST + " <file>\n");
+    sb.append("\t\t\tText file with one job per line, written exactly like the\n");
+    sb.append("\t\t\tcmdline of that job.  Blank lines and lines starting with\n");
+    sb.append("\t\t\t'" + MANIFEST_COMMENT + "' are ignored.\n");
+    sb.append("Optional Parameters:\n");
+    sb.append("\t" + ArgumentParser.DOUBLE_HYPHEN + PARAMNAME_MAX_PARALLEL_JOBS + " <number>\n");
+    sb.append("\t\t\tMax number of jobs running at the same time.\n");
+    sb.append("\n");
+    sb.append("Job '" + JOBNAME_REPORT + "'\n");
+    sb.append("Description: Reports task duration percentiles, the critical path and the\n");
+    sb.append("             live freeze window of past jobs, per job type and env.  Flags\n");
+    sb.append("             task runs that took longer than their historical p90.\n");
+    sb.append("Optional Parameters:\n");
+    sb.append("\t" + ArgumentParser.DOUBLE_HYPHEN + PARAMNAME_JOB + " <jobName>\n");
+    sb.append("\t\t\tOnly report on this type of job, e.g. " + JOBNAME_STAGING_DEPLOY + ".\n");
+    sb.append("\t" + ArgumentParser.DOUBLE_HYPHEN + PARAMNAME_ENV + " <envName>\n");
+    sb.append("\t\t\tOnly report on jobs whose first env is this one.\n");
+    sb.append("\t" + ArgumentParser.DOUBLE_HYPHEN + PARAMNAME_MAX_AGE_DAYS + " <number>\n");
+    sb.append("\t\t\tDays of history to cover.\n");
+    sb.append("\n");
     sb.append("Common Optional Parameters:\n");
     sb.append("\t" + ArgumentParser.DOUBLE_HYPHEN + PARAMNAME_NOOP + "\n");
     sb.append("\t\t\tNo-op means print out what this job WOULD do, without taking any\n");
@@ -126,6 +177,8 @@ public class JobFactory
     sb.append("\t" + ArgumentParser.DOUBLE_HYPHEN + PARAMNAME_FORCE + "\n");
     sb.append("\t\t\tForce job to attempt all tasks, instead of skipping tasks that\n");
     sb.append("\t\t\twere successful in the last recent try.\n");
+    sb.append("\t\t\tAlso makes long tasks start over, instead of resuming after the\n");
+    sb.append("\t\t\tcheckpoints they reached in the last recent try.\n");
     sb.append("\n");
     return sb.toString();
   }
@@ -149,6 +202,14 @@ public class JobFactory
       {
         return makeTeardownJob(parameters, commandLine);
       }
+      else if (jobName.equals(JOBNAME_FLEET))
+      {
+        return makeFleetJob(parameters, commandLine);
+      }
+      else if (jobName.equals(JOBNAME_REPORT))
+      {
+        return makeReportJob(parameters, commandLine);
+      }
     }
     throw new CmdlineException("Unrecognized jobName: " + jobName);
   }
@@ -185,6 +246,136 @@ public class JobFactory
     return makeGenericJob(TeardownJob.class, parameters, commandLine, PARAMNAME_DELETE_ENV, null, false, stopServices);
   }
 
+  /**
+   * Constructs a new FleetJob from the manifest.  Each manifest entry is made into a job just as if it had been given
+   * on the cmdline, so a bad entry fails the whole fleet before any job starts.
+   *
+   * @see #splitManifestEntry(String)
+   */
+  private Job makeFleetJob(List<List<String>> parameters, String commandLine)
+  {
+    String manifestPath = getParameter(PARAMNAME_MANIFEST, parameters, 1).get(1);
+    int maxParallelJobs = defaultMaxParallelJobs;
+    if (hasParameter(PARAMNAME_MAX_PARALLEL_JOBS, parameters))
+    {
+      maxParallelJobs = parsePositiveInt(getParameter(PARAMNAME_MAX_PARALLEL_JOBS, parameters, 1).get(1),
+          PARAMNAME_MAX_PARALLEL_JOBS);
+    }
+    List<Job> jobs = new ArrayList<Job>();
+    for (String line : readManifest(manifestPath))
+    {
+      ArgumentParser argumentParser = new ArgumentParser();
+      argumentParser.parseArgs(splitManifestEntry(line));
+      if (StringUtils.equals(JOBNAME_FLEET, argumentParser.getJobName()))
+      {
+        throw new CmdlineException("Fleet manifest '" + manifestPath + "' cannot contain another fleet: " + line);
+      }
+      jobs.add(makeJob(argumentParser.getJobName(), argumentParser.getParameters(), argumentParser.getCommandLine()));
+    }
+    if (jobs.isEmpty())
+    {
+      throw new CmdlineException("Fleet manifest '" + manifestPath + "' has no jobs");
+    }
+    return applicationContext.getBean(FleetJob.class, commandLine, jobs, maxParallelJobs);
+  }
+
+  /**
+   * Constructs a new ReportJob with the specified filters.
+   */
+  private Job makeReportJob(List<List<String>> parameters, String commandLine)
+  {
+    String reportJobName = null;
+    if (hasParameter(PARAMNAME_JOB, parameters))
+    {
+      reportJobName = toJobClassName(getParameter(PARAMNAME_JOB, parameters, 1).get(1));
+    }
+    String reportEnvName = null;
+    if (hasParameter(PARAMNAME_ENV, parameters))
+    {
+      reportEnvName = getParameter(PARAMNAME_ENV, parameters, 1).get(1);
+    }
+    int maxAgeDays = defaultReportMaxAgeDays;
+    if (hasParameter(PARAMNAME_MAX_AGE_DAYS, parameters))
+    {
+      maxAgeDays = parsePositiveInt(getParameter(PARAMNAME_MAX_AGE_DAYS, parameters, 1).get(1), PARAMNAME_MAX_AGE_DAYS);
+    }
+    return applicationContext.getBean(ReportJob.class, commandLine, reportJobName, reportEnvName,
+        maxAgeDays * MILLISECONDS_PER_DAY);
+  }
+
+  /**
+   * Converts a cmdline job name to the job name recorded in job history.
+   */
+  String toJobClassName(String jobName)
+  {
+    if (JOBNAME_STAGING_DEPLOY.equals(jobName))
+    {
+      return StagingDeployJob.class.getSimpleName();
+    }
+    else if (JOBNAME_GO_LIVE.equals(jobName))
+    {
+      return GoLiveJob.class.getSimpleName();
+    }
+    else if (JOBNAME_TEARDOWN.equals(jobName))
+    {
+      return TeardownJob.class.getSimpleName();
+    }
+    throw new CmdlineException("Parameter '" + PARAMNAME_JOB + "' expects one of " + JOBNAME_STAGING_DEPLOY + ", "
+        + JOBNAME_GO_LIVE + ", " + JOBNAME_TEARDOWN + ", found '" + jobName + "'");
+  }
+
+  /**
+   * Returns the non-blank, non-comment lines of the manifest file.
+   */
+  List<String> readManifest(String manifestPath)
+  {
+    List<String> lines;
+    try
+    {
+      lines = FileUtils.readLines(new File(manifestPath), "UTF-8");
+    }
+    catch (IOException e)
+    {
+      throw new CmdlineException("Cannot read fleet manifest '" + manifestPath + "': " + e.getMessage());
+    }
+    List<String> entries = new ArrayList<String>();
+    for (String line : lines)
+    {
+      String trimmed = StringUtils.trim(line);
+      if (StringUtils.isNotEmpty(trimmed) && !trimmed.startsWith(MANIFEST_COMMENT))
+      {
+        entries.add(trimmed);
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Splits a manifest entry into args the way a shell would split a simple cmdline: on whitespace, except inside
+   * single or double quotes, which are removed.  A quote char is escaped by doubling it inside a quoted arg.
+   */
+  String[] splitManifestEntry(String line)
+  {
+    return new StrTokenizer(line, StrMatcher.splitMatcher(), StrMatcher.quoteMatcher()).getTokenArray();
+  }
+
+  private int parsePositiveInt(String value, String paramName)
+  {
+    try
+    {
+      int number = Integer.parseInt(value);
+      if (number > 0)
+      {
+        return number;
+      }
+    }
+    catch (NumberFormatException e)
+    {
+      //Fall through
+    }
+    throw new CmdlineException("Parameter '" + paramName + "' expects a positive number, found '" + value + "'");
+  }
+
   /**
    * Constructs a new Job implementation with the specified parameters.
    * <p/>
@@ -0,0 +1,351 @@
+package bluegreen.manager.jobs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.time.DurationFormatUtils;
+
+import bluegreen.manager.model.domain.JobHistory;
+import bluegreen.manager.model.domain.JobStatus;
+import bluegreen.manager.model.domain.TaskHistory;
+import bluegreen.manager.model.domain.TaskStatus;
+
+/**
+ * Duration analytics over past job runs, grouped by job type and env1.
+ * <p/>
+ * For each group: per-task duration percentiles, the critical path of the latest successful run, and the length of
+ * the window where the live env is frozen.  Also flags each task run that took longer than the p90 of that task's
+ * earlier runs in the same group, which points out slow steps and regressions in AWS or in our scripts.
+ * <p/>
+ * Only successful (DONE) task runs count toward durations.
+ */
+public class JobHistoryReport
+{
+  /**
+   * A task run is only flagged as slow if there are at least this many earlier runs to compare against.
+   */
+  static final int MIN_HISTORY_FOR_FLAG = 3;
+
+  /**
+   * Task history times are persisted with one-second resolution, so a task may appear to start a bit before its
+   * predecessor ended.
+   */
+  private static final long TIME_TOLERANCE_MILLISECONDS = 1000L;
+
+  static final String FREEZE_TASK_NAME = "FreezeTask";
+  static final String THAW_TASK_NAME = "ThawTask";
+
+  private Map<String, List<JobHistory>> groups = new TreeMap<String, List<JobHistory>>();
+
+  /**
+   * @param jobHistories Job histories with their task histories loaded, oldest first.
+   */
+  public JobHistoryReport(List<JobHistory> jobHistories)
+  {
+    if (jobHistories != null)
+    {
+      for (JobHistory jobHistory : jobHistories)
+      {
+        String groupKey = jobHistory.getJobName() + " " + jobHistory.getEnv1();
+        if (!groups.containsKey(groupKey))
+        {
+          groups.put(groupKey, new ArrayList<JobHistory>());
+        }
+        groups.get(groupKey).add(jobHistory);
+      }
+    }
+  }
+
+  /**
+   * Produces a loggable string with the analytics of every group.
+   */
+  public String render()
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append("\n");
+    sb.append("======================== JOB HISTORY REPORT ==========================\n");
+    sb.append("\n");
+    if (groups.isEmpty())
+    {
+      sb.append("No job history found\n");
+      sb.append("\n");
+    }
+    for (Map.Entry<String, List<JobHistory>> entry : groups.entrySet())
+    {
+      renderGroup(sb, entry.getKey(), entry.getValue());
+    }
+    sb.append("======================================================================\n");
+    sb.append("\n");
+    return sb.toString();
+  }
+
+  private void renderGroup(StringBuilder sb, String groupKey, List<JobHistory> jobHistories)
+  {
+    sb.append("Job/Env: " + groupKey + " (" + jobHistories.size() + " runs, "
+        + countJobStatus(jobHistories, JobStatus.DONE) + " done)\n");
+    sb.append("\n");
+    sb.append("Task durations (p50 / p90 / max over n done runs):\n");
+    for (Map.Entry<String, List<Long>> entry : findTaskDurations(jobHistories).entrySet())
+    {
+      sb.append("  " + entry.getKey() + ": " + describeDurations(entry.getValue()) + "\n");
+    }
+    List<Long> freezeWindows = findFreezeWindows(jobHistories);
+    if (!freezeWindows.isEmpty())
+    {
+      sb.append("Freeze window (p50 / p90 / max over n runs): " + describeDurations(freezeWindows) + "\n");
+    }
+    JobHistory latestDone = findLatestDone(jobHistories);
+    if (latestDone != null)
+    {
+      sb.append("Critical path of latest done run #" + latestDone.getId() + " (" + latestDone.getStartTime() + "):\n");
+      long total = 0;
+      for (TaskHistory taskHistory : findCriticalPath(latestDone))
+      {
+        long duration = durationOf(taskHistory);
+        total += duration;
+        sb.append("  " + taskKey(taskHistory) + ": " + formatDuration(duration) + "\n");
+      }
+      sb.append("  Total: " + formatDuration(total) + "\n");
+    }
+    List<String> flags = findSlowTaskRuns(jobHistories);
+    if (!flags.isEmpty())
+    {
+      sb.append("Task runs exceeding their historical p90:\n");
+      for (String flag : flags)
+      {
+        sb.append("  " + flag + "\n");
+      }
+    }
+    sb.append("\n");
+  }
+
+  private int countJobStatus(List<JobHistory> jobHistories, JobStatus jobStatus)
+  {
+    int count = 0;
+    for (JobHistory jobHistory : jobHistories)
+    {
+      if (jobHistory.getStatus() == jobStatus)
+      {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Maps each task (by position and name, in position order) to its done durations.
+   */
+  Map<String, List<Long>> findTaskDurations(List<JobHistory> jobHistories)
+  {
+    Map<String, List<Long>> taskDurations = new LinkedHashMap<String, List<Long>>();
+    for (TaskHistory taskHistory : sortedByPosition(allDoneTaskHistories(jobHistories)))
+    {
+      String key = taskKey(taskHistory);
+      if (!taskDurations.containsKey(key))
+      {
+        taskDurations.put(key, new ArrayList<Long>());
+      }
+      taskDurations.get(key).add(durationOf(taskHistory));
+    }
+    return taskDurations;
+  }
+
+  /**
+   * Returns every freeze window of each run: from freeze start to the end of the thaw that lifted it.
+   * <p/>
+   * Task history does not record which env a task froze, so freezes and thaws are paired by position: each done thaw
+   * lifts the earliest done freeze before it that no earlier thaw has lifted.  This pairs the live env's freeze and
+   * thaw around each staging-deploy phase, and goLive's freeze and thaw of the new live env (its old live env stays
+   * frozen).  A freeze that is never thawed in the run has no window.
+   */
+  List<Long> findFreezeWindows(List<JobHistory> jobHistories)
+  {
+    List<Long> freezeWindows = new ArrayList<Long>();
+    for (JobHistory jobHistory : jobHistories)
+    {
+      LinkedList<TaskHistory> unthawedFreezes = new LinkedList<TaskHistory>();
+      for (TaskHistory taskHistory : sortedByPosition(doneTaskHistories(jobHistory)))
+      {
+        if (FREEZE_TASK_NAME.equals(taskHistory.getTaskName()))
+        {
+          unthawedFreezes.add(taskHistory);
+        }
+        else if (THAW_TASK_NAME.equals(taskHistory.getTaskName()) && !unthawedFreezes.isEmpty())
+        {
+          TaskHistory freeze = unthawedFreezes.removeFirst();
+          freezeWindows.add(taskHistory.getEndTime().getTime() - freeze.getStartTime().getTime());
+        }
+      }
+    }
+    return freezeWindows;
+  }
+
+  private JobHistory findLatestDone(List<JobHistory> jobHistories)
+  {
+    for (int idx = jobHistories.size() - 1; idx >= 0; --idx)
+    {
+      if (jobHistories.get(idx).getStatus() == JobStatus.DONE)
+      {
+        return jobHistories.get(idx);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reconstructs the critical path of a job run from task start/end times, in order.
+   * <p/>
+   * Task dependencies are not persisted, but a task can only depend on earlier positions, and it starts as soon as
+   * its last prerequisite ends.  So walking back from the last task to end, the predecessor of each task on the path
+   * is the earlier-positioned task that ended last before it started.
+   */
+  List<TaskHistory> findCriticalPath(JobHistory jobHistory)
+  {
+    List<TaskHistory> taskHistories = doneTaskHistories(jobHistory);
+    List<TaskHistory> path = new ArrayList<TaskHistory>();
+    TaskHistory current = null;
+    for (TaskHistory taskHistory : taskHistories)
+    {
+      if (current == null || taskHistory.getEndTime().after(current.getEndTime()))
+      {
+        current = taskHistory;
+      }
+    }
+    while (current != null)
+    {
+      path.add(current);
+      TaskHistory predecessor = null;
+      for (TaskHistory taskHistory : taskHistories)
+      {
+        if (taskHistory.getPosition() < current.getPosition()
+            && taskHistory.getEndTime().getTime() <= current.getStartTime().getTime() + TIME_TOLERANCE_MILLISECONDS
+            && (predecessor == null || !taskHistory.getEndTime().before(predecessor.getEndTime())))
+        {
+          predecessor = taskHistory;
+        }
+      }
+      current = predecessor;
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * Returns a description of each done task run that took longer than the p90 of the same task's earlier runs.
+   */
+  List<String> findSlowTaskRuns(List<JobHistory> jobHistories)
+  {
+    List<String> flags = new ArrayList<String>();
+    Map<String, List<Long>> earlierDurations = new TreeMap<String, List<Long>>();
+    for (JobHistory jobHistory : jobHistories)
+    {
+      for (TaskHistory taskHistory : doneTaskHistories(jobHistory))
+      {
+        String key = taskKey(taskHistory);
+        long duration = durationOf(taskHistory);
+        List<Long> history = earlierDurations.get(key);
+        if (history != null && history.size() >= MIN_HISTORY_FOR_FLAG)
+        {
+          long p90 = percentile(history, 90);
+          if (duration > p90)
+          {
+            flags.add("Run #" + jobHistory.getId() + " (" + jobHistory.getStartTime() + ") " + key + ": "
+                + formatDuration(duration) + " > p90 " + formatDuration(p90) + " of " + history.size() + " earlier runs");
+          }
+        }
+      }
+      for (TaskHistory taskHistory : doneTaskHistories(jobHistory))
+      {
+        String key = taskKey(taskHistory);
+        if (!earlierDurations.containsKey(key))
+        {
+          earlierDurations.put(key, new ArrayList<Long>());
+        }
+        earlierDurations.get(key).add(durationOf(taskHistory));
+      }
+    }
+    return flags;
+  }
+
+  /**
+   * Returns the nearest-rank percentile of the values.  Values must be nonempty.
+   */
+  static long percentile(List<Long> values, int percent)
+  {
+    List<Long> sorted = new ArrayList<Long>(values);
+    Collections.sort(sorted);
+    int rank = (int) Math.ceil(percent / 100.0 * sorted.size());
+    return sorted.get(Math.max(rank, 1) - 1);
+  }
+
+  private String describeDurations(List<Long> durations)
+  {
+    return formatDuration(percentile(durations, 50)) + " / " + formatDuration(percentile(durations, 90))
+        + " / " + formatDuration(Collections.max(durations)) + " (n=" + durations.size() + ")";
+  }
+
+  private String formatDuration(long milliseconds)
+  {
+    return DurationFormatUtils.formatDurationHMS(milliseconds);
+  }
+
+  private String taskKey(TaskHistory taskHistory)
+  {
+    return "(" + taskHistory.getPosition() + ") " + taskHistory.getTaskName();
+  }
+
+  private long durationOf(TaskHistory taskHistory)
+  {
+    return taskHistory.getEndTime().getTime() - taskHistory.getStartTime().getTime();
+  }
+
+  private List<TaskHistory> allDoneTaskHistories(List<JobHistory> jobHistories)
+  {
+    List<TaskHistory> taskHistories = new ArrayList<TaskHistory>();
+    for (JobHistory jobHistory : jobHistories)
+    {
+      taskHistories.addAll(doneTaskHistories(jobHistory));
+    }
+    return taskHistories;
+  }
+
+  /**
+   * Returns the job's done task histories that have both start and end times.
+   */
+  private List<TaskHistory> doneTaskHistories(JobHistory jobHistory)
+  {
+    List<TaskHistory> taskHistories = new ArrayList<TaskHistory>();
+    if (jobHistory.getTaskHistories() != null)
+    {
+      for (TaskHistory taskHistory : jobHistory.getTaskHistories())
+      {
+        if (taskHistory.getStatus() == TaskStatus.DONE
+            && taskHistory.getStartTime() != null && taskHistory.getEndTime() != null)
+        {
+          taskHistories.add(taskHistory);
+        }
+      }
+    }
+    return taskHistories;
+  }
+
+  private List<TaskHistory> sortedByPosition(List<TaskHistory> taskHistories)
+  {
+    List<TaskHistory> sorted = new ArrayList<TaskHistory>(taskHistories);
+    Collections.sort(sorted, new Comparator<TaskHistory>()
+    {
+      @Override
+      public int compare(TaskHistory th1, TaskHistory th2)
+      {
+        return Integer.compare(th1.getPosition(), th2.getPosition());
+      }
+    });
+    return sorted;
+  }
+}
@@ -0,0 +1,84 @@
+package bluegreen.manager.jobs;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import bluegreen.manager.model.domain.JobHistory;
+import bluegreen.manager.model.domain.JobStatus;
+import bluegreen.manager.model.tx.JobHistoryTx;
+
+/**
+ * Read-only job that reports duration analytics over recent job and task history.  See {@link JobHistoryReport}.
+ * <p/>
+ * Does not write job history of its own.
+ */
+@Lazy
+@Component
+@Scope("prototype")
+public class ReportJob implements Job
+{
+  private static Logger LOGGER = LoggerFactory.getLogger(ReportJob.class);
+
+  @Autowired
+  private JobHistoryTx jobHistoryTx;
+
+  private String commandLine;
+  private String reportJobName; //Null means all job types
+  private String reportEnvName; //Null means all envs
+  private long maxAge;
+
+  /**
+   * @param reportJobName Job type to report on (e.g. StagingDeployJob), or null for all.
+   * @param reportEnvName Env1 of the jobs to report on, or null for all.
+   * @param maxAge        Milliseconds of history to consider.
+   */
+  public ReportJob(String commandLine, String reportJobName, String reportEnvName, long maxAge)
+  {
+    this.commandLine = commandLine;
+    this.reportJobName = reportJobName;
+    this.reportEnvName = reportEnvName;
+    this.maxAge = maxAge;
+  }
+
+  @Override
+  public JobStatus process()
+  {
+    List<JobHistory> jobHistories = jobHistoryTx.findJobHistoriesSince(reportJobName, reportEnvName, maxAge);
+    LOGGER.info("Report of " + (jobHistories == null ? 0 : jobHistories.size()) + " job runs:\n"
+        + new JobHistoryReport(jobHistories).render());
+    return JobStatus.DONE;
+  }
+
+  @Override
+  public String getName()
+  {
+    return getClass().getSimpleName();
+  }
+
+  /**
+   * A report changes nothing, so it does not lock out other jobs on the env it reports on.
+   */
+  @Override
+  public String getEnv1()
+  {
+    return null;
+  }
+
+  @Override
+  public String getEnv2()
+  {
+    return null;
+  }
+
+  @Override
+  public String getCommandLine()
+  {
+    return commandLine;
+  }
+}
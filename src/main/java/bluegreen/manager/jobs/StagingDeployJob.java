@@ -9,13 +9,18 @@ import javax.annotation.PostConstruct;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import bluegreen.manager.model.domain.JobHistory;
 import static bluegreen.manager.substituter.SubstitutionKeys.PACKAGES;
 import bluegreen.manager.tasks.FreezeTask;
+import bluegreen.manager.tasks.LoadTestTask;
 import bluegreen.manager.tasks.LocalShellTask;
+import bluegreen.manager.tasks.RdsRestoreTimeMark;
+import bluegreen.manager.tasks.RdsSnapshotRestorePhase;
 import bluegreen.manager.tasks.RdsSnapshotRestoreTask;
 import bluegreen.manager.tasks.RegisterApplicationTask;
 import bluegreen.manager.tasks.ShellConfig;
@@ -30,6 +35,7 @@ import bluegreen.manager.tasks.ThawTask;
  */
 @Lazy
 @Component
+@Scope("prototype")
 public class StagingDeployJob extends TaskSequenceJob
 {
   @Autowired
@@ -40,6 +46,19 @@ public class StagingDeployJob extends TaskSequenceJob
   @Qualifier("deployPackages")
   private ShellConfig deployPackagesConfig;
 
+  /**
+   * True to restore the stage database from the live automated backups as of a moment marked while live is frozen,
+   * instead of from a live snapshot taken while frozen.
+   */
+  @Value("${bluegreen.stagingDeploy.pointInTimeRestore}")
+  private boolean pointInTimeRestore;
+
+  /**
+   * True to create the stage database as a read replica of live before freezing, and promote it while frozen.
+   */
+  @Value("${bluegreen.stagingDeploy.replicaPromotion}")
+  private boolean replicaPromotion;
+
   private String liveEnvName;
   private String stageEnvName;
   private Map<String, String> dbMap;
@@ -57,7 +76,16 @@ public class StagingDeployJob extends TaskSequenceJob
   }
 
   /**
-   * Instantiates the sequence of tasks for the staging deploy job.
+   * Instantiates the sequence of tasks for the staging deploy job.  The live env is thawed as soon as the snapshot is
+   * available (or the point-in-time restore time is marked), while the stage restore and the stage vm creation proceed
+   * in parallel; the remaining tasks need both the stage database and the stage vm.  The stage app must pass the smoke
+   * test, and then the load test against live.
+   * <p/>
+   * In replica promotion mode, the stage replica is created before the freeze (in parallel with the stage vm), and
+   * promoted before the thaw.
+   * <p/>
+   * Once the live env is frozen and its database copied, the thaw runs even if the stage vm creation has failed
+   * meanwhile, so that a failure in the parallel branch cannot leave the live env frozen.
    * <p/>
    * Is PostConstruct to have access to applicationContext.
    */
@@ -65,17 +93,56 @@ public class StagingDeployJob extends TaskSequenceJob
   private void instantiateTasks()
   {
     defineSubstitutionsForDeployPackages();
+    if (pointInTimeRestore && replicaPromotion)
+    {
+      throw new IllegalStateException("Stage database cannot be both a point-in-time restore and a promoted replica, "
+          + "choose one of bluegreen.stagingDeploy.pointInTimeRestore and replicaPromotion");
+    }
+    RdsSnapshotRestorePhase frozenPhase = RdsSnapshotRestorePhase.SNAPSHOT;
+    RdsSnapshotRestorePhase thawedPhase = RdsSnapshotRestorePhase.RESTORE;
+    RdsRestoreTimeMark restoreTimeMark = null;
+    if (pointInTimeRestore)
+    {
+      frozenPhase = RdsSnapshotRestorePhase.POINT_IN_TIME_MARK;
+      thawedPhase = RdsSnapshotRestorePhase.POINT_IN_TIME_RESTORE;
+      restoreTimeMark = new RdsRestoreTimeMark();
+    }
     int position = 1;
     List<Task> tasks = new ArrayList<Task>();
-    tasks.add(applicationContext.getBean(FreezeTask.class).assignTransition(position++, liveEnvName));
-    tasks.add(applicationContext.getBean(RdsSnapshotRestoreTask.class).assign(position++, liveEnvName, stageEnvName, dbMap));
-    tasks.add(applicationContext.getBean(ThawTask.class).assignTransition(position++, liveEnvName));
+    if (replicaPromotion)
+    {
+      tasks.add(applicationContext.getBean(RdsSnapshotRestoreTask.class).assign(position++, liveEnvName, stageEnvName, dbMap,
+          RdsSnapshotRestorePhase.REPLICA_CREATE));
+      tasks.add(applicationContext.getBean(FreezeTask.class).assignTransition(position++, liveEnvName));
+      tasks.add(applicationContext.getBean(RdsSnapshotRestoreTask.class).assign(position++, liveEnvName, stageEnvName, dbMap,
+          RdsSnapshotRestorePhase.REPLICA_PROMOTE));
+      tasks.add(applicationContext.getBean(ThawTask.class).assignTransition(position++, liveEnvName));
+    }
+    else
+    {
+      tasks.add(applicationContext.getBean(FreezeTask.class).assignTransition(position++, liveEnvName));
+      tasks.add(applicationContext.getBean(RdsSnapshotRestoreTask.class).assign(position++, liveEnvName, stageEnvName, dbMap,
+          frozenPhase, restoreTimeMark));
+      tasks.add(applicationContext.getBean(ThawTask.class).assignTransition(position++, liveEnvName));
+      tasks.add(applicationContext.getBean(RdsSnapshotRestoreTask.class).assign(position++, liveEnvName, stageEnvName, dbMap,
+          thawedPhase, restoreTimeMark));
+    }
     tasks.add(applicationContext.getBean(SshVmCreateTask.class).init(position++, stageEnvName));
     tasks.add(applicationContext.getBean(LocalShellTask.class).assign(position++, liveEnvName, stageEnvName, createStageEnvConfig));
     tasks.add(applicationContext.getBean(LocalShellTask.class).assign(position++, liveEnvName, stageEnvName, deployPackagesConfig));
     tasks.add(applicationContext.getBean(RegisterApplicationTask.class).assign(position++, liveEnvName, stageEnvName));
     tasks.add(applicationContext.getBean(SmokeTestTask.class).assign(position++, stageEnvName));
+    tasks.add(applicationContext.getBean(LoadTestTask.class).assign(position++, stageEnvName, liveEnvName));
     this.tasks = tasks;
+    dependsOn(2, 1);
+    dependsOn(3, 2);
+    dependsOn(4, replicaPromotion ? 3 : 2);
+    dependsOn(6, 3, 4, 5);
+    dependsOn(7, 6);
+    dependsOn(8, 7);
+    dependsOn(9, 8);
+    dependsOn(10, 9);
+    runsDespiteFailure(replicaPromotion ? 4 : 3);
   }
 
   private void defineSubstitutionsForDeployPackages()
@@ -0,0 +1,117 @@
+package bluegreen.manager.jobs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import bluegreen.manager.tasks.Task;
+
+/**
+ * Dependency graph of the tasks in a job, keyed by task position.
+ * <p/>
+ * A task may only depend on tasks at earlier positions, which keeps the graph acyclic and keeps the plain sequential
+ * order a valid execution order.  Tasks with no declared prerequisites are ready as soon as the job starts.
+ */
+public class TaskGraph
+{
+  private List<Task> tasks;
+
+  /**
+   * Maps position of a task to the positions of its prerequisites.
+   */
+  private Map<Integer, Set<Integer>> prerequisites = new TreeMap<Integer, Set<Integer>>();
+
+  /**
+   * Asserts that the task list is ordered by 1-based position.
+   */
+  public TaskGraph(List<Task> tasks)
+  {
+    if (tasks == null)
+    {
+      throw new IllegalArgumentException("Null task list");
+    }
+    for (int idx = 0; idx < tasks.size(); ++idx)
+    {
+      Task task = tasks.get(idx);
+      if (idx + 1 != task.getPosition())
+      {
+        throw new IllegalStateException("Invalid task position: " + task.getPosition() + ", expected " + (idx + 1));
+      }
+    }
+    this.tasks = tasks;
+  }
+
+  /**
+   * Declares that the task at the specified position cannot begin until the prerequisite tasks have succeeded.
+   */
+  public void addDependency(int position, int... prerequisitePositions)
+  {
+    checkPosition(position);
+    Set<Integer> prereqs = prerequisites.get(position);
+    if (prereqs == null)
+    {
+      prereqs = new TreeSet<Integer>();
+      prerequisites.put(position, prereqs);
+    }
+    for (int prerequisitePosition : prerequisitePositions)
+    {
+      checkPosition(prerequisitePosition);
+      if (prerequisitePosition >= position)
+      {
+        throw new IllegalArgumentException("Task #" + position + " cannot depend on later task #" + prerequisitePosition);
+      }
+      prereqs.add(prerequisitePosition);
+    }
+  }
+
+  private void checkPosition(int position)
+  {
+    if (position < 1 || tasks.size() < position)
+    {
+      throw new IllegalArgumentException("No task at position " + position + ", job has " + tasks.size() + " tasks");
+    }
+  }
+
+  /**
+   * True if no dependencies were declared, in which case the job runs as a plain sequence.
+   */
+  public boolean isSequential()
+  {
+    return prerequisites.isEmpty();
+  }
+
+  /**
+   * Returns the positions of the prerequisites of the task at the specified position.  Never null.
+   */
+  public Set<Integer> getPrerequisites(int position)
+  {
+    Set<Integer> prereqs = prerequisites.get(position);
+    return prereqs == null ? new TreeSet<Integer>() : prereqs;
+  }
+
+  /**
+   * Returns the tasks, in position order, that have not been launched and whose prerequisites have all succeeded.
+   */
+  public List<Task> findReadyTasks(Collection<Integer> launchedPositions, Collection<Integer> succeededPositions)
+  {
+    List<Task> readyTasks = new ArrayList<Task>();
+    for (Task task : tasks)
+    {
+      if (!launchedPositions.contains(task.getPosition())
+          && succeededPositions.containsAll(getPrerequisites(task.getPosition())))
+      {
+        readyTasks.add(task);
+      }
+    }
+    return readyTasks;
+  }
+
+  public int size()
+  {
+    return tasks.size();
+  }
+}
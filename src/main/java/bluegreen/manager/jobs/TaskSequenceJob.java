@@ -1,18 +1,32 @@
 package bluegreen.manager.jobs;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 
+import bluegreen.manager.client.app.ApplicationSessionCache;
 import bluegreen.manager.model.domain.JobHistory;
 import bluegreen.manager.model.domain.JobStatus;
 import bluegreen.manager.model.domain.TaskHistory;
 import bluegreen.manager.model.domain.TaskStatus;
 import bluegreen.manager.model.tx.JobHistoryTx;
+import bluegreen.manager.tasks.ApplicationTask;
 import bluegreen.manager.tasks.Task;
 import bluegreen.manager.tasks.TaskRun;
 import bluegreen.manager.tasks.TaskRunProcessor;
@@ -21,6 +35,9 @@ import bluegreen.manager.utils.NowFactory;
 /**
  * Knows how to execute a sequence of tasks.  If there is a relevant recent prior job, we will not repeat its
  * successfully completed steps.
+ * <p/>
+ * A derived job may declare dependencies between its tasks, in which case independent branches of the task graph run
+ * concurrently.  Without declared dependencies the tasks run one at a time in position order.
  */
 public abstract class TaskSequenceJob implements Job
 {
@@ -38,11 +55,27 @@ public abstract class TaskSequenceJob implements Job
   @Autowired
   private TaskRunProcessor taskRunProcessor;
 
+  /**
+   * Max number of tasks that may be processing at the same time, when the job declares task dependencies.
+   */
+  @Value("${bluegreen.job.maxParallelTasks}")
+  private int maxParallelTasks;
+
   /**
    * The sequence of tasks.  Initialized by PostConstruct method in derived class.
    */
   protected List<Task> tasks;
 
+  /**
+   * Dependencies between the tasks.  Null if the derived class has declared none.
+   */
+  private TaskGraph taskGraph;
+
+  /**
+   * Positions of the tasks that are still attempted after another task has failed, once their prerequisites succeed.
+   */
+  private Set<Integer> runsDespiteFailurePositions = new TreeSet<Integer>();
+
   /**
    * The original command-line, for reference.
    */
@@ -88,6 +121,7 @@ public abstract class TaskSequenceJob implements Job
     {
       throw new IllegalStateException("No tasks");
     }
+    shareApplicationSessions();
     Date jobStartTime = nowFactory.now();
     openJobHistory(jobStartTime);
     JobStatus jobStatus = null;
@@ -108,33 +142,206 @@ public abstract class TaskSequenceJob implements Job
   }
 
   /**
-   * Executes the tasks of the job.  Returns silently if success, throws if error.
+   * Gives all application tasks of the job one session cache, so each application is logged into only once per job.
    */
-  private JobStatus processTasks()
+  private void shareApplicationSessions()
   {
-    for (int idx = 0; idx < tasks.size(); ++idx)
+    ApplicationSessionCache applicationSessionCache = null;
+    for (Task task : tasks)
     {
-      Task task = tasks.get(idx);
-      if (idx + 1 != task.getPosition())
+      if (task instanceof ApplicationTask)
       {
-        throw new IllegalStateException("Invalid task position: " + task.getPosition() + ", expected " + (idx + 1));
+        if (applicationSessionCache == null)
+        {
+          applicationSessionCache = applicationContext.getBean(ApplicationSessionCache.class);
+        }
+        ((ApplicationTask) task).setApplicationSessionCache(applicationSessionCache);
       }
-      LOGGER.info("TASK #" + task.getPosition() + " of " + tasks.size() + " BEGIN: " + task.getName());
-      TaskRun taskRun = new TaskRun(task, noop, force, newJobHistory, oldJobHistory);
-      TaskStatus taskStatus = taskRunProcessor.attemptTask(taskRun);
-      LOGGER.info("TASK #" + task.getPosition() + " of " + tasks.size() + " END: " + task.getName() + " " + taskStatus);
-      if (taskStatus == TaskStatus.PROCESSING)
+    }
+  }
+
+  /**
+   * Declares that the task at the specified position cannot begin until the prerequisite tasks have succeeded.
+   * Called by the derived class after it has initialized the list of tasks.
+   */
+  protected void dependsOn(int position, int... prerequisitePositions)
+  {
+    if (taskGraph == null)
+    {
+      taskGraph = new TaskGraph(tasks);
+    }
+    taskGraph.addDependency(position, prerequisitePositions);
+  }
+
+  /**
+   * Declares that the task at the specified position is still attempted after another task has failed, as long as its
+   * own prerequisites have succeeded.  For a task that undoes an earlier one, such as the thaw of a freeze, so that a
+   * failure elsewhere in the job cannot leave the live env frozen.
+   */
+  protected void runsDespiteFailure(int position)
+  {
+    runsDespiteFailurePositions.add(position);
+  }
+
+  /**
+   * True if the task may be attempted now: either nothing has failed yet, or it runs despite failure and its
+   * prerequisites have all succeeded.
+   */
+  private boolean mayAttempt(Task task, boolean failed, TaskGraph graph, Set<Integer> succeededPositions)
+  {
+    return !failed || (runsDespiteFailurePositions.contains(task.getPosition())
+        && succeededPositions.containsAll(graph.getPrerequisites(task.getPosition())));
+  }
+
+  /**
+   * Executes the tasks of the job.  Returns silently if success, throws if error.
+   */
+  private JobStatus processTasks()
+  {
+    TaskGraph graph = taskGraph == null ? new TaskGraph(tasks) : taskGraph;
+    if (graph.isSequential() || maxParallelTasks <= 1)
+    {
+      return processTasksSequentially(graph);
+    }
+    return processTasksConcurrently(graph);
+  }
+
+  /**
+   * Executes the tasks one at a time in position order.  After the first task that does not succeed, only the tasks
+   * that run despite failure are still attempted.  If a task throws, the rest of those are attempted before the
+   * exception is rethrown.
+   */
+  private JobStatus processTasksSequentially(TaskGraph graph)
+  {
+    Set<Integer> succeededPositions = new TreeSet<Integer>();
+    RuntimeException firstException = null;
+    boolean failed = false;
+    for (Task task : tasks)
+    {
+      if (mayAttempt(task, failed, graph, succeededPositions))
       {
-        throw new IllegalStateException("Task #" + task.getPosition() + " " + task.getName() + " ended but status is 'processing'");
+        try
+        {
+          if (attemptOneTask(task) == TaskStatus.ERROR)
+          {
+            failed = true;
+          }
+          else
+          {
+            succeededPositions.add(task.getPosition());
+          }
+        }
+        catch (RuntimeException e)
+        {
+          failed = true;
+          if (firstException == null)
+          {
+            firstException = e;
+          }
+        }
       }
-      if (taskStatus == TaskStatus.ERROR)
+    }
+    if (firstException != null)
+    {
+      throw firstException;
+    }
+    return failed ? JobStatus.ERROR : JobStatus.DONE;
+  }
+
+  /**
+   * Executes each task as soon as its prerequisites have succeeded, up to maxParallelTasks at a time.
+   * <p/>
+   * After the first task error, only the tasks that run despite failure are still launched once ready.  Tasks already
+   * processing are allowed to finish, then the first exception (if any) is rethrown.
+   */
+  private JobStatus processTasksConcurrently(TaskGraph graph)
+  {
+    LOGGER.info("Processing " + tasks.size() + " tasks with up to " + maxParallelTasks + " at a time");
+    ExecutorService executorService = Executors.newFixedThreadPool(maxParallelTasks);
+    CompletionService<TaskStatus> completionService = new ExecutorCompletionService<TaskStatus>(executorService);
+    Map<Future<TaskStatus>, Task> runningTasks = new HashMap<Future<TaskStatus>, Task>();
+    Set<Integer> launchedPositions = new TreeSet<Integer>();
+    Set<Integer> succeededPositions = new TreeSet<Integer>();
+    RuntimeException firstException = null;
+    boolean failed = false;
+    try
+    {
+      while (true)
       {
-        return JobStatus.ERROR;
+        for (final Task task : graph.findReadyTasks(launchedPositions, succeededPositions))
+        {
+          if (mayAttempt(task, failed, graph, succeededPositions))
+          {
+            launchedPositions.add(task.getPosition());
+            runningTasks.put(completionService.submit(new Callable<TaskStatus>()
+            {
+              @Override
+              public TaskStatus call()
+              {
+                return attemptOneTask(task);
+              }
+            }), task);
+          }
+        }
+        if (runningTasks.isEmpty())
+        {
+          break;
+        }
+        Future<TaskStatus> future = completionService.take();
+        Task task = runningTasks.remove(future);
+        try
+        {
+          if (future.get() == TaskStatus.ERROR)
+          {
+            failed = true;
+          }
+          else
+          {
+            succeededPositions.add(task.getPosition());
+          }
+        }
+        catch (ExecutionException e)
+        {
+          failed = true;
+          if (firstException == null)
+          {
+            firstException = e.getCause() instanceof RuntimeException
+                ? (RuntimeException) e.getCause()
+                : new RuntimeException("Task #" + task.getPosition() + " " + task.getName() + " failed", e.getCause());
+          }
+        }
       }
     }
-    return JobStatus.DONE;
+    catch (InterruptedException e)
+    {
+      throw new RuntimeException("Interrupted while waiting for tasks to finish", e);
+    }
+    finally
+    {
+      executorService.shutdownNow();
+    }
+    if (firstException != null)
+    {
+      throw firstException;
+    }
+    return failed || succeededPositions.size() < tasks.size() ? JobStatus.ERROR : JobStatus.DONE;
   }
 
+  /**
+   * Attempts one task and persists its task history.  Returns the task status, or throws if error.
+   */
+  private TaskStatus attemptOneTask(Task task)
+  {
+    LOGGER.info("TASK #" + task.getPosition() + " of " + tasks.size() + " BEGIN: " + task.getName());
+    TaskRun taskRun = new TaskRun(task, noop, force, newJobHistory, oldJobHistory);
+    TaskStatus taskStatus = taskRunProcessor.attemptTask(taskRun);
+    LOGGER.info("TASK #" + task.getPosition() + " of " + tasks.size() + " END: " + task.getName() + " " + taskStatus);
+    if (taskStatus == TaskStatus.PROCESSING)
+    {
+      throw new IllegalStateException("Task #" + task.getPosition() + " " + task.getName() + " ended but status is 'processing'");
+    }
+    return taskStatus;
+  }
   /**
    * Calls to persist a new JobHistory in PROCESSING state.
    */
@@ -188,27 +395,30 @@ public abstract class TaskSequenceJob implements Job
     sb.append("JobStatus: " + newJobHistory.getStatus() + "\n");
     sb.append("\n");
     sb.append("Tasks Attempted:\n");
-    final int numAttempted = newJobHistory.getTaskHistories() == null ? 0 : newJobHistory.getTaskHistories().size();
-    if (numAttempted == 0)
+    List<TaskHistory> taskHistories = newJobHistory.getTaskHistories();
+    Set<Integer> attemptedPositions = new TreeSet<Integer>();
+    if (taskHistories == null || taskHistories.size() == 0)
     {
       sb.append("(none)\n");
     }
     else
     {
-      for (int idx = 0; idx < numAttempted; ++idx)
+      for (TaskHistory taskHistory : taskHistories)
       {
-        TaskHistory taskHistory = newJobHistory.getTaskHistories().get(idx);
-        sb.append("(" + (idx + 1) + ") " + taskHistory.getTaskName() + ": " + taskHistory.getStatus() + "\n");
+        attemptedPositions.add(taskHistory.getPosition());
+        sb.append("(" + taskHistory.getPosition() + ") " + taskHistory.getTaskName() + ": " + taskHistory.getStatus() + "\n");
       }
     }
     sb.append("\n");
-    if (numAttempted < tasks.size())
+    if (attemptedPositions.size() < tasks.size())
     {
       sb.append("Tasks Not Attempted:\n");
-      for (int idx = numAttempted; idx < tasks.size(); ++idx)
+      for (Task task : tasks)
       {
-        Task task = tasks.get(idx);
-        sb.append("(" + (idx + 1) + ") " + task.getName() + "\n");
+        if (!attemptedPositions.contains(task.getPosition()))
+        {
+          sb.append("(" + task.getPosition() + ") " + task.getName() + "\n");
+        }
       }
       sb.append("\n");
     }
@@ -217,6 +427,12 @@ public abstract class TaskSequenceJob implements Job
     return sb.toString();
   }
 
+  //Test purposes only
+  void setMaxParallelTasks(int maxParallelTasks)
+  {
+    this.maxParallelTasks = maxParallelTasks;
+  }
+
   @Override
   public String getName()
   {
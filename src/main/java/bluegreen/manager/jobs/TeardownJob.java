@@ -10,12 +10,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import bluegreen.manager.model.domain.JobHistory;
 import static bluegreen.manager.substituter.SubstitutionKeys.STOP_SERVICES;
 import bluegreen.manager.tasks.ForgetEnvironmentTask;
-import bluegreen.manager.tasks.LocalShellTask;
 import bluegreen.manager.tasks.RdsInstanceDeleteTask;
 import bluegreen.manager.tasks.RemoteShellTask;
 import bluegreen.manager.tasks.ShellConfig;
@@ -27,6 +27,7 @@ import bluegreen.manager.tasks.Task;
  */
 @Lazy
 @Component
+@Scope("prototype")
 public class TeardownJob extends TaskSequenceJob
 {
   @Autowired
@@ -50,7 +51,8 @@ public class TeardownJob extends TaskSequenceJob
   }
 
   /**
-   * Instantiates the sequence of tasks for the teardown-commit job.
+   * Instantiates the sequence of tasks for the teardown-commit job.  Applications are shut down on every application
+   * vm of the env, each with its own %{vmHostname}.
    * <p/>
    * Is PostConstruct to have access to applicationContext.
    */
@@ -60,7 +62,7 @@ public class TeardownJob extends TaskSequenceJob
     defineSubstitutionsForShutdownApplications();
     int position = 1;
     List<Task> tasks = new ArrayList<Task>();
-    tasks.add(applicationContext.getBean(LocalShellTask.class).assign(position++, deleteEnvName, shutdownApplicationsConfig));
+    tasks.add(applicationContext.getBean(RemoteShellTask.class).assignFanOut(position++, deleteEnvName, shutdownApplicationsConfig));
     tasks.add(applicationContext.getBean(RemoteShellTask.class).assign(position++, deleteEnvName, deleteEnvConfig));
     tasks.add(applicationContext.getBean(SshVmDeleteTask.class).init(position++, deleteEnvName));
     tasks.add(applicationContext.getBean(RdsInstanceDeleteTask.class).assign(position++, deleteEnvName));
@@ -1,5 +1,7 @@
 package bluegreen.manager.main;
 
+import java.util.Arrays;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +21,18 @@ public class BlueGreenManager
 {
   private static Logger LOGGER = LoggerFactory.getLogger(BlueGreenManager.class);
 
+  /**
+   * First arg that starts a long-running job server instead of running one job.
+   */
+  public static final String MODE_SERVER = "server";
+
+  /**
+   * First arg that hands the rest of the args (a normal job cmdline) to a running job server.
+   */
+  public static final String MODE_SUBMIT = "submit";
+
+  private static final String[] APPLICATION_CONTEXT = new String[] { "applicationContext/main.xml" };
+
   @Autowired
   private ArgumentParser argumentParser;
 
@@ -40,13 +54,70 @@ public class BlueGreenManager
   }
 
   public static void main(String[] args)
+  {
+    if (args != null && args.length > 0 && MODE_SERVER.equals(args[0]))
+    {
+      runServer();
+    }
+    else if (args != null && args.length > 0 && MODE_SUBMIT.equals(args[0]))
+    {
+      submitToServer(Arrays.copyOfRange(args, 1, args.length));
+    }
+    else
+    {
+      runOneJob(args);
+    }
+  }
+
+  /**
+   * Starts the job server with a warm application context.  Main thread returns, the server threads keep the jvm
+   * alive until it is killed.
+   */
+  private static void runServer()
+  {
+    try
+    {
+      ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(APPLICATION_CONTEXT);
+      context.registerShutdownHook();
+      context.getBean(JobServer.class).start();
+    }
+    catch (Throwable e)
+    {
+      LOGGER.error("Job server failed to start", e);
+      System.exit(PROCESSING_ERROR.getCode()); //NOSONAR
+    }
+  }
+
+  /**
+   * Thin client: submits the job to a running job server and follows it to completion, without an application context.
+   */
+  private static void submitToServer(String[] jobArgs)
+  {
+    ReturnCode returnCode = PROCESSING_ERROR;
+    try
+    {
+      returnCode = new JobServerClient(JobServerClient.choosePort(), System.out).submitAndFollow(jobArgs);
+    }
+    catch (Throwable e)
+    {
+      LOGGER.error("Error communicating with job server", e);
+    }
+    finally
+    {
+      System.exit(returnCode.getCode()); //NOSONAR
+    }
+  }
+
+  /**
+   * Runs the one job described by the cmdline args, then exits.
+   */
+  private static void runOneJob(String[] args)
   {
     ReturnCode returnCode = SUCCESS;
     BlueGreenManager blueGreenManager = null;
     try
     {
-      ApplicationContext context =
-          new ClassPathXmlApplicationContext(new String[] { "applicationContext/main.xml" });
+      ApplicationContext context = new ClassPathXmlApplicationContext(APPLICATION_CONTEXT);
 
       blueGreenManager = context.getBean(BlueGreenManager.class);
       Job job = blueGreenManager.parseArgsToJob(args);
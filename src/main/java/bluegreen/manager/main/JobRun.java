@@ -0,0 +1,105 @@
+package bluegreen.manager.main;
+
+/**
+ * Server-side record of a job submitted to the {@link JobServer}.  Serialized to json for the job status api.
+ * <p/>
+ * Waiters are notified on every state change, so clients can long-poll or stream the job status.
+ */
+public class JobRun
+{
+  public enum State
+  {
+    QUEUED,
+    PROCESSING,
+    DONE,
+    ERROR;
+
+    public boolean isFinished()
+    {
+      return this == DONE || this == ERROR;
+    }
+  }
+
+  private long jobId;
+  private String jobName;
+  private String commandLine;
+  private State state = State.QUEUED;
+  private String message;
+
+  public JobRun(long jobId, String jobName, String commandLine)
+  {
+    this.jobId = jobId;
+    this.jobName = jobName;
+    this.commandLine = commandLine;
+  }
+
+  /**
+   * Moves to the new state and wakes up anyone waiting on a state change.
+   */
+  public synchronized void changeState(State state, String message)
+  {
+    this.state = state;
+    this.message = message;
+    notifyAll();
+  }
+
+  /**
+   * Waits up to maxWaitMilliseconds for the state to differ from knownState, then returns the current state.
+   */
+  public synchronized State awaitStateChange(State knownState, long maxWaitMilliseconds) throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + maxWaitMilliseconds;
+    long remaining = maxWaitMilliseconds;
+    while (state == knownState && remaining > 0)
+    {
+      wait(remaining);
+      remaining = deadline - System.currentTimeMillis();
+    }
+    return state;
+  }
+
+  public long getJobId()
+  {
+    return jobId;
+  }
+
+  public String getJobName()
+  {
+    return jobName;
+  }
+
+  public String getCommandLine()
+  {
+    return commandLine;
+  }
+
+  public synchronized State getState()
+  {
+    return state;
+  }
+
+  public synchronized String getMessage()
+  {
+    return message;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append("JobRun[");
+    sb.append("jobId: ");
+    sb.append(jobId);
+    sb.append(", jobName: ");
+    sb.append(jobName);
+    sb.append(", state: ");
+    sb.append(state);
+    if (message != null)
+    {
+      sb.append(", message: ");
+      sb.append(message);
+    }
+    sb.append("]");
+    return sb.toString();
+  }
+}
@@ -0,0 +1,299 @@
+package bluegreen.manager.main;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import bluegreen.manager.client.app.GsonFactory;
+import bluegreen.manager.jobs.Job;
+import bluegreen.manager.model.domain.JobStatus;
+
+/**
+ * Long-running daemon that keeps the application context warm (db connections, aws/http/ssh clients) and accepts
+ * job submissions over a local http api.
+ * <p/>
+ * POST /jobs with a json array of cmdline args submits a job and returns its JobRun.
+ * GET /jobs/{id} returns the JobRun.  GET /jobs/{id}/stream holds the response open and writes one json JobRun per
+ * line each time the job changes state, until the job is finished.
+ * <p/>
+ * Jobs run one at a time, in order of submission.  A job is only syntax-checked when submitted, and is built on the
+ * job thread right before it runs, so it finds the job history and env data left by the jobs queued before it, and
+ * job construction never overlaps another job.
+ */
+@Lazy
+@Component
+public class JobServer
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(JobServer.class);
+
+  public static final String PATH_JOBS = "/jobs";
+  public static final String PATH_STREAM = "/stream";
+  private static final String CONTENT_TYPE_JSON = "application/json";
+  private static final long STREAM_WAIT_MILLISECONDS = 5000L;
+
+  @Autowired
+  private BlueGreenManager blueGreenManager;
+
+  @Autowired
+  private GsonFactory gsonFactory;
+
+  @Value("${bluegreen.server.port}")
+  private int port;
+
+  private HttpServer httpServer;
+  private ExecutorService jobExecutor;
+  private Gson gson;
+  private AtomicLong lastJobId = new AtomicLong();
+  private Map<Long, JobRun> jobRuns = new ConcurrentHashMap<Long, JobRun>();
+
+  /**
+   * Binds the http api to the loopback interface and starts accepting jobs.
+   */
+  public void start() throws IOException
+  {
+    gson = gsonFactory.makeGson();
+    jobExecutor = Executors.newSingleThreadExecutor();
+    httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    httpServer.createContext(PATH_JOBS, new JobsHandler());
+    httpServer.setExecutor(Executors.newCachedThreadPool());
+    httpServer.start();
+    LOGGER.info("Job server listening on " + httpServer.getAddress());
+  }
+
+  @PreDestroy
+  public void stop()
+  {
+    if (httpServer != null)
+    {
+      httpServer.stop(0);
+      jobExecutor.shutdownNow();
+      httpServer = null;
+    }
+  }
+
+  /**
+   * Returns the actual port, which differs from the configured port if that was zero.
+   */
+  public int getPort()
+  {
+    return httpServer.getAddress().getPort();
+  }
+
+  /**
+   * Checks the cmdline args syntax and queues the job.  Throws CmdlineException if the syntax is invalid.
+   * <p/>
+   * Synchronized so job ids are queued in order.
+   */
+  public synchronized JobRun submit(final String[] args)
+  {
+    ArgumentParser argumentParser = new ArgumentParser();
+    argumentParser.parseArgs(args);
+    final JobRun jobRun = new JobRun(lastJobId.incrementAndGet(), argumentParser.getJobName(),
+        argumentParser.getCommandLine());
+    jobRuns.put(jobRun.getJobId(), jobRun);
+    LOGGER.info("Queued " + jobRun);
+    jobExecutor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        processJob(jobRun, args);
+      }
+    });
+    return jobRun;
+  }
+
+  /**
+   * Builds the job from the cmdline args, runs it and records the outcome on the JobRun.
+   */
+  void processJob(JobRun jobRun, String[] args)
+  {
+    jobRun.changeState(JobRun.State.PROCESSING, null);
+    try
+    {
+      Job job = blueGreenManager.parseArgsToJob(args);
+      if (job == null)
+      {
+        throw new CmdlineException("No job");
+      }
+      JobStatus jobStatus = job.process();
+      jobRun.changeState(jobStatus == JobStatus.DONE ? JobRun.State.DONE : JobRun.State.ERROR, null);
+    }
+    catch (CmdlineException e)
+    {
+      LOGGER.error("Cmdline error in " + jobRun + ": " + e.getMessage());
+      jobRun.changeState(JobRun.State.ERROR, "Cmdline error: " + e.getMessage());
+    }
+    catch (Throwable e)
+    {
+      LOGGER.error("Processing error in " + jobRun, e);
+      jobRun.changeState(JobRun.State.ERROR, e.toString());
+    }
+    LOGGER.info("Finished " + jobRun);
+  }
+
+  /**
+   * Returns the identified job run, or null if unknown.
+   */
+  public JobRun getJobRun(long jobId)
+  {
+    return jobRuns.get(jobId);
+  }
+
+  /**
+   * Routes requests under /jobs.
+   */
+  private class JobsHandler implements HttpHandler
+  {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException
+    {
+      try
+      {
+        String subpath = StringUtils.removeStart(exchange.getRequestURI().getPath(), PATH_JOBS);
+        if (StringUtils.isEmpty(subpath) || subpath.equals("/"))
+        {
+          if ("POST".equals(exchange.getRequestMethod()))
+          {
+            handleSubmit(exchange);
+          }
+          else
+          {
+            sendText(exchange, 405, "Use POST to submit a job");
+          }
+        }
+        else if ("GET".equals(exchange.getRequestMethod()))
+        {
+          handleGet(exchange, subpath.substring(1));
+        }
+        else
+        {
+          sendText(exchange, 405, "Use GET to read job status");
+        }
+      }
+      catch (CmdlineException e)
+      {
+        sendText(exchange, 400, e.getMessage());
+      }
+      catch (JsonParseException e)
+      {
+        sendText(exchange, 400, "Request body must be a json array of cmdline args: " + e.getMessage());
+      }
+      catch (Throwable e)
+      {
+        LOGGER.error("Error handling " + exchange.getRequestURI(), e);
+        sendText(exchange, 500, e.toString());
+      }
+      finally
+      {
+        exchange.close();
+      }
+    }
+
+    private void handleSubmit(HttpExchange exchange) throws IOException
+    {
+      Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+      String[] args = gson.fromJson(IOUtils.toString(reader), String[].class);
+      JobRun jobRun = submit(args);
+      sendJson(exchange, 202, jobRun);
+    }
+
+    /**
+     * Handles "{id}" and "{id}/stream".
+     */
+    private void handleGet(HttpExchange exchange, String subpath) throws IOException, InterruptedException
+    {
+      boolean stream = subpath.endsWith(PATH_STREAM);
+      String idString = stream ? StringUtils.removeEnd(subpath, PATH_STREAM) : subpath;
+      JobRun jobRun = StringUtils.isNumeric(idString) ? getJobRun(Long.parseLong(idString)) : null;
+      if (jobRun == null)
+      {
+        sendText(exchange, 404, "No such job: " + idString);
+      }
+      else if (stream)
+      {
+        streamJobRun(exchange, jobRun);
+      }
+      else
+      {
+        sendJson(exchange, 200, jobRun);
+      }
+    }
+
+    /**
+     * Writes the job run now and on every state change, until finished.
+     */
+    private void streamJobRun(HttpExchange exchange, JobRun jobRun) throws IOException, InterruptedException
+    {
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE_JSON);
+      exchange.sendResponseHeaders(200, 0); //Chunked
+      OutputStream out = exchange.getResponseBody();
+      JobRun.State state = jobRun.getState();
+      writeLine(out, jobRun);
+      while (!state.isFinished())
+      {
+        JobRun.State newState = jobRun.awaitStateChange(state, STREAM_WAIT_MILLISECONDS);
+        if (newState != state)
+        {
+          state = newState;
+          writeLine(out, jobRun);
+        }
+      }
+    }
+
+    private void writeLine(OutputStream out, JobRun jobRun) throws IOException
+    {
+      out.write((gson.toJson(jobRun) + "\n").getBytes(StandardCharsets.UTF_8));
+      out.flush();
+    }
+
+    private void sendJson(HttpExchange exchange, int httpStatus, Object object) throws IOException
+    {
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE_JSON);
+      sendBytes(exchange, httpStatus, gson.toJson(object).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendText(HttpExchange exchange, int httpStatus, String text) throws IOException
+    {
+      exchange.getResponseHeaders().set("Content-Type", "text/plain");
+      sendBytes(exchange, httpStatus, String.valueOf(text).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendBytes(HttpExchange exchange, int httpStatus, byte[] bytes) throws IOException
+    {
+      exchange.sendResponseHeaders(httpStatus, bytes.length);
+      exchange.getResponseBody().write(bytes);
+    }
+  }
+
+  //Test purposes only
+  void setPort(int port)
+  {
+    this.port = port;
+  }
+}
@@ -0,0 +1,100 @@
+package bluegreen.manager.main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+
+import com.google.gson.Gson;
+
+import bluegreen.manager.client.app.GsonFactory;
+
+/**
+ * Thin cmdline client of the {@link JobServer}.  Submits a job, then follows the job status stream until the job is
+ * finished.
+ * <p/>
+ * Deliberately does not start a Spring application context, so it starts up as fast as the jvm.
+ */
+public class JobServerClient
+{
+  /**
+   * Port of the job server, unless overridden by system property {@link #PORT_PROPERTY}.
+   * Should match bluegreen.server.port in the server's properties.
+   */
+  public static final int DEFAULT_PORT = 8910;
+  public static final String PORT_PROPERTY = "bluegreen.server.port";
+
+  private String baseUrl;
+  private PrintStream out;
+  private Gson gson = new GsonFactory().makeGson();
+
+  public JobServerClient(int port, PrintStream out)
+  {
+    this.baseUrl = "http://127.0.0.1:" + port + JobServer.PATH_JOBS;
+    this.out = out;
+  }
+
+  /**
+   * Returns the port given by system property, or the default.
+   */
+  public static int choosePort()
+  {
+    return Integer.parseInt(System.getProperty(PORT_PROPERTY, Integer.toString(DEFAULT_PORT)));
+  }
+
+  /**
+   * Submits the job described by the cmdline args, prints each status change, and returns the final return code.
+   */
+  public ReturnCode submitAndFollow(String[] jobArgs) throws IOException
+  {
+    HttpResponse response = Request.Post(baseUrl)
+        .bodyString(gson.toJson(jobArgs), ContentType.APPLICATION_JSON)
+        .execute().returnResponse();
+    int httpStatus = response.getStatusLine().getStatusCode();
+    String body = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+    if (httpStatus == 400)
+    {
+      out.println(body);
+      return ReturnCode.CMDLINE_ERROR;
+    }
+    else if (httpStatus != 202)
+    {
+      out.println("Job server responded " + response.getStatusLine() + ": " + body);
+      return ReturnCode.PROCESSING_ERROR;
+    }
+    JobRun jobRun = gson.fromJson(body, JobRun.class);
+    out.println("Submitted job #" + jobRun.getJobId() + ": " + jobRun.getCommandLine());
+    return followJob(jobRun.getJobId());
+  }
+
+  /**
+   * Reads the job status stream until it ends, and returns the return code implied by the last state seen.
+   */
+  ReturnCode followJob(long jobId) throws IOException
+  {
+    HttpResponse response = Request.Get(baseUrl + "/" + jobId + JobServer.PATH_STREAM).execute().returnResponse();
+    JobRun.State state = null;
+    BufferedReader reader = new BufferedReader(new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8));
+    try
+    {
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        JobRun jobRun = gson.fromJson(line, JobRun.class);
+        out.println(jobRun);
+        state = jobRun.getState();
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+    return state == JobRun.State.DONE ? ReturnCode.SUCCESS : ReturnCode.PROCESSING_ERROR;
+  }
+}
@@ -45,6 +45,30 @@ public class JobHistoryDAO extends GenericDAO<JobHistory>
     }
   }
 
+  /**
+   * Finds job history records started no earlier than maxAge ago, oldest first.  Optionally filtered to the given
+   * jobName and/or env1 (null means any).
+   */
+  public List<JobHistory> findJobHistoriesSince(String jobName, String env1, long maxAge)
+  {
+    String queryString = "SELECT jh FROM " + JobHistory.class.getSimpleName() + " jh WHERE "
+        + "jh.startTime > :oldestAllowedStartTime "
+        + (jobName == null ? "" : "AND jh.jobName = :jobName ")
+        + (env1 == null ? "" : "AND jh.env1 = :env1 ")
+        + "ORDER BY jh.startTime ASC ";
+    Query query = entityManager.createQuery(queryString);
+    query.setParameter("oldestAllowedStartTime", makeTimestampBeforeNow(maxAge));
+    if (jobName != null)
+    {
+      query.setParameter("jobName", jobName);
+    }
+    if (env1 != null)
+    {
+      query.setParameter("env1", env1);
+    }
+    return query.getResultList();
+  }
+
   /**
    * Returns a short condition string to be used in a WHERE clause, essentially "where fieldName = filterValue"
    * but allowing for null.
@@ -0,0 +1,28 @@
+package bluegreen.manager.model.dao;
+
+import java.util.List;
+import javax.persistence.TypedQuery;
+
+import org.springframework.stereotype.Repository;
+
+import bluegreen.manager.model.domain.TaskCheckpoint;
+
+/**
+ * Data access object for TaskCheckpoint.
+ */
+@Repository
+public class TaskCheckpointDAO extends GenericDAO<TaskCheckpoint>
+{
+  /**
+   * Finds the checkpoints of the identified task history, in the order they were reached.
+   */
+  public List<TaskCheckpoint> findByTaskHistoryId(long taskHistoryId)
+  {
+    String queryString = "SELECT tc FROM " + TaskCheckpoint.class.getSimpleName() + " tc WHERE "
+        + "tc." + TaskCheckpoint.FIELD_TASK_HISTORY + ".id = :taskHistoryId "
+        + "ORDER BY tc.id ";
+    TypedQuery<TaskCheckpoint> query = entityManager.createQuery(queryString, TaskCheckpoint.class);
+    query.setParameter("taskHistoryId", taskHistoryId);
+    return query.getResultList();
+  }
+}
@@ -1,8 +1,12 @@
 package bluegreen.manager.model.dao;
 
+import java.util.List;
+import javax.persistence.TypedQuery;
+
 import org.springframework.stereotype.Repository;
 
 import bluegreen.manager.model.domain.TaskHistory;
+import bluegreen.manager.model.domain.TaskStatus;
 
 /**
  * Data access object for TaskHistory.
@@ -10,5 +14,23 @@ import bluegreen.manager.model.domain.TaskHistory;
 @Repository
 public class TaskHistoryDAO extends GenericDAO<TaskHistory>
 {
-  // Currently all functionality is inherited.
+  /**
+   * Finds the most recently started successful task history records for the given task name, whose parent job
+   * targeted the given env1.  Most recent first, at most maxResults.
+   */
+  public List<TaskHistory> findRecentDoneTaskHistories(String taskName, String env1, int maxResults)
+  {
+    String queryString = "SELECT th FROM " + TaskHistory.class.getSimpleName() + " th WHERE "
+        + "th.taskName = :taskName "
+        + "AND th.status = :status "
+        + "AND th.endTime IS NOT NULL "
+        + "AND th." + TaskHistory.FIELD_JOB_HISTORY + ".env1 = :env1 "
+        + "ORDER BY th.startTime DESC ";
+    TypedQuery<TaskHistory> query = entityManager.createQuery(queryString, TaskHistory.class);
+    query.setParameter("taskName", taskName);
+    query.setParameter("status", TaskStatus.DONE);
+    query.setParameter("env1", env1);
+    query.setMaxResults(maxResults);
+    return query.getResultList();
+  }
 }
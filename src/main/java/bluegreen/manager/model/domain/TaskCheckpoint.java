@@ -0,0 +1,141 @@
+package bluegreen.manager.model.domain;
+
+import java.sql.Timestamp;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import bluegreen.manager.utils.HashUtil;
+
+/**
+ * A durable milestone reached partway through one task, such as "snapshot available".  The value records whatever
+ * the task needs to resume from this point, such as the snapshot id.
+ * <p/>
+ * A retry of the job can resume the task after its last checkpoint instead of restarting the task from scratch.
+ */
+@Entity
+@Table(name = TaskCheckpoint.TABLE_NAME)
+public class TaskCheckpoint
+{
+  public static final String TABLE_NAME = "TASK_CHECKPOINT";
+  public static final String COLUMN_ID = "CHKPT_ID";
+  public static final String COLUMN_FK_TASKHIST_ID = "FK_TASKHIST_ID";
+  public static final String COLUMN_TIME = "CHKPT_TIME";
+  public static final String COLUMN_NAME = "CHKPT_NAME";
+  public static final String COLUMN_VALUE = "CHKPT_VALUE";
+  public static final int LENGTH_NAME = 64;
+  public static final int LENGTH_VALUE = 255;
+  public static final String FIELD_TASK_HISTORY = "taskHistory";
+
+  @Id
+  @GeneratedValue
+  @Column(name = COLUMN_ID)
+  private long id;
+
+  @ManyToOne
+  @JoinColumn(name = COLUMN_FK_TASKHIST_ID, nullable = false)
+  private TaskHistory taskHistory; //FIELD_TASK_HISTORY
+
+  @Column(name = COLUMN_TIME, nullable = false)
+  private Timestamp checkpointTime;
+
+  @Column(name = COLUMN_NAME, nullable = false, length = LENGTH_NAME)
+  private String name;
+
+  @Column(name = COLUMN_VALUE, length = LENGTH_VALUE)
+  private String value;
+
+  /**
+   * Equality based solely on database identity.
+   */
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (obj instanceof TaskCheckpoint)
+    {
+      TaskCheckpoint other = (TaskCheckpoint) obj;
+      return id == other.id;
+    }
+    return false;
+  }
+
+  /**
+   * Hashcode based solely on database identity.
+   */
+  @Override
+  public int hashCode()
+  {
+    return HashUtil.hashId(id);
+  }
+
+  @Override
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append("TaskCheckpoint[");
+    sb.append("id: ");
+    sb.append(id);
+    sb.append(", checkpointTime: ");
+    sb.append(checkpointTime);
+    sb.append(", name: ");
+    sb.append(name);
+    sb.append(", value: ");
+    sb.append(value);
+    sb.append("]");
+    return sb.toString();
+  }
+
+  public long getId()
+  {
+    return id;
+  }
+
+  public void setId(long id)
+  {
+    this.id = id;
+  }
+
+  public TaskHistory getTaskHistory()
+  {
+    return taskHistory;
+  }
+
+  public void setTaskHistory(TaskHistory taskHistory)
+  {
+    this.taskHistory = taskHistory;
+  }
+
+  public Timestamp getCheckpointTime()
+  {
+    return checkpointTime == null ? null : new Timestamp(checkpointTime.getTime());
+  }
+
+  public void setCheckpointTime(Timestamp checkpointTime)
+  {
+    this.checkpointTime = checkpointTime == null ? null : new Timestamp(checkpointTime.getTime());
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  public void setName(String name)
+  {
+    this.name = name;
+  }
+
+  public String getValue()
+  {
+    return value;
+  }
+
+  public void setValue(String value)
+  {
+    this.value = value;
+  }
+}
@@ -6,6 +6,10 @@ import javax.transaction.Transactional;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import bluegreen.manager.model.dao.EnvironmentDAO;
 import bluegreen.manager.model.domain.Application;
@@ -24,6 +28,9 @@ public class EnvironmentTx
   @Autowired
   private EnvironmentDAO environmentDAO;
 
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
   /**
    * Looks up all the specified names in the environment table, returning true for the names that exist and
    * false otherwise.  Return array in same order as input array.
@@ -126,6 +133,90 @@ public class EnvironmentTx
     environmentDAO.persist(environment);
   }
 
+  /*
+  The methods below find or create the named environment, which tasks in parallel branches of a job may do at the same
+  time.  They are synchronized, and run their own transaction inside the lock (instead of the one opened around them
+  by the class annotation) so the lock is held until the new environment is committed.
+   */
+
+  /**
+   * Finds the named environment, creating it in its own transaction if it does not exist yet.
+   */
+  @Transactional(Transactional.TxType.NOT_SUPPORTED)
+  public synchronized Environment findOrCreateNamedEnv(final String envName)
+  {
+    return executeInTransaction(new TransactionCallback<Environment>()
+    {
+      @Override
+      public Environment doInTransaction(TransactionStatus status)
+      {
+        return findOrCreateNamedEnvInTx(envName);
+      }
+    });
+  }
+
+  /**
+   * Attaches a new applicationVm to the named environment, creating the environment if it does not exist yet, all in
+   * one transaction.  The environment is loaded fresh here instead of merged from a detached copy, so whatever a task
+   * in a parallel branch of the job attached meanwhile is kept.
+   * <p/>
+   * Returns the environment, detached once the transaction commits.
+   */
+  @Transactional(Transactional.TxType.NOT_SUPPORTED)
+  public synchronized Environment attachApplicationVm(final String envName, final ApplicationVm applicationVm)
+  {
+    return executeInTransaction(new TransactionCallback<Environment>()
+    {
+      @Override
+      public Environment doInTransaction(TransactionStatus status)
+      {
+        Environment environment = findOrCreateNamedEnvInTx(envName);
+        applicationVm.setEnvironment(environment);
+        environment.addApplicationVm(applicationVm); //Cascades to new applicationVm.
+        activeLoadAll(environment);
+        return environment;
+      }
+    });
+  }
+
+  /**
+   * Attaches a new logicaldb (with its physicaldb) to the named environment, creating the environment if it does not
+   * exist yet, all in one transaction.  Like {@link #attachApplicationVm}, keeps whatever was attached meanwhile.
+   */
+  @Transactional(Transactional.TxType.NOT_SUPPORTED)
+  public synchronized Environment attachLogicalDatabase(final String envName, final LogicalDatabase logicalDatabase)
+  {
+    return executeInTransaction(new TransactionCallback<Environment>()
+    {
+      @Override
+      public Environment doInTransaction(TransactionStatus status)
+      {
+        Environment environment = findOrCreateNamedEnvInTx(envName);
+        logicalDatabase.setEnvironment(environment);
+        environment.addLogicalDatabase(logicalDatabase); //Cascades to new logicaldb and physicaldb.
+        activeLoadAll(environment);
+        return environment;
+      }
+    });
+  }
+
+  private Environment executeInTransaction(TransactionCallback<Environment> callback)
+  {
+    return new TransactionTemplate(transactionManager).execute(callback);
+  }
+
+  private Environment findOrCreateNamedEnvInTx(String envName)
+  {
+    Environment environment = environmentDAO.findNamedEnvAllowNull(envName);
+    if (environment == null)
+    {
+      environment = new Environment();
+      environment.setEnvName(envName);
+      environmentDAO.persist(environment);
+    }
+    return environment;
+  }
+
   /**
    * Persists changes to the detached environment, including the environment's cascade.
    */
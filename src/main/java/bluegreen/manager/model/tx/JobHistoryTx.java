@@ -2,6 +2,7 @@ package bluegreen.manager.model.tx;
 
 import java.sql.Timestamp;
 import java.util.Date;
+import java.util.List;
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -38,6 +39,23 @@ public class JobHistoryTx
     return jobHistory;
   }
 
+  /**
+   * Looks up the job histories of the last maxAge milliseconds, oldest first, for reporting.  Optionally filtered by
+   * jobName and/or env1.  Actively loads their task histories.
+   */
+  public List<JobHistory> findJobHistoriesSince(String jobName, String env1, long maxAge)
+  {
+    List<JobHistory> jobHistories = jobHistoryDAO.findJobHistoriesSince(jobName, env1, maxAge);
+    if (jobHistories != null)
+    {
+      for (JobHistory jobHistory : jobHistories)
+      {
+        activeLoadTaskHistories(jobHistory);
+      }
+    }
+    return jobHistories;
+  }
+
   /**
    * Actively loads the job's task histories, while the tx is open.
    */
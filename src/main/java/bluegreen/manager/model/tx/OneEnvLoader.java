@@ -1,5 +1,6 @@
 package bluegreen.manager.model.tx;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.collections4.CollectionUtils;
@@ -33,6 +34,7 @@ public class OneEnvLoader
   private Environment environment;
   private ApplicationVm applicationVm;
   private Application application;
+  private List<Application> applications;
   private LogicalDatabase logicalDatabase;
   private PhysicalDatabase physicalDatabase;
 
@@ -67,6 +69,32 @@ public class OneEnvLoader
     findApplicationFromVm();
   }
 
+  /**
+   * Loads the environment and all applications across all its application vms.  Asserts there is at least one.
+   * Does not assert the existence of a database.
+   */
+  public void loadApplications()
+  {
+    this.environment = environmentTx.findNamedEnv(envName);
+    List<ApplicationVm> applicationVms = environment.getApplicationVms();
+    if (CollectionUtils.isEmpty(applicationVms))
+    {
+      throw new IllegalStateException(context() + "No application vms");
+    }
+    this.applications = new ArrayList<Application>();
+    for (ApplicationVm vm : applicationVms)
+    {
+      if (vm.getApplications() != null)
+      {
+        applications.addAll(vm.getApplications());
+      }
+    }
+    if (applications.isEmpty())
+    {
+      throw new IllegalStateException(context() + "No applications");
+    }
+  }
+
   /**
    * Loads the environment on the assumption that there is exactly 1 logicaldb and 1 physicaldb.
    * Does not assert the existence of an application vm or application.
@@ -205,6 +233,11 @@ public class OneEnvLoader
     return application;
   }
 
+  public List<Application> getApplications()
+  {
+    return applications;
+  }
+
   public LogicalDatabase getLogicalDatabase()
   {
     return logicalDatabase;
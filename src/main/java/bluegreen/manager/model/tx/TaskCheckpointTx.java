@@ -0,0 +1,55 @@
+package bluegreen.manager.model.tx;
+
+import java.sql.Timestamp;
+import java.util.List;
+import javax.transaction.Transactional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import bluegreen.manager.model.dao.TaskCheckpointDAO;
+import bluegreen.manager.model.domain.TaskCheckpoint;
+import bluegreen.manager.model.domain.TaskHistory;
+import bluegreen.manager.utils.NowFactory;
+
+/**
+ * Serves transactional db queries related to TaskCheckpoint.
+ */
+@Transactional
+@Component
+public class TaskCheckpointTx
+{
+  @Autowired
+  private NowFactory nowFactory;
+
+  @Autowired
+  private TaskCheckpointDAO taskCheckpointDAO;
+
+  /**
+   * Makes a new checkpoint, linked to a detached parent taskHistory, and persists it.
+   * Returns the new TaskCheckpoint.
+   */
+  public TaskCheckpoint newTaskCheckpoint(TaskHistory taskHistory, String name, String value)
+  {
+    if (taskHistory == null || taskHistory.getId() == 0 || name == null)
+    {
+      throw new IllegalArgumentException("Expected detached taskHistory and checkpoint name, but received taskHistory "
+          + taskHistory + ", name '" + name + "'");
+    }
+    TaskCheckpoint newTaskCheckpoint = new TaskCheckpoint();
+    newTaskCheckpoint.setTaskHistory(taskHistory);
+    newTaskCheckpoint.setCheckpointTime(new Timestamp(nowFactory.now().getTime()));
+    newTaskCheckpoint.setName(name);
+    newTaskCheckpoint.setValue(value);
+    taskCheckpointDAO.persist(newTaskCheckpoint);
+    return newTaskCheckpoint;
+  }
+
+  /**
+   * Returns the checkpoints reached by the task history, in order.
+   */
+  public List<TaskCheckpoint> findTaskCheckpoints(TaskHistory taskHistory)
+  {
+    return taskCheckpointDAO.findByTaskHistoryId(taskHistory.getId());
+  }
+}
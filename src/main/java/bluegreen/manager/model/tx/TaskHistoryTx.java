@@ -1,12 +1,17 @@
 package bluegreen.manager.model.tx;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import bluegreen.manager.model.dao.TaskCheckpointDAO;
 import bluegreen.manager.model.dao.TaskHistoryDAO;
+import bluegreen.manager.model.domain.TaskCheckpoint;
 import bluegreen.manager.model.domain.JobHistory;
 import bluegreen.manager.model.domain.TaskHistory;
 import bluegreen.manager.model.domain.TaskStatus;
@@ -20,12 +25,20 @@ import bluegreen.manager.utils.NowFactory;
 @Component
 public class TaskHistoryTx
 {
+  /**
+   * Number of past runs that go into a typical duration.
+   */
+  static final int NUM_DURATIONS_FOR_TYPICAL = 5;
+
   @Autowired
   private NowFactory nowFactory;
 
   @Autowired
   private TaskHistoryDAO taskHistoryDAO;
 
+  @Autowired
+  private TaskCheckpointDAO taskCheckpointDAO;
+
   /**
    * Makes a new in-progress TaskHistory, linked to a parent jobHistory, and persists it.
    * Returns the new TaskHistory.
@@ -42,7 +55,10 @@ public class TaskHistoryTx
     newTaskHistory.setPosition(task.getPosition());
     newTaskHistory.setTaskName(task.getName());
     newTaskHistory.setStatus(TaskStatus.PROCESSING);
-    jobHistory.addTaskHistory(newTaskHistory);
+    synchronized (jobHistory) //Tasks in parallel branches of a job share the same jobHistory.
+    {
+      jobHistory.addTaskHistory(newTaskHistory);
+    }
     taskHistoryDAO.persist(newTaskHistory);
     return newTaskHistory;
   }
@@ -63,7 +79,10 @@ public class TaskHistoryTx
     newTaskHistory.setPosition(task.getPosition());
     newTaskHistory.setTaskName(task.getName());
     newTaskHistory.setStatus(TaskStatus.SKIPPED);
-    jobHistory.addTaskHistory(newTaskHistory);
+    synchronized (jobHistory) //Tasks in parallel branches of a job share the same jobHistory.
+    {
+      jobHistory.addTaskHistory(newTaskHistory);
+    }
     taskHistoryDAO.persist(newTaskHistory);
     return newTaskHistory;
   }
@@ -81,4 +100,48 @@ public class TaskHistoryTx
     taskHistory.setStatus(taskStatus);
     taskHistoryDAO.merge(taskHistory);
   }
+
+  /**
+   * Returns the median time from one checkpoint to another, over the last few successful runs of the named task
+   * against env1 that reached both, or 0 if there are no such runs.
+   */
+  public long findTypicalCheckpointSpanMilliseconds(String taskName, String env1, String fromCheckpoint, String toCheckpoint)
+  {
+    List<TaskHistory> taskHistories = taskHistoryDAO.findRecentDoneTaskHistories(taskName, env1, NUM_DURATIONS_FOR_TYPICAL);
+    List<Long> spans = new ArrayList<Long>();
+    if (taskHistories != null)
+    {
+      for (TaskHistory taskHistory : taskHistories)
+      {
+        Timestamp fromTime = null;
+        Timestamp toTime = null;
+        for (TaskCheckpoint taskCheckpoint : taskCheckpointDAO.findByTaskHistoryId(taskHistory.getId()))
+        {
+          if (fromCheckpoint.equals(taskCheckpoint.getName()))
+          {
+            fromTime = taskCheckpoint.getCheckpointTime();
+          }
+          else if (toCheckpoint.equals(taskCheckpoint.getName()))
+          {
+            toTime = taskCheckpoint.getCheckpointTime();
+          }
+        }
+        if (fromTime != null && toTime != null && !toTime.before(fromTime))
+        {
+          spans.add(toTime.getTime() - fromTime.getTime());
+        }
+      }
+    }
+    return median(spans);
+  }
+
+  private static long median(List<Long> values)
+  {
+    if (values.isEmpty())
+    {
+      return 0;
+    }
+    Collections.sort(values);
+    return values.get(values.size() / 2);
+  }
 }
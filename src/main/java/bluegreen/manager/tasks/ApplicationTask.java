@@ -1,10 +1,13 @@
 package bluegreen.manager.tasks;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.beans.factory.annotation.Autowired;
 
 import bluegreen.manager.client.app.ApplicationClient;
 import bluegreen.manager.client.app.ApplicationClientFactory;
 import bluegreen.manager.client.app.ApplicationSession;
+import bluegreen.manager.client.app.ApplicationSessionCache;
 import bluegreen.manager.model.domain.Application;
 
 /**
@@ -15,6 +18,11 @@ public abstract class ApplicationTask extends ApplicationVmTask
   @Autowired
   protected ApplicationClientFactory applicationClientFactory;
 
+  /**
+   * Sessions shared by the tasks of the job.  Null if the task is run outside a job.
+   */
+  protected ApplicationSessionCache applicationSessionCache;
+
   protected ApplicationClient applicationClient;
   protected ApplicationSession applicationSession;
   protected Application application;
@@ -49,8 +57,53 @@ public abstract class ApplicationTask extends ApplicationVmTask
    */
   void initApplicationSession()
   {
-    this.applicationClient = applicationClientFactory.create(application.getUsername(), application.getPassword());
-    this.applicationSession = applicationClient.authenticate(application);
+    this.applicationClient = findApplicationClient(application);
+    this.applicationSession = findApplicationSession(application, applicationClient);
+  }
+
+  /**
+   * Returns the job's client for the application, or a new one if there is no job session cache.
+   */
+  protected ApplicationClient findApplicationClient(Application application)
+  {
+    if (applicationSessionCache != null)
+    {
+      return applicationSessionCache.getClient(application);
+    }
+    return applicationClientFactory.create(application.getUsername(), application.getPassword());
+  }
+
+  /**
+   * Returns the job's session with the application, or logs in anew if there is no job session cache.
+   */
+  protected ApplicationSession findApplicationSession(Application application, ApplicationClient applicationClient)
+  {
+    if (applicationSessionCache != null)
+    {
+      return applicationSessionCache.getSession(application);
+    }
+    return applicationClient.authenticate(application);
+  }
+
+  /**
+   * Async form of {@link #findApplicationSession}, so that several applications can be logged into at once.
+   */
+  protected CompletableFuture<ApplicationSession> findApplicationSessionAsync(Application application,
+                                                                            ApplicationClient applicationClient)
+  {
+    if (applicationSessionCache != null)
+    {
+      return applicationSessionCache.getSessionAsync(application);
+    }
+    return applicationClient.authenticateAsync(application);
+  }
+
+  /**
+   * Gives the task the sessions of its job.  Called before processing.
+   */
+  public void setApplicationSessionCache(ApplicationSessionCache applicationSessionCache)
+  {
+    this.applicationSessionCache = applicationSessionCache;
   }
 
 }
@@ -0,0 +1,19 @@
+package bluegreen.manager.tasks;
+
+/**
+ * A long task that records checkpoints as it goes, so a retry of its job can resume after the last durable
+ * checkpoint instead of restarting the task.
+ */
+public interface CheckpointedTask extends Task
+{
+  /**
+   * Gives the task its checkpoints before processing.  Non-empty if the task is resuming a failed prior run.
+   */
+  void setCheckpoints(TaskCheckpoints checkpoints);
+
+  /**
+   * Gives the task, instead of processing, the checkpoints it reached in the prior run that finished it.  Lets a skipped
+   * task hand its results on to later tasks of the job.
+   */
+  void setSkippedCheckpoints(TaskCheckpoints checkpoints);
+}
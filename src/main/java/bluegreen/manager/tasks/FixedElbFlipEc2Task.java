@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.ec2.model.Instance;
@@ -18,6 +19,7 @@ import bluegreen.manager.model.domain.TaskStatus;
 import bluegreen.manager.utils.ThreadSleeper;
 import bluegreen.manager.utils.Waiter;
 import bluegreen.manager.utils.WaiterParameters;
+import bluegreen.manager.utils.WaiterScheduler;
 
 /**
  * "Flips the switch" in the Amazon Elastic Load Balancer, from oldLiveEnv to newLiveEnv, by deregistering old vms and
@@ -32,6 +34,7 @@ import bluegreen.manager.utils.WaiterParameters;
  */
 @Lazy
 @Component
+@Scope("prototype")
 public class FixedElbFlipEc2Task extends TwoEnvTask
 {
   private static final Logger LOGGER = LoggerFactory.getLogger(FixedElbFlipEc2Task.class);
@@ -49,6 +52,9 @@ public class FixedElbFlipEc2Task extends TwoEnvTask
   @Autowired
   private ThreadSleeper threadSleeper;
 
+  @Autowired
+  private WaiterScheduler waiterScheduler;
+
   private Ec2Client ec2Client;
   private ElbClient elbClient;
 
@@ -120,7 +126,7 @@ public class FixedElbFlipEc2Task extends TwoEnvTask
     ElbInstanceHealthProgressChecker progressChecker = new ElbInstanceHealthProgressChecker(fixedLbName,
         newLiveEc2InstanceId, context(stageEnv), elbClient);
     Waiter<InstanceState> waiter = new Waiter(waiterParameters, threadSleeper, progressChecker);
-    InstanceState instanceState = waiter.waitTilDone();
+    InstanceState instanceState = waiterScheduler.waitTilDone(waiter);
     if (instanceState == null)
     {
       throw new RuntimeException(context(stageEnv) + "ELB says new live EC2 instance was not declared in service");
@@ -152,7 +158,7 @@ public class FixedElbFlipEc2Task extends TwoEnvTask
     ElbInstanceGoneProgressChecker progressChecker = new ElbInstanceGoneProgressChecker(fixedLbName,
         oldLiveEc2InstanceId, context(liveEnv), elbClient);
     Waiter<Boolean> waiter = new Waiter(waiterParameters, threadSleeper, progressChecker);
-    Boolean gone = waiter.waitTilDone();
+    Boolean gone = waiterScheduler.waitTilDone(waiter);
     if (gone == null || !gone)
     {
       throw new RuntimeException(context(liveEnv) + "ELB says old live EC2 instance was not removed from service");
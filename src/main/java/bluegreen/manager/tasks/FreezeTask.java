@@ -26,6 +26,15 @@ public class FreezeTask extends TransitionTask
       VERB, ALLOWED_START_MODES, TRANSITIONAL_MODE, DESTINATION_MODE, TRANSITION_ERROR_MODE, TRANSITION_METHOD_PATH
   );
 
+  /**
+   * Thaws the applications that froze, if the others failed to.
+   */
+  @Override
+  protected TransitionParameters getRevertParameters()
+  {
+    return ThawTask.TRANSITION_PARAMETERS;
+  }
+
   @Override
   public TransitionTask assignTransition(int position, String envName)
   {
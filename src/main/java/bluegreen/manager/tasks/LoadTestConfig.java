@@ -0,0 +1,152 @@
+package bluegreen.manager.tasks;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configures the load driven against an application by {@link LoadTestTask}, and the budgets its results must meet.
+ */
+@Lazy
+@Component
+public class LoadTestConfig
+{
+  @Value("${bluegreen.loadtest.methodPath}")
+  private String methodPath;
+
+  @Value("${bluegreen.loadtest.concurrency}")
+  private int concurrency;
+
+  @Value("${bluegreen.loadtest.numRequests}")
+  private int numRequests;
+
+  @Value("${bluegreen.loadtest.numWarmupRequests}")
+  private int numWarmupRequests;
+
+  @Value("${bluegreen.loadtest.maxP95Milliseconds}")
+  private long maxP95Milliseconds;
+
+  @Value("${bluegreen.loadtest.maxP99Milliseconds}")
+  private long maxP99Milliseconds;
+
+  @Value("${bluegreen.loadtest.maxErrorPercent}")
+  private double maxErrorPercent;
+
+  /**
+   * Stage p95 may be at most this multiple of the baseline env's p95.  Zero to skip the comparison.
+   */
+  @Value("${bluegreen.loadtest.maxRegressionRatio}")
+  private double maxRegressionRatio;
+
+  public LoadTestConfig()
+  {
+  }
+
+  public LoadTestConfig(String methodPath,
+                        int concurrency,
+                        int numRequests,
+                        int numWarmupRequests,
+                        long maxP95Milliseconds,
+                        long maxP99Milliseconds,
+                        double maxErrorPercent,
+                        double maxRegressionRatio)
+  {
+    this.methodPath = methodPath;
+    this.concurrency = concurrency;
+    this.numRequests = numRequests;
+    this.numWarmupRequests = numWarmupRequests;
+    this.maxP95Milliseconds = maxP95Milliseconds;
+    this.maxP99Milliseconds = maxP99Milliseconds;
+    this.maxErrorPercent = maxErrorPercent;
+    this.maxRegressionRatio = maxRegressionRatio;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "LoadTestConfig[methodPath: " + methodPath + ", concurrency: " + concurrency + ", numRequests: "
+        + numRequests + ", numWarmupRequests: " + numWarmupRequests + ", maxP95: " + maxP95Milliseconds
+        + "ms, maxP99: " + maxP99Milliseconds + "ms, maxErrorPercent: " + maxErrorPercent
+        + ", maxRegressionRatio: " + maxRegressionRatio + "]";
+  }
+
+  public String getMethodPath()
+  {
+    return methodPath;
+  }
+
+  public void setMethodPath(String methodPath)
+  {
+    this.methodPath = methodPath;
+  }
+
+  public int getConcurrency()
+  {
+    return concurrency;
+  }
+
+  public void setConcurrency(int concurrency)
+  {
+    this.concurrency = concurrency;
+  }
+
+  public int getNumRequests()
+  {
+    return numRequests;
+  }
+
+  public void setNumRequests(int numRequests)
+  {
+    this.numRequests = numRequests;
+  }
+
+  public int getNumWarmupRequests()
+  {
+    return numWarmupRequests;
+  }
+
+  public void setNumWarmupRequests(int numWarmupRequests)
+  {
+    this.numWarmupRequests = numWarmupRequests;
+  }
+
+  public long getMaxP95Milliseconds()
+  {
+    return maxP95Milliseconds;
+  }
+
+  public void setMaxP95Milliseconds(long maxP95Milliseconds)
+  {
+    this.maxP95Milliseconds = maxP95Milliseconds;
+  }
+
+  public long getMaxP99Milliseconds()
+  {
+    return maxP99Milliseconds;
+  }
+
+  public void setMaxP99Milliseconds(long maxP99Milliseconds)
+  {
+    this.maxP99Milliseconds = maxP99Milliseconds;
+  }
+
+  public double getMaxErrorPercent()
+  {
+    return maxErrorPercent;
+  }
+
+  public void setMaxErrorPercent(double maxErrorPercent)
+  {
+    this.maxErrorPercent = maxErrorPercent;
+  }
+
+  public double getMaxRegressionRatio()
+  {
+    return maxRegressionRatio;
+  }
+
+  public void setMaxRegressionRatio(double maxRegressionRatio)
+  {
+    this.maxRegressionRatio = maxRegressionRatio;
+  }
+}
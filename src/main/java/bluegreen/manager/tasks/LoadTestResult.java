@@ -0,0 +1,56 @@
+package bluegreen.manager.tasks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Latencies and error count of one load test run against one application.
+ */
+public class LoadTestResult
+{
+  private List<Long> latencies; //Milliseconds of successful requests, sorted
+  private int numErrors;
+
+  public LoadTestResult(List<Long> latencies, int numErrors)
+  {
+    this.latencies = new ArrayList<Long>(latencies);
+    Collections.sort(this.latencies);
+    this.numErrors = numErrors;
+  }
+
+  public int getNumRequests()
+  {
+    return latencies.size() + numErrors;
+  }
+
+  public int getNumErrors()
+  {
+    return numErrors;
+  }
+
+  public double getErrorPercent()
+  {
+    return getNumRequests() == 0 ? 0.0 : 100.0 * numErrors / getNumRequests();
+  }
+
+  /**
+   * Nearest-rank percentile of the successful request latencies.  Zero if no request succeeded.
+   */
+  public long percentile(int percent)
+  {
+    if (latencies.isEmpty())
+    {
+      return 0L;
+    }
+    int rank = (int) Math.ceil(percent / 100.0 * latencies.size());
+    return latencies.get(Math.max(rank, 1) - 1);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "requests: " + getNumRequests() + ", errors: " + numErrors + String.format(" (%.1f%%)", getErrorPercent())
+        + ", p50: " + percentile(50) + "ms, p95: " + percentile(95) + "ms, p99: " + percentile(99) + "ms";
+  }
+}
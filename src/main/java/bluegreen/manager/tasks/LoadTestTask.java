@@ -0,0 +1,245 @@
+package bluegreen.manager.tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.fluent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import bluegreen.manager.client.app.ApplicationClient;
+import bluegreen.manager.client.app.ApplicationSession;
+import bluegreen.manager.client.http.HttpHelper;
+import bluegreen.manager.model.domain.Application;
+import bluegreen.manager.model.domain.TaskStatus;
+import bluegreen.manager.model.tx.OneEnvLoader;
+
+/**
+ * Performance gate: drives concurrent http load against the application and fails if latency or error rate break the
+ * configured budgets (see {@link LoadTestConfig}).
+ * <p/>
+ * Optionally runs the same load against a baseline env (typically the live env), and also fails if the application's
+ * p95 latency regressed too far against the baseline's.  This is opt-in by a nonzero max regression ratio, since it
+ * loads the live env as hard as the tested one.
+ * <p/>
+ * The load is GETs of one method path of the application's bluegreen client api, in an authenticated session, so
+ * it should be a read-only path.  There is no default path, so the gate is opt-in: with none configured the task
+ * skips itself with a warning.
+ */
+@Lazy
+@Component
+@Scope("prototype")
+public class LoadTestTask extends ApplicationTask
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadTestTask.class);
+
+  @Autowired
+  private LoadTestConfig loadTestConfig;
+
+  @Autowired
+  private HttpHelper httpHelper;
+
+  private String baselineEnvName; //Null means no baseline comparison
+  private Application baselineApplication;
+
+  /**
+   * @param baselineEnvName Env to compare latency against, or null to check budgets only.
+   */
+  public Task assign(int position, String envName, String baselineEnvName)
+  {
+    if (StringUtils.equals(envName, baselineEnvName))
+    {
+      throw new IllegalArgumentException("Baseline env must be different from tested env, cannot target env '" + envName + "' for both");
+    }
+    super.assign(position, envName);
+    this.baselineEnvName = baselineEnvName;
+    return this;
+  }
+
+  /**
+   * Loads the tested application, and the baseline application if any.
+   */
+  @Override
+  protected void loadDataModel()
+  {
+    super.loadDataModel();
+    if (baselineEnvName != null && loadTestConfig.getMaxRegressionRatio() > 0)
+    {
+      OneEnvLoader baselineEnvLoader = envLoaderFactory.createOne(baselineEnvName);
+      baselineEnvLoader.loadApplication();
+      this.baselineApplication = baselineEnvLoader.getApplication();
+    }
+  }
+
+  /**
+   * Runs the load against the application (and the baseline application if any) and checks the results.
+   */
+  @Override
+  public TaskStatus process(boolean noop)
+  {
+    if (StringUtils.isBlank(loadTestConfig.getMethodPath()))
+    {
+      LOGGER.warn("[environment '" + envName + "']: Skipping load test, no method path configured: set "
+          + "bluegreen.loadtest.methodPath to a read-only path of the application's client api to enable it"
+          + noopRemark(noop));
+      return noop ? TaskStatus.NOOP : TaskStatus.SKIPPED;
+    }
+    loadDataModel();
+    LOGGER.info(context() + "Load testing application" + (baselineApplication == null ? "" : " against baseline env '"
+        + baselineEnvName + "'") + ", " + loadTestConfig + noopRemark(noop));
+    if (noop)
+    {
+      return TaskStatus.NOOP;
+    }
+    initApplicationSession();
+    LoadTestResult result = runLoad(application, applicationSession);
+    LOGGER.info(context() + "Load test result: " + result);
+    LoadTestResult baselineResult = null;
+    if (baselineApplication != null)
+    {
+      ApplicationClient baselineClient = findApplicationClient(baselineApplication);
+      baselineResult = runLoad(baselineApplication, findApplicationSession(baselineApplication, baselineClient));
+      LOGGER.info(context() + "Baseline env '" + baselineEnvName + "' load test result: " + baselineResult);
+    }
+    List<String> violations = checkBudgets(result, baselineResult);
+    if (!violations.isEmpty())
+    {
+      LOGGER.error(context() + "Load test failed: " + StringUtils.join(violations, "; "));
+      return TaskStatus.ERROR;
+    }
+    LOGGER.info(context() + "Load test passed");
+    return TaskStatus.DONE;
+  }
+
+  /**
+   * Returns descriptions of the budgets the result breaks, or an empty list if it meets them all.
+   */
+  List<String> checkBudgets(LoadTestResult result, LoadTestResult baselineResult)
+  {
+    List<String> violations = new ArrayList<String>();
+    if (result.getErrorPercent() > loadTestConfig.getMaxErrorPercent())
+    {
+      violations.add(String.format("error rate %.1f%% > %.1f%%", result.getErrorPercent(), loadTestConfig.getMaxErrorPercent()));
+    }
+    if (result.percentile(95) > loadTestConfig.getMaxP95Milliseconds())
+    {
+      violations.add("p95 " + result.percentile(95) + "ms > " + loadTestConfig.getMaxP95Milliseconds() + "ms");
+    }
+    if (result.percentile(99) > loadTestConfig.getMaxP99Milliseconds())
+    {
+      violations.add("p99 " + result.percentile(99) + "ms > " + loadTestConfig.getMaxP99Milliseconds() + "ms");
+    }
+    if (baselineResult != null && baselineResult.percentile(95) > 0)
+    {
+      double ratio = (double) result.percentile(95) / baselineResult.percentile(95);
+      if (ratio > loadTestConfig.getMaxRegressionRatio())
+      {
+        violations.add(String.format("p95 is %.2fx baseline's %dms, max %.2fx", ratio, baselineResult.percentile(95),
+            loadTestConfig.getMaxRegressionRatio()));
+      }
+    }
+    return violations;
+  }
+
+  /**
+   * Sends the warmup requests, whose results are discarded, then the measured requests.  Each worker thread issues
+   * one request at a time.
+   */
+  LoadTestResult runLoad(Application targetApplication, ApplicationSession session)
+  {
+    String uri = targetApplication.makeHostnameUri() + "/" + loadTestConfig.getMethodPath();
+    ExecutorService threadPool = Executors.newFixedThreadPool(Math.max(1, loadTestConfig.getConcurrency()));
+    try
+    {
+      sendRequests(threadPool, session.getHttpExecutor(), uri, loadTestConfig.getNumWarmupRequests());
+      return sendRequests(threadPool, session.getHttpExecutor(), uri, loadTestConfig.getNumRequests());
+    }
+    finally
+    {
+      threadPool.shutdownNow();
+    }
+  }
+
+  private LoadTestResult sendRequests(ExecutorService threadPool, final Executor httpExecutor, final String uri, int numRequests)
+  {
+    List<Future<Long>> futures = new ArrayList<Future<Long>>();
+    for (int idx = 0; idx < numRequests; ++idx)
+    {
+      futures.add(threadPool.submit(new Callable<Long>()
+      {
+        @Override
+        public Long call()
+        {
+          return timeRequest(httpExecutor, uri);
+        }
+      }));
+    }
+    List<Long> latencies = new ArrayList<Long>();
+    int numErrors = 0;
+    for (Future<Long> future : futures)
+    {
+      Long latency = getLatency(future);
+      if (latency == null)
+      {
+        ++numErrors;
+      }
+      else
+      {
+        latencies.add(latency);
+      }
+    }
+    return new LoadTestResult(latencies, numErrors);
+  }
+
+  /**
+   * Returns the milliseconds taken by one GET, or null if it failed.
+   */
+  private Long timeRequest(Executor httpExecutor, String uri)
+  {
+    long startNanos = System.nanoTime();
+    try
+    {
+      httpHelper.executeGet(httpExecutor, uri);
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+    catch (RuntimeException e)
+    {
+      LOGGER.debug(context() + "Load test request failed", e);
+      return null;
+    }
+  }
+
+  private Long getLatency(Future<Long> future)
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(context() + "Interrupted while load testing", e);
+    }
+    catch (ExecutionException e)
+    {
+      throw new RuntimeException(context() + "Load test request failed unexpectedly", e.getCause());
+    }
+  }
+
+  //Test purposes only
+  void setLoadTestConfig(LoadTestConfig loadTestConfig)
+  {
+    this.loadTestConfig = loadTestConfig;
+  }
+}
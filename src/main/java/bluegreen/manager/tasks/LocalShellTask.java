@@ -1,22 +1,47 @@
 package bluegreen.manager.tasks;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import bluegreen.manager.model.domain.TaskStatus;
 import bluegreen.manager.substituter.SubstituterResult;
+import static bluegreen.manager.substituter.StringSubstituter.CLOSE_SUBSTITUTE;
+import static bluegreen.manager.substituter.StringSubstituter.OPEN_SUBSTITUTE;
+import bluegreen.manager.utils.LineListener;
+import bluegreen.manager.utils.OutputScanner;
+import bluegreen.manager.utils.OutputTail;
+import bluegreen.manager.utils.PatternLineListener;
 import bluegreen.manager.utils.ProcessBuilderAdapter;
 import bluegreen.manager.utils.ProcessBuilderAdapterFactory;
+import bluegreen.manager.utils.ProcessKiller;
+import bluegreen.manager.utils.WaiterScheduler;
 
 /**
  * Runs a configurable command locally that requires read access to the data model of liveEnv and stageEnv.
@@ -26,7 +51,13 @@ import bluegreen.manager.utils.ProcessBuilderAdapterFactory;
  * hence there is no Waiter or ProgressChecker here.  No analysis is performed on the results except to know whether
  * the command succeeded or failed.
  * <p/>
- * Currently no support for timeout.
+ * Output is checked against the error regexp line by line as it arrives, and the command is killed (along with any
+ * processes it started) at the first error line, or when it runs past the shell config's timeout.  Only the last lines
+ * of output are kept in memory; the full output is written to a temp file in the output dir while the command runs,
+ * and the file is deleted once the command is over.
+ * <p/>
+ * A for-each shell config runs one copy of the command per item of a list variable (e.g. per package), as concurrent
+ * processes.
  */
 @Lazy
 @Component
@@ -35,11 +66,25 @@ public class LocalShellTask extends ShellTask
 {
   private static final Logger LOGGER = LoggerFactory.getLogger(LocalShellTask.class);
 
+  /**
+   * Lines of output kept in memory, for the error log.
+   */
+  static final int MAX_TAIL_LINES = 200;
+
   @Autowired
   private ProcessBuilderAdapterFactory processBuilderAdapterFactory;
 
+  @Autowired
+  private WaiterScheduler waiterScheduler;
+
+  @Autowired
+  private ProcessKiller processKiller;
+
+  @Value("${bluegreen.localshell.outputDir}")
+  private File outputDir;
+
   /**
-   * Runs a configurable command locally.
+   * Runs a configurable command locally, or one copy per list item if the shell config says for-each.
    * <p/>
    * Provides read access to the data model of liveEnv and stageEnv, by means of command token substitution.
    */
@@ -52,61 +97,286 @@ public class LocalShellTask extends ShellTask
     if (!noop)
     {
       checkConfig();
-      SubstituterResult command = stringSubstituter.substituteVariables(shellConfig.getCommand());
-      String[] commandTokens = command.getSubstituted().split("\\s+");
-      ProcessBuilderAdapter processBuilderAdapter = processBuilderAdapterFactory.create(commandTokens)
-          .redirectErrorStream(true);
-      LOGGER.info("Executing command '" + command.getExpurgated() + "'");
-      StopWatch stopWatch = new StopWatch();
-      Process process = null;
-      try
+      if (StringUtils.isBlank(shellConfig.getForEachItemOf()))
       {
-        stopWatch.start();
-        process = processBuilderAdapter.start();
-        String output = blockAndLogOutput(process);
-        taskStatus = checkForErrors(output, process.exitValue());
+        taskStatus = runCommand(stringSubstituter.substituteVariables(shellConfig.getCommand()), "");
       }
-      catch (IOException e)
+      else
       {
-        LOGGER.error("Shell command failed: " + command.getExpurgated(), e);
-        taskStatus = TaskStatus.ERROR;
+        taskStatus = runCommandForEachItem();
       }
-      catch (InterruptedException e)
+    }
+    return taskStatus;
+  }
+
+  /**
+   * Runs one copy of the command per item of the for-each list, at most maxParallelism at once.  Done only if every
+   * copy is done.
+   */
+  private TaskStatus runCommandForEachItem()
+  {
+    String listVariable = OPEN_SUBSTITUTE + shellConfig.getForEachItemOf() + CLOSE_SUBSTITUTE;
+    String[] items = StringUtils.split(stringSubstituter.substituteVariables(listVariable).getSubstituted(), ",");
+    Map<String, SubstituterResult> itemCommands = new LinkedHashMap<String, SubstituterResult>();
+    for (String item : items)
+    {
+      String itemTemplate = StringUtils.replace(shellConfig.getCommand(), listVariable, item.trim());
+      itemCommands.put(item.trim(), stringSubstituter.substituteVariables(itemTemplate));
+    }
+    if (itemCommands.isEmpty())
+    {
+      LOGGER.info("No items in " + listVariable + ", nothing to run");
+      return TaskStatus.DONE;
+    }
+    Map<String, TaskStatus> itemStatuses = runConcurrently(itemCommands);
+    TaskStatus taskStatus = TaskStatus.DONE;
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, TaskStatus> entry : itemStatuses.entrySet())
+    {
+      sb.append("\n  " + entry.getKey() + ": " + entry.getValue());
+      if (entry.getValue() != TaskStatus.DONE)
       {
-        LOGGER.error("Shell command interrupted: " + command.getExpurgated(), e);
         taskStatus = TaskStatus.ERROR;
       }
-      finally
+    }
+    LOGGER.info("Local shell command results by " + shellConfig.getForEachItemOf() + " item:" + sb.toString());
+    return taskStatus;
+  }
+
+  /**
+   * Runs the item commands as concurrent processes, and returns each item's status in item order.
+   */
+  private Map<String, TaskStatus> runConcurrently(Map<String, SubstituterResult> itemCommands)
+  {
+    int maxParallelism = shellConfig.getMaxParallelism() == null ? 1 : shellConfig.getMaxParallelism();
+    int numThreads = Math.max(1, Math.min(maxParallelism, itemCommands.size()));
+    LOGGER.debug("Running " + itemCommands.size() + " copies of the command, " + numThreads + " at a time");
+    ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+    try
+    {
+      Map<String, Future<TaskStatus>> futures = new LinkedHashMap<String, Future<TaskStatus>>();
+      for (final Map.Entry<String, SubstituterResult> entry : itemCommands.entrySet())
+      {
+        futures.put(entry.getKey(), executorService.submit(new Callable<TaskStatus>()
+        {
+          @Override
+          public TaskStatus call()
+          {
+            return runCommand(entry.getValue(), "[" + entry.getKey() + "] ");
+          }
+        }));
+      }
+      Map<String, TaskStatus> itemStatuses = new LinkedHashMap<String, TaskStatus>();
+      for (Map.Entry<String, Future<TaskStatus>> entry : futures.entrySet())
+      {
+        itemStatuses.put(entry.getKey(), waitForItem(entry.getKey(), entry.getValue()));
+      }
+      return itemStatuses;
+    }
+    finally
+    {
+      executorService.shutdownNow();
+    }
+  }
+
+  private TaskStatus waitForItem(String item, Future<TaskStatus> future)
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while running local command for " + item, e);
+    }
+    catch (ExecutionException e)
+    {
+      LOGGER.error("Local command failed for " + item, e.getCause());
+      return TaskStatus.ERROR;
+    }
+  }
+
+  /**
+   * Runs the substituted command as a local process, and returns DONE or ERROR.
+   * <p/>
+   * The command is split into program and args on whitespace alone, with no shell in between: quotes are passed
+   * through as literal chars, and an arg cannot contain whitespace.  Quotes are deliberately not parsed, because the
+   * split happens after substitution, and a substituted value (such as a password) must not be reinterpreted.  A
+   * command that needs shell syntax can run its own shell script.
+   *
+   * @param logContext Prefix of log lines about this process, to tell apart concurrent copies.
+   */
+  private TaskStatus runCommand(SubstituterResult command, String logContext)
+  {
+    String[] commandTokens = command.getSubstituted().split("\\s+");
+    ProcessBuilderAdapter processBuilderAdapter = processBuilderAdapterFactory.create(commandTokens)
+        .redirectErrorStream(true);
+    LOGGER.info(logContext + "Executing command '" + command.getExpurgated() + "'");
+    StopWatch stopWatch = new StopWatch();
+    Process process = null;
+    ScheduledFuture<?> watchdog = null;
+    AtomicBoolean timedOut = new AtomicBoolean();
+    OutputTail outputTail = new OutputTail(MAX_TAIL_LINES);
+    File outputFile = null;
+    TaskStatus taskStatus;
+    try
+    {
+      outputFile = File.createTempFile("localShell-", ".log", outputDir);
+      LOGGER.info(logContext + "Full command output goes to " + outputFile);
+      stopWatch.start();
+      process = processBuilderAdapter.start();
+      watchdog = startWatchdog(process, timedOut);
+      PatternLineListener lineListener = new PatternLineListener(null, patternError);
+      blockAndLogOutput(process, lineListener, outputTail, outputFile, logContext);
+      taskStatus = checkResult(process, lineListener, timedOut.get());
+    }
+    catch (IOException e)
+    {
+      LOGGER.error(logContext + "Shell command failed" + (timedOut.get() ? " after timeout" : "") + ": "
+          + command.getExpurgated(), e);
+      taskStatus = TaskStatus.ERROR;
+    }
+    catch (InterruptedException e)
+    {
+      LOGGER.error(logContext + "Shell command interrupted: " + command.getExpurgated(), e);
+      destroy(process);
+      taskStatus = TaskStatus.ERROR;
+    }
+    finally
+    {
+      stopWatch.stop();
+      LOGGER.debug(logContext + "Time elapsed: " + stopWatch);
+      if (watchdog != null)
       {
-        stopWatch.stop();
-        LOGGER.debug("Time elapsed: " + stopWatch);
-        closeProcessStreams(process);
+        watchdog.cancel(false);
       }
+      closeProcessStreams(process);
+      deleteOutputFile(outputFile);
+    }
+    if (taskStatus == TaskStatus.ERROR)
+    {
+      LOGGER.error(logContext + "Last " + Math.min(MAX_TAIL_LINES, outputTail.getNumLines()) + " lines of command output"
+          + " (full output in the debug log):\n" + outputTail.getText());
     }
     return taskStatus;
   }
 
   /**
-   * Iterates over the process stdout until there is no more.  Blocks til the process is done.
-   * Returns the output as a single string.
+   * Schedules the process to be killed when the shell config's timeout runs out.  Null if there is no timeout.
+   * <p/>
+   * Besides killing the process tree, the watchdog closes the process stdout, in case something outside the tree
+   * still holds it open and would keep the output reader blocked.
+   */
+  private ScheduledFuture<?> startWatchdog(final Process process, final AtomicBoolean timedOut)
+  {
+    final Long timeoutMilliseconds = shellConfig.getTimeoutMilliseconds();
+    if (timeoutMilliseconds == null || timeoutMilliseconds <= 0)
+    {
+      return null;
+    }
+    return waiterScheduler.getScheduledExecutorService().schedule(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        LOGGER.error("Shell command still running after timeout of " + timeoutMilliseconds + " ms, killing it");
+        timedOut.set(true);
+        destroy(process);
+        IOUtils.closeQuietly(process.getInputStream());
+      }
+    }, timeoutMilliseconds, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Iterates over the process stdout until there is no more, or until the listener sees an error line in which case
+   * the process is killed.  Lines go to the debug log, the output file and the tail.
    * <p/>
    * Also logs the process exit value.
    */
-  private String blockAndLogOutput(Process process) throws IOException, InterruptedException
+  private void blockAndLogOutput(final Process process,
+                                 final PatternLineListener lineListener,
+                                 final OutputTail outputTail,
+                                 File outputFile,
+                                 final String logContext) throws IOException, InterruptedException
   {
     // Yes, stdout is 'getInputStream'.
-    StringBuilder sb = new StringBuilder();
-    LOGGER.debug("---------- OUTPUT BEGINS ----------");
-    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-    String line;
-    while ((line = reader.readLine()) != null)
+    LOGGER.debug(logContext + "---------- OUTPUT BEGINS ----------");
+    Reader reader = new InputStreamReader(process.getInputStream());
+    final Writer writer = new BufferedWriter(new FileWriter(outputFile));
+    try
+    {
+      OutputScanner.scan(reader, new LineListener()
+      {
+        @Override
+        public boolean onLine(String line)
+        {
+          LOGGER.debug(logContext + line);
+          try
+          {
+            writer.write(line + "\n");
+          }
+          catch (IOException e)
+          {
+            throw new UncheckedIOException(e);
+          }
+          outputTail.add(line);
+          if (!lineListener.onLine(line))
+          {
+            LOGGER.error(logContext + "Error line in command output, killing the command: " + line);
+            destroy(process);
+            return false;
+          }
+          return true;
+        }
+      });
+    }
+    catch (UncheckedIOException e)
+    {
+      throw e.getCause();
+    }
+    finally
     {
-      LOGGER.debug(line);
-      sb.append(line + "\n");
+      IOUtils.closeQuietly(writer);
     }
-    LOGGER.debug("---------- OUTPUT ENDS ----------");
+    LOGGER.debug(logContext + "---------- OUTPUT ENDS ----------");
     logExitValue(process.waitFor());
-    return sb.toString();
+  }
+
+  /**
+   * Error if the command timed out, printed an error line or has the wrong exit value.
+   */
+  private TaskStatus checkResult(Process process, PatternLineListener lineListener, boolean timedOut)
+  {
+    int exitValue = process.exitValue();
+    if (timedOut)
+    {
+      LOGGER.error("Shell command timed out");
+      return TaskStatus.ERROR;
+    }
+    return !lineListener.isError() && checkExitValue(exitValue) ? TaskStatus.DONE : TaskStatus.ERROR;
+  }
+
+  /**
+   * Kills the process and its descendants, if started.
+   */
+  private void destroy(Process process)
+  {
+    if (process != null)
+    {
+      processKiller.destroyTree(process);
+    }
+  }
+
+  /**
+   * Deletes the temp file of command output, if created.  Its lines are in the debug log and the tail.
+   */
+  private void deleteOutputFile(File outputFile)
+  {
+    if (outputFile != null && !outputFile.delete())
+    {
+      LOGGER.warn("Failed to delete command output file " + outputFile);
+    }
   }
 
   /**
@@ -123,4 +393,10 @@ public class LocalShellTask extends ShellTask
       IOUtils.closeQuietly(process.getOutputStream());
     }
   }
+
+  //Test purposes only
+  void setOutputDir(File outputDir)
+  {
+    this.outputDir = outputDir;
+  }
 }
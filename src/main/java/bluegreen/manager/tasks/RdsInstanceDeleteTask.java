@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.rds.model.DBInstance;
@@ -37,6 +38,7 @@ import bluegreen.manager.utils.WaiterParameters;
  */
 @Lazy
 @Component
+@Scope("prototype")
 public class RdsInstanceDeleteTask extends TaskImpl
 {
   private static final Logger LOGGER = LoggerFactory.getLogger(RdsInstanceDeleteTask.class);
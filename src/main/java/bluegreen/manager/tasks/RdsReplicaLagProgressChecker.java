@@ -0,0 +1,214 @@
+package bluegreen.manager.tasks;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.rds.model.DBInstance;
+import com.amazonaws.services.rds.model.DBInstanceStatusInfo;
+
+import bluegreen.manager.client.aws.RdsAnalyzer;
+import bluegreen.manager.client.aws.RdsClient;
+import bluegreen.manager.client.aws.RdsInstanceStatus;
+import bluegreen.manager.client.db.BinlogPosition;
+import bluegreen.manager.client.db.MysqlClient;
+import bluegreen.manager.utils.ProgressChecker;
+
+/**
+ * Checks progress of an RDS read replica catching up with its source instance, which has stopped taking writes.
+ * <p/>
+ * A 'replicating' status, or a zero ReplicaLag metric (which is in whole seconds), does not prove the replica has
+ * applied the last writes before the freeze.  So the initial check reads the source's binlog position, which is past
+ * every write committed before the freeze, and the replica is caught up once it has executed the source's binlog up
+ * to that position.  The instance description's read replication status is still watched, to give up early if it is
+ * 'error' or 'terminated'.
+ */
+public class RdsReplicaLagProgressChecker implements ProgressChecker<DBInstance>
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(RdsReplicaLagProgressChecker.class);
+  private static final String[] BROKEN_REPLICATION_STATUSES = new String[] { "error", "terminated" };
+
+  private String instanceId;
+  private String sourceInstanceId;
+  private String logContext;
+  private RdsClient rdsClient;
+  private RdsAnalyzer rdsAnalyzer;
+  private MysqlClient sourceDbClient;
+  private MysqlClient replicaDbClient;
+  private DBInstance initialInstance;
+  private BinlogPosition targetPosition; //Source binlog position after the freeze
+  private boolean done;
+  private DBInstance result;
+
+  public RdsReplicaLagProgressChecker(String instanceId,
+                                      String sourceInstanceId,
+                                      String logContext,
+                                      RdsClient rdsClient,
+                                      RdsAnalyzer rdsAnalyzer,
+                                      MysqlClient sourceDbClient,
+                                      MysqlClient replicaDbClient,
+                                      DBInstance initialInstance)
+  {
+    this.instanceId = instanceId;
+    this.sourceInstanceId = sourceInstanceId;
+    this.logContext = logContext;
+    this.rdsClient = rdsClient;
+    this.rdsAnalyzer = rdsAnalyzer;
+    this.sourceDbClient = sourceDbClient;
+    this.replicaDbClient = replicaDbClient;
+    this.initialInstance = initialInstance;
+  }
+
+  @Override
+  public String getDescription()
+  {
+    return "Replica '" + instanceId + "' catching up with '" + sourceInstanceId + "'";
+  }
+
+  /**
+   * Checks the replica as described before waiting, and reads the source binlog position it must reach.  Throws if it
+   * is not a replica of the source.
+   */
+  @Override
+  public void initialCheck()
+  {
+    checkInstanceId(initialInstance);
+    checkReplicaSource(initialInstance);
+    targetPosition = sourceDbClient.getMasterStatus();
+    LOGGER.debug("RDS " + getDescription() + ": source binlog position to reach is " + targetPosition);
+    LOGGER.debug("Initial RDS " + getDescription() + " status: " + describeStatus(initialInstance));
+    checkReplicationStatus(initialInstance);
+  }
+
+  /**
+   * Communicates with RDS for updated replica status.
+   */
+  @Override
+  public void followupCheck(int waitNum)
+  {
+    DBInstance dbInstance = rdsClient.describeInstance(instanceId);
+    checkInstanceId(dbInstance);
+    LOGGER.debug("RDS " + getDescription() + " status after wait#" + waitNum + ": " + describeStatus(dbInstance));
+    checkReplicationStatus(dbInstance);
+  }
+
+  private String describeStatus(DBInstance dbInstance)
+  {
+    String description = "instance status " + dbInstance.getDBInstanceStatus();
+    DBInstanceStatusInfo statusInfo = rdsAnalyzer.findReadReplicationStatusInfo(dbInstance);
+    if (statusInfo == null)
+    {
+      return description + ", read replication status unknown";
+    }
+    description += ", read replication " + statusInfo.getStatus();
+    if (!Boolean.TRUE.equals(statusInfo.getNormal()))
+    {
+      description += " (not normal: " + statusInfo.getMessage() + ")";
+    }
+    return description;
+  }
+
+  /**
+   * Asserts that the instance has the expected id.
+   */
+  private void checkInstanceId(DBInstance dbInstance)
+  {
+    final String responseInstanceId = dbInstance.getDBInstanceIdentifier();
+    if (!StringUtils.equals(instanceId, responseInstanceId))
+    {
+      throw new IllegalStateException(logContext + "We requested instance id '" + instanceId
+          + "' but RDS replied with identifier '" + responseInstanceId + "'");
+    }
+  }
+
+  /**
+   * Asserts that the instance is a read replica of the source.
+   */
+  private void checkReplicaSource(DBInstance dbInstance)
+  {
+    final String replicaSourceId = dbInstance.getReadReplicaSourceDBInstanceIdentifier();
+    if (!StringUtils.equals(sourceInstanceId, replicaSourceId))
+    {
+      throw new IllegalStateException(logContext + "RDS instance '" + instanceId + "' should be a read replica of '"
+          + sourceInstanceId + "', but its replica source is '" + replicaSourceId + "'");
+    }
+  }
+
+  /**
+   * Flags done if the available replica has executed the source binlog up to the target position, or concludes with
+   * error if replication is broken.
+   */
+  private void checkReplicationStatus(DBInstance dbInstance)
+  {
+    DBInstanceStatusInfo statusInfo = rdsAnalyzer.findReadReplicationStatusInfo(dbInstance);
+    String replicationStatus = statusInfo == null ? null : statusInfo.getStatus();
+    if (isBrokenReplicationStatus(replicationStatus))
+    {
+      LOGGER.error(logContext + getDescription() + ": Replication is broken: " + describeStatus(dbInstance));
+      done = true;
+    }
+    else if (RdsInstanceStatus.AVAILABLE.equalsString(dbInstance.getDBInstanceStatus()))
+    {
+      checkExecutedPosition(dbInstance);
+    }
+    //Else keep waiting.
+  }
+
+  /**
+   * Flags done if the replica's executed position has reached the target.
+   */
+  private void checkExecutedPosition(DBInstance dbInstance)
+  {
+    BinlogPosition executedPosition = replicaDbClient.getReplicaExecutedPosition();
+    if (executedPosition == null)
+    {
+      throw new IllegalStateException(logContext + "RDS instance '" + instanceId + "' at " + replicaDbClient.getUrl()
+          + " reports no replica status, though RDS describes it as a replica of '" + sourceInstanceId + "'");
+    }
+    LOGGER.debug("RDS " + getDescription() + ": replica executed up to " + executedPosition + ", target "
+        + targetPosition);
+    if (executedPosition.hasReached(targetPosition))
+    {
+      LOGGER.info("RDS " + getDescription() + " is done");
+      done = true;
+      result = dbInstance;
+    }
+  }
+
+  private boolean isBrokenReplicationStatus(String replicationStatus)
+  {
+    for (String brokenStatus : BROKEN_REPLICATION_STATUSES)
+    {
+      if (StringUtils.equalsIgnoreCase(brokenStatus, replicationStatus))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isDone()
+  {
+    return done;
+  }
+
+  /**
+   * The replica once it has executed every write the source committed before the freeze.  Null if replication is broken, or still waiting, or timeout.
+   */
+  @Override
+  public DBInstance getResult()
+  {
+    return result;
+  }
+
+  /**
+   * Simply logs the timeout and returns null.
+   */
+  @Override
+  public DBInstance timeout()
+  {
+    LOGGER.error(logContext + getDescription() + " failed to happen prior to timeout");
+    return null;
+  }
+}
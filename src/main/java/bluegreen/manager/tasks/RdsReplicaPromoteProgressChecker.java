@@ -0,0 +1,93 @@
+package bluegreen.manager.tasks;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.rds.model.DBInstance;
+
+import bluegreen.manager.client.aws.RdsClient;
+import bluegreen.manager.client.aws.RdsInstanceStatus;
+
+/**
+ * Knows how to check progress of an RDS read replica being promoted to a standalone instance.
+ * <p/>
+ * Promotion is done when the instance is available and no longer names a replica source.  Until promotion begins,
+ * the instance may still be available as a replica.  During promotion it backs up and reboots.
+ */
+public class RdsReplicaPromoteProgressChecker extends RdsInstanceProgressChecker
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(RdsReplicaPromoteProgressChecker.class);
+  private static final RdsInstanceStatus[] PROMOTE_INTERMEDIATE_STATES = new RdsInstanceStatus[] {
+      RdsInstanceStatus.AVAILABLE, RdsInstanceStatus.MODIFYING, RdsInstanceStatus.BACKING_UP, RdsInstanceStatus.REBOOTING
+  };
+
+  public RdsReplicaPromoteProgressChecker(String instanceId,
+                                          String logContext,
+                                          RdsClient rdsClient,
+                                          DBInstance initialInstance)
+  {
+    super(instanceId, logContext, rdsClient, initialInstance, RdsInstanceStatus.MODIFYING);
+  }
+
+  @Override
+  protected String describeExpectedInitialState()
+  {
+    return "Promote Read Replica";
+  }
+
+  @Override
+  protected void logInitialStatus()
+  {
+    LOGGER.debug("Initial RDS " + getDescription() + " status: " + initialInstance.getDBInstanceStatus()
+        + ", replica source: " + initialInstance.getReadReplicaSourceDBInstanceIdentifier());
+  }
+
+  @Override
+  protected void logFollowupStatus(int waitNum, DBInstance dbInstance)
+  {
+    LOGGER.debug("RDS " + getDescription() + " status after wait#" + waitNum + ": " + dbInstance.getDBInstanceStatus()
+        + ", replica source: " + dbInstance.getReadReplicaSourceDBInstanceIdentifier());
+  }
+
+  /**
+   * Flags done if the instance is available and promoted, keeps waiting through the promotion states, else concludes
+   * with error.
+   */
+  @Override
+  protected void checkInstanceStatus(DBInstance dbInstance)
+  {
+    String instanceStatus = dbInstance.getDBInstanceStatus();
+    boolean promoted = StringUtils.isBlank(dbInstance.getReadReplicaSourceDBInstanceIdentifier());
+    if (expectedFinalState.equalsString(instanceStatus) && promoted)
+    {
+      LOGGER.info("RDS " + getDescription() + " is done");
+      done = true;
+      result = dbInstance;
+    }
+    else if (!isOneOfTheseStates(PROMOTE_INTERMEDIATE_STATES, instanceStatus))
+    {
+      LOGGER.error(logContext + getDescription() + ": Unexpected response status '" + instanceStatus + "'");
+      done = true;
+    }
+    //Else keep waiting.
+  }
+
+  /**
+   * True if the status is in the array.
+   */
+  private boolean isOneOfTheseStates(RdsInstanceStatus[] array, String status)
+  {
+    if (StringUtils.isNotBlank(status))
+    {
+      for (RdsInstanceStatus oneStatus : array)
+      {
+        if (oneStatus.equalsString(status))
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
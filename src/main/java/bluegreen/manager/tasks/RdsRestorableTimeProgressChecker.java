@@ -0,0 +1,142 @@
+package bluegreen.manager.tasks;
+
+import java.util.Date;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.rds.model.DBInstance;
+
+import bluegreen.manager.client.aws.RdsClient;
+import bluegreen.manager.utils.ProgressChecker;
+
+/**
+ * Checks progress of an RDS instance's automated backups toward a restore time, i.e. waits until the instance can be
+ * restored to that point in time.
+ * <p/>
+ * RDS uploads transaction logs every few minutes, so the instance's latestRestorableTime typically trails the current
+ * time by up to five minutes.
+ */
+public class RdsRestorableTimeProgressChecker implements ProgressChecker<DBInstance>
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(RdsRestorableTimeProgressChecker.class);
+
+  private String instanceId;
+  private Date restoreTime;
+  private String logContext;
+  private RdsClient rdsClient;
+  private DBInstance initialInstance;
+  private boolean done;
+  private DBInstance result;
+
+  public RdsRestorableTimeProgressChecker(String instanceId,
+                                          Date restoreTime,
+                                          String logContext,
+                                          RdsClient rdsClient,
+                                          DBInstance initialInstance)
+  {
+    this.instanceId = instanceId;
+    this.restoreTime = restoreTime;
+    this.logContext = logContext;
+    this.rdsClient = rdsClient;
+    this.initialInstance = initialInstance;
+  }
+
+  @Override
+  public String getDescription()
+  {
+    return "Restorable Time of Instance '" + instanceId + "' reaching " + restoreTime;
+  }
+
+  /**
+   * Checks the instance as described before waiting.  Instance without automated backups can never be restored to a
+   * point in time, so throws.
+   */
+  @Override
+  public void initialCheck()
+  {
+    checkInstanceId(initialInstance);
+    checkBackupsEnabled(initialInstance);
+    LOGGER.debug("Initial RDS " + getDescription() + ": latest restorable time " + initialInstance.getLatestRestorableTime());
+    checkRestorableTime(initialInstance);
+  }
+
+  /**
+   * Communicates with RDS for the updated latest restorable time.
+   */
+  @Override
+  public void followupCheck(int waitNum)
+  {
+    DBInstance dbInstance = rdsClient.describeInstance(instanceId);
+    checkInstanceId(dbInstance);
+    LOGGER.debug("RDS " + getDescription() + ": latest restorable time after wait#" + waitNum + ": "
+        + dbInstance.getLatestRestorableTime());
+    checkRestorableTime(dbInstance);
+  }
+
+  /**
+   * Asserts that the instance has the expected id.
+   */
+  private void checkInstanceId(DBInstance dbInstance)
+  {
+    final String responseInstanceId = dbInstance.getDBInstanceIdentifier();
+    if (!StringUtils.equals(instanceId, responseInstanceId))
+    {
+      throw new IllegalStateException(logContext + "We requested instance id '" + instanceId
+          + "' but RDS replied with identifier '" + responseInstanceId + "'");
+    }
+  }
+
+  /**
+   * Asserts that the instance keeps automated backups.
+   */
+  private void checkBackupsEnabled(DBInstance dbInstance)
+  {
+    Integer backupRetentionPeriod = dbInstance.getBackupRetentionPeriod();
+    if (backupRetentionPeriod == null || backupRetentionPeriod <= 0)
+    {
+      throw new IllegalStateException(logContext + "RDS instance '" + instanceId
+          + "' has automated backups disabled, cannot restore it to a point in time");
+    }
+  }
+
+  /**
+   * Flags done if the instance can be restored to the restore time.
+   */
+  private void checkRestorableTime(DBInstance dbInstance)
+  {
+    Date latestRestorableTime = dbInstance.getLatestRestorableTime();
+    if (latestRestorableTime != null && !latestRestorableTime.before(restoreTime))
+    {
+      LOGGER.info("RDS " + getDescription() + " is done");
+      done = true;
+      result = dbInstance;
+    }
+  }
+
+  @Override
+  public boolean isDone()
+  {
+    return done;
+  }
+
+  /**
+   * The instance whose latest restorable time has reached the restore time.  Null if still waiting or timeout.
+   */
+  @Override
+  public DBInstance getResult()
+  {
+    return result;
+  }
+
+  /**
+   * Simply logs the timeout and returns null.
+   */
+  @Override
+  public DBInstance timeout()
+  {
+    LOGGER.error(logContext + getDescription() + " failed to happen prior to timeout");
+    return null;
+  }
+}
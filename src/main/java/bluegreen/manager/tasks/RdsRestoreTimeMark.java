@@ -0,0 +1,28 @@
+package bluegreen.manager.tasks;
+
+import java.util.Date;
+
+/**
+ * The moment to which a point-in-time restore brings the stage database: a moment when the live env was frozen.
+ * Set by the {@link RdsSnapshotRestorePhase#POINT_IN_TIME_MARK} task of a job, and read by its
+ * {@link RdsSnapshotRestorePhase#POINT_IN_TIME_RESTORE} task.
+ * <p/>
+ * Thread-safe, since the two tasks may run on different threads of the job's task graph.
+ */
+public class RdsRestoreTimeMark
+{
+  private volatile Date restoreTime;
+
+  /**
+   * Returns the marked restore time, or null if not marked yet.
+   */
+  public Date getRestoreTime()
+  {
+    return restoreTime;
+  }
+
+  public void setRestoreTime(Date restoreTime)
+  {
+    this.restoreTime = restoreTime;
+  }
+}
@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 import com.amazonaws.services.rds.model.DBSnapshot;
 
 import bluegreen.manager.client.aws.RdsClient;
+import bluegreen.manager.utils.PercentProgressListener;
 
 /**
  * Common activities in checking progress of an RDS snapshot.
@@ -20,6 +21,7 @@ public abstract class RdsSnapshotProgressChecker
   protected RdsClient rdsClient;
   protected DBSnapshot initialSnapshot;
   protected boolean done;
+  private PercentProgressListener percentProgressListener;
 
   public RdsSnapshotProgressChecker(String snapshotId,
                                     String logContext,
@@ -40,6 +42,7 @@ public abstract class RdsSnapshotProgressChecker
   {
     LOGGER.debug("Initial RDS snapshot status: " + initialSnapshot.getStatus());
     checkSnapshotId(initialSnapshot);
+    reportPercentProgress(initialSnapshot);
     checkSnapshotStatus(initialSnapshot);
   }
 
@@ -51,10 +54,28 @@ public abstract class RdsSnapshotProgressChecker
   {
     DBSnapshot dbSnapshot = rdsClient.describeSnapshot(snapshotId);
     checkSnapshotId(dbSnapshot);
-    LOGGER.debug(logContext + "RDS snapshot status after wait#" + waitNum + ": " + dbSnapshot.getStatus());
+    LOGGER.debug(logContext + "RDS snapshot status after wait#" + waitNum + ": " + dbSnapshot.getStatus()
+        + ", percent progress: " + dbSnapshot.getPercentProgress());
+    reportPercentProgress(dbSnapshot);
     checkSnapshotStatus(dbSnapshot);
   }
 
+  /**
+   * Passes the snapshot's percent progress to the listener, if any.
+   */
+  private void reportPercentProgress(DBSnapshot dbSnapshot)
+  {
+    if (percentProgressListener != null && dbSnapshot.getPercentProgress() != null)
+    {
+      percentProgressListener.reportPercentProgress(dbSnapshot.getPercentProgress());
+    }
+  }
+
+  public void setPercentProgressListener(PercentProgressListener percentProgressListener)
+  {
+    this.percentProgressListener = percentProgressListener;
+  }
+
   /**
    * Asserts that the snapshot has the expected id.
    */
@@ -0,0 +1,84 @@
+package bluegreen.manager.tasks;
+
+/**
+ * Which part of the live-snapshot / stage-restore work an {@link RdsSnapshotRestoreTask} performs.
+ * <p/>
+ * Only the snapshot requires the live apps to be frozen, so a job can thaw between the two phases.
+ * <p/>
+ * The point-in-time phases skip the snapshot altogether: live only stays frozen long enough to mark a restore time,
+ * and the stage instance is restored from the live instance's automated backups as of that time.
+ * <p/>
+ * The replica phases skip the snapshot too: the stage instance starts out as a read replica of live, made before
+ * the freeze, and live only stays frozen while the replica catches up and is promoted.
+ */
+public enum RdsSnapshotRestorePhase
+{
+  /**
+   * Takes the live snapshot and waits til it is available.
+   */
+  SNAPSHOT(true, false, false, false),
+
+  /**
+   * Restores the existing live snapshot to the stage env.
+   */
+  RESTORE(false, true, false, false),
+
+  /**
+   * Snapshot and restore in a single task.
+   */
+  SNAPSHOT_AND_RESTORE(true, true, false, false),
+
+  /**
+   * Marks the current moment as the restore time.  Takes no snapshot.
+   */
+  POINT_IN_TIME_MARK(false, false, true, false),
+
+  /**
+   * Restores the live automated backups, as of the marked restore time, to the stage env.
+   */
+  POINT_IN_TIME_RESTORE(false, true, true, false),
+
+  /**
+   * Creates the stage instance as a read replica of live, with its own paramgroup, and waits til it is available.
+   * Does not need live to be frozen.
+   */
+  REPLICA_CREATE(false, true, false, true),
+
+  /**
+   * Waits for the stage replica to catch up with the frozen live instance, then promotes it to a standalone instance.
+   */
+  REPLICA_PROMOTE(false, false, false, true);
+
+  private boolean snapshot;
+  private boolean restore;
+  private boolean pointInTime;
+  private boolean replica;
+
+  RdsSnapshotRestorePhase(boolean snapshot, boolean restore, boolean pointInTime, boolean replica)
+  {
+    this.snapshot = snapshot;
+    this.restore = restore;
+    this.pointInTime = pointInTime;
+    this.replica = replica;
+  }
+
+  public boolean includesSnapshot()
+  {
+    return snapshot;
+  }
+
+  public boolean includesRestore()
+  {
+    return restore;
+  }
+
+  public boolean isPointInTime()
+  {
+    return pointInTime;
+  }
+
+  public boolean isReplica()
+  {
+    return replica;
+  }
+}
@@ -1,6 +1,7 @@
 package bluegreen.manager.tasks;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -13,7 +14,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.rds.model.DBInstance;
@@ -27,6 +30,8 @@ import bluegreen.manager.client.aws.RdsClientFactory;
 import bluegreen.manager.client.aws.RdsInstanceStatus;
 import bluegreen.manager.client.aws.RdsSnapshotBluegreenId;
 import bluegreen.manager.client.aws.RdsSnapshotStatus;
+import bluegreen.manager.client.db.MysqlClient;
+import bluegreen.manager.client.db.MysqlClientFactory;
 import bluegreen.manager.model.domain.DatabaseType;
 import bluegreen.manager.model.domain.Environment;
 import bluegreen.manager.model.domain.LogicalDatabase;
@@ -34,9 +39,12 @@ import bluegreen.manager.model.domain.PhysicalDatabase;
 import bluegreen.manager.model.domain.TaskStatus;
 import bluegreen.manager.model.tx.EnvironmentHelper;
 import bluegreen.manager.model.tx.EnvironmentTx;
+import bluegreen.manager.model.tx.TaskHistoryTx;
+import bluegreen.manager.utils.PredictivePollSchedule;
 import bluegreen.manager.utils.ThreadSleeper;
 import bluegreen.manager.utils.Waiter;
 import bluegreen.manager.utils.WaiterParameters;
+import bluegreen.manager.utils.WaiterScheduler;
 
 /**
  * Takes a snapshot of the live RDS instance and restores it in the new staging environment.
@@ -47,13 +55,37 @@ import bluegreen.manager.utils.WaiterParameters;
  * And an additional assumption that the paramgroup has a read_only parameter.
  * <p/>
  * Pre-existing stage environment is an error, because this is the task that initially creates the stage env.
+ * <p/>
+ * The work can be split across two tasks in the same job (see {@link RdsSnapshotRestorePhase}), so that the live env
+ * only needs to stay frozen while the snapshot is being taken.  Prototype scope lets a job hold one task per phase.
+ * <p/>
+ * Records a checkpoint after each long step, so a retry of a failed job resumes after the last durable checkpoint
+ * instead of taking a new snapshot and restoring all over again.
+ * <p/>
+ * Alternatively the point-in-time phases restore the live automated backups instead of a snapshot, so the live env
+ * only needs to stay frozen long enough to mark the restore time.  Or the replica phases create the stage instance as
+ * a read replica of live before the freeze, so the live env only stays frozen while the replica catches up and is
+ * promoted.
  */
 @Lazy
 @Component
-public class RdsSnapshotRestoreTask extends TaskImpl
+@Scope("prototype")
+public class RdsSnapshotRestoreTask extends TaskImpl implements CheckpointedTask
 {
   private static final Pattern JDBC_URL = Pattern.compile("(jdbc:mysql://)([^:/]+)(.*)");
 
+  /**
+   * Checkpoint names.  Values are the snapshot id, restore time (epoch milliseconds), stage paramgroup name, or stage
+   * instance id.
+   */
+  static final String CHECKPOINT_SNAPSHOT_AVAILABLE = "snapshotAvailable";
+  static final String CHECKPOINT_RESTORE_TIME_MARKED = "restoreTimeMarked";
+  static final String CHECKPOINT_PARAMGROUP_COPIED = "paramGroupCopied";
+  static final String CHECKPOINT_RESTORE_REQUESTED = "restoreRequested";
+  static final String CHECKPOINT_PARAMGROUP_APPLIED = "paramGroupApplied";
+  static final String CHECKPOINT_REBOOT_ISSUED = "rebootIssued";
+  static final String CHECKPOINT_PROMOTE_REQUESTED = "promoteRequested";
+
   private static final Logger LOGGER = LoggerFactory.getLogger(RdsSnapshotRestoreTask.class);
 
   @Autowired
@@ -69,15 +101,49 @@ public class RdsSnapshotRestoreTask extends TaskImpl
   @Autowired
   private RdsAnalyzer rdsAnalyzer;
 
+  @Autowired
+  private MysqlClientFactory mysqlClientFactory;
+
   @Autowired
   private ThreadSleeper threadSleeper;
 
+  @Autowired
+  private WaiterScheduler waiterScheduler;
+
   @Autowired
   private EnvironmentHelper environmentHelper;
 
+  @Autowired
+  private TaskHistoryTx taskHistoryTx;
+
+  /**
+   * Predictive polling of the snapshot and restore waits: tightest poll delay.  Set maxDelay to zero to disable
+   * predictive polling and use the configured waiterParameters instead.
+   */
+  @Value("${bluegreen.waiter.rdsSnapshotRestoreTask.predictive.minDelayMilliseconds}")
+  private long predictiveMinDelayMilliseconds;
+
+  @Value("${bluegreen.waiter.rdsSnapshotRestoreTask.predictive.maxDelayMilliseconds}")
+  private long predictiveMaxDelayMilliseconds;
+
+  /**
+   * Predictive polling: how long before the predicted finish to start polling tightly.
+   */
+  @Value("${bluegreen.waiter.rdsSnapshotRestoreTask.predictive.leadMilliseconds}")
+  private long predictiveLeadMilliseconds;
+
+  /**
+   * Point-in-time restore: how long to hold the freeze past the marked restore time, by the live database clock.
+   */
+  @Value("${bluegreen.stagingDeploy.pointInTimeRestore.marginMilliseconds}")
+  private long restoreTimeMarginMilliseconds;
+
   private String liveEnvName;
   private String stageEnvName;
   private Map<String, String> dbMap; //Maps liveLogicalName to new stagePhysicalInstanceName
+  private RdsSnapshotRestorePhase phase;
+  private RdsRestoreTimeMark restoreTimeMark; //Shared by the point-in-time phases of a job
+  private TaskCheckpoints checkpoints = TaskCheckpoints.inMemory();
 
   private Environment liveEnv;
   private LogicalDatabase liveLogicalDatabase;
@@ -86,23 +152,86 @@ public class RdsSnapshotRestoreTask extends TaskImpl
   private LogicalDatabase stageLogicalDatabase;
   private PhysicalDatabase stagePhysicalDatabase;
   private RdsClient rdsClient;
+  private long typicalRestoreMilliseconds; //Measured in past successful runs against the same live env, or 0 if none
+  private long restoreRequestedMilliseconds; //When this run requested the restore, or 0 if it resumed after that
 
   /**
    * @param dbMap Maps live logical dbname to new stage physical dbname.
    */
   public Task assign(int position, String liveEnvName, String stageEnvName, Map<String, String> dbMap)
+  {
+    return assign(position, liveEnvName, stageEnvName, dbMap, RdsSnapshotRestorePhase.SNAPSHOT_AND_RESTORE);
+  }
+
+  /**
+   * @param dbMap Maps live logical dbname to new stage physical dbname.
+   * @param phase Which part of the snapshot/restore work this task performs.
+   */
+  public Task assign(int position, String liveEnvName, String stageEnvName, Map<String, String> dbMap,
+                     RdsSnapshotRestorePhase phase)
+  {
+    return assign(position, liveEnvName, stageEnvName, dbMap, phase, null);
+  }
+
+  /**
+   * @param dbMap           Maps live logical dbname to new stage physical dbname.
+   * @param phase           Which part of the snapshot/restore work this task performs.
+   * @param restoreTimeMark Restore time shared by the point-in-time phase tasks of the job.  Required by those phases.
+   */
+  public Task assign(int position, String liveEnvName, String stageEnvName, Map<String, String> dbMap,
+                     RdsSnapshotRestorePhase phase, RdsRestoreTimeMark restoreTimeMark)
   {
     if (StringUtils.equals(liveEnvName, stageEnvName))
     {
       throw new IllegalArgumentException("Live env must be different from stage env, cannot target env '" + liveEnvName + "' for both");
     }
+    if (phase.isPointInTime() && restoreTimeMark == null)
+    {
+      throw new IllegalArgumentException("Phase " + phase + " requires a restore time mark");
+    }
     super.assign(position);
     this.liveEnvName = liveEnvName;
     this.stageEnvName = stageEnvName;
     this.dbMap = dbMap;
+    this.phase = phase;
+    this.restoreTimeMark = restoreTimeMark;
     return this;
   }
 
+  @Override
+  public void setCheckpoints(TaskCheckpoints checkpoints)
+  {
+    this.checkpoints = checkpoints;
+  }
+
+  /**
+   * A skipped mark phase hands on the restore time it marked in the prior run, so the restore phase does not need the
+   * job to be forced.
+   */
+  @Override
+  public void setSkippedCheckpoints(TaskCheckpoints checkpoints)
+  {
+    this.checkpoints = checkpoints;
+    if (phase == RdsSnapshotRestorePhase.POINT_IN_TIME_MARK && checkpoints.isReached(CHECKPOINT_RESTORE_TIME_MARKED))
+    {
+      restoreTimeMark.setRestoreTime(getCheckpointedRestoreTime());
+    }
+  }
+
+  /**
+   * Task name is qualified by phase when the work is split, so task history (and typical durations) of the two
+   * phases are kept apart.
+   */
+  @Override
+  public String getName()
+  {
+    if (phase == null || phase == RdsSnapshotRestorePhase.SNAPSHOT_AND_RESTORE)
+    {
+      return super.getName();
+    }
+    return super.getName() + "-" + phase.name().toLowerCase();
+  }
+
   /**
    * Loads datamodel entities and asserts preconditions on them.  These assertions should be true at the moment when
    * this task is about to begin processing.
@@ -236,12 +365,13 @@ public class RdsSnapshotRestoreTask extends TaskImpl
   }
 
   /**
-   * Checks that stage env does not exist yet.
+   * Checks that stage env does not exist yet, or exists without databases.  (A parallel branch of the job may have
+   * created the stage env to hold its new applicationVm.)
    */
   private void checkNoStageEnvironment()
   {
     Environment stageEnv = environmentTx.findNamedEnvAllowNull(stageEnvName);
-    if (stageEnv != null)
+    if (stageEnv != null && CollectionUtils.isNotEmpty(stageEnv.getLogicalDatabases()))
     {
       throw new IllegalStateException(stageContext() + "Stage env exists already, with "
           + CollectionUtils.size(stageEnv.getLogicalDatabases()) + " logical databases ["
@@ -277,22 +407,129 @@ public class RdsSnapshotRestoreTask extends TaskImpl
   }
 
   /**
-   * Takes a snapshot of the live RDS instance and restores it in the new staging environment.
+   * Takes a snapshot of the live RDS instance and/or restores it in the new staging environment, depending on phase.
+   * Or in the point-in-time phases, marks a restore time and/or restores the live instance as of that time.
+   * Or in the replica phases, creates the stage instance as a live replica, or promotes it.
    */
   @Override
   public TaskStatus process(boolean noop)
   {
     loadDataModel();
     rdsClient = rdsClientFactory.create();
-    DBInstance liveInstance = describeLiveInstance();
-    deletePriorLiveSnapshot(noop);
-    DBSnapshot dbSnapshot = snapshotLive(noop);
-    DBParameterGroup stageParamGroup = copyParameterGroup(liveInstance, noop);
-    DBInstance stageInstance = restoreStage(dbSnapshot, stageParamGroup, liveInstance, noop);
-    persistModel(stageInstance, noop);
+    initPrediction();
+    DBInstance liveInstance = phase.includesRestore() ? describeLiveInstance() : null;
+    if (phase.isPointInTime())
+    {
+      processPointInTime(liveInstance, noop);
+    }
+    else if (phase.isReplica())
+    {
+      processReplica(liveInstance, noop);
+    }
+    else
+    {
+      processSnapshot(liveInstance, noop);
+    }
     return noop ? TaskStatus.NOOP : TaskStatus.DONE;
   }
 
+  /**
+   * Takes the live snapshot (or finds the one already taken), then restores it to stage, depending on phase.
+   */
+  private void processSnapshot(DBInstance liveInstance, boolean noop)
+  {
+    DBSnapshot dbSnapshot = null;
+    if (phase.includesSnapshot() && checkpoints.isReached(CHECKPOINT_SNAPSHOT_AVAILABLE))
+    {
+      logResume(CHECKPOINT_SNAPSHOT_AVAILABLE);
+      dbSnapshot = findAvailableLiveSnapshot(noop);
+    }
+    else if (phase.includesSnapshot())
+    {
+      deletePriorLiveSnapshot(noop);
+      dbSnapshot = snapshotLive(noop);
+    }
+    else
+    {
+      dbSnapshot = findAvailableLiveSnapshot(noop);
+    }
+    if (phase.includesRestore())
+    {
+      DBParameterGroup stageParamGroup = copyParameterGroup(liveInstance, noop);
+      DBInstance stageInstance = restoreStage(dbSnapshot, stageParamGroup, liveInstance, noop);
+      persistModel(stageInstance, noop);
+    }
+  }
+
+  /**
+   * Marks the restore time, or restores the live instance to stage as of the marked time, depending on phase.
+   */
+  private void processPointInTime(DBInstance liveInstance, boolean noop)
+  {
+    if (!phase.includesRestore())
+    {
+      markRestoreTime(noop);
+    }
+    else
+    {
+      Date restoreTime = findMarkedRestoreTime(noop);
+      DBParameterGroup stageParamGroup = copyParameterGroup(liveInstance, noop);
+      DBInstance stageInstance = restoreStage(null, restoreTime, stageParamGroup, liveInstance, noop);
+      persistModel(stageInstance, noop);
+    }
+  }
+
+  /**
+   * Logs that a step is skipped because a prior run of the task already got past the checkpoint.
+   */
+  private void logResume(String checkpointName)
+  {
+    LOGGER.info(liveContext() + "Resuming after checkpoint '" + checkpointName + "': "
+        + checkpoints.getValue(checkpointName));
+  }
+
+  /**
+   * Looks up how long the restore typically takes against the live env, as measured by the checkpoints of past runs:
+   * from restore requested til the restored instance is available with its paramgroup applied.
+   */
+  void initPrediction()
+  {
+    restoreRequestedMilliseconds = 0;
+    if (isPredictive())
+    {
+      typicalRestoreMilliseconds = taskHistoryTx.findTypicalCheckpointSpanMilliseconds(getName(), liveEnvName,
+          CHECKPOINT_RESTORE_REQUESTED, CHECKPOINT_PARAMGROUP_APPLIED);
+      LOGGER.debug(liveContext() + "Typical restore duration of past runs: " + typicalRestoreMilliseconds + "ms");
+    }
+  }
+
+  private boolean isPredictive()
+  {
+    return predictiveMaxDelayMilliseconds > 0;
+  }
+
+  /**
+   * Returns a fresh predictive schedule whose expected duration is the given number of milliseconds from now,
+   * or null if predictive polling is disabled.
+   */
+  private PredictivePollSchedule makePredictivePollSchedule(long expectedDurationMilliseconds)
+  {
+    if (!isPredictive())
+    {
+      return null;
+    }
+    return new PredictivePollSchedule(Math.max(0, expectedDurationMilliseconds), predictiveMinDelayMilliseconds,
+        predictiveMaxDelayMilliseconds, predictiveLeadMilliseconds);
+  }
+
+  /**
+   * Returns waiterParameters using the given schedule, or the configured waiterParameters if schedule is null.
+   */
+  private WaiterParameters waiterParametersFor(PredictivePollSchedule pollSchedule)
+  {
+    return pollSchedule == null ? waiterParameters : waiterParameters.copyWithPollSchedule(pollSchedule);
+  }
+
   /**
    * Gets current info on the live database physical instance.
    * <p/>
@@ -361,7 +598,7 @@ public class RdsSnapshotRestoreTask extends TaskImpl
     RdsSnapshotDeletedProgressChecker progressChecker = new RdsSnapshotDeletedProgressChecker(snapshotId, liveContext(), rdsClient,
         initialSnapshot);
     Waiter<Boolean> waiter = new Waiter(waiterParameters, threadSleeper, progressChecker);
-    Boolean done = waiter.waitTilDone();
+    Boolean done = waiterScheduler.waitTilDone(waiter);
     if (done == null || !done)
     {
       throw new RuntimeException(liveContext() + "Snapshot was not deleted");
@@ -381,10 +618,179 @@ public class RdsSnapshotRestoreTask extends TaskImpl
       String snapshotId = makeSnapshotId();
       dbSnapshot = rdsClient.createSnapshot(snapshotId, livePhysicalDatabase.getInstanceName());
       dbSnapshot = waitTilSnapshotIsAvailable(snapshotId, dbSnapshot);
+      checkpoints.reach(CHECKPOINT_SNAPSHOT_AVAILABLE, snapshotId);
+    }
+    return dbSnapshot;
+  }
+
+  /**
+   * Looks up the live snapshot taken by the snapshot phase (or by a prior run of this task), and requires it to be
+   * available.
+   */
+  DBSnapshot findAvailableLiveSnapshot(boolean noop)
+  {
+    LOGGER.info(liveContext() + "Looking up existing snapshot of live RDS instance" + noopRemark(noop));
+    if (noop)
+    {
+      return null;
+    }
+    String snapshotId = makeSnapshotId();
+    DBSnapshot dbSnapshot = rdsClient.describeSnapshot(snapshotId);
+    if (!RdsSnapshotStatus.AVAILABLE.equalsString(dbSnapshot.getStatus()))
+    {
+      throw new IllegalStateException(liveContext() + "Snapshot '" + snapshotId + "' has status " + dbSnapshot.getStatus()
+          + ", expected it to be available after the snapshot was taken");
     }
     return dbSnapshot;
   }
 
+  /**
+   * Marks the restore time for a later point-in-time restore.  The live env is frozen, so the live database is
+   * consistent as of any moment from now until thaw.
+   * <p/>
+   * Reads the time from the live database, whose clock stamps the binlog that RDS restores from, so this host's clock
+   * does not matter.  Marks the database's next whole second, since RDS restore times are not finer than that, and
+   * holds the freeze til that second plus a margin has passed before returning (and letting the job thaw).  Records
+   * the mark as a checkpoint, so a retry that skips this task can still hand it on to the restore phase.
+   */
+  void markRestoreTime(boolean noop)
+  {
+    LOGGER.info(liveContext() + "Marking restore time of live RDS instance" + noopRemark(noop));
+    if (!noop)
+    {
+      Date serverTime = mysqlClientFactory.create(livePhysicalDatabase).getServerTime();
+      Date restoreTime = new Date((serverTime.getTime() / 1000L + 1L) * 1000L);
+      long holdMilliseconds = restoreTime.getTime() - serverTime.getTime() + restoreTimeMarginMilliseconds;
+      LOGGER.info(liveContext() + "Live database time is " + serverTime + ", marking restore time " + restoreTime
+          + " and holding the freeze for " + holdMilliseconds + "ms");
+      try
+      {
+        threadSleeper.sleep(holdMilliseconds);
+      }
+      catch (InterruptedException e)
+      {
+        throw new RuntimeException(liveContext() + "Interrupted while marking restore time", e);
+      }
+      restoreTimeMark.setRestoreTime(restoreTime);
+      checkpoints.reach(CHECKPOINT_RESTORE_TIME_MARKED, Long.toString(restoreTime.getTime()));
+      LOGGER.info(liveContext() + "Marked restore time " + restoreTime);
+    }
+  }
+
+  /**
+   * Returns the restore time marked by the mark phase, or used by a prior run of this task.  Records it as a
+   * checkpoint of this task too, so a retry resumes the restore with the same time.
+   */
+  Date findMarkedRestoreTime(boolean noop)
+  {
+    if (checkpoints.isReached(CHECKPOINT_RESTORE_TIME_MARKED))
+    {
+      logResume(CHECKPOINT_RESTORE_TIME_MARKED);
+      return getCheckpointedRestoreTime();
+    }
+    Date restoreTime = restoreTimeMark.getRestoreTime();
+    if (!noop)
+    {
+      if (restoreTime == null)
+      {
+        throw new IllegalStateException(liveContext() + "No restore time was marked while the live env was frozen, "
+            + "you must run this job again with force so the live env is frozen and marked again");
+      }
+      checkpoints.reach(CHECKPOINT_RESTORE_TIME_MARKED, Long.toString(restoreTime.getTime()));
+    }
+    return restoreTime;
+  }
+
+  private Date getCheckpointedRestoreTime()
+  {
+    return new Date(Long.parseLong(checkpoints.getValue(CHECKPOINT_RESTORE_TIME_MARKED)));
+  }
+
+  /**
+   * Creates the stage replica, or promotes it and registers the stage database, depending on phase.
+   * <p/>
+   * The stage database is not registered until promotion, since until then it is only a copy of live.
+   */
+  private void processReplica(DBInstance liveInstance, boolean noop)
+  {
+    if (phase.includesRestore())
+    {
+      DBParameterGroup stageParamGroup = copyParameterGroup(liveInstance, noop);
+      restoreStage(null, null, stageParamGroup, liveInstance, noop);
+    }
+    else
+    {
+      DBInstance stageInstance = promoteStageReplica(noop);
+      persistModel(stageInstance, noop);
+    }
+  }
+
+  /**
+   * Waits for the stage replica to catch up with the frozen live instance, then promotes it and waits til it is an
+   * available standalone instance.  When resuming after the promote request, just waits.
+   */
+  DBInstance promoteStageReplica(boolean noop)
+  {
+    LOGGER.info(stageContext() + "Promoting read replica to standalone stage RDS instance" + noopRemark(noop));
+    if (!noop)
+    {
+      String stagePhysicalInstanceName = dbMap.get(liveLogicalDatabase.getLogicalName());
+      initModel(stagePhysicalInstanceName);
+      DBInstance promotedInstance = null;
+      if (checkpoints.isReached(CHECKPOINT_PROMOTE_REQUESTED))
+      {
+        promotedInstance = describeResumedStageInstance(CHECKPOINT_PROMOTE_REQUESTED, stagePhysicalInstanceName);
+      }
+      else
+      {
+        waitTilReplicaCaughtUp(stagePhysicalInstanceName, rdsClient.describeInstance(stagePhysicalInstanceName));
+        promotedInstance = rdsClient.promoteReadReplica(stagePhysicalInstanceName);
+        checkpoints.reach(CHECKPOINT_PROMOTE_REQUESTED, stagePhysicalInstanceName);
+      }
+      return waitTilReplicaIsPromoted(stagePhysicalInstanceName, promotedInstance);
+    }
+    return null;
+  }
+
+  /**
+   * Creates a Waiter using a replica lag progress checker, and returns when the replica has executed every write that
+   * live committed before the freeze.  The replica is reached with the live credentials, which it copied from live.
+   * In case of error or timeout, throws.
+   */
+  private void waitTilReplicaCaughtUp(String instanceId, DBInstance initialInstance)
+  {
+    LOGGER.info(liveContext() + "Waiting for stage replica to catch up with live");
+    MysqlClient liveDbClient = mysqlClientFactory.create(livePhysicalDatabase);
+    MysqlClient replicaDbClient = mysqlClientFactory.create(livePhysicalDatabase,
+        makeStagePhysicalUrl(livePhysicalDatabase.getUrl(), initialInstance.getEndpoint().getAddress()));
+    RdsReplicaLagProgressChecker progressChecker = new RdsReplicaLagProgressChecker(instanceId,
+        livePhysicalDatabase.getInstanceName(), liveContext(), rdsClient, rdsAnalyzer, liveDbClient, replicaDbClient,
+        initialInstance);
+    Waiter<DBInstance> waiter = new Waiter(waiterParameters, threadSleeper, progressChecker);
+    if (waiterScheduler.waitTilDone(waiter) == null)
+    {
+      throw new RuntimeException(liveContext() + progressChecker.getDescription() + " did not happen");
+    }
+  }
+
+  /**
+   * Creates a Waiter using a replica promote progress checker, and returns the final DBInstance when waiting is done.
+   * In case of error - never returns null, throws instead.
+   */
+  private DBInstance waitTilReplicaIsPromoted(String instanceId, DBInstance initialInstance)
+  {
+    LOGGER.info(liveContext() + "Waiting for stage replica to be promoted");
+    RdsReplicaPromoteProgressChecker progressChecker = new RdsReplicaPromoteProgressChecker(instanceId, liveContext(),
+        rdsClient, initialInstance);
+    Waiter<DBInstance> waiter = new Waiter(waiterParameters, threadSleeper, progressChecker);
+    DBInstance dbInstance = waiterScheduler.waitTilDone(waiter);
+    if (dbInstance == null)
+    {
+      throw new RuntimeException(liveContext() + progressChecker.getDescription() + " did not become available");
+    }
+    return dbInstance;
+  }
+
   String makeSnapshotId()
   {
     RdsSnapshotBluegreenId id = new RdsSnapshotBluegreenId(liveEnv.getEnvName(), liveLogicalDatabase.getLogicalName(),
@@ -401,8 +807,10 @@ public class RdsSnapshotRestoreTask extends TaskImpl
     LOGGER.info(liveContext() + "Waiting for snapshot to become available");
     RdsSnapshotAvailableProgressChecker progressChecker = new RdsSnapshotAvailableProgressChecker(snapshotId, liveContext(), rdsClient,
         initialSnapshot);
-    Waiter<DBSnapshot> waiter = new Waiter(waiterParameters, threadSleeper, progressChecker);
-    DBSnapshot dbSnapshot = waiter.waitTilDone();
+    PredictivePollSchedule pollSchedule = makePredictivePollSchedule(0); //Snapshot reports its own percent progress
+    progressChecker.setPercentProgressListener(pollSchedule);
+    Waiter<DBSnapshot> waiter = new Waiter(waiterParametersFor(pollSchedule), threadSleeper, progressChecker);
+    DBSnapshot dbSnapshot = waiterScheduler.waitTilDone(waiter);
     if (dbSnapshot == null)
     {
       throw new RuntimeException(liveContext() + "Snapshot did not become available");
@@ -411,10 +819,15 @@ public class RdsSnapshotRestoreTask extends TaskImpl
   }
 
   /**
-   * Makes a copy of the live instance's parameter group.
+   * Makes a copy of the live instance's parameter group.  If resuming after the copy, just refers to it by name.
    */
   private DBParameterGroup copyParameterGroup(DBInstance liveInstance, boolean noop)
   {
+    if (checkpoints.isReached(CHECKPOINT_PARAMGROUP_COPIED))
+    {
+      logResume(CHECKPOINT_PARAMGROUP_COPIED);
+      return new DBParameterGroup().withDBParameterGroupName(checkpoints.getValue(CHECKPOINT_PARAMGROUP_COPIED));
+    }
     String stagePhysicalInstanceName = dbMap.get(liveLogicalDatabase.getLogicalName());
     String liveParamGroupName = rdsAnalyzer.findSelfNamedOrDefaultParamGroupName(liveInstance);
     String stageParamGroupName = makeStageParamGroupName(liveParamGroupName,
@@ -423,7 +836,9 @@ public class RdsSnapshotRestoreTask extends TaskImpl
         + "' to stage parameter group '" + stageParamGroupName + "'" + noopRemark(noop));
     if (!noop)
     {
-      return rdsClient.copyParameterGroup(liveParamGroupName, stageParamGroupName);
+      DBParameterGroup stageParamGroup = rdsClient.copyParameterGroup(liveParamGroupName, stageParamGroupName);
+      checkpoints.reach(CHECKPOINT_PARAMGROUP_COPIED, stageParamGroupName);
+      return stageParamGroup;
     }
     else
     {
@@ -452,36 +867,130 @@ public class RdsSnapshotRestoreTask extends TaskImpl
     }
   }
 
+  DBInstance restoreStage(DBSnapshot dbSnapshot,
+                          DBParameterGroup stageParamGroup,
+                          DBInstance liveInstance,
+                          boolean noop)
+  {
+    return restoreStage(dbSnapshot, null, stageParamGroup, liveInstance, noop);
+  }
+
   /**
-   * Restores the live snapshot into the new staging environment.
+   * Restores the live snapshot into the new staging environment, or if restoreTime is given then restores the live
+   * automated backups as of that time.  In the replica phases, creates a live read replica instead.
    * Then makes a few small modifications that restore would not do automatically (paramgroup and security group).
    * Reboots the db so the paramgroup modification will take effect.
    * Returns the rebooted instance.
+   * <p/>
+   * When resuming, skips the requests that a prior run already got through, and picks up waiting on the instance.
    */
   DBInstance restoreStage(DBSnapshot dbSnapshot,
+                          Date restoreTime,
                           DBParameterGroup stageParamGroup,
                           DBInstance liveInstance,
                           boolean noop)
   {
-    LOGGER.info(liveContext() + "Restoring snapshot to new stage RDS instance" + noopRemark(noop));
+    LOGGER.info(liveContext() + describeRestore(restoreTime) + noopRemark(noop));
     if (!noop)
     {
       String stagePhysicalInstanceName = dbMap.get(liveLogicalDatabase.getLogicalName());
       initModel(stagePhysicalInstanceName);
-      String subnetGroupName = getSubnetGroupName(liveInstance);
-      DBInstance stageInstance = rdsClient.restoreInstanceFromSnapshot(stagePhysicalInstanceName,
-          dbSnapshot.getDBSnapshotIdentifier(), subnetGroupName);
-      stageInstance = waitTilInstanceIsAvailable(stagePhysicalInstanceName, stageInstance, RdsInstanceStatus.CREATING);
-      DBInstance modifiedInstance = modifyInstance(stageInstance, stageParamGroup, liveInstance);
-      modifiedInstance = waitTilParamGroupIsPendingReboot(stagePhysicalInstanceName, modifiedInstance, stageParamGroup,
-          RdsInstanceStatus.MODIFYING);
-      DBInstance rebootedInstance = rebootInstance(modifiedInstance);
+      DBInstance rebootedInstance = null;
+      if (checkpoints.isReached(CHECKPOINT_REBOOT_ISSUED))
+      {
+        rebootedInstance = describeResumedStageInstance(CHECKPOINT_REBOOT_ISSUED, stagePhysicalInstanceName);
+      }
+      else
+      {
+        DBInstance modifiedInstance = null;
+        if (checkpoints.isReached(CHECKPOINT_PARAMGROUP_APPLIED))
+        {
+          modifiedInstance = describeResumedStageInstance(CHECKPOINT_PARAMGROUP_APPLIED, stagePhysicalInstanceName);
+        }
+        else
+        {
+          DBInstance stageInstance = null;
+          if (checkpoints.isReached(CHECKPOINT_RESTORE_REQUESTED))
+          {
+            stageInstance = describeResumedStageInstance(CHECKPOINT_RESTORE_REQUESTED, stagePhysicalInstanceName);
+          }
+          else
+          {
+            stageInstance = requestRestore(dbSnapshot, restoreTime, stagePhysicalInstanceName, liveInstance);
+            checkpoints.reach(CHECKPOINT_RESTORE_REQUESTED, stagePhysicalInstanceName);
+            restoreRequestedMilliseconds = threadSleeper.currentTimeMillis();
+          }
+          stageInstance = waitTilInstanceIsAvailable(stagePhysicalInstanceName, stageInstance, RdsInstanceStatus.CREATING);
+          modifiedInstance = modifyInstance(stageInstance, stageParamGroup, liveInstance);
+          modifiedInstance = waitTilParamGroupIsPendingReboot(stagePhysicalInstanceName, modifiedInstance, stageParamGroup,
+              RdsInstanceStatus.MODIFYING);
+          checkpoints.reach(CHECKPOINT_PARAMGROUP_APPLIED, stageParamGroup.getDBParameterGroupName());
+        }
+        rebootedInstance = rebootInstance(modifiedInstance);
+        checkpoints.reach(CHECKPOINT_REBOOT_ISSUED, stagePhysicalInstanceName);
+      }
       rebootedInstance = waitTilInstanceIsAvailable(stagePhysicalInstanceName, rebootedInstance, RdsInstanceStatus.REBOOTING);
       return rebootedInstance;
     }
     return null;
   }
 
+  private String describeRestore(Date restoreTime)
+  {
+    if (phase.isReplica())
+    {
+      return "Creating read replica of live as new stage RDS instance";
+    }
+    return "Restoring " + (restoreTime == null ? "snapshot" : "live as of " + restoreTime) + " to new stage RDS instance";
+  }
+
+  /**
+   * Requests restore of the snapshot, or of the live instance as of restoreTime once RDS can restore to that time.
+   * In the replica phases, requests a live read replica instead.
+   */
+  private DBInstance requestRestore(DBSnapshot dbSnapshot, Date restoreTime, String stagePhysicalInstanceName,
+                                    DBInstance liveInstance)
+  {
+    if (phase.isReplica())
+    {
+      return rdsClient.createReadReplica(stagePhysicalInstanceName, livePhysicalDatabase.getInstanceName());
+    }
+    String subnetGroupName = getSubnetGroupName(liveInstance);
+    if (restoreTime == null)
+    {
+      return rdsClient.restoreInstanceFromSnapshot(stagePhysicalInstanceName,
+          dbSnapshot.getDBSnapshotIdentifier(), subnetGroupName);
+    }
+    waitTilRestorable(liveInstance, restoreTime);
+    return rdsClient.restoreInstanceToPointInTime(livePhysicalDatabase.getInstanceName(), stagePhysicalInstanceName,
+        restoreTime, subnetGroupName);
+  }
+
+  /**
+   * Creates a Waiter using a restorable time progress checker, and returns when the live instance can be restored to
+   * restoreTime.  In case of error or timeout, throws.
+   */
+  private void waitTilRestorable(DBInstance liveInstance, Date restoreTime)
+  {
+    LOGGER.info(liveContext() + "Waiting for live automated backups to reach restore time");
+    RdsRestorableTimeProgressChecker progressChecker = new RdsRestorableTimeProgressChecker(
+        livePhysicalDatabase.getInstanceName(), restoreTime, liveContext(), rdsClient, liveInstance);
+    Waiter<DBInstance> waiter = new Waiter(waiterParameters, threadSleeper, progressChecker);
+    if (waiterScheduler.waitTilDone(waiter) == null)
+    {
+      throw new RuntimeException(liveContext() + progressChecker.getDescription() + " did not happen");
+    }
+  }
+
+  /**
+   * Gets current info on the stage instance that a prior run of this task already worked on.
+   */
+  private DBInstance describeResumedStageInstance(String checkpointName, String stagePhysicalInstanceName)
+  {
+    logResume(checkpointName);
+    return rdsClient.describeInstance(stagePhysicalInstanceName);
+  }
+
   /**
    * Returns the instance's subnet group name, or null if none.
    */
@@ -504,8 +1013,16 @@ public class RdsSnapshotRestoreTask extends TaskImpl
     LOGGER.info(liveContext() + "Waiting for instance to become available");
     RdsInstanceProgressChecker progressChecker = new RdsInstanceProgressChecker(instanceId, liveContext(), rdsClient,
         initialInstance, expectedInitialState);
-    Waiter<DBInstance> waiter = new Waiter(waiterParameters, threadSleeper, progressChecker);
-    DBInstance dbInstance = waiter.waitTilDone();
+    PredictivePollSchedule pollSchedule = null;
+    if (expectedInitialState == RdsInstanceStatus.CREATING && typicalRestoreMilliseconds > 0
+        && restoreRequestedMilliseconds > 0)
+    {
+      //Measured span includes the paramgroup apply after the restore, so it errs late, which maxDelay bounds
+      pollSchedule = makePredictivePollSchedule(
+          typicalRestoreMilliseconds - (threadSleeper.currentTimeMillis() - restoreRequestedMilliseconds));
+    }
+    Waiter<DBInstance> waiter = new Waiter(waiterParametersFor(pollSchedule), threadSleeper, progressChecker);
+    DBInstance dbInstance = waiterScheduler.waitTilDone(waiter);
     if (dbInstance == null)
     {
       throw new RuntimeException(liveContext() + progressChecker.getDescription() + " did not become available");
@@ -525,7 +1042,7 @@ public class RdsSnapshotRestoreTask extends TaskImpl
     RdsInstanceParamGroupProgressChecker progressChecker = new RdsInstanceParamGroupProgressChecker(instanceId,
         stageParamGroup.getDBParameterGroupName(), liveContext(), rdsClient, rdsAnalyzer, initialInstance, expectedInitialState);
     Waiter<DBInstance> waiter = new Waiter(waiterParameters, threadSleeper, progressChecker);
-    DBInstance dbInstance = waiter.waitTilDone();
+    DBInstance dbInstance = waiterScheduler.waitTilDone(waiter);
     if (dbInstance == null)
     {
       throw new RuntimeException(liveContext() + progressChecker.getDescription() + " did not become available, "
@@ -608,7 +1125,9 @@ public class RdsSnapshotRestoreTask extends TaskImpl
   }
 
   /**
-   * Sets the stage physical url, then opens a transaction to insert bluegreen records for the new stage environment.
+   * Sets the stage physical url, then opens a transaction to insert bluegreen records for the new stage database, and
+   * for the stage environment unless it exists already.  The env may be created or changed concurrently by a task in
+   * a parallel branch of the job (such as the stage vm creation), so the database is attached to the env as it is now.
    */
   private void persistModel(DBInstance stageInstance, boolean noop)
   {
@@ -617,7 +1136,7 @@ public class RdsSnapshotRestoreTask extends TaskImpl
     {
       String stagePhysicalUrl = makeStagePhysicalUrl(livePhysicalDatabase.getUrl(), stageInstance.getEndpoint().getAddress());
       stagePhysicalDatabase.setUrl(stagePhysicalUrl);
-      environmentTx.newEnvironment(stageEnv); //Cascades to new stage physicaldb.
+      stageEnv = environmentTx.attachLogicalDatabase(stageEnvName, stageLogicalDatabase); //Cascades to new stage physicaldb.
     }
   }
 
@@ -649,6 +1168,12 @@ public class RdsSnapshotRestoreTask extends TaskImpl
     return matcher.group(1) + stagePhysicalAddress + matcher.group(3);
   }
 
+  //Test purposes only
+  void setRestoreTimeMarginMilliseconds(long restoreTimeMarginMilliseconds)
+  {
+    this.restoreTimeMarginMilliseconds = restoreTimeMarginMilliseconds;
+  }
+
   //Test purposes only
   LogicalDatabase getStageLogicalDatabase()
   {
@@ -1,22 +1,45 @@
 package bluegreen.manager.tasks;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import bluegreen.manager.client.ssh.SshClient;
+import bluegreen.manager.client.ssh.SshClientFactory;
 import bluegreen.manager.client.ssh.SshTarget;
+import bluegreen.manager.model.domain.ApplicationVm;
 import bluegreen.manager.model.domain.TaskStatus;
+import bluegreen.manager.model.tx.EnvLoaderFactory;
+import bluegreen.manager.model.tx.OneEnvLoader;
+import bluegreen.manager.substituter.StringSubstituter;
 import bluegreen.manager.substituter.SubstituterResult;
+import static bluegreen.manager.substituter.SubstitutionKeys.ENV;
+import static bluegreen.manager.substituter.SubstitutionKeys.VM_HOSTNAME;
+import bluegreen.manager.utils.PatternLineListener;
 import bluegreen.manager.utils.ShellResult;
 
 /**
  * Runs a command remotely.  The command can have %{variables} substituted using values read from the data model of
  * liveEnv and stageEnv.
+ * <p/>
+ * In fan-out mode, runs the command on every application vm of the env instead of on the ssh target, a few vms at a
+ * time.  The vms are reached with the ssh target's username and password.
  */
 @Lazy
 @Component
@@ -31,14 +54,58 @@ public class RemoteShellTask extends ShellTask
   @Autowired
   private SshClient sshClient;
 
+  @Autowired
+  private SshClientFactory sshClientFactory;
+
+  @Autowired
+  private EnvLoaderFactory envLoaderFactory;
+
+  /**
+   * Max number of vms running the command at the same time, in fan-out mode.
+   */
+  @Value("${bluegreen.remoteshell.fanout.maxConcurrency}")
+  private int maxConcurrency;
+
+  private String envName;
+  private boolean fanOut;
+
+  /**
+   * Copy of the shell config's extra substitutions taken at assign time, since the shared config gets new ones each
+   * time another job is built.
+   */
+  private Map<String, String> fanOutSubstitutions;
+
+  /**
+   * One-env remote shell task which runs the command on every application vm of the env.  The command can refer to
+   * %{env} and %{vmHostname}, the latter being substituted separately for each vm.
+   */
+  public Task assignFanOut(int position, String envName, ShellConfig shellConfig)
+  {
+    assign(position, envName, shellConfig);
+    this.envName = envName;
+    this.fanOut = true;
+    this.fanOutSubstitutions = new HashMap<String, String>();
+    if (shellConfig.getExtraSubstitutions() != null)
+    {
+      fanOutSubstitutions.putAll(shellConfig.getExtraSubstitutions());
+    }
+    return this;
+  }
+
   /**
    * Runs a command remotely.  Performs substitutions on the %{variable} references in the command string.
+   * <p/>
+   * Output is checked for errors line by line as it arrives, and the command is abandoned at the first error line.
    */
   @Override
   public TaskStatus process(boolean noop)
   {
-    LOGGER.info("Launching remote shell command" + noopRemark(noop));
+    LOGGER.info("Launching remote shell command" + (fanOut ? " on every vm in env '" + envName + "'" : "") + noopRemark(noop));
     forbidCheckingExitValue();
+    if (fanOut)
+    {
+      return processFanOut(noop);
+    }
     loadDataModel();
     TaskStatus taskStatus = TaskStatus.NOOP;
     if (!noop)
@@ -46,10 +113,145 @@ public class RemoteShellTask extends ShellTask
       checkConfig();
       sshClient.init(sshTarget);
       SubstituterResult command = stringSubstituter.substituteVariables(shellConfig.getCommand());
-      LOGGER.info("Executing command '" + command.getExpurgated() + "' on " + sshTarget.getUsername() + "@" + sshTarget.getHostname());
-      ShellResult result = sshClient.execCommand(command); //Output available only when completely done.
-      taskStatus = checkForErrors(result.getOutput(), result.getExitValue());
-      logResults(result, taskStatus);
+      taskStatus = execOnTarget(sshClient, sshTarget, command);
+    }
+    return taskStatus;
+  }
+
+  /**
+   * Runs the command on each vm of the env, at most maxConcurrency at once.  Done only if done on every vm.
+   * <p/>
+   * Does not use the one-env string substituter, which would insist on the env having exactly one vm.
+   */
+  private TaskStatus processFanOut(boolean noop)
+  {
+    List<ApplicationVm> applicationVms = loadApplicationVms();
+    if (noop)
+    {
+      for (ApplicationVm applicationVm : applicationVms)
+      {
+        LOGGER.info("Would execute command on " + applicationVm.getHostname() + noopRemark(noop));
+      }
+      return TaskStatus.NOOP;
+    }
+    checkConfig();
+    Map<String, TaskStatus> hostStatuses = execOnAllVms(applicationVms);
+    TaskStatus taskStatus = TaskStatus.DONE;
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, TaskStatus> entry : hostStatuses.entrySet())
+    {
+      sb.append("\n  " + entry.getKey() + ": " + entry.getValue());
+      if (entry.getValue() != TaskStatus.DONE)
+      {
+        taskStatus = TaskStatus.ERROR;
+      }
+    }
+    LOGGER.info("Remote shell command results by host:" + sb.toString());
+    return taskStatus;
+  }
+
+  private List<ApplicationVm> loadApplicationVms()
+  {
+    OneEnvLoader oneEnvLoader = envLoaderFactory.createOne(envName);
+    oneEnvLoader.loadEnvironmentSimple();
+    List<ApplicationVm> applicationVms = oneEnvLoader.getEnvironment().getApplicationVms();
+    if (applicationVms == null || applicationVms.isEmpty())
+    {
+      throw new IllegalStateException("Env '" + envName + "' has no application vms to run the remote command on");
+    }
+    return applicationVms;
+  }
+
+  /**
+   * Runs the command on every vm concurrently, and returns each vm's status keyed by hostname, in env order.
+   * A vm that cannot be reached counts as an error, and does not stop the others.
+   */
+  private Map<String, TaskStatus> execOnAllVms(List<ApplicationVm> applicationVms)
+  {
+    int numThreads = Math.max(1, Math.min(maxConcurrency, applicationVms.size()));
+    LOGGER.debug("Running remote command on " + applicationVms.size() + " vms, " + numThreads + " at a time");
+    ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+    try
+    {
+      List<Future<TaskStatus>> futures = new ArrayList<Future<TaskStatus>>();
+      for (final ApplicationVm applicationVm : applicationVms)
+      {
+        futures.add(executorService.submit(new Callable<TaskStatus>()
+        {
+          @Override
+          public TaskStatus call()
+          {
+            return execOnVm(applicationVm);
+          }
+        }));
+      }
+      Map<String, TaskStatus> hostStatuses = new LinkedHashMap<String, TaskStatus>();
+      for (int idx = 0; idx < applicationVms.size(); ++idx)
+      {
+        hostStatuses.put(applicationVms.get(idx).getHostname(), waitForHost(futures.get(idx), applicationVms.get(idx)));
+      }
+      return hostStatuses;
+    }
+    finally
+    {
+      executorService.shutdownNow();
+    }
+  }
+
+  private TaskStatus waitForHost(Future<TaskStatus> future, ApplicationVm applicationVm)
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while running remote command on " + applicationVm.getHostname(), e);
+    }
+    catch (ExecutionException e)
+    {
+      LOGGER.error("Remote command failed on " + applicationVm.getHostname(), e.getCause());
+      return TaskStatus.ERROR;
+    }
+  }
+
+  /**
+   * Runs the command on one vm, with its own ssh client and %{vmHostname}.
+   */
+  private TaskStatus execOnVm(ApplicationVm applicationVm)
+  {
+    SshTarget vmTarget = new SshTarget(applicationVm.getHostname(), sshTarget.getUsername(), sshTarget.getPassword(),
+        sshTarget.getSoTimeoutMilliseconds(), sshTarget.getKeyExchangeTimeoutMilliseconds());
+    SshClient vmSshClient = sshClientFactory.create();
+    vmSshClient.init(vmTarget);
+    return execOnTarget(vmSshClient, vmTarget, substituteVmVariables(applicationVm));
+  }
+
+  private SubstituterResult substituteVmVariables(ApplicationVm applicationVm)
+  {
+    Map<String, String> substitutions = new HashMap<String, String>(fanOutSubstitutions);
+    substitutions.put(ENV, envName);
+    substitutions.put(VM_HOSTNAME, applicationVm.getHostname());
+    StringSubstituter vmStringSubstituter = stringSubstituterFactory.createZero(substitutions);
+    vmStringSubstituter.loadDataModel();
+    return vmStringSubstituter.substituteVariables(shellConfig.getCommand());
+  }
+
+  /**
+   * Executes the command with an initialized client, and returns DONE unless the output shows an error.
+   */
+  private TaskStatus execOnTarget(SshClient targetSshClient, SshTarget target, SubstituterResult command)
+  {
+    String targetContext = "[" + target.getUsername() + "@" + target.getHostname() + "] ";
+    LOGGER.info(targetContext + "Executing command '" + command.getExpurgated() + "'");
+    PatternLineListener lineListener = new PatternLineListener(null, patternError);
+    ShellResult result = targetSshClient.execCommand(command, lineListener); //Output is only the tail
+    TaskStatus taskStatus = lineListener.isError() ? TaskStatus.ERROR : TaskStatus.DONE;
+    logResults(targetContext, result, taskStatus);
+    if (lineListener.isError())
+    {
+      LOGGER.debug(targetContext + "Error line: " + lineListener.getErrorLine());
     }
     return taskStatus;
   }
@@ -70,24 +272,30 @@ public class RemoteShellTask extends ShellTask
   /**
    * Logs the output and exit value, and remarks if error.
    */
-  private void logResults(ShellResult result, TaskStatus taskStatus)
+  private void logResults(String targetContext, ShellResult result, TaskStatus taskStatus)
   {
     if (LOGGER.isDebugEnabled())
     {
-      LOGGER.debug("---------- OUTPUT BEGINS ----------");
+      LOGGER.debug(targetContext + "---------- OUTPUT BEGINS ----------");
       if (StringUtils.isNotBlank(result.getOutput()))
       {
         for (String line : result.getOutput().split("\n"))
         {
-          LOGGER.debug(line);
+          LOGGER.debug(targetContext + line);
         }
       }
-      LOGGER.debug("---------- OUTPUT ENDS ----------");
+      LOGGER.debug(targetContext + "---------- OUTPUT ENDS ----------");
     }
     logExitValue(result.getExitValue()); //exitValue is currently for informational purposes only
     if (taskStatus == TaskStatus.ERROR)
     {
-      LOGGER.debug("Output was deemed an error");
+      LOGGER.debug(targetContext + "Output was deemed an error");
     }
   }
+
+  //Test purposes only
+  void setMaxConcurrency(int maxConcurrency)
+  {
+    this.maxConcurrency = maxConcurrency;
+  }
 }
@@ -36,6 +36,22 @@ public class ShellConfig
    */
   private Map<String, String> extraSubstitutions;
 
+  /**
+   * Optional wall-clock limit on a local command, after which it is killed and deemed an error.  Zero means no limit.
+   */
+  private Long timeoutMilliseconds;
+
+  /**
+   * Optional name of a comma-separated list variable, e.g. 'packages'.  If specified, the command runs once per item
+   * of the list with the variable substituted by that one item, the copies running concurrently as separate processes.
+   */
+  private String forEachItemOf;
+
+  /**
+   * Max number of copies of a for-each command running at the same time.
+   */
+  private Integer maxParallelism;
+
   public ShellConfig()
   {
   }
@@ -90,4 +106,49 @@ public class ShellConfig
   {
     this.extraSubstitutions = extraSubstitutions;
   }
+
+  public Long getTimeoutMilliseconds()
+  {
+    return timeoutMilliseconds;
+  }
+
+  public void setTimeoutMilliseconds(Long timeoutMilliseconds)
+  {
+    this.timeoutMilliseconds = timeoutMilliseconds;
+  }
+
+  public String getForEachItemOf()
+  {
+    return forEachItemOf;
+  }
+
+  public void setForEachItemOf(String forEachItemOf)
+  {
+    this.forEachItemOf = forEachItemOf;
+  }
+
+  public Integer getMaxParallelism()
+  {
+    return maxParallelism;
+  }
+
+  public void setMaxParallelism(Integer maxParallelism)
+  {
+    this.maxParallelism = maxParallelism;
+  }
+
+  /**
+   * Init method of the config of a remote command, which fails at startup if the config still sets an exit value.  The
+   * ssh client cannot report the exit value of a remote command (see RemoteShellTask), so it would only fail later.
+   */
+  public void checkRemote()
+  {
+    if (exitvalueSuccess != null)
+    {
+      throw new IllegalArgumentException("Remote command '" + command + "' is configured with exitvalue.success, but "
+          + "the exit value of a remote command cannot be checked.  Remove exitvalue.success and set regexp.error to "
+          + "match the output of a failure.  (Older properties files need this because teardown's shutdownApplications "
+          + "now runs remotely on every application vm, see Upgrade notes in the README.)");
+    }
+  }
 }
@@ -7,7 +7,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import bluegreen.manager.model.domain.TaskStatus;
 import bluegreen.manager.substituter.StringSubstituter;
 import bluegreen.manager.substituter.StringSubstituterFactory;
 
@@ -16,7 +15,7 @@ public abstract class ShellTask extends TaskImpl
   private static final Logger LOGGER = LoggerFactory.getLogger(ShellTask.class);
 
   @Autowired
-  private StringSubstituterFactory stringSubstituterFactory;
+  protected StringSubstituterFactory stringSubstituterFactory;
 
   protected ShellConfig shellConfig;
   protected Pattern patternError;
@@ -69,23 +68,6 @@ public abstract class ShellTask extends TaskImpl
     }
   }
 
-  /**
-   * Checks the process output and exitValue and returns DONE (success) or ERROR.
-   */
-  protected TaskStatus checkForErrors(String output, int exitValue)
-  {
-    return checkOutput(output) && checkExitValue(exitValue) ? TaskStatus.DONE : TaskStatus.ERROR;
-  }
-
-  /**
-   * True if output looks ok, or if error-regexp hasn't been defined.
-   * False if output matches the error-regexp.
-   */
-  protected boolean checkOutput(String output)
-  {
-    return patternError == null || !patternError.matcher(output).find();
-  }
-
   /**
    * True if exitValue looks like success, or if success hasn't been defined.
    * <p/>
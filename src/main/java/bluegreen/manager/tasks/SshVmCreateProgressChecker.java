@@ -15,52 +15,67 @@ import bluegreen.manager.substituter.StringSubstituter;
 import bluegreen.manager.substituter.StringSubstituterFactory;
 import bluegreen.manager.substituter.SubstituterResult;
 import static bluegreen.manager.substituter.SubstitutionKeys.HOSTNAME;
+import bluegreen.manager.utils.PatternLineListener;
 import bluegreen.manager.utils.ProgressChecker;
-import bluegreen.manager.utils.RegexHelper;
 import bluegreen.manager.utils.ShellResult;
 
 /**
  * Knows how to check progress of vm creation initiated by an ssh command.
+ * <p/>
+ * Command output is matched line by line as it streams in, so only the tail of it is ever held in memory.
  */
 public class SshVmCreateProgressChecker implements ProgressChecker<ApplicationVm>
 {
   private static final Logger LOGGER = LoggerFactory.getLogger(SshVmCreateProgressChecker.class);
+  private static final String CAPTURE_HOSTNAME = "hostname";
+  private static final String CAPTURE_IPADDRESS = "ipAddress";
 
   private ShellResult initialResult;
+  private PatternLineListener initialListener;
   private String logContext;
   private SshClient sshClient;
   private SshTarget sshTarget;
   private SshVmCreateConfig sshVmCreateConfig;
-  private RegexHelper regexHelper;
   private StringSubstituterFactory stringSubstituterFactory;
   private String hostname; //vm created
   private String ipAddress; //vm created
-  private Pattern initialPatternHostname;
-  private Pattern initialPatternIpAddress;
   private Pattern followupPatternDone;
   private Pattern followupPatternError;
   private boolean done;
   private ApplicationVm result;
 
-  public SshVmCreateProgressChecker(ShellResult initialResult,
+  /**
+   * @param initialResult   Tail of the initial command's output.
+   * @param initialListener Listener that saw all of the initial output, made by {@link #makeInitialListener}.
+   */
+  public SshVmCreateProgressChecker(ShellResult initialResult, PatternLineListener initialListener,
                                     String logContext, SshClient sshClient,
                                     SshTarget sshTarget, SshVmCreateConfig sshVmCreateConfig,
-                                    RegexHelper regexHelper,
                                     StringSubstituterFactory stringSubstituterFactory)
   {
     this.initialResult = initialResult;
+    this.initialListener = initialListener;
     this.logContext = logContext;
     this.sshClient = sshClient;
     this.sshTarget = sshTarget;
     this.sshVmCreateConfig = sshVmCreateConfig;
-    this.regexHelper = regexHelper;
     this.stringSubstituterFactory = stringSubstituterFactory;
-    this.initialPatternHostname = Pattern.compile(sshVmCreateConfig.getInitialRegexpHostname());
-    this.initialPatternIpAddress = Pattern.compile(sshVmCreateConfig.getInitialRegexpIpaddress());
     this.followupPatternDone = Pattern.compile(sshVmCreateConfig.getFollowupRegexpDone());
     this.followupPatternError = Pattern.compile(sshVmCreateConfig.getFollowupRegexpError());
   }
 
+  /**
+   * Makes a listener for the initial vm-create command, which captures the new vm's hostname and ipAddress.
+   * <p/>
+   * Never concludes early: the vm-create command must not be cut off.
+   */
+  public static PatternLineListener makeInitialListener(SshVmCreateConfig sshVmCreateConfig)
+  {
+    return new PatternLineListener(null, null)
+        .addCapture(CAPTURE_HOSTNAME, Pattern.compile(sshVmCreateConfig.getInitialRegexpHostname()))
+        .addCapture(CAPTURE_IPADDRESS, Pattern.compile(sshVmCreateConfig.getInitialRegexpIpaddress()));
+  }
+
   /**
    * Returns a string that describes the ongoing operation, for logging purposes.
    * <p/>
@@ -85,7 +100,7 @@ public class SshVmCreateProgressChecker implements ProgressChecker<ApplicationVm
   }
 
   /**
-   * Looks at initialResult to identify the new vm's hostname and ipaddress.
+   * Looks at the initial output to identify the new vm's hostname and ipaddress.
    * <p/>
    * This doesn't tell us if the vm is fully available.
    */
@@ -97,19 +112,19 @@ public class SshVmCreateProgressChecker implements ProgressChecker<ApplicationVm
       throw new RuntimeException("Blank initial output from " + getDescription());
     }
     LOGGER.debug("Initial output from " + getDescription() + ":\n" + initialResult.describe());
-    hostname = getRequiredCapture("hostname", initialResult.getOutput(), initialPatternHostname);
-    ipAddress = getRequiredCapture("ipAddress", initialResult.getOutput(), initialPatternIpAddress);
+    hostname = getRequiredCapture(CAPTURE_HOSTNAME);
+    ipAddress = getRequiredCapture(CAPTURE_IPADDRESS);
     LOGGER.info(context() + "STARTED");
   }
 
   /**
-   * Returns the first capture group in the first line of output where the pattern is found.
+   * Returns the first capture group in the first line of initial output where the pattern was found.
    * <p/>
-   * Never returns a blank string - throws if matcher cannot find it.
+   * Never returns a blank string - throws if the listener did not find it.
    */
-  private String getRequiredCapture(String captureName, String output, Pattern pattern)
+  private String getRequiredCapture(String captureName)
   {
-    String value = regexHelper.matcherFirstCapture(output, pattern, 1);
+    String value = initialListener.getCapture(captureName);
     if (value != null)
     {
       return value;
@@ -121,20 +136,22 @@ public class SshVmCreateProgressChecker implements ProgressChecker<ApplicationVm
   }
 
   /**
-   * Communicates using the sshClient to check progress on vm creation.
+   * Communicates using the sshClient to check progress on vm creation.  Stops reading the followup output at the
+   * first error or done line.
    */
   @Override
   public void followupCheck(int waitNum)
   {
     SubstituterResult command = substituteFollowupVariables(sshVmCreateConfig.getFollowupCommand());
-    ShellResult followupResult = sshClient.execCommand(command);
+    PatternLineListener followupListener = new PatternLineListener(followupPatternDone, followupPatternError);
+    ShellResult followupResult = sshClient.execCommand(command, followupListener);
     String followupOutput = followupResult.getOutput();
     LOGGER.debug("SSH VM Creation state after wait#" + waitNum + ": " + followupOutput);
-    if (regexHelper.matcherFind(followupOutput, followupPatternError))
+    if (followupListener.isError())
     {
-      throw new RuntimeException(context() + "FAILED: " + followupOutput);
+      throw new RuntimeException(context() + "FAILED: " + followupListener.getErrorLine());
     }
-    if (regexHelper.matcherFind(followupOutput, followupPatternDone))
+    if (followupListener.isDone())
     {
       done = true;
       result = makeApplicationVm();
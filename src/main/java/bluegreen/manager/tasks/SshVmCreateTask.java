@@ -8,22 +8,25 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import bluegreen.manager.client.ssh.SshClient;
 import bluegreen.manager.client.ssh.SshTarget;
 import bluegreen.manager.model.domain.ApplicationVm;
+import bluegreen.manager.model.domain.Environment;
 import bluegreen.manager.model.domain.TaskStatus;
 import bluegreen.manager.model.tx.EnvironmentTx;
 import bluegreen.manager.substituter.StringSubstituter;
 import bluegreen.manager.substituter.StringSubstituterFactory;
 import bluegreen.manager.substituter.SubstituterResult;
 import static bluegreen.manager.substituter.SubstitutionKeys.ENV_NAME;
-import bluegreen.manager.utils.RegexHelper;
+import bluegreen.manager.utils.PatternLineListener;
 import bluegreen.manager.utils.ShellResult;
 import bluegreen.manager.utils.ThreadSleeper;
 import bluegreen.manager.utils.Waiter;
 import bluegreen.manager.utils.WaiterParameters;
+import bluegreen.manager.utils.WaiterScheduler;
 
 /**
  * Executes a long-running configurable command over ssh to a third-party system that knows how to
@@ -31,6 +34,7 @@ import bluegreen.manager.utils.WaiterParameters;
  */
 @Lazy
 @Component
+@Scope("prototype")
 public class SshVmCreateTask extends ApplicationVmTask
 {
   private static final Logger LOGGER = LoggerFactory.getLogger(SshVmCreateTask.class);
@@ -42,6 +46,9 @@ public class SshVmCreateTask extends ApplicationVmTask
   @Autowired
   private ThreadSleeper threadSleeper;
 
+  @Autowired
+  private WaiterScheduler waiterScheduler;
+
   @Autowired
   private EnvironmentTx environmentTx;
 
@@ -54,9 +61,6 @@ public class SshVmCreateTask extends ApplicationVmTask
   @Autowired
   private SshClient sshClient;
 
-  @Autowired
-  private RegexHelper regexHelper;
-
   @Autowired
   private StringSubstituterFactory stringSubstituterFactory;
 
@@ -78,6 +82,7 @@ public class SshVmCreateTask extends ApplicationVmTask
   @Override
   public TaskStatus process(boolean noop)
   {
+    ensureEnvironmentExists(noop);
     loadDataModel();
     initSshClient(noop);
     execSshVmCreateCommand(noop);
@@ -85,6 +90,18 @@ public class SshVmCreateTask extends ApplicationVmTask
     return noop ? TaskStatus.NOOP : TaskStatus.DONE;
   }
 
+  /**
+   * Creates the environment if it does not exist yet.  The env may be created concurrently by a task in a parallel
+   * branch of the job (such as the stage database restore), which environmentTx serializes.
+   */
+  private void ensureEnvironmentExists(boolean noop)
+  {
+    if (!noop)
+    {
+      environmentTx.findOrCreateNamedEnv(envName);
+    }
+  }
+
   @Override
   protected void loadDataModel()
   {
@@ -109,8 +126,9 @@ public class SshVmCreateTask extends ApplicationVmTask
     if (!noop)
     {
       SubstituterResult command = initialStringSubstituter.substituteVariables(sshVmCreateConfig.getInitialCommand());
-      ShellResult result = sshClient.execCommand(command);
-      applicationVm = waitTilVmIsAvailable(result);
+      PatternLineListener initialListener = SshVmCreateProgressChecker.makeInitialListener(sshVmCreateConfig);
+      ShellResult result = sshClient.execCommand(command, initialListener);
+      applicationVm = waitTilVmIsAvailable(result, initialListener);
     }
   }
 
@@ -130,13 +148,13 @@ public class SshVmCreateTask extends ApplicationVmTask
    * Creates a Waiter using an ssh vm progress checker, and returns a transient ApplicationVm entity when done.
    * In case of error - never returns null, throws instead.
    */
-  private ApplicationVm waitTilVmIsAvailable(ShellResult initialResult)
+  private ApplicationVm waitTilVmIsAvailable(ShellResult initialResult, PatternLineListener initialListener)
   {
     LOGGER.info(context() + "Waiting for applicationVm to become available");
-    SshVmCreateProgressChecker progressChecker = new SshVmCreateProgressChecker(initialResult, context(),
-        sshClient, sshTarget, sshVmCreateConfig, regexHelper, stringSubstituterFactory);
+    SshVmCreateProgressChecker progressChecker = new SshVmCreateProgressChecker(initialResult, initialListener,
+        context(), sshClient, sshTarget, sshVmCreateConfig, stringSubstituterFactory);
     Waiter<ApplicationVm> waiter = new Waiter(waiterParameters, threadSleeper, progressChecker);
-    applicationVm = waiter.waitTilDone();
+    applicationVm = waiterScheduler.waitTilDone(waiter);
     if (applicationVm == null)
     {
       throw new RuntimeException(context() + progressChecker.getDescription() + " did not become available");
@@ -145,16 +163,16 @@ public class SshVmCreateTask extends ApplicationVmTask
   }
 
   /**
-   * Attaches the applicationVm to the environment entity, then opens a transaction and persists them.
+   * Opens a transaction that attaches the applicationVm to the environment as it is now, and persists it.  The env may
+   * have been changed since loadDataModel by a task in a parallel branch of the job (such as the stage database
+   * restore), so the env entity loaded back then is not merged.
    */
   private void persistModel(boolean noop)
   {
     if (!noop)
     {
       LOGGER.debug("Persisting new applicationVm " + applicationVm.getHostname() + " in env " + envName);
-      environment.addApplicationVm(applicationVm);
-      applicationVm.setEnvironment(environment);
-      environmentTx.updateEnvironment(environment); //Cascades to new applicationVm.
+      environment = environmentTx.attachApplicationVm(envName, applicationVm);
     }
   }
 
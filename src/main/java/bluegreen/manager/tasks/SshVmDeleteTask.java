@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import bluegreen.manager.client.ssh.SshClient;
@@ -15,7 +16,7 @@ import bluegreen.manager.model.tx.EnvironmentTx;
 import bluegreen.manager.substituter.StringSubstituter;
 import bluegreen.manager.substituter.StringSubstituterFactory;
 import bluegreen.manager.substituter.SubstituterResult;
-import bluegreen.manager.utils.RegexHelper;
+import bluegreen.manager.utils.PatternLineListener;
 import bluegreen.manager.utils.ShellResult;
 
 /**
@@ -23,6 +24,7 @@ import bluegreen.manager.utils.ShellResult;
  */
 @Lazy
 @Component
+@Scope("prototype")
 public class SshVmDeleteTask extends ApplicationVmTask
 {
   private static final Logger LOGGER = LoggerFactory.getLogger(SshVmCreateTask.class);
@@ -39,9 +41,6 @@ public class SshVmDeleteTask extends ApplicationVmTask
   @Autowired
   private SshClient sshClient;
 
-  @Autowired
-  private RegexHelper regexHelper;
-
   @Autowired
   private StringSubstituterFactory stringSubstituterFactory;
 
@@ -96,8 +95,9 @@ public class SshVmDeleteTask extends ApplicationVmTask
     if (!noop)
     {
       SubstituterResult command = stringSubstituter.substituteVariables(sshVmDeleteConfig.getInitialCommand());
-      ShellResult result = sshClient.execCommand(command);
-      checkDeleted(result);
+      PatternLineListener lineListener = new PatternLineListener(initialPatternSuccess, null);
+      ShellResult result = sshClient.execCommand(command, lineListener);
+      checkDeleted(result, lineListener);
     }
   }
 
@@ -105,11 +105,12 @@ public class SshVmDeleteTask extends ApplicationVmTask
    * Checks that the deletion result output indicated success.
    * <p/>
    * Currently checks by stdout, and ignores exitValue (because ssh library Ganymed does not reliably return it).
+   * The listener has already seen every line, even those no longer in the result's output tail.
    */
-  private void checkDeleted(ShellResult result)
+  private void checkDeleted(ShellResult result, PatternLineListener lineListener)
   {
     LOGGER.debug("Command Output:\n" + result.describe());
-    if (!regexHelper.matcherFind(result.getOutput(), initialPatternSuccess))
+    if (!lineListener.isDone())
     {
       throw new RuntimeException(context() + "FAILED: " + result.getOutput());
     }
@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import bluegreen.manager.model.domain.DatabaseType;
@@ -19,6 +20,7 @@ import bluegreen.manager.model.tx.EnvironmentTx;
  */
 @Lazy
 @Component
+@Scope("prototype")
 public class SwapDatabasesTask extends TwoEnvTask
 {
   private static final Logger LOGGER = LoggerFactory.getLogger(SwapDatabasesTask.class);
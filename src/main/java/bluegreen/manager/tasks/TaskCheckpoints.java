@@ -0,0 +1,76 @@
+package bluegreen.manager.tasks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import bluegreen.manager.model.domain.TaskHistory;
+import bluegreen.manager.model.tx.TaskCheckpointTx;
+
+/**
+ * The checkpoints that a task has reached so far, including any carried forward from a failed prior run of the same
+ * task.  Each newly reached checkpoint is persisted under the current task history, unless noop.
+ */
+public class TaskCheckpoints
+{
+  private TaskCheckpointTx taskCheckpointTx;
+
+  /**
+   * Current task history.  Null in noop, where checkpoints are only kept in memory.
+   */
+  private TaskHistory taskHistory;
+
+  /**
+   * Maps checkpoint name to value, in the order reached.
+   */
+  private Map<String, String> checkpoints = new LinkedHashMap<String, String>();
+
+  public TaskCheckpoints(TaskCheckpointTx taskCheckpointTx, TaskHistory taskHistory)
+  {
+    this.taskCheckpointTx = taskCheckpointTx;
+    this.taskHistory = taskHistory;
+  }
+
+  /**
+   * Makes checkpoints that are neither persisted nor resumed.  For tasks running outside of a job.
+   */
+  public static TaskCheckpoints inMemory()
+  {
+    return new TaskCheckpoints(null, null);
+  }
+
+  /**
+   * Records that the task has reached the named checkpoint.  Value is whatever the task needs to resume from here.
+   */
+  public void reach(String name, String value)
+  {
+    checkpoints.put(name, value);
+    if (taskCheckpointTx != null && taskHistory != null)
+    {
+      taskCheckpointTx.newTaskCheckpoint(taskHistory, name, value);
+    }
+  }
+
+  public boolean isReached(String name)
+  {
+    return checkpoints.containsKey(name);
+  }
+
+  /**
+   * Returns the value recorded with the named checkpoint, or null if not reached.
+   */
+  public String getValue(String name)
+  {
+    return checkpoints.get(name);
+  }
+
+  public boolean isEmpty()
+  {
+    return checkpoints.isEmpty();
+  }
+
+  @Override
+  public String toString()
+  {
+    return checkpoints.toString();
+  }
+}
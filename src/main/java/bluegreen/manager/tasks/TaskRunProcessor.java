@@ -1,5 +1,7 @@
 package bluegreen.manager.tasks;
 
+import java.util.List;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
@@ -11,8 +13,10 @@ import org.springframework.stereotype.Component;
 import bluegreen.manager.jobs.SkipRemark;
 import bluegreen.manager.jobs.SkipRemarkHelper;
 import bluegreen.manager.model.domain.JobHistory;
+import bluegreen.manager.model.domain.TaskCheckpoint;
 import bluegreen.manager.model.domain.TaskHistory;
 import bluegreen.manager.model.domain.TaskStatus;
+import bluegreen.manager.model.tx.TaskCheckpointTx;
 import bluegreen.manager.model.tx.TaskHistoryTx;
 
 /**
@@ -30,6 +34,9 @@ public class TaskRunProcessor
   @Autowired
   private TaskHistoryTx taskHistoryTx;
 
+  @Autowired
+  private TaskCheckpointTx taskCheckpointTx;
+
   /**
    * Attempts to process the task, according to noop/force settings and prior task history.
    * Persists new task history with the result.
@@ -59,6 +66,10 @@ public class TaskRunProcessor
     StopWatch stopWatch = new StopWatch();
     try
     {
+      if (taskRun.getTask() instanceof CheckpointedTask)
+      {
+        ((CheckpointedTask) taskRun.getTask()).setCheckpoints(makeCheckpoints(taskRun, taskHistory));
+      }
       stopWatch.start();
       taskStatus = taskRun.getTask().process(taskRun.isNoop());
     }
@@ -90,6 +101,49 @@ public class TaskRunProcessor
     }
   }
 
+  /**
+   * Makes the checkpoints for a checkpointed task.  If the same task failed in the last relevant job run (and we're
+   * not forcing a fresh run), its checkpoints are carried forward to the new task history, so the task can resume
+   * after the last one.  Carrying forward keeps them available to yet another retry.
+   */
+  TaskCheckpoints makeCheckpoints(TaskRun taskRun, TaskHistory taskHistory)
+  {
+    TaskCheckpoints checkpoints = new TaskCheckpoints(taskCheckpointTx, taskHistory);
+    TaskHistory priorTaskHistory = findPriorTaskHistory(taskRun.getTask(), taskRun.getOldJobHistory());
+    if (!taskRun.isForce() && priorTaskHistory != null && isResumable(priorTaskHistory.getStatus()))
+    {
+      carryForward(priorTaskHistory, checkpoints);
+      if (!checkpoints.isEmpty())
+      {
+        LOGGER.info("Task " + taskRun.getTask().getName() + " will resume after prior checkpoints " + checkpoints);
+      }
+    }
+    return checkpoints;
+  }
+
+  /**
+   * Reaches each checkpoint of the prior task history again, under the current task history.
+   */
+  private void carryForward(TaskHistory priorTaskHistory, TaskCheckpoints checkpoints)
+  {
+    List<TaskCheckpoint> priorCheckpoints = taskCheckpointTx.findTaskCheckpoints(priorTaskHistory);
+    if (priorCheckpoints != null)
+    {
+      for (TaskCheckpoint priorCheckpoint : priorCheckpoints)
+      {
+        checkpoints.reach(priorCheckpoint.getName(), priorCheckpoint.getValue());
+      }
+    }
+  }
+
+  /**
+   * True if a prior task run with this status ended partway through.
+   */
+  private boolean isResumable(TaskStatus priorStatus)
+  {
+    return priorStatus == TaskStatus.ERROR || priorStatus == TaskStatus.PROCESSING;
+  }
+
   /**
    * Calls to persist a closed TaskHistory, which means setting endTime and final status.
    */
@@ -103,14 +157,28 @@ public class TaskRunProcessor
 
   /**
    * In the SKIP case, calls to persist a new TaskHistory with an endTime and skip status.
+   * <p/>
+   * A checkpointed task gets the checkpoints of the prior run that finished it, carried forward to the skipped task
+   * history so they are still there for yet another retry.
    */
   TaskStatus skipTaskHistory(TaskRun taskRun)
   {
+    TaskHistory taskHistory = null;
     if (!taskRun.isNoop())
     {
-      taskHistoryTx.newTaskHistorySkipped(
+      taskHistory = taskHistoryTx.newTaskHistorySkipped(
           taskRun.getTask(), taskRun.getNewJobHistory());
     }
+    if (taskRun.getTask() instanceof CheckpointedTask)
+    {
+      TaskCheckpoints checkpoints = new TaskCheckpoints(taskCheckpointTx, taskHistory);
+      TaskHistory priorTaskHistory = findPriorTaskHistory(taskRun.getTask(), taskRun.getOldJobHistory());
+      if (priorTaskHistory != null)
+      {
+        carryForward(priorTaskHistory, checkpoints);
+      }
+      ((CheckpointedTask) taskRun.getTask()).setSkippedCheckpoints(checkpoints);
+    }
     return TaskStatus.SKIPPED;
   }
 
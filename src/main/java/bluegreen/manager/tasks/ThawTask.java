@@ -1,6 +1,7 @@
 package bluegreen.manager.tasks;
 
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import bluegreen.manager.client.app.DbFreezeMode;
@@ -11,6 +12,7 @@ import bluegreen.manager.client.app.DbFreezeRest;
  */
 @Lazy
 @Component
+@Scope("prototype")
 public class ThawTask extends TransitionTask
 {
   private static final String VERB = "thaw";
@@ -20,7 +22,7 @@ public class ThawTask extends TransitionTask
   private static final DbFreezeMode TRANSITION_ERROR_MODE = DbFreezeMode.THAW_ERROR;
   private static final String TRANSITION_METHOD_PATH = DbFreezeRest.PUT_EXIT_DB_FREEZE;
 
-  private static final TransitionParameters TRANSITION_PARAMETERS = new TransitionParameters(
+  static final TransitionParameters TRANSITION_PARAMETERS = new TransitionParameters(
       VERB, ALLOWED_START_MODES, TRANSITIONAL_MODE, DESTINATION_MODE, TRANSITION_ERROR_MODE, TRANSITION_METHOD_PATH
   );
 
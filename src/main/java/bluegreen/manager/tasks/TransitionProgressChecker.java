@@ -23,6 +23,7 @@ public class TransitionProgressChecker implements ProgressChecker<Boolean>
   private TransitionParameters transitionParameters;
   private String logContext;
   private DbFreezeProgress initialProgress;
+  private int longPollSeconds;
   protected ApplicationClient applicationClient;
   protected ApplicationSession applicationSession;
   protected Application application;
@@ -36,6 +37,23 @@ public class TransitionProgressChecker implements ProgressChecker<Boolean>
                                    ApplicationSession applicationSession,
                                    Application application)
   {
+    this(transitionParameters, logContext, initialProgress, applicationClient, applicationSession, application, 0);
+  }
+
+  /**
+   * @param longPollSeconds If positive, and the application advertises long-poll support, then followup checks
+   *                        ask the application to hold its response up to this many seconds while mode is
+   *                        transitional.  Zero to always poll.
+   */
+  public TransitionProgressChecker(TransitionParameters transitionParameters,
+                                   String logContext,
+                                   DbFreezeProgress initialProgress,
+                                   ApplicationClient applicationClient,
+                                   ApplicationSession applicationSession,
+                                   Application application,
+                                   int longPollSeconds)
+  {
+    this.longPollSeconds = longPollSeconds;
     this.transitionParameters = transitionParameters;
     this.logContext = logContext;
     this.initialProgress = initialProgress;
@@ -50,6 +68,14 @@ public class TransitionProgressChecker implements ProgressChecker<Boolean>
     return "application " + transitionParameters.getVerb();
   }
 
+  /**
+   * True if followup checks will long-poll the application, rather than return its progress right away.
+   */
+  public boolean isLongPoll()
+  {
+    return longPollSeconds > 0 && initialProgress != null && initialProgress.isLongPollSupported();
+  }
+
   /**
    * Checks initial mode, or concludes immediately if error.
    */
@@ -76,7 +102,16 @@ public class TransitionProgressChecker implements ProgressChecker<Boolean>
   @Override
   public void followupCheck(int waitNum)
   {
-    DbFreezeProgress dbFreezeProgress = applicationClient.getDbFreezeProgress(application, applicationSession, waitNum);
+    DbFreezeProgress dbFreezeProgress = null;
+    if (isLongPoll())
+    {
+      dbFreezeProgress = applicationClient.getDbFreezeProgressLongPoll(application, applicationSession,
+          transitionParameters.getTransitionalMode(), longPollSeconds, waitNum);
+    }
+    else
+    {
+      dbFreezeProgress = applicationClient.getDbFreezeProgress(application, applicationSession, waitNum);
+    }
     LOGGER.debug(logContext + "Application response after wait#" + waitNum + ": " + dbFreezeProgress);
     dbFreezeProgress = nullIfErrorProgress(dbFreezeProgress, waitNum);
     DbFreezeMode mode = null;
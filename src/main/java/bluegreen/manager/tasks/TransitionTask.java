@@ -1,33 +1,70 @@
 package bluegreen.manager.tasks;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 
+import bluegreen.manager.client.app.ApplicationClient;
+import bluegreen.manager.client.app.ApplicationSession;
 import bluegreen.manager.client.app.DbFreezeMode;
 import bluegreen.manager.client.app.DbFreezeProgress;
+import bluegreen.manager.model.domain.Application;
 import bluegreen.manager.model.domain.TaskStatus;
+import bluegreen.manager.utils.FixedPollSchedule;
 import bluegreen.manager.utils.ThreadSleeper;
 import bluegreen.manager.utils.Waiter;
 import bluegreen.manager.utils.WaiterParameters;
 
 /**
  * Transitions the apps in the requested environment to the next dbfreeze-related steady state.
+ * <p/>
+ * Every application in the env is transitioned, across all its applicationVms.
  */
 public abstract class TransitionTask extends ApplicationTask
 {
   private static final Logger LOGGER = LoggerFactory.getLogger(TransitionTask.class);
 
+  /**
+   * Pause between long-poll progress requests.  The long poll itself does the waiting, so this only keeps a
+   * misbehaving application from being hammered.
+   */
+  private static final long LONG_POLL_GAP_MILLISECONDS = 100L;
+
   @Autowired
   @Qualifier("transitionTask")
   private WaiterParameters waiterParameters;
 
+  /**
+   * Max seconds the application may hold a long-poll progress request, or zero to disable long polling.
+   */
+  @Value("${bluegreen.waiter.transitionTask.longPollSeconds}")
+  private int longPollSeconds;
+
   @Autowired
   private ThreadSleeper threadSleeper;
 
+  /**
+   * Max number of applications transitioned at the same time.
+   */
+  @Value("${bluegreen.transitionTask.maxParallelApplications}")
+  private int maxParallelApplications;
+
   private TransitionParameters transitionParameters;
+  private List<Application> applications;
 
   public abstract TransitionTask assignTransition(int position, String envName);
 
@@ -38,53 +75,316 @@ public abstract class TransitionTask extends ApplicationTask
   }
 
   /**
-   * Attempts to transition the target application, waits for it to finish.
+   * Loads every application in the environment, across all its applicationVms.
+   */
+  @Override
+  protected void loadDataModel()
+  {
+    this.oneEnvLoader = envLoaderFactory.createOne(envName);
+    oneEnvLoader.loadApplications();
+    this.environment = oneEnvLoader.getEnvironment();
+    this.applications = oneEnvLoader.getApplications();
+  }
+
+  /**
+   * Attempts to transition all the applications in the env, waits for them to finish.
+   * <p/>
+   * First checks that every application is ready, so we don't start a transition that can't finish everywhere.
+   * Then requests the transition and waits on all applications concurrently (up to maxParallelApplications), so the
+   * transition takes as long as the slowest application rather than the sum of them.  Done only if every application
+   * reaches the destination mode.
+   * <p/>
+   * The readiness checks and the transition requests are async requests, all in flight at once, so they need no
+   * thread per application.  Only the waits run on the task's own thread pool.
    */
   @Override
-  public TaskStatus process(boolean noop)
+  public TaskStatus process(final boolean noop)
   {
-    TaskStatus taskStatus = TaskStatus.ERROR;
     loadDataModel();
-    initApplicationSession();
-    if (appIsReadyToTransition())
+    List<TransitionTarget> targets = initTransitionTargets();
+    List<Boolean> ready = checkAllReadyToTransition(targets);
+    if (ready.contains(false))
+    {
+      LOGGER.error(context() + Collections.frequency(ready, false) + " of " + targets.size()
+          + " applications not ready to " + transitionParameters.getVerb() + ", will not request it of any");
+      return TaskStatus.ERROR;
+    }
+    List<Boolean> transitioned = transitionAll(targets, transitionParameters, noop);
+    if (transitioned.contains(false))
+    {
+      LOGGER.error(context() + "Failed to " + transitionParameters.getVerb() + " " + Collections.frequency(transitioned, false)
+          + " of " + targets.size() + " applications");
+      revertTransitioned(targets, transitioned);
+      return TaskStatus.ERROR;
+    }
+    return noop ? TaskStatus.NOOP : TaskStatus.DONE;
+  }
+
+  /**
+   * Requests the transition of every target and waits for all of them.  Returns whether each reached the destination
+   * mode, in target order.
+   */
+  private List<Boolean> transitionAll(List<TransitionTarget> targets,
+                                      final TransitionParameters parameters,
+                                      final boolean noop)
+  {
+    requestAllTransitions(targets, parameters, noop);
+    return forEachTarget(targets, parameters, new TargetAction()
+    {
+      @Override
+      public boolean act(TransitionTarget target)
+      {
+        return awaitOneApp(target, parameters, noop);
+      }
+    });
+  }
+
+  /**
+   * Parameters of the transition that undoes this one, for the applications that made it when others did not.
+   * Null if this transition is not to be undone.
+   */
+  protected TransitionParameters getRevertParameters()
+  {
+    return null;
+  }
+
+  /**
+   * After a partial failure, reverts the applications that did reach the destination mode, so the env is not left
+   * half-transitioned (and a retry of this task finds every application in an allowed start mode).  Reverting is best
+   * effort: the task is an error either way.
+   */
+  private void revertTransitioned(List<TransitionTarget> targets, List<Boolean> transitioned)
+  {
+    TransitionParameters revertParameters = getRevertParameters();
+    List<TransitionTarget> succeeded = new ArrayList<TransitionTarget>();
+    for (int idx = 0; idx < targets.size(); ++idx)
+    {
+      if (transitioned.get(idx))
+      {
+        succeeded.add(targets.get(idx));
+      }
+    }
+    if (revertParameters == null || succeeded.isEmpty())
+    {
+      return;
+    }
+    LOGGER.warn(context() + "Will " + revertParameters.getVerb() + " the " + succeeded.size() + " applications that did "
+        + transitionParameters.getVerb());
+    try
+    {
+      List<Boolean> reverted = transitionAll(succeeded, revertParameters, false);
+      if (reverted.contains(false))
+      {
+        LOGGER.error(context() + "Failed to " + revertParameters.getVerb() + " " + Collections.frequency(reverted, false)
+            + " of " + succeeded.size() + " applications, they need manual attention");
+      }
+    }
+    catch (RuntimeException e)
+    {
+      LOGGER.error(context() + "Failed to " + revertParameters.getVerb() + " the applications, they need manual attention", e);
+    }
+  }
+
+  /**
+   * Makes an authenticated transition target for each application.  The applications are all logged into at once.
+   */
+  List<TransitionTarget> initTransitionTargets()
+  {
+    if (CollectionUtils.isEmpty(applications))
+    {
+      throw new IllegalStateException(context() + "No applications");
+    }
+    List<ApplicationClient> applicationClients = new ArrayList<ApplicationClient>();
+    List<CompletableFuture<ApplicationSession>> logins = new ArrayList<CompletableFuture<ApplicationSession>>();
+    for (Application application : applications)
+    {
+      ApplicationClient applicationClient = findApplicationClient(application);
+      applicationClients.add(applicationClient);
+      logins.add(findApplicationSessionAsync(application, applicationClient));
+    }
+    List<TransitionTarget> targets = new ArrayList<TransitionTarget>();
+    for (int idx = 0; idx < applications.size(); ++idx)
+    {
+      Application application = applications.get(idx);
+      String targetContext = "[environment '" + environment.getEnvName() + "', " + application.makeHostnameUri() + "]: ";
+      targets.add(new TransitionTarget(application, applicationClients.get(idx), awaitLogin(targetContext, logins.get(idx)),
+          targetContext));
+    }
+    return targets;
+  }
+
+  /**
+   * Waits for the login to the application.  Throws if it failed, as a blocking login would.
+   */
+  private ApplicationSession awaitLogin(String targetContext, CompletableFuture<ApplicationSession> login)
+  {
+    try
+    {
+      return login.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(targetContext + "Interrupted while logging into application", e);
+    }
+    catch (ExecutionException e)
+    {
+      throw new RuntimeException(targetContext + "Failed to log into application", e.getCause());
+    }
+  }
+
+  /**
+   * Waits for one application to finish the transition already requested of it.  True if it reached destination mode.
+   */
+  private boolean awaitOneApp(TransitionTarget target, TransitionParameters parameters, boolean noop)
+  {
+    TransitionProgressChecker progressChecker = target.getProgressChecker();
+    if (noop || !progressChecker.isDone())
+    {
+      return waitForTransition(target, progressChecker, parameters, noop);
+    }
+    return false;
+  }
+
+  /**
+   * Something to do to one transition target.
+   */
+  interface TargetAction
+  {
+    boolean act(TransitionTarget target);
+  }
+
+  /**
+   * Performs the action on every target, concurrently if there is more than one, and returns the results in target
+   * order.  An exception from any target counts as false for that target.
+   */
+  List<Boolean> forEachTarget(List<TransitionTarget> targets,
+                              final TransitionParameters parameters,
+                              final TargetAction action)
+  {
+    List<Boolean> results = new ArrayList<Boolean>();
+    if (targets.size() == 1 || maxParallelApplications <= 1)
+    {
+      for (TransitionTarget target : targets)
+      {
+        results.add(actSafely(action, parameters, target));
+      }
+      return results;
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(Math.min(maxParallelApplications, targets.size()));
+    try
     {
-      TransitionProgressChecker progressChecker = requestTransition(noop);
-      if (noop || !progressChecker.isDone())
+      List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+      for (final TransitionTarget target : targets)
       {
-        if (waitForTransition(progressChecker, noop))
+        futures.add(executorService.submit(new Callable<Boolean>()
         {
-          taskStatus = noop ? TaskStatus.NOOP : TaskStatus.DONE;
-        }
+          @Override
+          public Boolean call()
+          {
+            return actSafely(action, parameters, target);
+          }
+        }));
       }
+      for (Future<Boolean> future : futures) //Barrier: all targets are finished when this loop is
+      {
+        results.add(future.get());
+      }
+    }
+    catch (InterruptedException e)
+    {
+      throw new RuntimeException(context() + "Interrupted while waiting for applications to " + parameters.getVerb(), e);
+    }
+    catch (ExecutionException e)
+    {
+      throw new RuntimeException(context() + "Unexpected error", e.getCause());
+    }
+    finally
+    {
+      executorService.shutdownNow();
+    }
+    return results;
+  }
+
+  private boolean actSafely(TargetAction action, TransitionParameters parameters, TransitionTarget target)
+  {
+    try
+    {
+      return action.act(target);
+    }
+    catch (RuntimeException e)
+    {
+      LOGGER.error(target.getContext() + "Error trying to " + parameters.getVerb(), e);
+      return false;
     }
-    return taskStatus;
   }
 
   /**
-   * Returns true if the application is ready to make the transition.
+   * Asks every application for its progress at once, and returns whether each is ready to make the transition, in
+   * target order.
    * <p/>
    * Read-only so runs even if noop.
    */
-  boolean appIsReadyToTransition()
+  List<Boolean> checkAllReadyToTransition(List<TransitionTarget> targets)
+  {
+    List<CompletableFuture<DbFreezeProgress>> futures = new ArrayList<CompletableFuture<DbFreezeProgress>>();
+    for (TransitionTarget target : targets)
+    {
+      LOGGER.info(target.getContext() + "Checking if application is ready to " + transitionParameters.getVerb());
+      futures.add(target.getApplicationClient().getDbFreezeProgressAsync(
+          target.getApplication(), target.getApplicationSession(), null));
+    }
+    List<Boolean> results = new ArrayList<Boolean>();
+    for (int idx = 0; idx < targets.size(); ++idx)
+    {
+      results.add(appIsReadyToTransition(targets.get(idx), awaitResponse(targets.get(idx), futures.get(idx))));
+    }
+    return results;
+  }
+
+  /**
+   * Waits for the application's response.  Null if the request failed.
+   */
+  private DbFreezeProgress awaitResponse(TransitionTarget target, CompletableFuture<DbFreezeProgress> future)
   {
-    LOGGER.info(context() + "Checking if application is ready to " + transitionParameters.getVerb());
-    DbFreezeProgress dbFreezeProgress = applicationClient.getDbFreezeProgress(application, applicationSession, null);
-    LOGGER.debug(context() + "Application response: " + dbFreezeProgress);
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(target.getContext() + "Interrupted while waiting for application response", e);
+    }
+    catch (ExecutionException e)
+    {
+      LOGGER.error(target.getContext() + "Request to application failed", e.getCause());
+      return null;
+    }
+  }
+
+  /**
+   * Returns true if the application's progress says it is ready to make the transition.
+   */
+  boolean appIsReadyToTransition(TransitionTarget target, DbFreezeProgress dbFreezeProgress)
+  {
+    String context = target.getContext();
+    LOGGER.debug(context + "Application response: " + dbFreezeProgress);
     boolean isReady = false;
     if (dbFreezeProgress == null)
     {
-      LOGGER.error(context() + "Null application response");
+      LOGGER.error(context + "Null application response");
     }
     else if (dbFreezeProgress.isLockError())
     {
-      LOGGER.error(context() + "Application responded with a lock error: " + dbFreezeProgress);
+      LOGGER.error(context + "Application responded with a lock error: " + dbFreezeProgress);
     }
     else
     {
       DbFreezeMode mode = dbFreezeProgress.getMode();
       if (!isAllowedStartMode(mode))
       {
-        LOGGER.error(context() + "Mode '" + mode + "' indicates application is not ready to "
+        LOGGER.error(context + "Mode '" + mode + "' indicates application is not ready to "
             + transitionParameters.getVerb() + ".  Progress: " + dbFreezeProgress);
       }
       else
@@ -104,24 +404,51 @@ public abstract class TransitionTask extends ApplicationTask
   }
 
   /**
-   * Requests that the application do the transition.
+   * Requests that every application do this task's transition.
+   */
+  void requestAllTransitions(List<TransitionTarget> targets, boolean noop)
+  {
+    requestAllTransitions(targets, transitionParameters, noop);
+  }
+
+  /**
+   * Requests that every application do the transition, all at once, and gives each target the progress checker that
+   * starts from its application's response.
    *
-   * @param noop If true, don't contact the application.
-   * @return Transition progress checker, or null if noop.
+   * @param noop If true, don't contact the applications, and the progress checkers are null.
    */
-  TransitionProgressChecker requestTransition(boolean noop)
+  private void requestAllTransitions(List<TransitionTarget> targets, TransitionParameters parameters, boolean noop)
   {
-    LOGGER.info(context() + "Requesting a " + transitionParameters.getVerb() + noopRemark(noop));
-    TransitionProgressChecker progressChecker = null;
+    List<CompletableFuture<DbFreezeProgress>> futures = new ArrayList<CompletableFuture<DbFreezeProgress>>();
+    for (TransitionTarget target : targets)
+    {
+      LOGGER.info(target.getContext() + "Requesting a " + parameters.getVerb() + noopRemark(noop));
+      if (!noop)
+      {
+        final int waitNum = 0;
+        futures.add(target.getApplicationClient().putRequestTransitionAsync(target.getApplication(),
+            target.getApplicationSession(), parameters.getTransitionMethodPath(), waitNum));
+      }
+    }
     if (!noop)
     {
-      final int waitNum = 0;
-      DbFreezeProgress initialProgress = applicationClient.putRequestTransition(application, applicationSession,
-          transitionParameters.getTransitionMethodPath(), waitNum);
-      progressChecker = new TransitionProgressChecker(transitionParameters, context(), initialProgress,
-          applicationClient, applicationSession, application);
+      for (int idx = 0; idx < targets.size(); ++idx)
+      {
+        TransitionTarget target = targets.get(idx);
+        target.setProgressChecker(makeProgressChecker(target, parameters, awaitResponse(target, futures.get(idx))));
+      }
     }
-    return progressChecker;
+  }
+
+  /**
+   * Makes a transition progress checker starting from the application's response to the transition request.
+   */
+  private TransitionProgressChecker makeProgressChecker(TransitionTarget target,
+                                                        TransitionParameters parameters,
+                                                        DbFreezeProgress initialProgress)
+  {
+    return new TransitionProgressChecker(parameters, target.getContext(), initialProgress,
+        target.getApplicationClient(), target.getApplicationSession(), target.getApplication(), longPollSeconds);
   }
 
   /**
@@ -131,17 +458,108 @@ public abstract class TransitionTask extends ApplicationTask
    * @return True if the application has reached destination mode prior to timeout, or if noop.
    * False if error or other failure to make transition.
    */
-  Boolean waitForTransition(TransitionProgressChecker progressChecker, boolean noop)
+  Boolean waitForTransition(TransitionTarget target, TransitionProgressChecker progressChecker, boolean noop)
+  {
+    return waitForTransition(target, progressChecker, transitionParameters, noop);
+  }
+
+  private Boolean waitForTransition(TransitionTarget target,
+                                    TransitionProgressChecker progressChecker,
+                                    TransitionParameters parameters,
+                                    boolean noop)
   {
-    LOGGER.info(context() + "Waiting for " + transitionParameters.getVerb() + " to take effect" + noopRemark(noop));
+    LOGGER.info(target.getContext() + "Waiting for " + parameters.getVerb() + " to take effect" + noopRemark(noop));
     if (!noop)
     {
-      Waiter<Boolean> waiter = new Waiter(waiterParameters, threadSleeper, progressChecker);
-      return waiter.waitTilDone();
+      Waiter<Boolean> waiter = new Waiter(chooseWaiterParameters(target, progressChecker), threadSleeper, progressChecker);
+      Boolean done = waiter.waitTilDone();
+      return done != null && done;
     }
     return true;
   }
 
+  /**
+   * Returns the configured waiter parameters, or if the progress checker will long-poll then a copy that sleeps only
+   * a brief gap between checks, so the task returns as soon as the application reaches destination mode.
+   * The time budget is unchanged.
+   */
+  WaiterParameters chooseWaiterParameters(TransitionTarget target, TransitionProgressChecker progressChecker)
+  {
+    if (!progressChecker.isLongPoll())
+    {
+      return waiterParameters;
+    }
+    LOGGER.debug(target.getContext() + "Application supports long poll, will wait up to " + longPollSeconds + " seconds per request");
+    return waiterParameters.copyWithPollSchedule(
+        new FixedPollSchedule(LONG_POLL_GAP_MILLISECONDS, LONG_POLL_GAP_MILLISECONDS));
+  }
+
+  /**
+   * One application to transition, with its own authenticated session, and once requested, its progress checker.
+   */
+  static class TransitionTarget
+  {
+    private Application application;
+    private ApplicationClient applicationClient;
+    private ApplicationSession applicationSession;
+    private String context;
+    private TransitionProgressChecker progressChecker;
+
+    TransitionTarget(Application application, ApplicationClient applicationClient,
+                     ApplicationSession applicationSession, String context)
+    {
+      this.application = application;
+      this.applicationClient = applicationClient;
+      this.applicationSession = applicationSession;
+      this.context = context;
+    }
+
+    Application getApplication()
+    {
+      return application;
+    }
+
+    ApplicationClient getApplicationClient()
+    {
+      return applicationClient;
+    }
+
+    ApplicationSession getApplicationSession()
+    {
+      return applicationSession;
+    }
+
+    TransitionProgressChecker getProgressChecker()
+    {
+      return progressChecker;
+    }
+
+    void setProgressChecker(TransitionProgressChecker progressChecker)
+    {
+      this.progressChecker = progressChecker;
+    }
+
+    /**
+     * Describes the env and application, for logging purposes.
+     */
+    String getContext()
+    {
+      return context;
+    }
+  }
+
+  //Test purposes only
+  void setLongPollSeconds(int longPollSeconds)
+  {
+    this.longPollSeconds = longPollSeconds;
+  }
+
+  //Test purposes only
+  void setMaxParallelApplications(int maxParallelApplications)
+  {
+    this.maxParallelApplications = maxParallelApplications;
+  }
+
   // Test purposes only
   public TransitionParameters getTransitionParameters()
   {
@@ -0,0 +1,74 @@
+package bluegreen.manager.utils;
+
+import java.util.Random;
+
+/**
+ * Exponential-ish backoff where each delay is picked at random between the base delay and three times the
+ * previous delay, capped at a maximum.
+ * <p/>
+ * Spreads out the describe calls of several waiters that started at the same moment (e.g. several jobs staging
+ * databases at once), so they don't all hit the AWS api in lockstep and get throttled together.
+ */
+public class DecorrelatedJitterPollSchedule implements PollSchedule
+{
+  private long baseDelayMilliseconds;
+  private long maxDelayMilliseconds;
+  private Random random = new Random();
+
+  public DecorrelatedJitterPollSchedule()
+  {
+  }
+
+  public DecorrelatedJitterPollSchedule(long baseDelayMilliseconds, long maxDelayMilliseconds)
+  {
+    this.baseDelayMilliseconds = baseDelayMilliseconds;
+    this.maxDelayMilliseconds = maxDelayMilliseconds;
+  }
+
+  /**
+   * Returns min(maxDelay, random_between(baseDelay, 3 * previousDelay)).
+   */
+  @Override
+  public long nextDelayMilliseconds(int waitNum, long previousDelayMilliseconds, long elapsedMilliseconds)
+  {
+    long upper = Math.max(baseDelayMilliseconds, 3L * previousDelayMilliseconds);
+    long delay = baseDelayMilliseconds;
+    if (upper > baseDelayMilliseconds)
+    {
+      delay += (long) (random.nextDouble() * (upper - baseDelayMilliseconds));
+    }
+    return Math.min(delay, maxDelayMilliseconds);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "DecorrelatedJitterPollSchedule[base: " + baseDelayMilliseconds + "ms, max: " + maxDelayMilliseconds + "ms]";
+  }
+
+  public long getBaseDelayMilliseconds()
+  {
+    return baseDelayMilliseconds;
+  }
+
+  public void setBaseDelayMilliseconds(long baseDelayMilliseconds)
+  {
+    this.baseDelayMilliseconds = baseDelayMilliseconds;
+  }
+
+  public long getMaxDelayMilliseconds()
+  {
+    return maxDelayMilliseconds;
+  }
+
+  public void setMaxDelayMilliseconds(long maxDelayMilliseconds)
+  {
+    this.maxDelayMilliseconds = maxDelayMilliseconds;
+  }
+
+  //Test purposes only
+  void setRandom(Random random)
+  {
+    this.random = random;
+  }
+}
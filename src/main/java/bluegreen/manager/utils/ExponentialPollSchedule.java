@@ -0,0 +1,76 @@
+package bluegreen.manager.utils;
+
+/**
+ * Starts with a short delay and multiplies it after every check, up to a maximum delay.
+ * <p/>
+ * Good for operations whose duration varies by orders of magnitude, e.g. an RDS restore that can take 3 minutes
+ * or 30.  Short operations are noticed quickly, and long ones don't cost hundreds of describe calls.
+ */
+public class ExponentialPollSchedule implements PollSchedule
+{
+  private long initialDelayMilliseconds;
+  private double multiplier;
+  private long maxDelayMilliseconds;
+
+  public ExponentialPollSchedule()
+  {
+  }
+
+  public ExponentialPollSchedule(long initialDelayMilliseconds, double multiplier, long maxDelayMilliseconds)
+  {
+    this.initialDelayMilliseconds = initialDelayMilliseconds;
+    this.multiplier = multiplier;
+    this.maxDelayMilliseconds = maxDelayMilliseconds;
+  }
+
+  /**
+   * Returns initialDelay * multiplier^(waitNum-1), capped at maxDelay.
+   */
+  @Override
+  public long nextDelayMilliseconds(int waitNum, long previousDelayMilliseconds, long elapsedMilliseconds)
+  {
+    if (waitNum <= 1 || previousDelayMilliseconds <= 0)
+    {
+      return Math.min(initialDelayMilliseconds, maxDelayMilliseconds);
+    }
+    double delay = previousDelayMilliseconds * multiplier;
+    return delay >= maxDelayMilliseconds ? maxDelayMilliseconds : (long) delay;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "ExponentialPollSchedule[initial: " + initialDelayMilliseconds + "ms, multiplier: " + multiplier
+        + ", max: " + maxDelayMilliseconds + "ms]";
+  }
+
+  public long getInitialDelayMilliseconds()
+  {
+    return initialDelayMilliseconds;
+  }
+
+  public void setInitialDelayMilliseconds(long initialDelayMilliseconds)
+  {
+    this.initialDelayMilliseconds = initialDelayMilliseconds;
+  }
+
+  public double getMultiplier()
+  {
+    return multiplier;
+  }
+
+  public void setMultiplier(double multiplier)
+  {
+    this.multiplier = multiplier;
+  }
+
+  public long getMaxDelayMilliseconds()
+  {
+    return maxDelayMilliseconds;
+  }
+
+  public void setMaxDelayMilliseconds(long maxDelayMilliseconds)
+  {
+    this.maxDelayMilliseconds = maxDelayMilliseconds;
+  }
+}
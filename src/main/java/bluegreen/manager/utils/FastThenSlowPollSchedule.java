@@ -0,0 +1,70 @@
+package bluegreen.manager.utils;
+
+/**
+ * Polls at a fast delay for a short initial period, then falls back to a slow delay.
+ * <p/>
+ * Good for operations that usually finish within seconds but occasionally drag on, e.g. a dbfreeze transition.
+ */
+public class FastThenSlowPollSchedule implements PollSchedule
+{
+  private long fastDelayMilliseconds;
+  private long fastPeriodMilliseconds;
+  private long slowDelayMilliseconds;
+
+  public FastThenSlowPollSchedule()
+  {
+  }
+
+  public FastThenSlowPollSchedule(long fastDelayMilliseconds, long fastPeriodMilliseconds, long slowDelayMilliseconds)
+  {
+    this.fastDelayMilliseconds = fastDelayMilliseconds;
+    this.fastPeriodMilliseconds = fastPeriodMilliseconds;
+    this.slowDelayMilliseconds = slowDelayMilliseconds;
+  }
+
+  /**
+   * Returns the fast delay while elapsed time is still inside the fast period, else the slow delay.
+   */
+  @Override
+  public long nextDelayMilliseconds(int waitNum, long previousDelayMilliseconds, long elapsedMilliseconds)
+  {
+    return elapsedMilliseconds < fastPeriodMilliseconds ? fastDelayMilliseconds : slowDelayMilliseconds;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "FastThenSlowPollSchedule[fast: " + fastDelayMilliseconds + "ms for " + fastPeriodMilliseconds
+        + "ms, then slow: " + slowDelayMilliseconds + "ms]";
+  }
+
+  public long getFastDelayMilliseconds()
+  {
+    return fastDelayMilliseconds;
+  }
+
+  public void setFastDelayMilliseconds(long fastDelayMilliseconds)
+  {
+    this.fastDelayMilliseconds = fastDelayMilliseconds;
+  }
+
+  public long getFastPeriodMilliseconds()
+  {
+    return fastPeriodMilliseconds;
+  }
+
+  public void setFastPeriodMilliseconds(long fastPeriodMilliseconds)
+  {
+    this.fastPeriodMilliseconds = fastPeriodMilliseconds;
+  }
+
+  public long getSlowDelayMilliseconds()
+  {
+    return slowDelayMilliseconds;
+  }
+
+  public void setSlowDelayMilliseconds(long slowDelayMilliseconds)
+  {
+    this.slowDelayMilliseconds = slowDelayMilliseconds;
+  }
+}
@@ -0,0 +1,54 @@
+package bluegreen.manager.utils;
+
+/**
+ * Sleeps an initial delay after the initial check, then a constant followup delay after every other check.
+ * <p/>
+ * This is the classic waiter behavior, used when waiterParameters do not specify a schedule.
+ */
+public class FixedPollSchedule implements PollSchedule
+{
+  private long initialDelayMilliseconds;
+  private long followupDelayMilliseconds;
+
+  public FixedPollSchedule()
+  {
+  }
+
+  public FixedPollSchedule(long initialDelayMilliseconds, long followupDelayMilliseconds)
+  {
+    this.initialDelayMilliseconds = initialDelayMilliseconds;
+    this.followupDelayMilliseconds = followupDelayMilliseconds;
+  }
+
+  @Override
+  public long nextDelayMilliseconds(int waitNum, long previousDelayMilliseconds, long elapsedMilliseconds)
+  {
+    return waitNum == 1 ? initialDelayMilliseconds : followupDelayMilliseconds;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "FixedPollSchedule[initial: " + initialDelayMilliseconds + "ms, followup: " + followupDelayMilliseconds + "ms]";
+  }
+
+  public long getInitialDelayMilliseconds()
+  {
+    return initialDelayMilliseconds;
+  }
+
+  public void setInitialDelayMilliseconds(long initialDelayMilliseconds)
+  {
+    this.initialDelayMilliseconds = initialDelayMilliseconds;
+  }
+
+  public long getFollowupDelayMilliseconds()
+  {
+    return followupDelayMilliseconds;
+  }
+
+  public void setFollowupDelayMilliseconds(long followupDelayMilliseconds)
+  {
+    this.followupDelayMilliseconds = followupDelayMilliseconds;
+  }
+}
@@ -0,0 +1,14 @@
+package bluegreen.manager.utils;
+
+/**
+ * Receives the lines of a command's output as they arrive, e.g. from a long-running ssh command.
+ */
+public interface LineListener
+{
+  /**
+   * Observes the next line of output (without its line terminator).
+   *
+   * @return False if the output is conclusive and the caller may stop reading, true to keep reading.
+   */
+  boolean onLine(String line);
+}
@@ -0,0 +1,86 @@
+package bluegreen.manager.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Scans multi-line command output in one pass, handing each non-empty line to a {@link LineListener} such as a
+ * {@link PatternLineListener}, which evaluates all of a task's patterns on the line at once.
+ * <p/>
+ * Finds line breaks in place, rather than splitting the whole output into an array of lines up front.  Streamed
+ * output (ssh, local processes) is scanned from its reader in buffer-sized chunks as it arrives.
+ */
+public class OutputScanner
+{
+  private static final int BUFFER_SIZE = 8192;
+
+  private OutputScanner()
+  {
+    //Do not instantiate me
+  }
+
+  /**
+   * Feeds the lines of the text to the listener until the end, or until the listener deems the output conclusive.
+   * Line terminators are \n, \r or both; empty lines are skipped.
+   *
+   * @return True if the listener stopped the scan early.
+   */
+  public static boolean scan(CharSequence text, LineListener lineListener)
+  {
+    if (text == null)
+    {
+      return false;
+    }
+    int length = text.length();
+    int lineStart = 0;
+    for (int idx = 0; idx <= length; ++idx)
+    {
+      if (idx == length || isLineBreak(text.charAt(idx)))
+      {
+        if (idx > lineStart && !lineListener.onLine(text.subSequence(lineStart, idx).toString()))
+        {
+          return true;
+        }
+        lineStart = idx + 1;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Feeds the lines read from the reader to the listener until the end of the stream, or until the listener deems the
+   * output conclusive, whereupon the rest of the stream is left unread.  Same line rules as for text.
+   *
+   * @return True if the listener stopped the scan early.
+   */
+  public static boolean scan(Reader reader, LineListener lineListener) throws IOException
+  {
+    char[] buffer = new char[BUFFER_SIZE];
+    StringBuilder partialLine = new StringBuilder();
+    int numRead;
+    while ((numRead = reader.read(buffer)) != -1)
+    {
+      int lineStart = 0;
+      for (int idx = 0; idx < numRead; ++idx)
+      {
+        if (isLineBreak(buffer[idx]))
+        {
+          partialLine.append(buffer, lineStart, idx - lineStart);
+          if (partialLine.length() > 0 && !lineListener.onLine(partialLine.toString()))
+          {
+            return true;
+          }
+          partialLine.setLength(0);
+          lineStart = idx + 1;
+        }
+      }
+      partialLine.append(buffer, lineStart, numRead - lineStart);
+    }
+    return partialLine.length() > 0 && !lineListener.onLine(partialLine.toString());
+  }
+
+  private static boolean isLineBreak(char ch)
+  {
+    return ch == '\n' || ch == '\r';
+  }
+}
@@ -0,0 +1,65 @@
+package bluegreen.manager.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps only the last few lines of a command's output, so a chatty command cannot use up memory.
+ */
+public class OutputTail
+{
+  private int maxLines;
+  private Deque<String> lines;
+  private long numLines; //All lines seen, including those dropped
+
+  public OutputTail(int maxLines)
+  {
+    if (maxLines < 1)
+    {
+      throw new IllegalArgumentException("Output tail must keep at least one line, not " + maxLines);
+    }
+    this.maxLines = maxLines;
+    this.lines = new ArrayDeque<String>(maxLines);
+  }
+
+  /**
+   * Adds the line, dropping the oldest one if full.
+   */
+  public void add(String line)
+  {
+    if (lines.size() == maxLines)
+    {
+      lines.removeFirst();
+    }
+    lines.addLast(line);
+    ++numLines;
+  }
+
+  public long getNumLines()
+  {
+    return numLines;
+  }
+
+  public long getNumDroppedLines()
+  {
+    return numLines - lines.size();
+  }
+
+  /**
+   * Returns the kept lines as newline-terminated text, noting how many earlier lines were dropped if any.
+   */
+  public String getText()
+  {
+    StringBuilder sb = new StringBuilder();
+    if (getNumDroppedLines() > 0)
+    {
+      sb.append("(... " + getNumDroppedLines() + " earlier lines not kept ...)\n");
+    }
+    for (String line : lines)
+    {
+      sb.append(line);
+      sb.append("\n");
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,179 @@
+package bluegreen.manager.utils;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Matches each line of output against regexps as it arrives: an error pattern and a done pattern, either of which
+ * makes the output conclusive, plus named capture patterns whose first non-blank group 1 is remembered.
+ * <p/>
+ * Error is checked before done on each line.  Null patterns never match.
+ * <p/>
+ * Most lines of output match none of the patterns, so each line is first tried against a single alternation of all
+ * the patterns, and only a line that matches it is tried against the patterns one by one.  Patterns whose meaning
+ * could change inside an alternation (flags, backreferences, quoting, named groups) skip this prefilter.
+ */
+public class PatternLineListener implements LineListener
+{
+  /**
+   * Inline flags, backreferences, \Q quoting and named groups, which an alternation would scope, renumber, swallow or
+   * duplicate.
+   */
+  private static final Pattern UNCOMBINABLE = Pattern.compile("\\(\\?[a-zA-Z<-]|\\\\[1-9kQ]");
+
+  private Pattern donePattern;
+  private Pattern errorPattern;
+  private Map<String, Pattern> capturePatterns = new LinkedHashMap<String, Pattern>();
+  private Map<String, String> captures = new HashMap<String, String>();
+  private String doneLine;
+  private String errorLine;
+  private Pattern anyPattern;
+  private boolean anyPatternStale = true;
+
+  public PatternLineListener(Pattern donePattern, Pattern errorPattern)
+  {
+    this.donePattern = donePattern;
+    this.errorPattern = errorPattern;
+  }
+
+  /**
+   * Remembers group 1 of the first line where the pattern is found with a non-blank group.
+   */
+  public PatternLineListener addCapture(String captureName, Pattern pattern)
+  {
+    capturePatterns.put(captureName, pattern);
+    anyPatternStale = true;
+    return this;
+  }
+
+  /**
+   * Records captures, then returns false if the line matched the error or done pattern.
+   */
+  @Override
+  public boolean onLine(String line)
+  {
+    if (anyPatternStale)
+    {
+      anyPattern = makeAnyPattern();
+      anyPatternStale = false;
+    }
+    if (anyPattern != null && !anyPattern.matcher(line).find())
+    {
+      return true;
+    }
+    for (Map.Entry<String, Pattern> entry : capturePatterns.entrySet())
+    {
+      if (!captures.containsKey(entry.getKey()))
+      {
+        Matcher matcher = entry.getValue().matcher(line);
+        if (matcher.find() && StringUtils.isNotBlank(matcher.group(1)))
+        {
+          captures.put(entry.getKey(), matcher.group(1));
+        }
+      }
+    }
+    if (errorPattern != null && errorPattern.matcher(line).find())
+    {
+      errorLine = line;
+      return false;
+    }
+    if (donePattern != null && donePattern.matcher(line).find())
+    {
+      doneLine = line;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Alternation of all non-null patterns, or null if there are none or any of them cannot be safely combined.
+   */
+  private Pattern makeAnyPattern()
+  {
+    StringBuilder alternation = new StringBuilder();
+    for (Pattern pattern : new Pattern[] { errorPattern, donePattern })
+    {
+      if (pattern != null && !appendAlternative(alternation, pattern))
+      {
+        return null;
+      }
+    }
+    for (Pattern pattern : capturePatterns.values())
+    {
+      if (!appendAlternative(alternation, pattern))
+      {
+        return null;
+      }
+    }
+    if (alternation.length() == 0)
+    {
+      return null;
+    }
+    try
+    {
+      return Pattern.compile(alternation.toString());
+    }
+    catch (PatternSyntaxException e)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Appends the pattern as one more alternative, or returns false if it is not safe to combine.
+   */
+  private static boolean appendAlternative(StringBuilder alternation, Pattern pattern)
+  {
+    String regexp = pattern.pattern();
+    if (pattern.flags() != 0 || UNCOMBINABLE.matcher(regexp).find())
+    {
+      return false;
+    }
+    if (alternation.length() > 0)
+    {
+      alternation.append('|');
+    }
+    alternation.append("(?:").append(regexp).append(')');
+    return true;
+  }
+
+  public boolean isError()
+  {
+    return errorLine != null;
+  }
+
+  public boolean isDone()
+  {
+    return doneLine != null;
+  }
+
+  /**
+   * The line that matched the error pattern, or null.
+   */
+  public String getErrorLine()
+  {
+    return errorLine;
+  }
+
+  /**
+   * The line that matched the done pattern, or null.
+   */
+  public String getDoneLine()
+  {
+    return doneLine;
+  }
+
+  /**
+   * The captured value, or null if no line has matched the named pattern.
+   */
+  public String getCapture(String captureName)
+  {
+    return captures.get(captureName);
+  }
+}
@@ -0,0 +1,9 @@
+package bluegreen.manager.utils;
+
+/**
+ * Receives percent-complete observations from a progress checker, e.g. the PercentProgress of an RDS snapshot.
+ */
+public interface PercentProgressListener
+{
+  void reportPercentProgress(int percentProgress);
+}
@@ -0,0 +1,19 @@
+package bluegreen.manager.utils;
+
+/**
+ * Decides how long a {@link Waiter} should sleep before each followup progress check.
+ * <p/>
+ * Implementations should be stateless, since one schedule is shared by every waiter made from the same
+ * WaiterParameters.  Anything a schedule needs to remember between sleeps is passed back in by the waiter.
+ */
+public interface PollSchedule
+{
+  /**
+   * Returns the delay to sleep before the next followup check.
+   *
+   * @param waitNum                   Number of the upcoming wait, starting at 1 for the sleep after the initial check.
+   * @param previousDelayMilliseconds Delay that the waiter slept before the previous check, or 0 if waitNum is 1.
+   * @param elapsedMilliseconds       Time elapsed since the waiter made its initial check.
+   */
+  long nextDelayMilliseconds(int waitNum, long previousDelayMilliseconds, long elapsedMilliseconds);
+}
@@ -0,0 +1,95 @@
+package bluegreen.manager.utils;
+
+/**
+ * Sleeps until just before the predicted finish of the operation, then polls tightly.
+ * <p/>
+ * The finish is predicted from the observed rate of percent progress (if the progress checker reports any), or
+ * else from an expected duration such as the measured duration of the same step in past runs.  Without either,
+ * backs off exponentially from the min delay.
+ * <p/>
+ * Unlike the other schedules, this one is stateful: make a new one for each wait.
+ */
+public class PredictivePollSchedule implements PollSchedule, PercentProgressListener
+{
+  private final long expectedDurationMilliseconds;
+  private final long minDelayMilliseconds;
+  private final long maxDelayMilliseconds;
+  private final long leadMilliseconds;
+  private volatile int percentProgress;
+
+  /**
+   * @param expectedDurationMilliseconds Expected duration of the operation from the start of the wait,
+   *                                     or 0 if unknown.
+   * @param minDelayMilliseconds         Tight polling delay, used when finish is predicted to be imminent.
+   * @param maxDelayMilliseconds         Longest single sleep, to bound the cost of a bad prediction.
+   * @param leadMilliseconds             How long before the predicted finish to wake up and start polling tightly.
+   */
+  public PredictivePollSchedule(long expectedDurationMilliseconds,
+                                long minDelayMilliseconds,
+                                long maxDelayMilliseconds,
+                                long leadMilliseconds)
+  {
+    this.expectedDurationMilliseconds = expectedDurationMilliseconds;
+    this.minDelayMilliseconds = minDelayMilliseconds;
+    this.maxDelayMilliseconds = maxDelayMilliseconds;
+    this.leadMilliseconds = leadMilliseconds;
+  }
+
+  @Override
+  public void reportPercentProgress(int percentProgress)
+  {
+    this.percentProgress = percentProgress;
+  }
+
+  @Override
+  public long nextDelayMilliseconds(int waitNum, long previousDelayMilliseconds, long elapsedMilliseconds)
+  {
+    long remaining = estimateRemainingMilliseconds(elapsedMilliseconds);
+    if (remaining >= 0)
+    {
+      return clamp(remaining - leadMilliseconds);
+    }
+    if (expectedDurationMilliseconds > 0)
+    {
+      //Overran the expected duration: poll at an interval proportional to the overrun
+      return clamp(elapsedMilliseconds - expectedDurationMilliseconds);
+    }
+    return previousDelayMilliseconds <= 0 ? minDelayMilliseconds : clamp(2 * previousDelayMilliseconds);
+  }
+
+  /**
+   * Returns the predicted time remaining til the operation finishes, or -1 if there is no prediction.
+   * <p/>
+   * Percent progress is extrapolated linearly from the start of the wait, which is assumed to coincide with the
+   * start of the operation.
+   */
+  long estimateRemainingMilliseconds(long elapsedMilliseconds)
+  {
+    final int percent = percentProgress;
+    if (percent >= 100)
+    {
+      return 0;
+    }
+    if (percent > 0)
+    {
+      return elapsedMilliseconds * (100 - percent) / percent;
+    }
+    if (expectedDurationMilliseconds > elapsedMilliseconds)
+    {
+      return expectedDurationMilliseconds - elapsedMilliseconds;
+    }
+    return -1;
+  }
+
+  private long clamp(long delay)
+  {
+    return Math.max(minDelayMilliseconds, Math.min(maxDelayMilliseconds, delay));
+  }
+
+  @Override
+  public String toString()
+  {
+    return "PredictivePollSchedule[expected: " + expectedDurationMilliseconds + "ms, min: " + minDelayMilliseconds
+        + "ms, max: " + maxDelayMilliseconds + "ms, lead: " + leadMilliseconds + "ms]";
+  }
+}
@@ -0,0 +1,175 @@
+package bluegreen.manager.utils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Kills a local process along with every process it started.
+ * <p/>
+ * Process.destroyForcibly kills only the direct child, so a shell script that started other commands leaves them
+ * running, still holding the script's stdout open.  JDK8 has no ProcessHandle to list a process's descendants, so here
+ * we read the unix pid by reflection and walk the parent-child table printed by 'ps'.  On a platform where either of
+ * those is not available, only the direct child is killed.
+ */
+@Component
+public class ProcessKiller
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProcessKiller.class);
+
+  private static final String[] PS_COMMAND = { "ps", "-A", "-o", "pid=", "-o", "ppid=" };
+
+  @Autowired
+  private ProcessBuilderAdapterFactory processBuilderAdapterFactory;
+
+  /**
+   * Kills the process and its descendants.  The descendants are listed before anything is killed, because once their
+   * parent is gone they are adopted by init and can no longer be traced back to it.
+   */
+  public void destroyTree(Process process)
+  {
+    Integer pid = getPid(process);
+    List<Integer> descendants = pid == null ? new ArrayList<Integer>() : listDescendants(pid);
+    process.destroyForcibly();
+    if (!descendants.isEmpty())
+    {
+      LOGGER.debug("Killing " + descendants.size() + " descendants of process " + pid + ": " + descendants);
+      killAll(descendants);
+    }
+  }
+
+  /**
+   * Returns the unix pid of the process, or null if the process is not a unix process.
+   */
+  Integer getPid(Process process)
+  {
+    try
+    {
+      Field pidField = process.getClass().getDeclaredField("pid");
+      pidField.setAccessible(true);
+      return pidField.getInt(process);
+    }
+    catch (NoSuchFieldException e)
+    {
+      LOGGER.debug("No pid for process of " + process.getClass() + ", can only kill the process itself");
+      return null;
+    }
+    catch (IllegalAccessException e)
+    {
+      LOGGER.debug("Cannot read pid of process of " + process.getClass() + ", can only kill the process itself");
+      return null;
+    }
+  }
+
+  /**
+   * Returns the pids of all descendants of the pid, parents before children.  Empty if 'ps' fails.
+   */
+  List<Integer> listDescendants(int pid)
+  {
+    try
+    {
+      return parseDescendants(pid, runAndRead(PS_COMMAND));
+    }
+    catch (IOException e)
+    {
+      LOGGER.warn("Cannot list descendants of process " + pid + ", can only kill the process itself", e);
+      return new ArrayList<Integer>();
+    }
+  }
+
+  /**
+   * Walks the parent-child table printed by 'ps -o pid= -o ppid=' from the pid, parents before children.
+   */
+  List<Integer> parseDescendants(int pid, String psOutput)
+  {
+    Map<Integer, List<Integer>> childrenByParent = new HashMap<Integer, List<Integer>>();
+    for (String line : StringUtils.split(psOutput, "\n"))
+    {
+      String[] fields = StringUtils.split(line);
+      if (fields.length == 2 && StringUtils.isNumeric(fields[0]) && StringUtils.isNumeric(fields[1]))
+      {
+        Integer parent = Integer.valueOf(fields[1]);
+        if (!childrenByParent.containsKey(parent))
+        {
+          childrenByParent.put(parent, new ArrayList<Integer>());
+        }
+        childrenByParent.get(parent).add(Integer.valueOf(fields[0]));
+      }
+    }
+    List<Integer> descendants = new ArrayList<Integer>();
+    List<Integer> parents = new ArrayList<Integer>();
+    parents.add(pid);
+    for (int idx = 0; idx < parents.size(); ++idx)
+    {
+      List<Integer> children = childrenByParent.get(parents.get(idx));
+      if (children != null)
+      {
+        for (Integer child : children)
+        {
+          if (!descendants.contains(child) && child != pid)
+          {
+            descendants.add(child);
+            parents.add(child);
+          }
+        }
+      }
+    }
+    return descendants;
+  }
+
+  /**
+   * Sends SIGKILL to the pids.  A pid that has exited meanwhile makes 'kill' complain, which is fine.
+   */
+  private void killAll(List<Integer> pids)
+  {
+    String[] command = new String[pids.size() + 2];
+    command[0] = "kill";
+    command[1] = "-KILL";
+    for (int idx = 0; idx < pids.size(); ++idx)
+    {
+      command[idx + 2] = String.valueOf(pids.get(idx));
+    }
+    try
+    {
+      runAndRead(command);
+    }
+    catch (IOException e)
+    {
+      LOGGER.warn("Failed to kill processes " + pids, e);
+    }
+  }
+
+  /**
+   * Runs a short command to completion and returns its stdout.
+   */
+  private String runAndRead(String[] command) throws IOException
+  {
+    Process process = processBuilderAdapterFactory.create(command).redirectErrorStream(true).start();
+    try
+    {
+      String output = IOUtils.toString(process.getInputStream());
+      process.waitFor();
+      return output;
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while running " + command[0], e);
+    }
+    finally
+    {
+      IOUtils.closeQuietly(process.getInputStream());
+      IOUtils.closeQuietly(process.getOutputStream());
+    }
+  }
+}
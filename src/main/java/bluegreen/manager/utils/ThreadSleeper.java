@@ -5,7 +5,8 @@ import org.springframework.stereotype.Component;
 /**
  * Invokes Thread.sleep.
  * <p/>
- * Pulling this into its own class makes the client classes more testable.
+ * Pulling this into its own class makes the client classes more testable.  Also reports the current time, so a
+ * test that mocks the sleeper gets a deterministic clock along with it.
  */
 @Component
 public class ThreadSleeper
@@ -14,4 +15,9 @@ public class ThreadSleeper
   {
     Thread.sleep(milliseconds);
   }
+
+  public long currentTimeMillis()
+  {
+    return System.currentTimeMillis();
+  }
 }
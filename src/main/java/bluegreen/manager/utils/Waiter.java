@@ -1,5 +1,10 @@
 package bluegreen.manager.utils;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +16,9 @@ import org.springframework.stereotype.Component;
  * done.  During each iteration the waiter executes a progress-checking command and displays the progress.
  * <p/>
  * When the ongoing external operation has reached its natural conclusion, we expect a result object of type T.
+ * <p/>
+ * Can wait non-blocking on a shared scheduler (waitAsync), or blocking (waitTilDone) which is the same wait run on
+ * the calling thread.  A waiter is single-use: make a new one for each wait.
  */
 @Scope("prototype")
 @Component
@@ -28,6 +36,14 @@ public class Waiter<T>
   private ThreadSleeper threadSleeper;
   private ProgressChecker<T> progressChecker;
 
+  private StopWatch stopWatch;
+  private PollSchedule pollSchedule;
+  private long maxWaitMilliseconds;
+  private long startMilliseconds;
+  private long totalSleptMilliseconds;
+  private long previousDelay;
+  private int waitNum;
+
   public Waiter(WaiterParameters waiterParameters,
                 ThreadSleeper threadSleeper,
                 ProgressChecker<T> progressChecker)
@@ -39,52 +55,226 @@ public class Waiter<T>
 
   /**
    * Waits (blocking) til the progressChecker says we are done, or until an uncaught error occurs, or until timeout.
+   * <p/>
+   * Sleep durations come from the pollSchedule in waiterParameters, and timeout occurs once the elapsed time reaches
+   * the maxWait budget.  Elapsed time is the larger of wall clock time and total time slept, so timeout does not
+   * depend on how slow or fast the progress checks are, nor on the clock being real.
+   * <p/>
+   * Thin wrapper of the async wait, which runs its checks on the calling thread and sleeps the delays with the
+   * threadSleeper.
    *
    * @return The result object when the progressChecker determines that we have reached a conclusion.
    */
   public T waitTilDone()
   {
-    StopWatch stopWatch = new StopWatch();
-    stopWatch.start();
-    int waitNum = 0;
-    while (waitNum < waiterParameters.getMaxNumWaits() + 1) //Not counting "waitNum#0" since first one doesn't call sleep()
+    return await(waitAsync(new CallerThreadStepScheduler()));
+  }
+
+  /**
+   * Waits (non-blocking) til the progressChecker says we are done, or until an uncaught error occurs, or until
+   * timeout.  Each check runs as a task on the scheduler, and the delays between checks are scheduled rather than
+   * slept, so a handful of scheduler threads can serve many concurrent waiters.
+   *
+   * @return Future that completes with the result object or timeout result, or completes exceptionally if a
+   * progress check throws.
+   */
+  public CompletableFuture<T> waitAsync(final ScheduledExecutorService scheduler)
+  {
+    return waitAsync(new StepScheduler()
     {
-      if (waitNum == 0)
+      @Override
+      public void schedule(Runnable step, long delay)
       {
-        progressChecker.initialCheck();
+        scheduler.schedule(step, delay, TimeUnit.MILLISECONDS);
       }
-      else
+    });
+  }
+
+  private CompletableFuture<T> waitAsync(final StepScheduler stepScheduler)
+  {
+    final CompletableFuture<T> future = new CompletableFuture<T>();
+    start();
+    stepScheduler.schedule(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        asyncStep(stepScheduler, future, this);
+      }
+    }, 0L);
+    return future;
+  }
+
+  /**
+   * Blocks for the result of an async wait.  A progress check exception is rethrown as is.
+   */
+  static <T> T await(CompletableFuture<T> future)
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting", e);
+    }
+    catch (ExecutionException e)
+    {
+      if (e.getCause() instanceof RuntimeException)
+      {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Runs one check for waitAsync, then either completes the future or reschedules itself after the next delay.
+   */
+  private void asyncStep(StepScheduler stepScheduler, CompletableFuture<T> future, Runnable self)
+  {
+    try
+    {
+      Long delay = checkAndPlanNextDelay();
+      if (delay == null)
       {
-        progressChecker.followupCheck(waitNum);
+        future.complete(conclude());
       }
-      if (progressChecker.isDone())
+      else
       {
-        LOGGER.info("Done: " + progressChecker.getDescription() + " ... time elapsed: " + stopWatch.toString());
-        return progressChecker.getResult();
+        logWait(delay);
+        stepScheduler.schedule(self, delay);
       }
-      ++waitNum;
-      sleep(waitNum, stopWatch);
+    }
+    catch (RuntimeException e)
+    {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Resets the wait state prior to the initial check.
+   */
+  private void start()
+  {
+    stopWatch = new StopWatch();
+    stopWatch.start();
+    pollSchedule = waiterParameters.getPollSchedule();
+    maxWaitMilliseconds = waiterParameters.getMaxWaitMilliseconds();
+    startMilliseconds = threadSleeper.currentTimeMillis();
+    totalSleptMilliseconds = 0;
+    previousDelay = 0;
+    waitNum = 0;
+  }
+
+  /**
+   * Makes the next progress check (initial or followup).
+   *
+   * @return Delay before the next check, or null if done or out of time.
+   */
+  private Long checkAndPlanNextDelay()
+  {
+    if (waitNum == 0)
+    {
+      progressChecker.initialCheck();
+    }
+    else
+    {
+      progressChecker.followupCheck(waitNum);
+    }
+    if (progressChecker.isDone())
+    {
+      return null;
+    }
+    final long elapsed = Math.max(threadSleeper.currentTimeMillis() - startMilliseconds, totalSleptMilliseconds);
+    if (elapsed >= maxWaitMilliseconds)
+    {
+      return null;
+    }
+    ++waitNum;
+    final long delay = Math.max(1L, Math.min(pollSchedule.nextDelayMilliseconds(waitNum, previousDelay, elapsed),
+        maxWaitMilliseconds - elapsed));
+    previousDelay = delay;
+    totalSleptMilliseconds += delay;
+    return delay;
+  }
+
+  /**
+   * Returns the result if done, else the timeout result.
+   */
+  private T conclude()
+  {
+    if (progressChecker.isDone())
+    {
+      LOGGER.info("Done: " + progressChecker.getDescription() + " ... time elapsed: " + stopWatch.toString());
+      return progressChecker.getResult();
     }
     return progressChecker.timeout();
   }
 
   /**
-   * Sleeps for the wait delay, and catches interrupt exceptions.
+   * Reports elapsed time every waitReportInterval waits.
    */
-  private void sleep(int waitNum, StopWatch stopWatch)
+  private void logWait(long delay)
   {
-    if (0 < waitNum && waitNum < waiterParameters.getMaxNumWaits() + 1)
+    if (waitNum % waiterParameters.getWaitReportInterval() == 0)
     {
-      if (waitNum % waiterParameters.getWaitReportInterval() == 0)
+      LOGGER.info("Wait #" + waitNum + " (max " + maxWaitMilliseconds + "ms) for "
+          + progressChecker.getDescription() + " ... time elapsed: " + stopWatch.toString());
+    }
+    if (delay >= LONG_SLEEP_THRESHOLD)
+    {
+      LOGGER.debug("Going to sleep for " + delay + " milliseconds");
+    }
+  }
+
+  /**
+   * Runs the next step of a wait after a delay.
+   */
+  private interface StepScheduler
+  {
+    void schedule(Runnable step, long delay);
+  }
+
+  /**
+   * Runs the steps on the calling thread, sleeping the delays.  Steps are run one after the other rather than
+   * nested, so a long wait does not grow the stack.
+   */
+  private class CallerThreadStepScheduler implements StepScheduler
+  {
+    private Runnable nextStep;
+    private long nextDelay;
+    private boolean running;
+
+    @Override
+    public void schedule(Runnable step, long delay)
+    {
+      nextStep = step;
+      nextDelay = delay;
+      if (running)
+      {
+        return;
+      }
+      running = true;
+      while (nextStep != null)
       {
-        LOGGER.info("Wait #" + waitNum + " (max " + waiterParameters.getMaxNumWaits() + ") for "
-            + progressChecker.getDescription() + " ... time elapsed: " + stopWatch.toString());
+        Runnable currentStep = nextStep;
+        nextStep = null;
+        sleep(nextDelay);
+        currentStep.run();
       }
-      final long delay = waitNum == 1 ? waiterParameters.getInitialWaitDelayMilliseconds()
-          : waiterParameters.getFollowupWaitDelayMilliseconds();
-      if (delay >= LONG_SLEEP_THRESHOLD)
+      running = false;
+    }
+
+    /**
+     * Sleeps for the wait delay, and catches interrupt exceptions.
+     */
+    private void sleep(long delay)
+    {
+      if (delay <= 0)
       {
-        LOGGER.debug("Going to sleep for " + delay + " milliseconds");
+        return;
       }
       try
       {
@@ -96,5 +286,4 @@ public class Waiter<T>
       }
     }
   }
-
 }
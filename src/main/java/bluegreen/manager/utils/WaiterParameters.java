@@ -21,10 +21,23 @@ public class WaiterParameters
   private int waitReportInterval;
 
   /**
-   * Timeout occurs after max num waits.  Number includes the initial wait.
+   * Number of waits (including the initial wait) that make up the default time budget, when maxWaitMilliseconds
+   * is not set.
    */
   private int maxNumWaits;
 
+  /**
+   * Timeout occurs when the waiter has been waiting this long.  If zero, defaults to the time it takes to sleep
+   * through maxNumWaits at the initial and followup delays.
+   */
+  private long maxWaitMilliseconds;
+
+  /**
+   * Decides the delay before each followup check.  If null, defaults to a FixedPollSchedule of the initial and
+   * followup delays.
+   */
+  private PollSchedule pollSchedule;
+
   public WaiterParameters()
   {
   }
@@ -70,6 +83,56 @@ public class WaiterParameters
     this.waitReportInterval = waitReportInterval;
   }
 
+  /**
+   * Returns the configured pollSchedule, or a fixed schedule of the initial and followup delays if none.
+   */
+  public PollSchedule getPollSchedule()
+  {
+    if (pollSchedule == null)
+    {
+      return new FixedPollSchedule(initialWaitDelayMilliseconds, followupWaitDelayMilliseconds);
+    }
+    return pollSchedule;
+  }
+
+  public void setPollSchedule(PollSchedule pollSchedule)
+  {
+    this.pollSchedule = pollSchedule;
+  }
+
+  /**
+   * Returns the configured time budget, or else the time budget implied by maxNumWaits of the fixed delays.
+   */
+  public long getMaxWaitMilliseconds()
+  {
+    if (maxWaitMilliseconds > 0)
+    {
+      return maxWaitMilliseconds;
+    }
+    if (maxNumWaits <= 0)
+    {
+      return 0;
+    }
+    return initialWaitDelayMilliseconds + (maxNumWaits - 1) * followupWaitDelayMilliseconds;
+  }
+
+  public void setMaxWaitMilliseconds(long maxWaitMilliseconds)
+  {
+    this.maxWaitMilliseconds = maxWaitMilliseconds;
+  }
+
+  /**
+   * Returns a copy of these parameters with a different pollSchedule.  The time budget stays the same.
+   */
+  public WaiterParameters copyWithPollSchedule(PollSchedule pollSchedule)
+  {
+    WaiterParameters copy = new WaiterParameters(initialWaitDelayMilliseconds, followupWaitDelayMilliseconds,
+        waitReportInterval, maxNumWaits);
+    copy.setMaxWaitMilliseconds(getMaxWaitMilliseconds());
+    copy.setPollSchedule(pollSchedule);
+    return copy;
+  }
+
   public int getMaxNumWaits()
   {
     return maxNumWaits;
@@ -0,0 +1,77 @@
+package bluegreen.manager.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Owns the one scheduled thread pool shared by all asynchronous waiters in the JVM.
+ * <p/>
+ * Threads are daemons, so an unfinished wait never holds up jvm exit.
+ */
+@Component
+public class WaiterScheduler
+{
+  @Value("${bluegreen.waiter.scheduler.numThreads}")
+  private int numThreads;
+
+  private ScheduledExecutorService scheduledExecutorService;
+
+  @PostConstruct
+  public void init()
+  {
+    final AtomicInteger threadNum = new AtomicInteger();
+    scheduledExecutorService = Executors.newScheduledThreadPool(numThreads, new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable runnable)
+      {
+        Thread thread = new Thread(runnable, "waiter-" + threadNum.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  @PreDestroy
+  public void shutdown()
+  {
+    scheduledExecutorService.shutdownNow();
+  }
+
+  /**
+   * Starts the waiter on the shared scheduler and returns its future result.
+   */
+  public <T> CompletableFuture<T> waitAsync(Waiter<T> waiter)
+  {
+    return waiter.waitAsync(scheduledExecutorService);
+  }
+
+  /**
+   * Waits for the waiter on the shared scheduler and returns its result.  The checks and delays run on the scheduler
+   * threads, and the calling thread only parks on the result, so concurrent tasks do not each hold a thread in sleep
+   * between their checks.
+   */
+  public <T> T waitTilDone(Waiter<T> waiter)
+  {
+    return Waiter.await(waitAsync(waiter));
+  }
+
+  public ScheduledExecutorService getScheduledExecutorService()
+  {
+    return scheduledExecutorService;
+  }
+
+  //Test purposes only
+  void setNumThreads(int numThreads)
+  {
+    this.numThreads = numThreads;
+  }
+}
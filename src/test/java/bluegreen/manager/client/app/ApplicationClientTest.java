@@ -1,30 +1,46 @@
 package bluegreen.manager.client.app;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.CookieStore;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.fluent.Executor;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import bluegreen.manager.client.http.AsyncHttpHelper;
 import bluegreen.manager.client.http.ExecutorFactory;
 import bluegreen.manager.client.http.HttpHelper;
 import bluegreen.manager.client.http.HttpMethodType;
 import bluegreen.manager.model.domain.Application;
 import bluegreen.manager.model.domain.EnvironmentTestHelper;
+import bluegreen.manager.utils.FixedPollSchedule;
 import bluegreen.manager.utils.ThreadSleeper;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -44,6 +60,9 @@ public class ApplicationClientTest
   private static final String FAKE_APP_URI = FAKE_APPLICATION.makeHostnameUri() + "/" + METHOD_PATH;
   private static final Integer NO_OUTER_TRY = null;
   private static final Integer OUTER_FIRST_TRY = 0;
+  private static final int MAX_NUM_TRIES = 3;
+  private static final long BACKOFF_DELAY = 5000L;
+  private static final long MAX_HINT = 10000L;
 
   @InjectMocks
   private ApplicationClient applicationClient;
@@ -54,6 +73,12 @@ public class ApplicationClientTest
   @Mock
   private HttpHelper mockHttpHelper;
 
+  @Mock
+  private AsyncHttpHelper mockAsyncHttpHelper;
+
+  @Mock
+  private ScheduledExecutorService mockRetryScheduler;
+
   private Gson gson; //Final class, mockito cannot mock
 
   @Mock
@@ -65,6 +90,9 @@ public class ApplicationClientTest
   @Mock
   private CookieStore mockCookieStore;
 
+  @Mock
+  private RetryMetrics mockRetryMetrics;
+
   private ApplicationSession fakeSession;
 
   @Before
@@ -74,8 +102,18 @@ public class ApplicationClientTest
     gsonFactory.setGsonBuilder(new GsonBuilder());
     gson = gsonFactory.makeGson();
     applicationClient.setGson(gson);
+    applicationClient.setRetryPolicy(new RetryPolicy(MAX_NUM_TRIES, MAX_HINT, new FixedPollSchedule(BACKOFF_DELAY, BACKOFF_DELAY)));
     fakeSession = new ApplicationSession(mockExecutor, mockCookieStore);
     when(mockExecutorFactory.makeExecutor()).thenReturn(mockExecutor);
+    doAnswer(new Answer()
+    {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable
+      {
+        ((Runnable) invocation.getArguments()[0]).run(); //Retry right away
+        return null;
+      }
+    }).when(mockRetryScheduler).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
   }
 
   /**
@@ -142,7 +180,7 @@ public class ApplicationClientTest
   @Test
   public void testRequestWithRetry_OkThirdTry() throws InterruptedException
   {
-    assertTrue("Test requirement", 3 >= ApplicationClient.MAX_NUM_TRIES);
+    assertTrue("Test requirement", 3 >= MAX_NUM_TRIES);
 
     when(mockHttpHelper.executeGet(mockExecutor, FAKE_APP_URI))
         .thenReturn(null)
@@ -154,7 +192,28 @@ public class ApplicationClientTest
 
     assertFalse(response.isLockError());
     verify(mockHttpHelper, times(3)).executeGet(mockExecutor, FAKE_APP_URI);
-    verify(mockThreadSleeper, times(2)).sleep(anyLong());
+    verify(mockThreadSleeper, times(2)).sleep(BACKOFF_DELAY);
+    verify(mockRetryMetrics).record("GET " + METHOD_PATH, 3, 2 * BACKOFF_DELAY, true);
+  }
+
+  /**
+   * Tests that the application's retry-after hint replaces the backoff delay, capped at the policy's max hint.
+   */
+  @Test
+  public void testRequestWithRetry_RetryAfterHint() throws InterruptedException
+  {
+    when(mockHttpHelper.executeGet(mockExecutor, FAKE_APP_URI))
+        .thenReturn("{'lockError': true, 'retryAfterMilliseconds': 250}")
+        .thenReturn("{'lockError': true, 'retryAfterMilliseconds': 999999}")
+        .thenReturn(JSON_FAKE_LOCKABLE_NOT_LOCKED);
+
+    Lockable response = applicationClient.requestWithRetry(FAKE_APPLICATION, fakeSession, HttpMethodType.GET,
+        METHOD_PATH, FakeLockable.class, OUTER_FIRST_TRY);
+
+    assertFalse(response.isLockError());
+    verify(mockThreadSleeper).sleep(250L);
+    verify(mockThreadSleeper).sleep(MAX_HINT);
+    verify(mockRetryMetrics).record("GET " + METHOD_PATH, 3, 250L + MAX_HINT, true);
   }
 
   /**
@@ -169,8 +228,146 @@ public class ApplicationClientTest
         METHOD_PATH, FakeLockable.class, OUTER_FIRST_TRY);
 
     assertTrue(response.isLockError());
-    verify(mockHttpHelper, times(ApplicationClient.MAX_NUM_TRIES)).executePut(mockExecutor, FAKE_APP_URI);
-    verify(mockThreadSleeper, times(ApplicationClient.MAX_NUM_TRIES - 1)).sleep(anyLong());
+    verify(mockHttpHelper, times(MAX_NUM_TRIES)).executePut(mockExecutor, FAKE_APP_URI);
+    verify(mockThreadSleeper, times(MAX_NUM_TRIES - 1)).sleep(anyLong());
+    verify(mockRetryMetrics).record("PUT " + METHOD_PATH, MAX_NUM_TRIES, (MAX_NUM_TRIES - 1) * BACKOFF_DELAY, false);
+  }
+
+  /**
+   * Tests that a rejected session is logged into again, on the same executor and cookieStore, and the request repeated.
+   */
+  @Test
+  public void testRequestWithRetry_Reauthenticate()
+  {
+    when(mockHttpHelper.executeGet(mockExecutor, FAKE_APP_URI))
+        .thenThrow(new RuntimeException("GET uri: " + FAKE_APP_URI, new HttpResponseException(HttpStatus.SC_UNAUTHORIZED, "Unauthorized")))
+        .thenReturn(JSON_FAKE_LOCKABLE_NOT_LOCKED);
+
+    Lockable response = applicationClient.requestWithRetry(FAKE_APPLICATION, fakeSession, HttpMethodType.GET,
+        METHOD_PATH, FakeLockable.class, OUTER_FIRST_TRY);
+
+    assertFalse(response.isLockError());
+    verify(mockCookieStore).clear();
+    verify(mockHttpHelper).postAuthForCookie(eq(mockExecutor), anyString(), any(NameValuePair[].class));
+    verify(mockHttpHelper, times(2)).executeGet(mockExecutor, FAKE_APP_URI);
+    verifyZeroInteractions(mockThreadSleeper);
+  }
+
+  /**
+   * Tests that other http errors are not mistaken for a rejected session.
+   */
+  @Test(expected = RuntimeException.class)
+  public void testRequestWithRetry_ServerError()
+  {
+    when(mockHttpHelper.executeGet(mockExecutor, FAKE_APP_URI))
+        .thenThrow(new RuntimeException("GET uri: " + FAKE_APP_URI, new HttpResponseException(HttpStatus.SC_INTERNAL_SERVER_ERROR, "Oops")));
+
+    try
+    {
+      applicationClient.requestWithRetry(FAKE_APPLICATION, fakeSession, HttpMethodType.GET,
+          METHOD_PATH, FakeLockable.class, OUTER_FIRST_TRY);
+    }
+    finally
+    {
+      verify(mockHttpHelper, never()).postAuthForCookie(any(Executor.class), anyString(), any(NameValuePair[].class));
+    }
+  }
+
+  /**
+   * Tests the async case where the request fails twice then works the third time: retries are scheduled, not slept.
+   */
+  @Test
+  public void testRequestWithRetryAsync_OkThirdTry() throws Exception
+  {
+    when(mockAsyncHttpHelper.executeGet(mockCookieStore, FAKE_APP_URI))
+        .thenReturn(CompletableFuture.completedFuture((String) null))
+        .thenReturn(CompletableFuture.completedFuture(JSON_FAKE_LOCKABLE_LOCKED))
+        .thenReturn(CompletableFuture.completedFuture(JSON_FAKE_LOCKABLE_NOT_LOCKED));
+
+    FakeLockable response = applicationClient.requestWithRetryAsync(FAKE_APPLICATION, fakeSession, HttpMethodType.GET,
+        METHOD_PATH, FakeLockable.class, OUTER_FIRST_TRY).get();
+
+    assertFalse(response.isLockError());
+    verify(mockAsyncHttpHelper, times(3)).executeGet(mockCookieStore, FAKE_APP_URI);
+    verify(mockRetryScheduler, times(2)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    verifyZeroInteractions(mockThreadSleeper, mockHttpHelper);
+  }
+
+  /**
+   * Tests the async case where the request always returns lock error: future returns the final response.
+   */
+  @Test
+  public void testRequestWithRetryAsync_AlwaysLocked() throws Exception
+  {
+    when(mockAsyncHttpHelper.executePut(mockCookieStore, FAKE_APP_URI))
+        .thenReturn(CompletableFuture.completedFuture(JSON_FAKE_LOCKABLE_LOCKED));
+
+    FakeLockable response = applicationClient.requestWithRetryAsync(FAKE_APPLICATION, fakeSession, HttpMethodType.PUT,
+        METHOD_PATH, FakeLockable.class, OUTER_FIRST_TRY).get();
+
+    assertTrue(response.isLockError());
+    verify(mockAsyncHttpHelper, times(MAX_NUM_TRIES)).executePut(mockCookieStore, FAKE_APP_URI);
+    verify(mockRetryScheduler, times(MAX_NUM_TRIES - 1)).schedule(any(Runnable.class), eq(BACKOFF_DELAY), eq(TimeUnit.MILLISECONDS));
+    verify(mockRetryMetrics).record("PUT " + METHOD_PATH, MAX_NUM_TRIES, (MAX_NUM_TRIES - 1) * BACKOFF_DELAY, false);
+  }
+
+  /**
+   * Tests that an http failure fails the future without retrying, same as the blocking form throws.
+   */
+  @Test(expected = ExecutionException.class)
+  public void testRequestWithRetryAsync_HttpFailure() throws Exception
+  {
+    CompletableFuture<String> failure = new CompletableFuture<String>();
+    failure.completeExceptionally(new RuntimeException("connection refused"));
+    when(mockAsyncHttpHelper.executeGet(mockCookieStore, FAKE_APP_URI)).thenReturn(failure);
+
+    try
+    {
+      applicationClient.requestWithRetryAsync(FAKE_APPLICATION, fakeSession, HttpMethodType.GET,
+          METHOD_PATH, FakeLockable.class, OUTER_FIRST_TRY).get();
+    }
+    finally
+    {
+      verify(mockRetryScheduler, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+  }
+
+  /**
+   * Tests that the async form also logs in again when the session is rejected.
+   */
+  @Test
+  public void testRequestWithRetryAsync_Reauthenticate() throws Exception
+  {
+    CompletableFuture<String> forbidden = new CompletableFuture<String>();
+    forbidden.completeExceptionally(new RuntimeException(new HttpResponseException(HttpStatus.SC_FORBIDDEN, "Forbidden")));
+    when(mockAsyncHttpHelper.executeGet(mockCookieStore, FAKE_APP_URI))
+        .thenReturn(forbidden)
+        .thenReturn(CompletableFuture.completedFuture(JSON_FAKE_LOCKABLE_NOT_LOCKED));
+    when(mockAsyncHttpHelper.postAuthForCookie(eq(mockCookieStore), anyString(), any(NameValuePair[].class)))
+        .thenReturn(CompletableFuture.completedFuture((Void) null));
+
+    FakeLockable response = applicationClient.requestWithRetryAsync(FAKE_APPLICATION, fakeSession, HttpMethodType.GET,
+        METHOD_PATH, FakeLockable.class, OUTER_FIRST_TRY).get();
+
+    assertFalse(response.isLockError());
+    verify(mockCookieStore).clear();
+    verify(mockAsyncHttpHelper, times(2)).executeGet(mockCookieStore, FAKE_APP_URI);
+  }
+
+  /**
+   * Async authentication returns a session whose executor and async requests share one cookieStore.
+   */
+  @Test
+  public void testAuthenticateAsync() throws Exception
+  {
+    when(mockAsyncHttpHelper.postAuthForCookie(any(CookieStore.class), anyString(), any(NameValuePair[].class)))
+        .thenReturn(CompletableFuture.completedFuture((Void) null));
+
+    ApplicationSession session = applicationClient.authenticateAsync(FAKE_APPLICATION).get();
+
+    assertSame(mockExecutor, session.getHttpExecutor());
+    verify(mockExecutor).cookieStore(session.getCookieStore());
+    verify(mockAsyncHttpHelper).postAuthForCookie(eq(session.getCookieStore()), anyString(), any(NameValuePair[].class));
   }
 
   /**
@@ -213,6 +410,24 @@ public class ApplicationClientTest
     assertOnDbFreezeProgress(applicationClient.getDbFreezeProgress(FAKE_APPLICATION, fakeSession, OUTER_FIRST_TRY), true);
   }
 
+  /**
+   * Long-poll request carries the wait-while mode and max seconds, and parses the long-poll capability flag.
+   */
+  @Test
+  public void testGetDbFreezeProgressLongPoll()
+  {
+    String expectedUri = FAKE_APPLICATION.makeHostnameUri() + "/" + DbFreezeRest.GET_DB_FREEZE_PROGRESS
+        + "?waitWhileMode=FLUSHING&maxWaitSeconds=20";
+    when(mockHttpHelper.executeGet(mockExecutor, expectedUri))
+        .thenReturn(JSON_DB_FREEZE_PROGRESS.replaceFirst("}$", ", 'longPollSupported':true}"));
+
+    DbFreezeProgress progress = applicationClient.getDbFreezeProgressLongPoll(FAKE_APPLICATION, fakeSession,
+        DbFreezeMode.FLUSHING, 20, OUTER_FIRST_TRY);
+
+    assertOnDbFreezeProgress(progress, true);
+    assertTrue(progress.isLongPollSupported());
+  }
+
   /**
    * Tests a successful call to the enter-freeze resource.
    */
@@ -270,6 +485,7 @@ public class ApplicationClientTest
   {
 
     private boolean lockError;
+    private Long retryAfterMilliseconds;
 
     @Override
     public boolean isLockError()
@@ -277,6 +493,12 @@ public class ApplicationClientTest
       return lockError;
     }
 
+    @Override
+    public Long getRetryAfterMilliseconds()
+    {
+      return retryAfterMilliseconds;
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,116 @@
+package bluegreen.manager.client.app;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import bluegreen.manager.model.domain.Application;
+import bluegreen.manager.model.domain.EnvironmentTestHelper;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests that the tasks of a job share clients and sessions.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ApplicationSessionCacheTest
+{
+  private static final Application FAKE_APPLICATION = EnvironmentTestHelper.makeFakeApplication();
+
+  @InjectMocks
+  private ApplicationSessionCache applicationSessionCache;
+
+  @Mock
+  private ApplicationClientFactory mockApplicationClientFactory;
+
+  @Mock
+  private ApplicationClient mockApplicationClient;
+
+  @Mock
+  private ApplicationSession mockApplicationSession;
+
+  @Before
+  public void setUp()
+  {
+    when(mockApplicationClientFactory.create(anyString(), anyString())).thenReturn(mockApplicationClient);
+    when(mockApplicationClient.authenticate(FAKE_APPLICATION)).thenReturn(mockApplicationSession);
+  }
+
+  /**
+   * Second task to ask for the session gets the first one's login.
+   */
+  @Test
+  public void testGetSession_LogsInOnce()
+  {
+    assertSame(mockApplicationSession, applicationSessionCache.getSession(FAKE_APPLICATION));
+    assertSame(mockApplicationSession, applicationSessionCache.getSession(FAKE_APPLICATION));
+    assertSame(mockApplicationClient, applicationSessionCache.getClient(FAKE_APPLICATION));
+
+    verify(mockApplicationClientFactory, times(1)).create(anyString(), anyString());
+    verify(mockApplicationClient, times(1)).authenticate(FAKE_APPLICATION);
+  }
+
+  /**
+   * Each application gets its own client.
+   */
+  @Test
+  public void testGetClient_PerApplication()
+  {
+    Application otherApplication = EnvironmentTestHelper.makeFakeApplication(1);
+    otherApplication.setId(FAKE_APPLICATION.getId() + 1);
+
+    applicationSessionCache.getClient(FAKE_APPLICATION);
+    applicationSessionCache.getClient(otherApplication);
+    applicationSessionCache.getClient(FAKE_APPLICATION);
+
+    verify(mockApplicationClientFactory, times(2)).create(anyString(), anyString());
+  }
+
+  /**
+   * Callers asking while the async login is in flight share it, and later callers reuse its session.
+   */
+  @Test
+  public void testGetSessionAsync_SharesPendingLogin()
+  {
+    CompletableFuture<ApplicationSession> login = new CompletableFuture<ApplicationSession>();
+    when(mockApplicationClient.authenticateAsync(FAKE_APPLICATION)).thenReturn(login);
+
+    CompletableFuture<ApplicationSession> first = applicationSessionCache.getSessionAsync(FAKE_APPLICATION);
+    CompletableFuture<ApplicationSession> second = applicationSessionCache.getSessionAsync(FAKE_APPLICATION);
+    login.complete(mockApplicationSession);
+
+    assertSame(mockApplicationSession, first.join());
+    assertSame(mockApplicationSession, second.join());
+    assertSame(mockApplicationSession, applicationSessionCache.getSession(FAKE_APPLICATION));
+    verify(mockApplicationClient, times(1)).authenticateAsync(FAKE_APPLICATION);
+    verify(mockApplicationClient, never()).authenticate(any(Application.class));
+  }
+
+  /**
+   * A failed async login is not cached: the next caller logs in again.
+   */
+  @Test
+  public void testGetSessionAsync_FailedLoginRetried()
+  {
+    CompletableFuture<ApplicationSession> failedLogin = new CompletableFuture<ApplicationSession>();
+    failedLogin.completeExceptionally(new RuntimeException("Bad credentials"));
+    when(mockApplicationClient.authenticateAsync(FAKE_APPLICATION))
+        .thenReturn(failedLogin)
+        .thenReturn(CompletableFuture.completedFuture(mockApplicationSession));
+
+    assertTrue(applicationSessionCache.getSessionAsync(FAKE_APPLICATION).isCompletedExceptionally());
+    assertSame(mockApplicationSession, applicationSessionCache.getSessionAsync(FAKE_APPLICATION).join());
+    verify(mockApplicationClient, times(2)).authenticateAsync(FAKE_APPLICATION);
+  }
+}
@@ -0,0 +1,30 @@
+package bluegreen.manager.client.app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RetryMetricsTest
+{
+  private static final String ENDPOINT = "GET dbFreezeProgress";
+
+  private RetryMetrics retryMetrics = new RetryMetrics();
+
+  @Test
+  public void testRecord()
+  {
+    retryMetrics.record(ENDPOINT, 1, 0L, true);
+    retryMetrics.record(ENDPOINT, 4, 1500L, true);
+    retryMetrics.record(ENDPOINT, 10, 20000L, false);
+
+    RetryMetrics.EndpointStats stats = retryMetrics.getEndpointStats(ENDPOINT);
+    assertEquals(3L, stats.getNumRequests());
+    assertEquals(12L, stats.getNumRetries());
+    assertEquals(1L, stats.getNumFailures());
+    assertEquals(21500L, stats.getTotalDelayMilliseconds());
+    assertNull(retryMetrics.getEndpointStats("PUT enterMaintenanceMode"));
+    assertTrue(retryMetrics.toString().startsWith(ENDPOINT + ": requests: 3"));
+  }
+}
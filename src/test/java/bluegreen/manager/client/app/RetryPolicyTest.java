@@ -0,0 +1,46 @@
+package bluegreen.manager.client.app;
+
+import org.junit.Test;
+
+import bluegreen.manager.utils.FixedPollSchedule;
+import static org.junit.Assert.assertEquals;
+
+public class RetryPolicyTest
+{
+  private static final long BACKOFF_DELAY = 2000L;
+  private static final long MAX_HINT = 10000L;
+
+  private RetryPolicy retryPolicy = new RetryPolicy(5, MAX_HINT, new FixedPollSchedule(BACKOFF_DELAY, BACKOFF_DELAY));
+
+  @Test
+  public void testNextDelayMilliseconds_NoResponse()
+  {
+    assertEquals(BACKOFF_DELAY, retryPolicy.nextDelayMilliseconds(1, 0L, null));
+  }
+
+  @Test
+  public void testNextDelayMilliseconds_NoHint()
+  {
+    assertEquals(BACKOFF_DELAY, retryPolicy.nextDelayMilliseconds(2, BACKOFF_DELAY, makeLockError(null)));
+  }
+
+  @Test
+  public void testNextDelayMilliseconds_Hint()
+  {
+    assertEquals(300L, retryPolicy.nextDelayMilliseconds(1, 0L, makeLockError(300L)));
+  }
+
+  @Test
+  public void testNextDelayMilliseconds_HintCapped()
+  {
+    assertEquals(MAX_HINT, retryPolicy.nextDelayMilliseconds(1, 0L, makeLockError(MAX_HINT * 10)));
+  }
+
+  private DbFreezeProgress makeLockError(Long retryAfterMilliseconds)
+  {
+    DbFreezeProgress progress = new DbFreezeProgress();
+    progress.setLockError(true);
+    progress.setRetryAfterMilliseconds(retryAfterMilliseconds);
+    return progress;
+  }
+}
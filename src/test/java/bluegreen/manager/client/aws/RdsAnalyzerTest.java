@@ -1,6 +1,7 @@
 package bluegreen.manager.client.aws;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -8,6 +9,7 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.junit.Test;
 
 import com.amazonaws.services.rds.model.DBInstance;
+import com.amazonaws.services.rds.model.DBInstanceStatusInfo;
 import com.amazonaws.services.rds.model.DBParameterGroupStatus;
 import com.amazonaws.services.rds.model.VpcSecurityGroupMembership;
 
@@ -162,4 +164,14 @@ public class RdsAnalyzerTest
     DBInstance dbInstance = makeDBInstanceWithParamGroups(RdsParameterApplyStatus.APPLYING, PARAM_GROUP_DEFAULT);
     assertEquals(RdsParameterApplyStatus.APPLYING, rdsAnalyzer.findParameterApplyStatus(dbInstance, PARAM_GROUP_DEFAULT));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testFindReadReplicationStatusInfo()
+  {
+    DBInstance dbInstance = new DBInstance();
+    assertNull(rdsAnalyzer.findReadReplicationStatusInfo(dbInstance));
+    DBInstanceStatusInfo statusInfo = new DBInstanceStatusInfo().withStatusType("read replication").withStatus("replicating");
+    dbInstance.setStatusInfos(Arrays.asList(statusInfo));
+    assertEquals(statusInfo, rdsAnalyzer.findReadReplicationStatusInfo(dbInstance));
+  }
+}
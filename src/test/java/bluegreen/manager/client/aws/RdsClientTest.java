@@ -2,13 +2,16 @@ package bluegreen.manager.client.aws;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import com.amazonaws.services.rds.AmazonRDSClient;
 import com.amazonaws.services.rds.model.CopyDBParameterGroupRequest;
+import com.amazonaws.services.rds.model.CreateDBInstanceReadReplicaRequest;
 import com.amazonaws.services.rds.model.CreateDBSnapshotRequest;
 import com.amazonaws.services.rds.model.DBInstance;
 import com.amazonaws.services.rds.model.DBParameterGroup;
@@ -18,12 +21,15 @@ import com.amazonaws.services.rds.model.DescribeDBInstancesResult;
 import com.amazonaws.services.rds.model.DescribeDBSnapshotsRequest;
 import com.amazonaws.services.rds.model.DescribeDBSnapshotsResult;
 import com.amazonaws.services.rds.model.ModifyDBInstanceRequest;
+import com.amazonaws.services.rds.model.PromoteReadReplicaRequest;
 import com.amazonaws.services.rds.model.RebootDBInstanceRequest;
 import com.amazonaws.services.rds.model.RestoreDBInstanceFromDBSnapshotRequest;
+import com.amazonaws.services.rds.model.RestoreDBInstanceToPointInTimeRequest;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -210,6 +216,49 @@ public class RdsClientTest
     assertEquals(mockInstance, rdsClient.restoreInstanceFromSnapshot(INSTANCE_NAME, SNAPSHOT_ID, SUBNET_GROUP));
   }
 
+  /**
+   * Tests that restoreInstanceToPointInTime returns its rds result object, and requests the given restore time.
+   */
+  @Test
+  public void testRestoreInstanceToPointInTime()
+  {
+    DBInstance mockInstance = mock(DBInstance.class);
+    when(mockRdsClient.restoreDBInstanceToPointInTime(any(RestoreDBInstanceToPointInTimeRequest.class)))
+        .thenReturn(mockInstance);
+    Date restoreTime = new Date(1400000000000L);
+
+    assertEquals(mockInstance, rdsClient.restoreInstanceToPointInTime(INSTANCE_NAME, ANOTHER_INSTANCE_NAME, restoreTime, SUBNET_GROUP));
+    ArgumentCaptor<RestoreDBInstanceToPointInTimeRequest> captor = ArgumentCaptor.forClass(RestoreDBInstanceToPointInTimeRequest.class);
+    verify(mockRdsClient).restoreDBInstanceToPointInTime(captor.capture());
+    assertEquals(INSTANCE_NAME, captor.getValue().getSourceDBInstanceIdentifier());
+    assertEquals(ANOTHER_INSTANCE_NAME, captor.getValue().getTargetDBInstanceIdentifier());
+    assertEquals(restoreTime, captor.getValue().getRestoreTime());
+  }
+
+  /**
+   * Tests that createReadReplica returns its rds result object.
+   */
+  @Test
+  public void testCreateReadReplica()
+  {
+    DBInstance mockInstance = mock(DBInstance.class);
+    when(mockRdsClient.createDBInstanceReadReplica(any(CreateDBInstanceReadReplicaRequest.class))).thenReturn(mockInstance);
+
+    assertEquals(mockInstance, rdsClient.createReadReplica(ANOTHER_INSTANCE_NAME, INSTANCE_NAME));
+  }
+
+  /**
+   * Tests that promoteReadReplica returns its rds result object.
+   */
+  @Test
+  public void testPromoteReadReplica()
+  {
+    DBInstance mockInstance = mock(DBInstance.class);
+    when(mockRdsClient.promoteReadReplica(any(PromoteReadReplicaRequest.class))).thenReturn(mockInstance);
+
+    assertEquals(mockInstance, rdsClient.promoteReadReplica(INSTANCE_NAME));
+  }
+
   /**
    * Tests that modifyInstanceWithSecgrpParamgrp returns its rds result object.
    */
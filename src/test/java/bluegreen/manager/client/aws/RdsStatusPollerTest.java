@@ -0,0 +1,242 @@
+package bluegreen.manager.client.aws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.rds.model.DBInstance;
+import com.amazonaws.services.rds.model.DBInstanceNotFoundException;
+import com.amazonaws.services.rds.model.DBSnapshot;
+import com.amazonaws.services.rds.model.DescribeDBInstancesRequest;
+import com.amazonaws.services.rds.model.DescribeDBInstancesResult;
+import com.amazonaws.services.rds.model.DescribeDBSnapshotsRequest;
+import com.amazonaws.services.rds.model.DescribeDBSnapshotsResult;
+
+import bluegreen.manager.utils.ThreadSleeper;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RdsStatusPollerTest
+{
+  private static final String INSTANCE_1 = "rds-instance-1";
+  private static final String INSTANCE_2 = "rds-instance-2";
+  private static final String INSTANCE_3 = "rds-instance-3";
+  private static final String SNAPSHOT_ID = "the-snapshot-12354";
+
+  @InjectMocks
+  private RdsStatusPoller rdsStatusPoller;
+
+  @Mock
+  private AmazonRDSClient mockAwsRdsClient;
+
+  @Mock
+  private ThreadSleeper mockThreadSleeper;
+
+  private ExecutorService executorService;
+
+  @Before
+  public void setUp()
+  {
+    rdsStatusPoller.setAwsRdsClient(mockAwsRdsClient);
+    executorService = Executors.newFixedThreadPool(3);
+  }
+
+  @After
+  public void tearDown()
+  {
+    executorService.shutdownNow();
+  }
+
+  private DBInstance makeInstance(String instanceName)
+  {
+    return new DBInstance().withDBInstanceIdentifier(instanceName).withDBInstanceStatus("available");
+  }
+
+  /**
+   * Single caller gets its instance from a filtered describe.
+   */
+  @Test
+  public void testDescribeInstance_single()
+  {
+    when(mockAwsRdsClient.describeDBInstances(any(DescribeDBInstancesRequest.class)))
+        .thenReturn(new DescribeDBInstancesResult().withDBInstances(makeInstance(INSTANCE_1)));
+
+    assertEquals(INSTANCE_1, rdsStatusPoller.describeInstance(INSTANCE_1).getDBInstanceIdentifier());
+
+    ArgumentCaptor<DescribeDBInstancesRequest> captor = ArgumentCaptor.forClass(DescribeDBInstancesRequest.class);
+    verify(mockAwsRdsClient).describeDBInstances(captor.capture());
+    assertEquals(RdsStatusPoller.FILTER_INSTANCE_ID, captor.getValue().getFilters().get(0).getName());
+    assertEquals(INSTANCE_1, captor.getValue().getFilters().get(0).getValues().get(0));
+  }
+
+  /**
+   * Id missing from the filtered result means not found.
+   */
+  @Test(expected = DBInstanceNotFoundException.class)
+  public void testDescribeInstance_notFound()
+  {
+    when(mockAwsRdsClient.describeDBInstances(any(DescribeDBInstancesRequest.class)))
+        .thenReturn(new DescribeDBInstancesResult());
+
+    rdsStatusPoller.describeInstance(INSTANCE_1);
+  }
+
+  @Test
+  public void testDescribeSnapshot_single()
+  {
+    when(mockAwsRdsClient.describeDBSnapshots(any(DescribeDBSnapshotsRequest.class)))
+        .thenReturn(new DescribeDBSnapshotsResult().withDBSnapshots(new DBSnapshot().withDBSnapshotIdentifier(SNAPSHOT_ID)));
+
+    assertEquals(SNAPSHOT_ID, rdsStatusPoller.describeSnapshot(SNAPSHOT_ID).getDBSnapshotIdentifier());
+  }
+
+  /**
+   * A lone caller does not wait out the coalescing window.
+   */
+  @Test
+  public void testDescribeInstance_loneCallerNoCoalesceWait() throws InterruptedException
+  {
+    rdsStatusPoller.setCoalesceMilliseconds(200L);
+    when(mockAwsRdsClient.describeDBInstances(any(DescribeDBInstancesRequest.class)))
+        .thenReturn(new DescribeDBInstancesResult().withDBInstances(makeInstance(INSTANCE_1)));
+
+    rdsStatusPoller.describeInstance(INSTANCE_1);
+
+    verify(mockThreadSleeper, never()).sleep(anyLong());
+  }
+
+  /**
+   * Makes the first describe call block until released, and records the threads of all describe calls.
+   */
+  private void whenFirstDescribeBlocks(final CountDownLatch firstCallStarted,
+                                       final CountDownLatch releaseFirstCall,
+                                       final List<Thread> callerThreads)
+  {
+    when(mockAwsRdsClient.describeDBInstances(any(DescribeDBInstancesRequest.class))).thenAnswer(new Answer<DescribeDBInstancesResult>()
+    {
+      @Override
+      public DescribeDBInstancesResult answer(InvocationOnMock invocation) throws Throwable
+      {
+        callerThreads.add(Thread.currentThread());
+        if (callerThreads.size() == 1)
+        {
+          firstCallStarted.countDown();
+          releaseFirstCall.await(5, TimeUnit.SECONDS);
+        }
+        return new DescribeDBInstancesResult().withDBInstances(
+            makeInstance(INSTANCE_1), makeInstance(INSTANCE_2), makeInstance(INSTANCE_3));
+      }
+    });
+  }
+
+  /**
+   * Callers that arrive while the leader's describe call is in flight are all served by the next describe call.
+   */
+  @Test
+  public void testDescribeInstance_concurrentCallersCoalesced() throws Exception
+  {
+    CountDownLatch firstCallStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstCall = new CountDownLatch(1);
+    List<Thread> callerThreads = Collections.synchronizedList(new ArrayList<Thread>());
+    whenFirstDescribeBlocks(firstCallStarted, releaseFirstCall, callerThreads);
+
+    Future<DBInstance> future1 = executorService.submit(describeInstanceCallable(INSTANCE_1));
+    assertTrue(firstCallStarted.await(5, TimeUnit.SECONDS));
+    Future<DBInstance> future2 = executorService.submit(describeInstanceCallable(INSTANCE_2));
+    Future<DBInstance> future3 = executorService.submit(describeInstanceCallable(INSTANCE_3));
+    Thread.sleep(100L); //Lets callers #2 and #3 enqueue
+    releaseFirstCall.countDown();
+
+    assertEquals(INSTANCE_1, future1.get(5, TimeUnit.SECONDS).getDBInstanceIdentifier());
+    assertEquals(INSTANCE_2, future2.get(5, TimeUnit.SECONDS).getDBInstanceIdentifier());
+    assertEquals(INSTANCE_3, future3.get(5, TimeUnit.SECONDS).getDBInstanceIdentifier());
+    ArgumentCaptor<DescribeDBInstancesRequest> captor = ArgumentCaptor.forClass(DescribeDBInstancesRequest.class);
+    verify(mockAwsRdsClient, times(2)).describeDBInstances(captor.capture());
+    assertEquals(2, captor.getAllValues().get(1).getFilters().get(0).getValues().size());
+  }
+
+  /**
+   * A leader that has served its rounds hands off to a caller that is still waiting.
+   */
+  @Test
+  public void testDescribeInstance_leaderHandsOff() throws Exception
+  {
+    rdsStatusPoller.setMaxRoundsPerLeader(1);
+    CountDownLatch firstCallStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstCall = new CountDownLatch(1);
+    List<Thread> callerThreads = Collections.synchronizedList(new ArrayList<Thread>());
+    whenFirstDescribeBlocks(firstCallStarted, releaseFirstCall, callerThreads);
+
+    Future<DBInstance> future1 = executorService.submit(describeInstanceCallable(INSTANCE_1));
+    assertTrue(firstCallStarted.await(5, TimeUnit.SECONDS));
+    Future<DBInstance> future2 = executorService.submit(describeInstanceCallable(INSTANCE_2));
+    Thread.sleep(100L); //Lets caller #2 enqueue
+    releaseFirstCall.countDown();
+
+    assertEquals(INSTANCE_1, future1.get(5, TimeUnit.SECONDS).getDBInstanceIdentifier());
+    assertEquals(INSTANCE_2, future2.get(5, TimeUnit.SECONDS).getDBInstanceIdentifier());
+    assertEquals(2, callerThreads.size());
+    assertNotSame(callerThreads.get(0), callerThreads.get(1));
+  }
+
+  /**
+   * An Error from the describe call reaches its callers, and does not leave the batcher stuck for later callers.
+   */
+  @Test
+  public void testDescribeInstance_errorDoesNotHangLaterCallers()
+  {
+    when(mockAwsRdsClient.describeDBInstances(any(DescribeDBInstancesRequest.class)))
+        .thenThrow(new AssertionError("Pretend the jvm is in trouble"))
+        .thenReturn(new DescribeDBInstancesResult().withDBInstances(makeInstance(INSTANCE_1)));
+
+    try
+    {
+      rdsStatusPoller.describeInstance(INSTANCE_1);
+      fail("Expected the Error to reach the caller");
+    }
+    catch (AssertionError e)
+    {
+      assertEquals("Pretend the jvm is in trouble", e.getMessage());
+    }
+    assertEquals(INSTANCE_1, rdsStatusPoller.describeInstance(INSTANCE_1).getDBInstanceIdentifier());
+  }
+
+  private Callable<DBInstance> describeInstanceCallable(final String instanceName)
+  {
+    return new Callable<DBInstance>()
+    {
+      @Override
+      public DBInstance call() throws Exception
+      {
+        return rdsStatusPoller.describeInstance(instanceName);
+      }
+    };
+  }
+}
@@ -0,0 +1,29 @@
+package bluegreen.manager.client.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BinlogPositionTest
+{
+  private static final BinlogPosition POSITION = new BinlogPosition("mysql-bin-changelog.000123", 4567L);
+
+  @Test
+  public void testHasReached_SameFile()
+  {
+    assertTrue(POSITION.hasReached(new BinlogPosition("mysql-bin-changelog.000123", 4567L)));
+    assertTrue(POSITION.hasReached(new BinlogPosition("mysql-bin-changelog.000123", 120L)));
+    assertFalse(POSITION.hasReached(new BinlogPosition("mysql-bin-changelog.000123", 4568L)));
+  }
+
+  /**
+   * File name decides before offset.
+   */
+  @Test
+  public void testHasReached_OtherFile()
+  {
+    assertTrue(POSITION.hasReached(new BinlogPosition("mysql-bin-changelog.000122", 99999L)));
+    assertFalse(POSITION.hasReached(new BinlogPosition("mysql-bin-changelog.000124", 4L)));
+  }
+}
@@ -0,0 +1,101 @@
+package bluegreen.manager.client.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MysqlClientTest
+{
+  private static final String BINLOG_FILE = "mysql-bin-changelog.000123";
+
+  @Mock
+  private Connection mockConnection;
+
+  @Mock
+  private Statement mockStatement;
+
+  @Mock
+  private ResultSet mockResultSet;
+
+  private MysqlClient mysqlClient;
+
+  @Before
+  public void setUp() throws SQLException
+  {
+    mysqlClient = spy(new MysqlClient("com.mysql.jdbc.Driver", "jdbc:mysql://live.hello.com:3306/hellodb", "dbuser", "dbpassword"));
+    doReturn(mockConnection).when(mysqlClient).openConnection();
+    when(mockConnection.createStatement()).thenReturn(mockStatement);
+    when(mockStatement.executeQuery(anyString())).thenReturn(mockResultSet);
+  }
+
+  @Test
+  public void testGetServerTime() throws SQLException
+  {
+    when(mockResultSet.next()).thenReturn(true);
+    when(mockResultSet.getLong(1)).thenReturn(1400000000L);
+    assertEquals(new Date(1400000000000L), mysqlClient.getServerTime());
+    verify(mockStatement).executeQuery("SELECT UNIX_TIMESTAMP()");
+  }
+
+  @Test
+  public void testGetMasterStatus() throws SQLException
+  {
+    when(mockResultSet.next()).thenReturn(true);
+    when(mockResultSet.getString("File")).thenReturn(BINLOG_FILE);
+    when(mockResultSet.getLong("Position")).thenReturn(4567L);
+    assertEquals(new BinlogPosition(BINLOG_FILE, 4567L), mysqlClient.getMasterStatus());
+    verify(mockStatement).executeQuery("SHOW MASTER STATUS");
+    verify(mockConnection).close();
+  }
+
+  /**
+   * No binary log = cannot tell how far a replica must go.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testGetMasterStatus_BinlogDisabled() throws SQLException
+  {
+    when(mockResultSet.next()).thenReturn(false);
+    mysqlClient.getMasterStatus();
+  }
+
+  @Test
+  public void testGetReplicaExecutedPosition() throws SQLException
+  {
+    when(mockResultSet.next()).thenReturn(true);
+    when(mockResultSet.getString("Relay_Master_Log_File")).thenReturn(BINLOG_FILE);
+    when(mockResultSet.getLong("Exec_Master_Log_Pos")).thenReturn(1200L);
+    assertEquals(new BinlogPosition(BINLOG_FILE, 1200L), mysqlClient.getReplicaExecutedPosition());
+    verify(mockStatement).executeQuery("SHOW SLAVE STATUS");
+  }
+
+  @Test
+  public void testGetReplicaExecutedPosition_NotReplica() throws SQLException
+  {
+    when(mockResultSet.next()).thenReturn(false);
+    assertNull(mysqlClient.getReplicaExecutedPosition());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testGetReplicaExecutedPosition_SqlError() throws SQLException
+  {
+    when(mockStatement.executeQuery(anyString())).thenThrow(new SQLException("Access denied"));
+    mysqlClient.getReplicaExecutedPosition();
+  }
+}
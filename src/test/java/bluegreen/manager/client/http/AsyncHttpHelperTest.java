@@ -0,0 +1,141 @@
+package bluegreen.manager.client.http;
+
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import com.google.gson.Gson;
+
+import static bluegreen.manager.client.http.HttpHelper.HEADERNAME_SET_COOKIE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AsyncHttpHelperTest
+{
+  private static final String URI = "https://the-server.com/rest/service";
+  private static final String COOKIE_VALUE = "someValue; Path=/";
+  private static final String JSON_RESPONSE_CONTENT = "{'value':'hello'}";
+
+  @InjectMocks
+  private AsyncHttpHelper asyncHttpHelper;
+
+  @Mock
+  private HttpAsyncClient mockHttpAsyncClient;
+
+  @Spy
+  private HttpHelper httpHelper = new HttpHelper();
+
+  private CookieStore cookieStore = new BasicCookieStore();
+
+  @Before
+  public void setUp()
+  {
+    httpHelper.setGson(new Gson());
+  }
+
+  /**
+   * Makes the mock async client complete each request right away with the given response.
+   */
+  private void whenExecuteRespond(final HttpResponse httpResponse)
+  {
+    doAnswer(new Answer()
+    {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable
+      {
+        ((FutureCallback<HttpResponse>) invocation.getArguments()[2]).completed(httpResponse);
+        return null;
+      }
+    }).when(mockHttpAsyncClient).execute(any(HttpUriRequest.class), any(HttpContext.class), any(FutureCallback.class));
+  }
+
+  private HttpResponse makeResponse(int status, String body) throws UnsupportedEncodingException
+  {
+    HttpResponse httpResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "some reason");
+    httpResponse.setEntity(new StringEntity(body));
+    return httpResponse;
+  }
+
+  /**
+   * Tests the getter, and that the request runs in the caller's cookieStore.
+   */
+  @Test
+  public void testExecuteGet_Pass() throws Exception
+  {
+    whenExecuteRespond(makeResponse(HttpStatus.SC_OK, JSON_RESPONSE_CONTENT));
+
+    assertEquals(JSON_RESPONSE_CONTENT, asyncHttpHelper.executeGet(cookieStore, URI).get());
+
+    ArgumentCaptor<HttpContext> contextCaptor = ArgumentCaptor.forClass(HttpContext.class);
+    verify(mockHttpAsyncClient).execute(any(HttpUriRequest.class), contextCaptor.capture(), any(FutureCallback.class));
+    assertSame(cookieStore, HttpClientContext.adapt(contextCaptor.getValue()).getCookieStore());
+  }
+
+  /**
+   * Error status fails the future, like the fluent executor's returnContent.
+   */
+  @Test(expected = ExecutionException.class)
+  public void testExecutePut_BadStatus() throws Exception
+  {
+    whenExecuteRespond(makeResponse(HttpStatus.SC_INTERNAL_SERVER_ERROR, "oops"));
+
+    asyncHttpHelper.executePut(cookieStore, URI).get();
+  }
+
+  /**
+   * Tests a successful authentication post.
+   */
+  @Test
+  public void testPostAuthForCookie_Pass() throws Exception
+  {
+    HttpResponse httpResponse = makeResponse(HttpStatus.SC_OK, "{\"isLoggedIn\": true}");
+    httpResponse.addHeader(HEADERNAME_SET_COOKIE, COOKIE_VALUE);
+    whenExecuteRespond(httpResponse);
+    NameValuePair[] authParams = new NameValuePair[] { new BasicNameValuePair("auth1", "hello") };
+
+    assertNull(asyncHttpHelper.postAuthForCookie(cookieStore, URI, authParams).get());
+  }
+
+  /**
+   * Authentication post fails the future if the user is not logged in.
+   */
+  @Test(expected = ExecutionException.class)
+  public void testPostAuthForCookie_InvalidUser() throws Exception
+  {
+    HttpResponse httpResponse = makeResponse(HttpStatus.SC_OK, "{\"isLoggedIn\": false}");
+    httpResponse.addHeader(HEADERNAME_SET_COOKIE, COOKIE_VALUE);
+    whenExecuteRespond(httpResponse);
+    NameValuePair[] authParams = new NameValuePair[] { new BasicNameValuePair("auth1", "hello") };
+
+    asyncHttpHelper.postAuthForCookie(cookieStore, URI, authParams).get();
+  }
+}
@@ -2,6 +2,7 @@ package bluegreen.manager.client.ssh;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
@@ -12,20 +13,24 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import bluegreen.manager.substituter.SubstituterResult;
+import bluegreen.manager.utils.PatternLineListener;
 import bluegreen.manager.utils.ShellResult;
+import bluegreen.manager.utils.ThreadSleeper;
 import ch.ethz.ssh2.Connection;
 import ch.ethz.ssh2.ServerHostKeyVerifier;
 import ch.ethz.ssh2.Session;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
- * Tests the glue logic of SshClient but mocks the Connection.
+ * Tests the glue logic of SshClient, with a real connection pool but a mock Connection.
  */
 @RunWith(MockitoJUnitRunner.class)
 public class SshClientTest
@@ -53,11 +58,16 @@ public class SshClientTest
   @Mock
   private Session mockSession;
 
+  @Mock
+  private ThreadSleeper mockThreadSleeper;
+
   @Before
   public void setUp() throws IOException
   {
     when(mockSshConnectionFactory.create(anyString())).thenReturn(mockConnection);
     when(mockConnection.openSession()).thenReturn(mockSession);
+    when(mockConnection.isAuthenticationComplete()).thenReturn(true);
+    sshClient.setSshConnectionPool(new SshConnectionPool(mockSshConnectionFactory, mockThreadSleeper, 2, 60000L));
   }
 
   private void initWithFakeTarget()
@@ -118,6 +128,60 @@ public class SshClientTest
     initWithFakeTarget();
     assertEquals(RESULT, sshClient.execCommand(SUBSTITUTED_COMMAND));
     verify(mockSession).close();
+    verify(mockSshConnectionFactory).create(HOSTNAME); //Command reused the connection made by init
+  }
+
+  /**
+   * Streamed command hands every line to the listener, and returns the same result.
+   */
+  @Test
+  public void testExecCommand_Streamed() throws IOException
+  {
+    when(mockSession.getStdout()).thenReturn(IOUtils.toInputStream(STDOUT_STRING));
+    when(mockSession.getExitStatus()).thenReturn(0);
+    authenticationIsSuccessful(true);
+    initWithFakeTarget();
+    PatternLineListener lineListener = new PatternLineListener(null, null).addCapture("last", Pattern.compile("^And (.*)"));
+    assertEquals(RESULT, sshClient.execCommand(SUBSTITUTED_COMMAND, lineListener));
+    assertEquals("a third line.", lineListener.getCapture("last"));
+    verify(mockSession).close();
+  }
+
+  /**
+   * Listener stops reading at the error line, so the exitValue is unknown and the output ends there.
+   */
+  @Test
+  public void testExecCommand_StreamedStopsEarly() throws IOException
+  {
+    when(mockSession.getStdout()).thenReturn(IOUtils.toInputStream(STDOUT_STRING));
+    authenticationIsSuccessful(true);
+    initWithFakeTarget();
+    PatternLineListener lineListener = new PatternLineListener(null, Pattern.compile("second"));
+    ShellResult result = sshClient.execCommand(SUBSTITUTED_COMMAND, lineListener);
+    assertEquals(new ShellResult("The first line of output.\nThe second line.\n", Integer.MIN_VALUE), result);
+    assertEquals("The second line.", lineListener.getErrorLine());
+    verify(mockSession, never()).getExitStatus();
+    verify(mockSession).close();
+  }
+
+  /**
+   * Streamed output beyond the tail size is seen by the listener but not kept in the result.
+   */
+  @Test
+  public void testExecCommand_StreamedTail() throws IOException
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int idx = 0; idx <= SshClient.MAX_TAIL_LINES; ++idx)
+    {
+      sb.append("Line " + idx + "\n");
+    }
+    when(mockSession.getStdout()).thenReturn(IOUtils.toInputStream(sb.toString()));
+    authenticationIsSuccessful(true);
+    initWithFakeTarget();
+    PatternLineListener lineListener = new PatternLineListener(null, null).addCapture("first", Pattern.compile("^(Line 0)$"));
+    String output = sshClient.execCommand(SUBSTITUTED_COMMAND, lineListener).getOutput();
+    assertEquals("Line 0", lineListener.getCapture("first"));
+    assertTrue(output.startsWith("(... 1 earlier lines not kept ...)\nLine 1\n"));
   }
 
   /**
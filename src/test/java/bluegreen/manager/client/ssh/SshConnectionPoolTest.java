@@ -0,0 +1,154 @@
+package bluegreen.manager.client.ssh;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import bluegreen.manager.utils.ThreadSleeper;
+import ch.ethz.ssh2.Connection;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SshConnectionPoolTest
+{
+  private static final SshTarget SSH_TARGET = new SshTarget("ssh-target-hostname.com", "target_user", "password", 10L, 10L);
+  private static final long MAX_IDLE = 60000L;
+
+  @Mock
+  private SshConnectionFactory mockSshConnectionFactory;
+
+  @Mock
+  private ThreadSleeper mockThreadSleeper;
+
+  @Mock
+  private Connection mockConnection1;
+
+  @Mock
+  private Connection mockConnection2;
+
+  private SshConnectionPool sshConnectionPool;
+
+  @Before
+  public void setUp() throws IOException
+  {
+    when(mockSshConnectionFactory.create(anyString())).thenReturn(mockConnection1, mockConnection2);
+    for (Connection connection : new Connection[] { mockConnection1, mockConnection2 })
+    {
+      when(connection.authenticateWithPassword(anyString(), anyString())).thenReturn(true);
+      when(connection.isAuthenticationComplete()).thenReturn(true);
+    }
+    sshConnectionPool = new SshConnectionPool(mockSshConnectionFactory, mockThreadSleeper, 2, MAX_IDLE);
+  }
+
+  /**
+   * A released connection is health-checked and reused, without connecting again.
+   */
+  @Test
+  public void testAcquire_Reuse() throws IOException
+  {
+    PooledSshConnection first = sshConnectionPool.acquire(SSH_TARGET);
+    sshConnectionPool.release(first);
+
+    assertSame(first, sshConnectionPool.acquire(SSH_TARGET));
+    verify(mockSshConnectionFactory, times(1)).create(anyString());
+    verify(mockConnection1).sendIgnorePacket();
+  }
+
+  /**
+   * Borrowers share a connection up to the max sessions per connection, then a second connection opens.
+   */
+  @Test
+  public void testAcquire_MaxSessions()
+  {
+    PooledSshConnection first = sshConnectionPool.acquire(SSH_TARGET);
+    PooledSshConnection second = sshConnectionPool.acquire(SSH_TARGET);
+    PooledSshConnection third = sshConnectionPool.acquire(SSH_TARGET);
+
+    assertSame(first, second);
+    assertNotSame(first, third);
+    verify(mockSshConnectionFactory, times(2)).create(anyString());
+  }
+
+  /**
+   * An idle connection that fails its health check is closed and replaced.
+   */
+  @Test
+  public void testAcquire_Unhealthy() throws IOException
+  {
+    sshConnectionPool.release(sshConnectionPool.acquire(SSH_TARGET));
+    doThrow(new IOException("broken pipe")).when(mockConnection1).sendIgnorePacket();
+
+    sshConnectionPool.acquire(SSH_TARGET);
+
+    verify(mockConnection1).close();
+    verify(mockSshConnectionFactory, times(2)).create(anyString());
+  }
+
+  /**
+   * The discarded connection gives up its lease, so nothing still counts it as in use.
+   */
+  @Test
+  public void testAcquire_UnhealthyReleasesLease() throws IOException
+  {
+    PooledSshConnection first = sshConnectionPool.acquire(SSH_TARGET);
+    sshConnectionPool.release(first);
+    doThrow(new IOException("broken pipe")).when(mockConnection1).sendIgnorePacket();
+
+    assertNotSame(first, sshConnectionPool.acquire(SSH_TARGET));
+    assertEquals(0, first.getNumLeases());
+  }
+
+  /**
+   * While one borrower health-checks an idle connection, another borrower does not share it but connects anew.
+   */
+  @Test
+  public void testAcquire_ConcurrentWithHealthCheck() throws IOException
+  {
+    final PooledSshConnection first = sshConnectionPool.acquire(SSH_TARGET);
+    sshConnectionPool.release(first);
+    final PooledSshConnection[] duringCheck = new PooledSshConnection[1];
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation)
+      {
+        duringCheck[0] = sshConnectionPool.acquire(SSH_TARGET);
+        return null;
+      }
+    }).when(mockConnection1).sendIgnorePacket();
+
+    assertSame(first, sshConnectionPool.acquire(SSH_TARGET));
+    assertNotSame(first, duringCheck[0]);
+    assertEquals(1, first.getNumLeases());
+  }
+
+  @Test
+  public void testEvictIdle()
+  {
+    when(mockThreadSleeper.currentTimeMillis()).thenReturn(0L, MAX_IDLE + 1);
+    sshConnectionPool.release(sshConnectionPool.acquire(SSH_TARGET));
+    PooledSshConnection busy = sshConnectionPool.acquire(SSH_TARGET);
+
+    assertEquals(0, sshConnectionPool.evictIdle()); //Still leased
+    verify(mockConnection1, never()).close();
+    sshConnectionPool.release(busy);
+    when(mockThreadSleeper.currentTimeMillis()).thenReturn(MAX_IDLE * 3);
+    assertEquals(1, sshConnectionPool.evictIdle());
+    verify(mockConnection1).close();
+  }
+}
@@ -0,0 +1,173 @@
+package bluegreen.manager.jobs;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import bluegreen.manager.model.domain.JobStatus;
+import bluegreen.manager.utils.NowFactory;
+import static bluegreen.manager.utils.TimeFakery.START_TIME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests fleet scheduling with fake jobs.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class FleetJobTest
+{
+  private static final int MAX_PARALLEL_JOBS = 4;
+
+  @Mock
+  private NowFactory mockNowFactory;
+
+  @Before
+  public void setUp()
+  {
+    when(mockNowFactory.now()).thenReturn(START_TIME);
+  }
+
+  /**
+   * Jobs on different envs run concurrently: each one waits for all the others to start.
+   */
+  @Test
+  public void testProcess_IndependentEnvsRunConcurrently()
+  {
+    CountDownLatch allStarted = new CountDownLatch(3);
+    FleetJob fleetJob = makeFleetJob(
+        new FakeJob("envA", null, allStarted, null, JobStatus.DONE),
+        new FakeJob("envB", null, allStarted, null, JobStatus.DONE),
+        new FakeJob("envC", "envD", allStarted, null, JobStatus.DONE));
+
+    assertEquals(JobStatus.DONE, fleetJob.process());
+  }
+
+  /**
+   * Jobs sharing an env never overlap, even with free slots.
+   */
+  @Test
+  public void testProcess_SharedEnvRunsExclusively()
+  {
+    AtomicInteger numRunningOnShared = new AtomicInteger();
+    FakeJob job1 = new FakeJob("shared", null, null, numRunningOnShared, JobStatus.DONE);
+    FakeJob job2 = new FakeJob("other", "shared", null, numRunningOnShared, JobStatus.DONE);
+    FakeJob job3 = new FakeJob("shared", "another", null, numRunningOnShared, JobStatus.DONE);
+    FleetJob fleetJob = makeFleetJob(job1, job2, job3);
+
+    assertEquals(JobStatus.DONE, fleetJob.process());
+    assertEquals(1, job1.maxOverlap);
+    assertEquals(1, job2.maxOverlap);
+    assertEquals(1, job3.maxOverlap);
+  }
+
+  /**
+   * One failed job does not stop the others, but fails the fleet.
+   */
+  @Test
+  public void testProcess_OneError()
+  {
+    FakeJob job2 = new FakeJob("envB", null, null, null, JobStatus.DONE);
+    FleetJob fleetJob = makeFleetJob(
+        new FakeJob("envA", null, null, null, null),
+        job2);
+
+    assertEquals(JobStatus.ERROR, fleetJob.process());
+    assertEquals(1, job2.numCalls);
+    assertTrue(fleetJob.summarizeFleet().contains("(1) FakeJob [envA]: ERROR"));
+  }
+
+  private FleetJob makeFleetJob(Job... jobs)
+  {
+    FleetJob fleetJob = new FleetJob("fleet --manifest m.txt", Arrays.asList(jobs), MAX_PARALLEL_JOBS);
+    fleetJob.setNowFactory(mockNowFactory);
+    return fleetJob;
+  }
+
+  /**
+   * Fake job that optionally waits on a latch, counts overlapping runs, and returns a fixed status.
+   * Null status means it throws.
+   */
+  private static class FakeJob implements Job
+  {
+    private String env1;
+    private String env2;
+    private CountDownLatch allStarted;
+    private AtomicInteger numRunning;
+    private JobStatus jobStatus;
+    private int numCalls;
+    private int maxOverlap;
+
+    private FakeJob(String env1, String env2, CountDownLatch allStarted, AtomicInteger numRunning, JobStatus jobStatus)
+    {
+      this.env1 = env1;
+      this.env2 = env2;
+      this.allStarted = allStarted;
+      this.numRunning = numRunning;
+      this.jobStatus = jobStatus;
+    }
+
+    @Override
+    public JobStatus process()
+    {
+      ++numCalls;
+      try
+      {
+        if (allStarted != null)
+        {
+          allStarted.countDown();
+          if (!allStarted.await(5, TimeUnit.SECONDS))
+          {
+            throw new IllegalStateException("Jobs on independent envs did not run concurrently");
+          }
+        }
+        if (numRunning != null)
+        {
+          maxOverlap = numRunning.incrementAndGet();
+          Thread.sleep(20);
+          numRunning.decrementAndGet();
+        }
+      }
+      catch (InterruptedException e)
+      {
+        throw new RuntimeException(e);
+      }
+      if (jobStatus == null)
+      {
+        throw new RuntimeException("fake job failure");
+      }
+      return jobStatus;
+    }
+
+    @Override
+    public String getName()
+    {
+      return getClass().getSimpleName();
+    }
+
+    @Override
+    public String getEnv1()
+    {
+      return env1;
+    }
+
+    @Override
+    public String getEnv2()
+    {
+      return env2;
+    }
+
+    @Override
+    public String getCommandLine()
+    {
+      return "fake " + env1 + " " + env2;
+    }
+  }
+}
@@ -1,11 +1,16 @@
 package bluegreen.manager.jobs;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -17,6 +22,7 @@ import bluegreen.manager.main.ArgumentParser;
 import bluegreen.manager.main.CmdlineException;
 import bluegreen.manager.model.tx.EnvironmentTx;
 import bluegreen.manager.model.tx.JobHistoryTx;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -52,6 +58,9 @@ public class JobFactoryTest
 
   private ArgumentParser argumentParser = new ArgumentParser();
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   /**
    * Tests that the argument explanation describes the main job types.
    */
@@ -124,6 +133,90 @@ public class JobFactoryTest
     });
   }
 
+  /**
+   * Writes a fleet manifest with the given lines to a temp file, returns its path.
+   */
+  private String writeManifest(String... lines) throws IOException
+  {
+    File manifest = temporaryFolder.newFile("manifest.txt");
+    FileUtils.writeLines(manifest, Arrays.asList(lines));
+    return manifest.getPath();
+  }
+
+  /**
+   * Tests successful creation of a FleetJob, whose manifest entries are made into jobs.
+   */
+  @Test
+  public void testMakeJob_Fleet() throws IOException
+  {
+    when(mockEnvironmentTx.checkIfEnvNamesExist(anyString())).thenReturn(new boolean[] { true });
+    String manifestPath = writeManifest("# two teardowns", "teardown --deleteEnv env5 --stopServices a", "",
+        "teardown --deleteEnv env6 --stopServices b");
+    String commandLine = "fleet --manifest " + manifestPath + " --maxParallelJobs 3";
+    parseAndMakeJob(commandLine);
+    verify(mockApplicationContext).getBean(eq(TeardownJob.class), new Object[] {
+        eq("teardown --deleteEnv env5 --stopServices a"), eq(false), eq(false), isNull(), eq("env5"), anyListOf(String.class)
+    });
+    verify(mockApplicationContext).getBean(eq(TeardownJob.class), new Object[] {
+        eq("teardown --deleteEnv env6 --stopServices b"), eq(false), eq(false), isNull(), eq("env6"), anyListOf(String.class)
+    });
+    verify(mockApplicationContext).getBean(eq(FleetJob.class), new Object[] {
+        eq(commandLine), anyListOf(Job.class), eq(3)
+    });
+  }
+
+  /**
+   * Fail case: a fleet cannot contain a fleet.
+   */
+  @Test(expected = CmdlineException.class)
+  public void testMakeJob_NestedFleet() throws IOException
+  {
+    String manifestPath = writeManifest("fleet --manifest other.txt");
+    parseAndMakeJob("fleet --manifest " + manifestPath);
+  }
+
+  /**
+   * Quoted manifest args keep their whitespace, and lose their quotes.
+   */
+  @Test
+  public void testSplitManifestEntry()
+  {
+    assertArrayEquals(new String[] { "teardown", "--deleteEnv", "env5", "--stopServices", "a b", "it's" },
+        jobFactory.splitManifestEntry("teardown  --deleteEnv env5\t--stopServices 'a b' \"it's\""));
+  }
+
+  /**
+   * Fail case: bad parallelism.
+   */
+  @Test(expected = CmdlineException.class)
+  public void testMakeJob_FleetBadParallelism() throws IOException
+  {
+    String manifestPath = writeManifest("teardown --deleteEnv env5 --stopServices a");
+    parseAndMakeJob("fleet --manifest " + manifestPath + " --maxParallelJobs zero");
+  }
+
+  /**
+   * Tests creation of a ReportJob, whose job filter is translated to the job name recorded in history.
+   */
+  @Test
+  public void testMakeJob_Report()
+  {
+    String commandLine = "report --job stagingDeploy --env env5 --maxAgeDays 2";
+    parseAndMakeJob(commandLine);
+    verify(mockApplicationContext).getBean(eq(ReportJob.class), new Object[] {
+        eq(commandLine), eq("StagingDeployJob"), eq("env5"), eq(2L * 24L * 60L * 60L * 1000L)
+    });
+  }
+
+  /**
+   * Fail case: report on an unknown job type.
+   */
+  @Test(expected = CmdlineException.class)
+  public void testMakeJob_ReportBadJob()
+  {
+    parseAndMakeJob("report --job fleet");
+  }
+
   /**
    * Fail case: desired parameter not found in the list.
    */
@@ -0,0 +1,218 @@
+package bluegreen.manager.jobs;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import bluegreen.manager.model.domain.JobHistory;
+import bluegreen.manager.model.domain.JobStatus;
+import bluegreen.manager.model.domain.TaskHistory;
+import bluegreen.manager.model.domain.TaskStatus;
+import static bluegreen.manager.utils.TimeFakery.START_TIME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests duration analytics over fake job histories.
+ */
+public class JobHistoryReportTest
+{
+  private static final String JOB_NAME = "StagingDeployJob";
+  private static final String ENV_NAME = "liveEnv";
+
+  @Test
+  public void testPercentile()
+  {
+    List<Long> values = Arrays.asList(5L, 1L, 4L, 2L, 3L, 10L, 9L, 8L, 7L, 6L);
+    assertEquals(5L, JobHistoryReport.percentile(values, 50));
+    assertEquals(9L, JobHistoryReport.percentile(values, 90));
+    assertEquals(1L, JobHistoryReport.percentile(Arrays.asList(1L), 90));
+  }
+
+  /**
+   * Freeze, then snapshot; thaw and vm create run in parallel after that, and restore waits on both.
+   * Critical path goes through the longer branch.
+   */
+  @Test
+  public void testFindCriticalPath()
+  {
+    JobHistory jobHistory = makeJobHistory(1L, JobStatus.DONE, 0,
+        task(1, "FreezeTask", 0, 10),
+        task(2, "RdsSnapshotRestoreTask", 10, 100),
+        task(3, "ThawTask", 100, 110),
+        task(4, "SshVmCreateTask", 0, 300),
+        task(5, "LocalShellTask", 300, 320));
+    JobHistoryReport report = new JobHistoryReport(Arrays.asList(jobHistory));
+
+    List<TaskHistory> path = report.findCriticalPath(jobHistory);
+
+    assertEquals(2, path.size());
+    assertEquals("SshVmCreateTask", path.get(0).getTaskName());
+    assertEquals("LocalShellTask", path.get(1).getTaskName());
+  }
+
+  @Test
+  public void testFindCriticalPath_Sequential()
+  {
+    JobHistory jobHistory = makeJobHistory(1L, JobStatus.DONE, 0,
+        task(1, "FreezeTask", 0, 10),
+        task(2, "RdsSnapshotRestoreTask", 10, 100),
+        task(3, "ThawTask", 100, 110));
+    JobHistoryReport report = new JobHistoryReport(Arrays.asList(jobHistory));
+
+    assertEquals(3, report.findCriticalPath(jobHistory).size());
+  }
+
+  @Test
+  public void testFindFreezeWindows()
+  {
+    JobHistory jobHistory = makeJobHistory(1L, JobStatus.DONE, 0,
+        task(1, "FreezeTask", 5, 10),
+        task(2, "RdsSnapshotRestoreTask", 10, 100),
+        task(3, "ThawTask", 100, 110));
+    JobHistoryReport report = new JobHistoryReport(Arrays.asList(jobHistory));
+
+    assertEquals(Arrays.asList(105000L), report.findFreezeWindows(Arrays.asList(jobHistory)));
+  }
+
+  /**
+   * Staging deploy freezes and thaws the live env twice: two windows, not one from the first freeze to the last thaw.
+   */
+  @Test
+  public void testFindFreezeWindows_TwoPhases()
+  {
+    JobHistory jobHistory = makeJobHistory(1L, JobStatus.DONE, 0,
+        task(1, "FreezeTask", 0, 10),
+        task(2, "RdsSnapshotRestoreTask", 10, 100),
+        task(3, "ThawTask", 100, 110),
+        task(4, "SshVmCreateTask", 110, 300),
+        task(5, "FreezeTask", 300, 310),
+        task(6, "LocalShellTask", 310, 350),
+        task(7, "ThawTask", 350, 355));
+    JobHistoryReport report = new JobHistoryReport(Arrays.asList(jobHistory));
+
+    assertEquals(Arrays.asList(110000L, 55000L), report.findFreezeWindows(Arrays.asList(jobHistory)));
+  }
+
+  /**
+   * GoLive freezes the new and the old live env, and thaws only the new one: one window, from the first freeze.
+   */
+  @Test
+  public void testFindFreezeWindows_FreezeNeverThawed()
+  {
+    JobHistory jobHistory = makeJobHistory(1L, JobStatus.DONE, 0,
+        task(1, "FreezeTask", 0, 10),
+        task(2, "FreezeTask", 10, 20),
+        task(3, "FixedElbFlipEc2Task", 20, 80),
+        task(4, "ThawTask", 80, 90));
+    JobHistoryReport report = new JobHistoryReport(Arrays.asList(jobHistory));
+
+    assertEquals(Arrays.asList(90000L), report.findFreezeWindows(Arrays.asList(jobHistory)));
+  }
+
+  /**
+   * Only done task runs count toward durations.
+   */
+  @Test
+  public void testFindTaskDurations()
+  {
+    List<JobHistory> jobHistories = Arrays.asList(
+        makeJobHistory(1L, JobStatus.ERROR, 0, task(1, "FreezeTask", 0, 10), task(2, "RdsSnapshotRestoreTask", 10, 20, TaskStatus.ERROR)),
+        makeJobHistory(2L, JobStatus.DONE, 1000, task(1, "FreezeTask", 0, 20), task(2, "RdsSnapshotRestoreTask", 20, 100)));
+    JobHistoryReport report = new JobHistoryReport(jobHistories);
+
+    Map<String, List<Long>> taskDurations = report.findTaskDurations(jobHistories);
+
+    assertEquals(Arrays.asList(10000L, 20000L), taskDurations.get("(1) FreezeTask"));
+    assertEquals(Arrays.asList(80000L), taskDurations.get("(2) RdsSnapshotRestoreTask"));
+  }
+
+  /**
+   * The last run's snapshot took far longer than in any earlier run, and is flagged.  Earlier runs have too little
+   * history to flag.
+   */
+  @Test
+  public void testFindSlowTaskRuns()
+  {
+    List<JobHistory> jobHistories = new ArrayList<JobHistory>();
+    for (int idx = 0; idx < JobHistoryReport.MIN_HISTORY_FOR_FLAG; ++idx)
+    {
+      jobHistories.add(makeJobHistory(idx + 1, JobStatus.DONE, idx * 1000, task(1, "RdsSnapshotRestoreTask", 0, 100 + idx)));
+    }
+    jobHistories.add(makeJobHistory(99L, JobStatus.DONE, 9000, task(1, "RdsSnapshotRestoreTask", 0, 500)));
+    JobHistoryReport report = new JobHistoryReport(jobHistories);
+
+    List<String> flags = report.findSlowTaskRuns(jobHistories);
+
+    assertEquals(1, flags.size());
+    assertTrue(flags.get(0).startsWith("Run #99 "));
+  }
+
+  @Test
+  public void testRender()
+  {
+    JobHistory jobHistory = makeJobHistory(1L, JobStatus.DONE, 0,
+        task(1, "FreezeTask", 0, 10),
+        task(2, "ThawTask", 10, 20));
+    String text = new JobHistoryReport(Arrays.asList(jobHistory)).render();
+
+    assertTrue(text.contains("Job/Env: " + JOB_NAME + " " + ENV_NAME + " (1 runs, 1 done)"));
+    assertTrue(text.contains("Freeze window"));
+    assertTrue(text.contains("Critical path of latest done run #1"));
+  }
+
+  @Test
+  public void testRender_NoHistory()
+  {
+    assertTrue(new JobHistoryReport(null).render().contains("No job history found"));
+  }
+
+  /**
+   * Makes a fake job history starting at the given second offset, whose task times are seconds relative to that.
+   */
+  private JobHistory makeJobHistory(long id, JobStatus status, int startSecond, TaskHistory... taskHistories)
+  {
+    JobHistory jobHistory = new JobHistory();
+    jobHistory.setId(id);
+    jobHistory.setJobName(JOB_NAME);
+    jobHistory.setEnv1(ENV_NAME);
+    jobHistory.setStatus(status);
+    jobHistory.setStartTime(timestamp(startSecond));
+    for (TaskHistory taskHistory : taskHistories)
+    {
+      taskHistory.setJobHistory(jobHistory);
+      taskHistory.setStartTime(timestamp(startSecond + taskHistory.getStartTime().getTime() / 1000L));
+      taskHistory.setEndTime(timestamp(startSecond + taskHistory.getEndTime().getTime() / 1000L));
+    }
+    jobHistory.setTaskHistories(new ArrayList<TaskHistory>(Arrays.asList(taskHistories)));
+    return jobHistory;
+  }
+
+  private TaskHistory task(int position, String taskName, long startSecond, long endSecond)
+  {
+    return task(position, taskName, startSecond, endSecond, TaskStatus.DONE);
+  }
+
+  /**
+   * Makes a fake task history whose times are relative seconds, until attached to a job history.
+   */
+  private TaskHistory task(int position, String taskName, long startSecond, long endSecond, TaskStatus status)
+  {
+    TaskHistory taskHistory = new TaskHistory();
+    taskHistory.setPosition(position);
+    taskHistory.setTaskName(taskName);
+    taskHistory.setStatus(status);
+    taskHistory.setStartTime(new Timestamp(startSecond * 1000L));
+    taskHistory.setEndTime(new Timestamp(endSecond * 1000L));
+    return taskHistory;
+  }
+
+  private Timestamp timestamp(long second)
+  {
+    return new Timestamp(START_TIME.getTime() + second * 1000L);
+  }
+}
@@ -0,0 +1,91 @@
+package bluegreen.manager.jobs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import bluegreen.manager.tasks.Task;
+import bluegreen.manager.tasks.TaskFakery;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TaskGraphTest
+{
+  private static final int NUM_FAKE_TASKS = 4;
+  private TaskFakery taskFakery = new TaskFakery();
+
+  private List<Task> makeFakeTasks()
+  {
+    List<Task> tasks = new ArrayList<Task>();
+    for (int idx = 0; idx < NUM_FAKE_TASKS; ++idx)
+    {
+      tasks.add(taskFakery.makeFakeTask(idx));
+    }
+    return tasks;
+  }
+
+  private List<Integer> positions(List<Task> tasks)
+  {
+    List<Integer> positions = new ArrayList<Integer>();
+    for (Task task : tasks)
+    {
+      positions.add(task.getPosition());
+    }
+    return positions;
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCtor_BadPositions()
+  {
+    List<Task> tasks = makeFakeTasks();
+    tasks.remove(1);
+    new TaskGraph(tasks);
+  }
+
+  @Test
+  public void testIsSequential()
+  {
+    TaskGraph taskGraph = new TaskGraph(makeFakeTasks());
+    assertTrue(taskGraph.isSequential());
+    taskGraph.addDependency(2, 1);
+    assertFalse(taskGraph.isSequential());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddDependency_Later()
+  {
+    new TaskGraph(makeFakeTasks()).addDependency(2, 3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddDependency_Self()
+  {
+    new TaskGraph(makeFakeTasks()).addDependency(2, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddDependency_UnknownPosition()
+  {
+    new TaskGraph(makeFakeTasks()).addDependency(NUM_FAKE_TASKS + 1, 1);
+  }
+
+  /**
+   * 1 -> 2 -> 4 and 3 -> 4.
+   */
+  @Test
+  public void testFindReadyTasks()
+  {
+    TaskGraph taskGraph = new TaskGraph(makeFakeTasks());
+    taskGraph.addDependency(2, 1);
+    taskGraph.addDependency(4, 2, 3);
+    List<Integer> none = new ArrayList<Integer>();
+    assertEquals(Arrays.asList(1, 3), positions(taskGraph.findReadyTasks(none, none)));
+    assertEquals(Arrays.asList(3), positions(taskGraph.findReadyTasks(Arrays.asList(1), none)));
+    assertEquals(Arrays.asList(2), positions(taskGraph.findReadyTasks(Arrays.asList(1, 3), Arrays.asList(1))));
+    assertEquals(0, taskGraph.findReadyTasks(Arrays.asList(1, 2, 3), Arrays.asList(1, 2)).size());
+    assertEquals(Arrays.asList(4), positions(taskGraph.findReadyTasks(Arrays.asList(1, 2, 3), Arrays.asList(1, 2, 3))));
+  }
+}
@@ -1,11 +1,17 @@
 package bluegreen.manager.jobs;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -24,6 +30,7 @@ import bluegreen.manager.tasks.TaskRun;
 import bluegreen.manager.tasks.TaskRunProcessor;
 import bluegreen.manager.utils.NowFactory;
 import static bluegreen.manager.utils.TimeFakery.START_TIME;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.inOrder;
@@ -43,6 +50,8 @@ import static org.mockito.Mockito.when;
 public class TaskSequenceJobTest
 {
   private static final int NUM_FAKE_TASKS = 2;
+  private static final int NUM_FAKE_PARALLEL_TASKS = 3;
+  private static final int MAX_PARALLEL_TASKS = 4;
   private static final String ENV_NAME1 = "env1";
   private static final String ENV_NAME2 = "env2";
   private TaskFakery taskFakery = new TaskFakery();
@@ -56,6 +65,20 @@ public class TaskSequenceJobTest
   private TaskSequenceJob jobNoop = new TaskSequenceJobTestImpl("noop cmdline", true, false,
       jobFakery.makeFakeJobHistory(null), taskFakery, ENV_NAME1, ENV_NAME2);
 
+  /**
+   * Tasks 1 and 2 are independent, task 3 depends on both.
+   */
+  @InjectMocks
+  private TaskSequenceJob jobParallel = new TaskSequenceJobTestImpl("parallel cmdline", false, false,
+      jobFakery.makeFakeJobHistory(null), taskFakery, ENV_NAME1, ENV_NAME2, NUM_FAKE_PARALLEL_TASKS, true);
+
+  /**
+   * Task 1 freezes and task 3 thaws, while task 2 runs alongside them.  Task 4 needs all of them.
+   */
+  @InjectMocks
+  private TaskSequenceJob jobFreezeThaw = new FreezeThawJobTestImpl("freezeThaw cmdline", jobFakery.makeFakeJobHistory(null),
+      taskFakery, ENV_NAME1, ENV_NAME2);
+
   @Mock
   private NowFactory mockNowFactory;
 
@@ -72,6 +95,10 @@ public class TaskSequenceJobTest
   {
     when(mockNowFactory.now()).thenReturn(START_TIME);
     when(mockJobHistoryTx.newJobHistoryProcessing(jobNormal, START_TIME)).thenReturn(newJobHistory);
+    when(mockJobHistoryTx.newJobHistoryProcessing(jobParallel, START_TIME)).thenReturn(newJobHistory);
+    when(mockJobHistoryTx.newJobHistoryProcessing(jobFreezeThaw, START_TIME)).thenReturn(newJobHistory);
+    jobParallel.setMaxParallelTasks(MAX_PARALLEL_TASKS);
+    jobFreezeThaw.setMaxParallelTasks(MAX_PARALLEL_TASKS);
   }
 
   /**
@@ -130,6 +157,116 @@ public class TaskSequenceJobTest
     verify(mockTaskRunProcessor, times(NUM_FAKE_TASKS)).attemptTask(any(TaskRun.class));
   }
 
+  /**
+   * Adds a fake task history for the task's own position and returns the status chosen for that position.
+   * Tasks 1 and 2 wait for each other, so the answer only completes if they are processed concurrently.
+   */
+  private Answer<TaskStatus> addParallelFakeTaskHistory(final CountDownLatch bothStarted, final TaskStatus... statuses)
+  {
+    return new Answer<TaskStatus>()
+    {
+      @Override
+      public TaskStatus answer(InvocationOnMock invocation) throws Throwable
+      {
+        TaskRun taskRun = (TaskRun) invocation.getArguments()[0];
+        int idx = taskRun.getTask().getPosition() - 1;
+        if (idx < 2)
+        {
+          bothStarted.countDown();
+          if (!bothStarted.await(5, TimeUnit.SECONDS))
+          {
+            throw new IllegalStateException("Independent tasks were not processed concurrently");
+          }
+        }
+        JobHistory newJobHistory = taskRun.getNewJobHistory();
+        synchronized (newJobHistory)
+        {
+          taskFakery.addOneFakeTaskHistory(idx, statuses[idx], newJobHistory);
+        }
+        return statuses[idx];
+      }
+    };
+  }
+
+  /**
+   * Independent tasks run concurrently, and the dependent task runs after both succeed.
+   */
+  @Test
+  public void testProcess_Parallel()
+  {
+    newJobHistory.setTaskHistories(new ArrayList<TaskHistory>());
+    when(mockTaskRunProcessor.attemptTask(any(TaskRun.class))).then(addParallelFakeTaskHistory(
+        new CountDownLatch(2), TaskStatus.DONE, TaskStatus.DONE, TaskStatus.DONE));
+
+    assertEquals(JobStatus.DONE, jobParallel.process());
+
+    verify(mockTaskRunProcessor, times(NUM_FAKE_PARALLEL_TASKS)).attemptTask(any(TaskRun.class));
+    assertEquals(3, newJobHistory.getTaskHistories().get(2).getPosition());
+    verify(mockJobHistoryTx).closeJobHistory(any(JobHistory.class), eq(JobStatus.DONE));
+  }
+
+  /**
+   * An error in one branch lets the other running branch finish, but the dependent task is never attempted.
+   */
+  @Test
+  public void testProcess_ParallelError()
+  {
+    newJobHistory.setTaskHistories(new ArrayList<TaskHistory>());
+    when(mockTaskRunProcessor.attemptTask(any(TaskRun.class))).then(addParallelFakeTaskHistory(
+        new CountDownLatch(2), TaskStatus.ERROR, TaskStatus.DONE, TaskStatus.DONE));
+
+    assertEquals(JobStatus.ERROR, jobParallel.process());
+
+    verify(mockTaskRunProcessor, times(2)).attemptTask(any(TaskRun.class));
+    verify(mockJobHistoryTx).closeJobHistory(any(JobHistory.class), eq(JobStatus.ERROR));
+  }
+
+  /**
+   * The parallel task fails while the freeze is still processing.  The thaw is launched anyway once the freeze is done,
+   * but the task that needs the failed one is not.
+   */
+  @Test
+  public void testProcess_ParallelErrorDuringFreeze()
+  {
+    newJobHistory.setTaskHistories(new ArrayList<TaskHistory>());
+    final CountDownLatch parallelFailed = new CountDownLatch(1);
+    when(mockTaskRunProcessor.attemptTask(any(TaskRun.class))).then(new Answer<TaskStatus>()
+    {
+      @Override
+      public TaskStatus answer(InvocationOnMock invocation) throws Throwable
+      {
+        TaskRun taskRun = (TaskRun) invocation.getArguments()[0];
+        int position = taskRun.getTask().getPosition();
+        if (position == 2)
+        {
+          parallelFailed.countDown();
+          return TaskStatus.ERROR;
+        }
+        if (position == 1)
+        {
+          if (!parallelFailed.await(5, TimeUnit.SECONDS))
+          {
+            throw new IllegalStateException("Parallel task was not processed during the freeze");
+          }
+          Thread.sleep(100); //Lets the job see the error before the freeze ends
+        }
+        return TaskStatus.DONE;
+      }
+    });
+
+    assertEquals(JobStatus.ERROR, jobFreezeThaw.process());
+
+    ArgumentCaptor<TaskRun> taskRunCaptor = ArgumentCaptor.forClass(TaskRun.class);
+    verify(mockTaskRunProcessor, times(3)).attemptTask(taskRunCaptor.capture());
+    Set<Integer> attemptedPositions = new TreeSet<Integer>();
+    for (TaskRun taskRun : taskRunCaptor.getAllValues())
+    {
+      attemptedPositions.add(taskRun.getTask().getPosition());
+    }
+    assertEquals(new TreeSet<Integer>(Arrays.asList(1, 2, 3)), attemptedPositions);
+    verify(mockJobHistoryTx).closeJobHistory(any(JobHistory.class), eq(JobStatus.ERROR));
+  }
+
   /**
    * Implements the abstract TaskSequenceJob with a list of fake tasks.
    */
@@ -145,14 +282,39 @@ public class TaskSequenceJobTest
                                       TaskFakery taskFakery,
                                       String env1,
                                       String env2)
+    {
+      this(commandLine, noop, force, oldJobHistory, taskFakery, env1, env2, NUM_FAKE_TASKS, false);
+    }
+
+    /**
+     * @param lastDependsOnAll True if the last task depends on all the others, which are mutually independent.
+     */
+    protected TaskSequenceJobTestImpl(String commandLine,
+                                      boolean noop,
+                                      boolean force,
+                                      JobHistory oldJobHistory,
+                                      TaskFakery taskFakery,
+                                      String env1,
+                                      String env2,
+                                      int numTasks,
+                                      boolean lastDependsOnAll)
     {
       super(commandLine, noop, force, oldJobHistory);
       List<Task> tasks = new ArrayList<Task>();
-      for (int idx = 0; idx < NUM_FAKE_TASKS; ++idx)
+      int[] prerequisitePositions = new int[numTasks - 1];
+      for (int idx = 0; idx < numTasks; ++idx)
       {
         tasks.add(taskFakery.makeFakeTask(idx));
+        if (idx < numTasks - 1)
+        {
+          prerequisitePositions[idx] = idx + 1;
+        }
       }
       this.tasks = tasks;
+      if (lastDependsOnAll)
+      {
+        dependsOn(numTasks, prerequisitePositions);
+      }
     }
 
     @Override
@@ -167,4 +329,19 @@ public class TaskSequenceJobTest
       return env2;
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Freeze (1), parallel task (2), thaw (3) after the freeze and despite failure, last task (4) after all of them.
+   */
+  private static class FreezeThawJobTestImpl extends TaskSequenceJobTestImpl
+  {
+    protected FreezeThawJobTestImpl(String commandLine, JobHistory oldJobHistory, TaskFakery taskFakery,
+                                    String env1, String env2)
+    {
+      super(commandLine, false, false, oldJobHistory, taskFakery, env1, env2, 4, false);
+      dependsOn(3, 1);
+      dependsOn(4, 2, 3);
+      runsDespiteFailure(3);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package bluegreen.manager.main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import bluegreen.manager.client.app.GsonFactory;
+import bluegreen.manager.jobs.Job;
+import bluegreen.manager.model.domain.JobStatus;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the job server on an ephemeral local port and talks to it with the thin client.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class JobServerTest
+{
+  private static final String[] JOB_ARGS = new String[] { "teardown", "--deleteEnv", "env1" };
+
+  @InjectMocks
+  private JobServer jobServer;
+
+  @Mock
+  private BlueGreenManager mockBlueGreenManager;
+
+  @Spy
+  private GsonFactory gsonFactory;
+
+  @Mock
+  private Job mockJob;
+
+  private ByteArrayOutputStream clientOutput = new ByteArrayOutputStream();
+  private JobServerClient jobServerClient;
+
+  @Before
+  public void setUp() throws Exception
+  {
+    when(mockJob.getName()).thenReturn("TeardownJob");
+    when(mockJob.getCommandLine()).thenReturn("teardown --deleteEnv env1");
+    jobServer.setPort(0);
+    jobServer.start();
+    jobServerClient = new JobServerClient(jobServer.getPort(), new PrintStream(clientOutput));
+  }
+
+  @After
+  public void tearDown()
+  {
+    jobServer.stop();
+  }
+
+  @Test
+  public void testSubmitAndFollow_Done() throws Exception
+  {
+    when(mockBlueGreenManager.parseArgsToJob(any(String[].class))).thenReturn(mockJob);
+    when(mockJob.process()).thenReturn(JobStatus.DONE);
+
+    assertEquals(ReturnCode.SUCCESS, jobServerClient.submitAndFollow(JOB_ARGS));
+    assertEquals(JobRun.State.DONE, jobServer.getJobRun(1L).getState());
+    assertTrue(clientOutput.toString().contains("state: DONE"));
+  }
+
+  @Test
+  public void testSubmitAndFollow_Error() throws Exception
+  {
+    when(mockBlueGreenManager.parseArgsToJob(any(String[].class))).thenReturn(mockJob);
+    when(mockJob.process()).thenThrow(new RuntimeException("boom"));
+
+    assertEquals(ReturnCode.PROCESSING_ERROR, jobServerClient.submitAndFollow(JOB_ARGS));
+    assertEquals(JobRun.State.ERROR, jobServer.getJobRun(1L).getState());
+    assertTrue(jobServer.getJobRun(1L).getMessage().contains("boom"));
+  }
+
+  /**
+   * Bad syntax is rejected right away, without queueing a job.
+   */
+  @Test
+  public void testSubmitAndFollow_SyntaxError() throws Exception
+  {
+    assertEquals(ReturnCode.CMDLINE_ERROR, jobServerClient.submitAndFollow(new String[] { "--deleteEnv", "env1" }));
+    assertTrue(clientOutput.toString().contains("Please specify a job name"));
+    assertNull(jobServer.getJobRun(1L));
+    verifyZeroInteractions(mockBlueGreenManager);
+  }
+
+  /**
+   * The job is built on the job thread, so an invalid job shows up as a job error.
+   */
+  @Test
+  public void testSubmitAndFollow_CmdlineError() throws Exception
+  {
+    when(mockBlueGreenManager.parseArgsToJob(any(String[].class))).thenThrow(new CmdlineException("Unrecognized jobName"));
+
+    assertEquals(ReturnCode.PROCESSING_ERROR, jobServerClient.submitAndFollow(JOB_ARGS));
+    assertEquals(JobRun.State.ERROR, jobServer.getJobRun(1L).getState());
+    assertTrue(clientOutput.toString().contains("Unrecognized jobName"));
+  }
+}
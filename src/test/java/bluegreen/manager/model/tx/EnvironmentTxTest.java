@@ -3,23 +3,35 @@ package bluegreen.manager.model.tx;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 
 import bluegreen.manager.model.dao.EnvironmentDAO;
 import bluegreen.manager.model.domain.Application;
 import bluegreen.manager.model.domain.ApplicationVm;
 import bluegreen.manager.model.domain.Environment;
+import bluegreen.manager.model.domain.LogicalDatabase;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -58,6 +70,9 @@ public class EnvironmentTxTest
   @Mock
   private EnvironmentDAO environmentDAO;
 
+  @Mock
+  private PlatformTransactionManager mockTransactionManager;
+
   @Before
   public void setUp()
   {
@@ -118,4 +133,97 @@ public class EnvironmentTxTest
     Environment environment = environmentTx.findNamedEnv(GOOD_ENVNAME1);
     assertNotNull(environment.getApplicationVms().get(0).getApplications().get(0));
   }
+
+  /**
+   * Attaching a vm to an env that exists adds it to the env as loaded in the tx, without persisting another env.
+   */
+  @Test
+  public void testAttachApplicationVm_ExistingEnv()
+  {
+    Environment existingEnv = new Environment();
+    existingEnv.setEnvName(GOOD_ENVNAME2);
+    existingEnv.addLogicalDatabase(new LogicalDatabase());
+    when(environmentDAO.findNamedEnvAllowNull(GOOD_ENVNAME2)).thenReturn(existingEnv);
+    ApplicationVm applicationVm = new ApplicationVm();
+
+    Environment environment = environmentTx.attachApplicationVm(GOOD_ENVNAME2, applicationVm);
+
+    assertSame(existingEnv, environment);
+    assertSame(environment, applicationVm.getEnvironment());
+    assertEquals(1, environment.getApplicationVms().size());
+    assertEquals(1, environment.getLogicalDatabases().size());
+    verify(environmentDAO, never()).persist(any(Environment.class));
+  }
+
+  /**
+   * Attaching a logicaldb to an env that does not exist yet creates the env.
+   */
+  @Test
+  public void testAttachLogicalDatabase_NewEnv()
+  {
+    LogicalDatabase logicalDatabase = new LogicalDatabase();
+
+    Environment environment = environmentTx.attachLogicalDatabase(BAD_ENVNAME1, logicalDatabase);
+
+    assertEquals(BAD_ENVNAME1, environment.getEnvName());
+    assertSame(environment, logicalDatabase.getEnvironment());
+    assertEquals(1, environment.getLogicalDatabases().size());
+    verify(environmentDAO).persist(environment);
+  }
+
+  /**
+   * Two parallel tasks attach to the same new env.  The env persisted by the first is only visible to the second once
+   * committed, so the second must wait for the commit, and then finds the env instead of creating another.
+   */
+  @Test
+  public void testAttach_ConcurrentNewEnv() throws InterruptedException
+  {
+    final AtomicReference<Environment> pendingEnv = new AtomicReference<Environment>();
+    final AtomicReference<Environment> committedEnv = new AtomicReference<Environment>();
+    when(environmentDAO.findNamedEnvAllowNull(BAD_ENVNAME2)).thenAnswer(new Answer<Environment>()
+    {
+      @Override
+      public Environment answer(InvocationOnMock invocation)
+      {
+        return committedEnv.get();
+      }
+    });
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation)
+      {
+        pendingEnv.set((Environment) invocation.getArguments()[0]);
+        return null;
+      }
+    }).when(environmentDAO).persist(any(Environment.class));
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws InterruptedException
+      {
+        Thread.sleep(100L); //Gives the other thread time to look for the env before this one commits
+        committedEnv.compareAndSet(null, pendingEnv.get());
+        return null;
+      }
+    }).when(mockTransactionManager).commit(any(TransactionStatus.class));
+    Thread vmThread = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        environmentTx.attachApplicationVm(BAD_ENVNAME2, new ApplicationVm());
+      }
+    });
+
+    vmThread.start();
+    Thread.sleep(20L);
+    Environment environment = environmentTx.attachLogicalDatabase(BAD_ENVNAME2, new LogicalDatabase());
+    vmThread.join();
+
+    verify(environmentDAO, times(1)).persist(any(Environment.class));
+    assertSame(committedEnv.get(), environment);
+    assertEquals(1, environment.getApplicationVms().size());
+    assertEquals(1, environment.getLogicalDatabases().size());
+  }
 }
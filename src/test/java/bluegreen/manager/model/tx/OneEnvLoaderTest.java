@@ -7,6 +7,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import bluegreen.manager.model.domain.ApplicationVm;
 import bluegreen.manager.model.domain.Environment;
 import bluegreen.manager.model.domain.EnvironmentTestHelper;
 import static org.junit.Assert.assertEquals;
@@ -108,6 +109,32 @@ public class OneEnvLoaderTest
     oneEnvLoader.loadApplication();
   }
 
+  /**
+   * Pass: load the applications of every vm in the env.
+   */
+  @Test
+  public void testLoadApplications_TwoVms()
+  {
+    Environment twoVmEnv = EnvironmentTestHelper.makeFakeFullEnvironment(1);
+    ApplicationVm secondVm = EnvironmentTestHelper.makeFakeApplication(0).getApplicationVm();
+    twoVmEnv.addApplicationVm(secondVm);
+    when(mockEnvironmentTx.findNamedEnv(twoVmEnv.getEnvName())).thenReturn(twoVmEnv);
+    oneEnvLoader.setEnvName(twoVmEnv.getEnvName());
+    oneEnvLoader.loadApplications();
+    assertEquals(2, oneEnvLoader.getApplications().size());
+    assertEquals(secondVm.getApplications().get(0), oneEnvLoader.getApplications().get(1));
+  }
+
+  /**
+   * Fail: no vms, so no applications.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testLoadApplications_NoVms()
+  {
+    oneEnvLoader.setEnvName(FAKE_EMPTY_ENV.getEnvName());
+    oneEnvLoader.loadApplications();
+  }
+
   /**
    * Empty environment: context is only the environment.
    */
@@ -0,0 +1,66 @@
+package bluegreen.manager.model.tx;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import bluegreen.manager.model.dao.TaskCheckpointDAO;
+import bluegreen.manager.model.domain.TaskCheckpoint;
+import bluegreen.manager.model.domain.TaskHistory;
+import bluegreen.manager.utils.NowFactory;
+import static bluegreen.manager.utils.TimeFakery.START_TIME;
+import static bluegreen.manager.utils.TimeFakery.START_TIMESTAMP;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the ability to perform transactions of task checkpoints.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TaskCheckpointTxTest
+{
+  private static final long TASK_HISTORY_ID = 12L;
+
+  @InjectMocks
+  private TaskCheckpointTx taskCheckpointTx;
+
+  @Mock
+  private NowFactory mockNowFactory;
+
+  @Mock
+  private TaskCheckpointDAO mockTaskCheckpointDAO;
+
+  @Before
+  public void setUp()
+  {
+    when(mockNowFactory.now()).thenReturn(START_TIME);
+  }
+
+  @Test
+  public void testNewTaskCheckpoint()
+  {
+    TaskHistory taskHistory = new TaskHistory();
+    taskHistory.setId(TASK_HISTORY_ID);
+
+    TaskCheckpoint taskCheckpoint = taskCheckpointTx.newTaskCheckpoint(taskHistory, "rebootIssued", "stage-instance");
+
+    assertEquals(taskHistory, taskCheckpoint.getTaskHistory());
+    assertEquals(START_TIMESTAMP, taskCheckpoint.getCheckpointTime());
+    assertEquals("rebootIssued", taskCheckpoint.getName());
+    assertEquals("stage-instance", taskCheckpoint.getValue());
+    verify(mockTaskCheckpointDAO).persist(taskCheckpoint);
+  }
+
+  /**
+   * Checkpoints only belong to a task history that has been persisted already.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNewTaskCheckpoint_TransientTaskHistory()
+  {
+    taskCheckpointTx.newTaskCheckpoint(new TaskHistory(), "rebootIssued", "stage-instance");
+  }
+}
@@ -1,5 +1,9 @@
 package bluegreen.manager.model.tx;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -8,14 +12,17 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import bluegreen.manager.jobs.JobFakery;
+import bluegreen.manager.model.dao.TaskCheckpointDAO;
 import bluegreen.manager.model.dao.TaskHistoryDAO;
 import bluegreen.manager.model.domain.JobHistory;
+import bluegreen.manager.model.domain.TaskCheckpoint;
 import bluegreen.manager.model.domain.TaskHistory;
 import bluegreen.manager.model.domain.TaskStatus;
 import bluegreen.manager.tasks.Task;
 import bluegreen.manager.tasks.TaskFakery;
 import bluegreen.manager.utils.NowFactory;
 import static bluegreen.manager.utils.TimeFakery.START_TIME;
+import static bluegreen.manager.utils.TimeFakery.START_TIMESTAMP;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -40,6 +47,9 @@ public class TaskHistoryTxTest
   @Mock
   private TaskHistoryDAO mockTaskHistoryDAO;
 
+  @Mock
+  private TaskCheckpointDAO mockTaskCheckpointDAO;
+
   private TaskFakery taskFakery = new TaskFakery();
   private JobFakery jobFakery = new JobFakery(taskFakery);
 
@@ -98,4 +108,57 @@ public class TaskHistoryTxTest
     assertEquals(taskHistory.getStatus(), TaskStatus.DONE);
     assertNotNull(taskHistory.getEndTime());
   }
-}
\ No newline at end of file
+
+  private TaskHistory makeDoneTaskHistory(long id, long restoreMilliseconds)
+  {
+    TaskHistory taskHistory = new TaskHistory();
+    taskHistory.setId(id);
+    taskHistory.setStatus(TaskStatus.DONE);
+    List<TaskCheckpoint> checkpoints = new ArrayList<TaskCheckpoint>();
+    checkpoints.add(makeCheckpoint(taskHistory, "snapshotAvailable", 0L));
+    checkpoints.add(makeCheckpoint(taskHistory, "restoreRequested", 1000L));
+    if (restoreMilliseconds > 0)
+    {
+      checkpoints.add(makeCheckpoint(taskHistory, "paramGroupApplied", 1000L + restoreMilliseconds));
+    }
+    when(mockTaskCheckpointDAO.findByTaskHistoryId(id)).thenReturn(checkpoints);
+    return taskHistory;
+  }
+
+  private TaskCheckpoint makeCheckpoint(TaskHistory taskHistory, String name, long offsetMilliseconds)
+  {
+    TaskCheckpoint taskCheckpoint = new TaskCheckpoint();
+    taskCheckpoint.setTaskHistory(taskHistory);
+    taskCheckpoint.setName(name);
+    taskCheckpoint.setCheckpointTime(new Timestamp(START_TIMESTAMP.getTime() + offsetMilliseconds));
+    return taskCheckpoint;
+  }
+
+  /**
+   * Typical span is the median of recent runs that reached both checkpoints.
+   */
+  @Test
+  public void testFindTypicalCheckpointSpanMilliseconds()
+  {
+    List<TaskHistory> taskHistories = new ArrayList<TaskHistory>();
+    taskHistories.add(makeDoneTaskHistory(1L, 9000L));
+    taskHistories.add(makeDoneTaskHistory(2L, 1000L));
+    taskHistories.add(makeDoneTaskHistory(3L, 5000L));
+    taskHistories.add(makeDoneTaskHistory(4L, 0L)); //Never reached paramGroupApplied, e.g. resumed after it
+    when(mockTaskHistoryDAO.findRecentDoneTaskHistories("someTask", "env1", TaskHistoryTx.NUM_DURATIONS_FOR_TYPICAL))
+        .thenReturn(taskHistories);
+
+    assertEquals(5000L, taskHistoryTx.findTypicalCheckpointSpanMilliseconds("someTask", "env1", "restoreRequested",
+        "paramGroupApplied"));
+  }
+
+  /**
+   * No past runs means no typical span.
+   */
+  @Test
+  public void testFindTypicalCheckpointSpanMilliseconds_NoHistory()
+  {
+    assertEquals(0L, taskHistoryTx.findTypicalCheckpointSpanMilliseconds("someTask", "env1", "restoreRequested",
+        "paramGroupApplied"));
+  }
+}
@@ -10,6 +10,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import bluegreen.manager.client.app.ApplicationClient;
 import bluegreen.manager.client.app.ApplicationClientFactory;
 import bluegreen.manager.client.app.ApplicationSession;
+import bluegreen.manager.client.app.ApplicationSessionCache;
 import bluegreen.manager.client.app.DiscoveryResult;
 import bluegreen.manager.client.app.PhysicalDatabase;
 import bluegreen.manager.model.domain.Application;
@@ -19,10 +20,14 @@ import bluegreen.manager.model.domain.TaskStatus;
 import bluegreen.manager.model.tx.EnvLoaderFactory;
 import bluegreen.manager.model.tx.OneEnvLoader;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -96,6 +101,24 @@ public class DiscoveryTaskTest
     verify(mockApplicationClient).putDiscoverDb(eq(FAKE_APPLICATION), eq(mockApplicationSession), anyInt());
   }
 
+  /**
+   * In a job, the task uses the job's session instead of logging in.
+   */
+  @Test
+  public void testProcess_JobSession()
+  {
+    ApplicationSessionCache mockApplicationSessionCache = mock(ApplicationSessionCache.class);
+    when(mockApplicationSessionCache.getClient(FAKE_APPLICATION)).thenReturn(mockApplicationClient);
+    when(mockApplicationSessionCache.getSession(FAKE_APPLICATION)).thenReturn(mockApplicationSession);
+    discoveryTask.setApplicationSessionCache(mockApplicationSessionCache);
+
+    assertEquals(TaskStatus.NOOP, discoveryTask.process(true));
+
+    verify(mockApplicationSessionCache).getSession(FAKE_APPLICATION);
+    verify(mockApplicationClient, never()).authenticate(any(Application.class));
+    verifyZeroInteractions(mockApplicationClientFactory);
+  }
+
   @Test(expected = RuntimeException.class)
   public void testCheckResult_NullResult()
   {
@@ -31,6 +31,8 @@ import bluegreen.manager.model.tx.EnvLoaderFactory;
 import bluegreen.manager.model.tx.TwoEnvLoader;
 import bluegreen.manager.utils.ThreadSleeper;
 import bluegreen.manager.utils.WaiterParameters;
+import bluegreen.manager.utils.WaiterScheduler;
+import static bluegreen.manager.utils.WaiterTestHelper.runWaitsOnCallerThread;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.times;
@@ -55,6 +57,9 @@ public class FixedElbFlipEc2TaskTest
   @Mock
   private ThreadSleeper mockThreadSleeper;
 
+  @Mock
+  private WaiterScheduler mockWaiterScheduler;
+
   @Mock
   private Ec2ClientFactory mockEc2ClientFactory;
 
@@ -79,6 +84,7 @@ public class FixedElbFlipEc2TaskTest
   @Before
   public void setUp()
   {
+    runWaitsOnCallerThread(mockWaiterScheduler);
     when(mockEnvLoaderFactory.createTwo(FAKE_LIVE_ENV.getEnvName(), FAKE_STAGE_ENV.getEnvName())).thenReturn(mockTwoEnvLoader);
     when(mockTwoEnvLoader.getLiveEnv()).thenReturn(FAKE_LIVE_ENV);
     when(mockTwoEnvLoader.getLiveApplicationVm()).thenReturn(FAKE_LIVE_ENV.getApplicationVms().get(0));
@@ -122,6 +122,15 @@ public class FreezeTaskTest extends TransitionTaskBaseTest
     testWaitForTransition_ThreeFlushingThenEnd(freezeTask, DbFreezeMode.FLUSHING, fourthProgress, expectSuccess);
   }
 
+  /**
+   * Tests that a long-poll capable application ends the wait as soon as it reaches destination mode.
+   */
+  @Test
+  public void testWaitForTransition_LongPoll() throws InterruptedException
+  {
+    testWaitForTransition_LongPoll(freezeTask, DbFreezeMode.FLUSHING, DbFreezeMode.FROZEN);
+  }
+
   /**
    * Tests the success case where we get freeze confirmation after the third wait (4th progress object).
    */
@@ -260,4 +269,44 @@ public class FreezeTaskTest extends TransitionTaskBaseTest
     testProcess_ThreeFlushingThenEnd(fakeProgress(DbFreezeMode.FLUSHING), TaskStatus.ERROR);
   }
 
-}
\ No newline at end of file
+  /**
+   * Tests that both applications of the env are frozen.
+   */
+  @Test
+  public void testProcess_TwoApplicationsFrozen()
+  {
+    testProcess_TwoApplications(freezeTask, DbFreezeMode.NORMAL, DbFreezeMode.FLUSHING, DbFreezeRest.PUT_ENTER_DB_FREEZE,
+        fakeProgress(DbFreezeMode.FROZEN), fakeProgress(DbFreezeMode.FROZEN), TaskStatus.DONE);
+  }
+
+  /**
+   * Tests that the task fails if one of the applications fails to freeze.
+   */
+  @Test
+  public void testProcess_TwoApplicationsOneFlushError()
+  {
+    testProcess_TwoApplications(freezeTask, DbFreezeMode.NORMAL, DbFreezeMode.FLUSHING, DbFreezeRest.PUT_ENTER_DB_FREEZE,
+        fakeProgress(DbFreezeMode.FROZEN), fakeTransitionErrorProgress(DbFreezeMode.FLUSH_ERROR), TaskStatus.ERROR);
+  }
+
+  /**
+   * Tests that the application that froze is thawed again when the other one fails to freeze.
+   */
+  @Test
+  public void testProcess_TwoApplicationsOneFlushErrorOtherThawed()
+  {
+    testProcess_TwoApplicationsOneFailsOtherReverted(freezeTask, DbFreezeMode.NORMAL, DbFreezeMode.FLUSHING,
+        DbFreezeRest.PUT_ENTER_DB_FREEZE, fakeTransitionErrorProgress(DbFreezeMode.FLUSH_ERROR), DbFreezeMode.THAW,
+        DbFreezeRest.PUT_EXIT_DB_FREEZE);
+  }
+
+  /**
+   * Tests that no application is asked to freeze if one of them is not ready.
+   */
+  @Test
+  public void testProcess_TwoApplicationsOneNotReady()
+  {
+    testProcess_TwoApplicationsOneNotReady(freezeTask, DbFreezeMode.NORMAL, DbFreezeMode.FROZEN,
+        DbFreezeRest.PUT_ENTER_DB_FREEZE);
+  }
+}
@@ -0,0 +1,193 @@
+package bluegreen.manager.tasks;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.http.client.fluent.Executor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import bluegreen.manager.client.app.ApplicationClient;
+import bluegreen.manager.client.app.ApplicationClientFactory;
+import bluegreen.manager.client.app.ApplicationSession;
+import bluegreen.manager.client.http.HttpHelper;
+import bluegreen.manager.model.domain.Application;
+import bluegreen.manager.model.domain.Environment;
+import bluegreen.manager.model.domain.EnvironmentTestHelper;
+import bluegreen.manager.model.domain.TaskStatus;
+import bluegreen.manager.model.tx.EnvLoaderFactory;
+import bluegreen.manager.model.tx.OneEnvLoader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LoadTestTaskTest
+{
+  private static final Application FAKE_APPLICATION = EnvironmentTestHelper.makeFakeApplication();
+  private static final String BASELINE_ENV_NAME = "baselineEnv";
+  private static final String METHOD_PATH = "dbFreezeProgress";
+  private static final int NUM_REQUESTS = 20;
+  private static final int NUM_WARMUP_REQUESTS = 5;
+
+  @InjectMocks
+  private LoadTestTask loadTestTask;
+
+  @Mock
+  private EnvLoaderFactory mockEnvLoaderFactory;
+
+  @Mock
+  private OneEnvLoader mockOneEnvLoader;
+
+  @Mock
+  private ApplicationClientFactory mockApplicationClientFactory;
+
+  @Mock
+  private ApplicationClient mockApplicationClient;
+
+  @Mock
+  private ApplicationSession mockApplicationSession;
+
+  @Mock
+  private Executor mockExecutor;
+
+  @Mock
+  private HttpHelper mockHttpHelper;
+
+  private LoadTestConfig loadTestConfig;
+
+  @Before
+  public void setUp()
+  {
+    Environment fakeEnv = FAKE_APPLICATION.getApplicationVm().getEnvironment();
+    when(mockEnvLoaderFactory.createOne(fakeEnv.getEnvName())).thenReturn(mockOneEnvLoader);
+    when(mockOneEnvLoader.getEnvironment()).thenReturn(fakeEnv);
+    when(mockOneEnvLoader.getApplication()).thenReturn(FAKE_APPLICATION);
+    when(mockOneEnvLoader.context()).thenReturn("(Context) ");
+    when(mockApplicationClientFactory.create(anyString(), anyString())).thenReturn(mockApplicationClient);
+    when(mockApplicationClient.authenticate(FAKE_APPLICATION)).thenReturn(mockApplicationSession);
+    when(mockApplicationSession.getHttpExecutor()).thenReturn(mockExecutor);
+    loadTestConfig = new LoadTestConfig(METHOD_PATH, 4, NUM_REQUESTS, NUM_WARMUP_REQUESTS, 60000L, 60000L, 10.0, 0.0);
+    loadTestTask.setLoadTestConfig(loadTestConfig);
+    loadTestTask.assign(1, fakeEnv.getEnvName(), BASELINE_ENV_NAME);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAssign_SameEnv()
+  {
+    loadTestTask.assign(1, BASELINE_ENV_NAME, BASELINE_ENV_NAME);
+  }
+
+  @Test
+  public void testProcess_Noop()
+  {
+    assertEquals(TaskStatus.NOOP, loadTestTask.process(true));
+    verify(mockOneEnvLoader).loadApplication();
+    verifyZeroInteractions(mockApplicationClient, mockHttpHelper);
+  }
+
+  /**
+   * There is no default method path, so without one the gate is off and the task skips itself.
+   */
+  @Test
+  public void testProcess_NoMethodPath()
+  {
+    loadTestConfig.setMethodPath("");
+    assertEquals(TaskStatus.SKIPPED, loadTestTask.process(false));
+    verifyZeroInteractions(mockEnvLoaderFactory, mockApplicationClient, mockHttpHelper);
+  }
+
+  /**
+   * A noop dry run with the default (blank) config must not fail either.
+   */
+  @Test
+  public void testProcess_NoMethodPathNoop()
+  {
+    loadTestConfig.setMethodPath("");
+    assertEquals(TaskStatus.NOOP, loadTestTask.process(true));
+  }
+
+  /**
+   * With no regression ratio the baseline env is not loaded at all.
+   */
+  @Test
+  public void testProcess_NoBaselineByDefault()
+  {
+    assertEquals(TaskStatus.DONE, loadTestTask.process(false));
+    verify(mockEnvLoaderFactory, never()).createOne(BASELINE_ENV_NAME);
+  }
+
+  /**
+   * Fast responses within budget pass.  Warmup requests are sent too, but not measured.
+   */
+  @Test
+  public void testProcess_Done()
+  {
+    assertEquals(TaskStatus.DONE, loadTestTask.process(false));
+    verify(mockHttpHelper, times(NUM_REQUESTS + NUM_WARMUP_REQUESTS))
+        .executeGet(mockExecutor, FAKE_APPLICATION.makeHostnameUri() + "/" + METHOD_PATH);
+  }
+
+  /**
+   * All requests failing breaks the error budget.
+   */
+  @Test
+  public void testProcess_Errors()
+  {
+    when(mockHttpHelper.executeGet(mockExecutor, FAKE_APPLICATION.makeHostnameUri() + "/" + METHOD_PATH))
+        .thenThrow(new RuntimeException("connection refused"));
+
+    assertEquals(TaskStatus.ERROR, loadTestTask.process(false));
+  }
+
+  @Test
+  public void testCheckBudgets_Pass()
+  {
+    LoadTestResult result = new LoadTestResult(Arrays.asList(10L, 20L, 30L), 0);
+
+    assertTrue(loadTestTask.checkBudgets(result, null).isEmpty());
+  }
+
+  @Test
+  public void testCheckBudgets_Latency()
+  {
+    loadTestConfig.setMaxP95Milliseconds(100L);
+    loadTestConfig.setMaxP99Milliseconds(100L);
+    LoadTestResult result = new LoadTestResult(Collections.nCopies(10, 200L), 0);
+
+    assertEquals(2, loadTestTask.checkBudgets(result, null).size());
+  }
+
+  /**
+   * Stage twice as slow as the baseline breaks a 1.5x regression budget, though it meets the absolute budgets.
+   */
+  @Test
+  public void testCheckBudgets_Regression()
+  {
+    loadTestConfig.setMaxRegressionRatio(1.5);
+    LoadTestResult result = new LoadTestResult(Collections.nCopies(10, 200L), 0);
+    LoadTestResult baselineResult = new LoadTestResult(Collections.nCopies(10, 100L), 0);
+
+    assertEquals(1, loadTestTask.checkBudgets(result, baselineResult).size());
+  }
+
+  @Test
+  public void testLoadTestResult()
+  {
+    LoadTestResult result = new LoadTestResult(Arrays.asList(5L, 1L, 4L, 2L, 3L, 10L, 9L, 8L, 7L, 6L), 10);
+
+    assertEquals(20, result.getNumRequests());
+    assertEquals(50.0, result.getErrorPercent(), 0.001);
+    assertEquals(5L, result.percentile(50));
+    assertEquals(10L, result.percentile(95));
+  }
+}
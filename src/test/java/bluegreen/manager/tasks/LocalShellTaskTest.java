@@ -1,14 +1,28 @@
 package bluegreen.manager.tasks;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import bluegreen.manager.model.domain.Environment;
 import bluegreen.manager.model.domain.EnvironmentTestHelper;
@@ -19,12 +33,18 @@ import bluegreen.manager.substituter.SubstituterResult;
 import bluegreen.manager.substituter.TwoEnvStringSubstituter;
 import bluegreen.manager.utils.ProcessBuilderAdapter;
 import bluegreen.manager.utils.ProcessBuilderAdapterFactory;
+import bluegreen.manager.utils.ProcessKiller;
+import bluegreen.manager.utils.WaiterScheduler;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -61,6 +81,17 @@ public class LocalShellTaskTest
   @Mock
   private Process mockProcess;
 
+  @Mock
+  private WaiterScheduler mockWaiterScheduler;
+
+  @Mock
+  private ProcessKiller mockProcessKiller;
+
+  @Rule
+  public TemporaryFolder outputFolder = new TemporaryFolder();
+
+  private ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
   private ShellConfig shellConfig = new ShellConfig(COMMAND, REGEXP_ERROR, EXITCODE_SUCCESS, null);
 
   @Before
@@ -70,6 +101,14 @@ public class LocalShellTaskTest
         .thenReturn(mockTwoEnvStringSubstituter);
     when(mockTwoEnvStringSubstituter.substituteVariables(anyString())).thenReturn(SUBSTITUTED_COMMAND);
     localShellTask.assign(1, FAKE_LIVE_ENV.getEnvName(), FAKE_STAGE_ENV.getEnvName(), shellConfig);
+    localShellTask.setOutputDir(outputFolder.getRoot());
+    when(mockWaiterScheduler.getScheduledExecutorService()).thenReturn(scheduledExecutorService);
+  }
+
+  @After
+  public void tearDown()
+  {
+    scheduledExecutorService.shutdownNow();
   }
 
   private void setUpProcessBuilder(String fakeOutput, int fakeExitValue) throws IOException
@@ -111,6 +150,104 @@ public class LocalShellTaskTest
     verifyProcessBuilder();
   }
 
+  /**
+   * Process tree is killed at the first error line, without reading the rest.  The temp output file is cleaned up.
+   */
+  @Test
+  public void testProcess_RegexpErrorKills() throws IOException
+  {
+    setUpProcessBuilder("Output: starting\nBad stuff\nnever read\n", EXITCODE_SUCCESS);
+    assertEquals(TaskStatus.ERROR, localShellTask.process(false));
+    verify(mockProcessKiller).destroyTree(mockProcess);
+    assertEquals(0, outputFolder.getRoot().listFiles().length);
+  }
+
+  /**
+   * The temp output file is cleaned up after a successful command too.
+   */
+  @Test
+  public void testProcess_DoneDeletesOutputFile() throws IOException
+  {
+    setUpProcessBuilder("Output: completed normally\n", EXITCODE_SUCCESS);
+    assertEquals(TaskStatus.DONE, localShellTask.process(false));
+    assertEquals(0, outputFolder.getRoot().listFiles().length);
+  }
+
+  /**
+   * Process that runs past the timeout is killed, and is an error even though its exitValue looks fine.
+   */
+  @Test
+  public void testProcess_Timeout() throws Exception
+  {
+    setUpProcessBuilder("", EXITCODE_SUCCESS);
+    final PipedOutputStream hungOutput = new PipedOutputStream();
+    when(mockProcess.getInputStream()).thenReturn(new PipedInputStream(hungOutput));
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable
+      {
+        hungOutput.close(); //Killed process closes its stdout
+        return null;
+      }
+    }).when(mockProcessKiller).destroyTree(mockProcess);
+    shellConfig.setTimeoutMilliseconds(50L);
+    assertEquals(TaskStatus.ERROR, localShellTask.process(false));
+    verify(mockProcessKiller).destroyTree(mockProcess);
+  }
+
+  /**
+   * Process whose descendant still holds stdout open after the kill is unblocked by the watchdog closing stdout.
+   */
+  @Test
+  public void testProcess_TimeoutClosesOutput() throws Exception
+  {
+    setUpProcessBuilder("", EXITCODE_SUCCESS);
+    final PipedOutputStream hungOutput = new PipedOutputStream();
+    final PipedInputStream hungInput = new PipedInputStream(hungOutput);
+    when(mockProcess.getInputStream()).thenReturn(new InputStream()
+    {
+      @Override
+      public int read() throws IOException
+      {
+        return hungInput.read();
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+        hungOutput.close(); //Stands in for the reader waking up on a closed stream
+      }
+    });
+    shellConfig.setTimeoutMilliseconds(50L);
+    assertEquals(TaskStatus.ERROR, localShellTask.process(false));
+    verify(mockProcessKiller).destroyTree(mockProcess);
+  }
+
+  /**
+   * Process that finishes within the timeout is not killed.
+   */
+  @Test
+  public void testProcess_WithinTimeout() throws IOException
+  {
+    setUpProcessBuilder("Output: completed normally\n", EXITCODE_SUCCESS);
+    shellConfig.setTimeoutMilliseconds(60000L);
+    assertEquals(TaskStatus.DONE, localShellTask.process(false));
+    verify(mockProcessKiller, never()).destroyTree(any(Process.class));
+  }
+
+  /**
+   * Zero timeout, the default when the property is not set, means no watchdog.
+   */
+  @Test
+  public void testProcess_ZeroTimeout() throws IOException
+  {
+    setUpProcessBuilder("Output: completed normally\n", EXITCODE_SUCCESS);
+    shellConfig.setTimeoutMilliseconds(0L);
+    assertEquals(TaskStatus.DONE, localShellTask.process(false));
+    verifyZeroInteractions(mockWaiterScheduler);
+  }
+
   /**
    * Process exitValue is flagged because it does not match the configured exitValue.
    */
@@ -134,6 +271,70 @@ public class LocalShellTaskTest
     verifyProcessBuilder();
   }
 
+  /**
+   * Sets up a for-each command over three packages, where the copy for the given package prints an error.
+   * Returns the set that records which commands were started.
+   */
+  private Set<String> setUpForEachPackage(final String errorPackage) throws IOException
+  {
+    when(mockTwoEnvStringSubstituter.substituteVariables(anyString())).thenAnswer(new Answer<SubstituterResult>()
+    {
+      @Override
+      public SubstituterResult answer(InvocationOnMock invocation) throws Throwable
+      {
+        String substituted = ((String) invocation.getArguments()[0]).replace("%{packages}", "pkgA, pkgB,pkgC");
+        return new SubstituterResult(substituted, substituted);
+      }
+    });
+    final Set<String> startedCommands = Collections.synchronizedSet(new HashSet<String>());
+    when(mockProcessBuilderAdapterFactory.create(any(String[].class))).thenAnswer(new Answer<ProcessBuilderAdapter>()
+    {
+      @Override
+      public ProcessBuilderAdapter answer(InvocationOnMock invocation) throws Throwable
+      {
+        String[] commandTokens = (String[]) invocation.getArguments()[0];
+        String pkg = commandTokens[commandTokens.length - 1];
+        startedCommands.add(StringUtils.join(commandTokens, " "));
+        Process process = mock(Process.class);
+        when(process.getInputStream()).thenReturn(IOUtils.toInputStream(pkg.equals(errorPackage) ? "Bad stuff\n" : "ok\n"));
+        when(process.exitValue()).thenReturn(EXITCODE_SUCCESS);
+        ProcessBuilderAdapter processBuilderAdapter = mock(ProcessBuilderAdapter.class);
+        when(processBuilderAdapter.redirectErrorStream(anyBoolean())).thenReturn(processBuilderAdapter);
+        when(processBuilderAdapter.start()).thenReturn(process);
+        return processBuilderAdapter;
+      }
+    });
+    shellConfig.setCommand("deploy --pkg %{packages}");
+    shellConfig.setForEachItemOf("packages");
+    shellConfig.setMaxParallelism(2);
+    return startedCommands;
+  }
+
+  /**
+   * For-each command runs one copy per package, with the list variable substituted by that package.
+   */
+  @Test
+  public void testProcess_ForEachDone() throws IOException
+  {
+    Set<String> startedCommands = setUpForEachPackage("no-such-package");
+    assertEquals(TaskStatus.DONE, localShellTask.process(false));
+    assertEquals(3, startedCommands.size());
+    assertTrue(startedCommands.contains("deploy --pkg pkgA"));
+    assertTrue(startedCommands.contains("deploy --pkg pkgB"));
+    assertTrue(startedCommands.contains("deploy --pkg pkgC"));
+  }
+
+  /**
+   * For-each command fails if any one copy fails, but the other copies still run.
+   */
+  @Test
+  public void testProcess_ForEachOneError() throws IOException
+  {
+    Set<String> startedCommands = setUpForEachPackage("pkgB");
+    assertEquals(TaskStatus.ERROR, localShellTask.process(false));
+    assertEquals(3, startedCommands.size());
+  }
+
   /**
    * Noop always returns noop, and at least invokes loadDataModel.
    */
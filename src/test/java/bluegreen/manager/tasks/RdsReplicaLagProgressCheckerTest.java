@@ -0,0 +1,143 @@
+package bluegreen.manager.tasks;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.amazonaws.services.rds.model.DBInstance;
+import com.amazonaws.services.rds.model.DBInstanceStatusInfo;
+
+import bluegreen.manager.client.aws.RdsAnalyzer;
+import bluegreen.manager.client.aws.RdsClient;
+import bluegreen.manager.client.aws.RdsInstanceStatus;
+import bluegreen.manager.client.db.BinlogPosition;
+import bluegreen.manager.client.db.MysqlClient;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RdsReplicaLagProgressCheckerTest
+{
+  private static final String LOG_CONTEXT = "(Log Context) ";
+  private static final int WAIT_NUM = 1;
+  private static final String INSTANCE_ID = "rds-replica-hello";
+  private static final String SOURCE_INSTANCE_ID = "rds-live-hello";
+  private static final BinlogPosition TARGET_POSITION = new BinlogPosition("mysql-bin-changelog.000123", 4567L);
+  private static final BinlogPosition BEHIND_POSITION = new BinlogPosition("mysql-bin-changelog.000123", 1200L);
+  private static final BinlogPosition NEXT_FILE_POSITION = new BinlogPosition("mysql-bin-changelog.000124", 120L);
+
+  @Mock
+  private RdsClient mockRdsClient;
+
+  @Spy
+  private RdsAnalyzer rdsAnalyzer;
+
+  @Mock
+  private MysqlClient mockSourceDbClient;
+
+  @Mock
+  private MysqlClient mockReplicaDbClient;
+
+  private DBInstance fakeReplica(String sourceInstanceId, RdsInstanceStatus instanceStatus,
+                                 String replicationStatus, boolean normal)
+  {
+    DBInstance dbInstance = new DBInstance();
+    dbInstance.setDBInstanceIdentifier(INSTANCE_ID);
+    dbInstance.setReadReplicaSourceDBInstanceIdentifier(sourceInstanceId);
+    dbInstance.setDBInstanceStatus(instanceStatus.toString());
+    dbInstance.setStatusInfos(Arrays.asList(new DBInstanceStatusInfo()
+        .withStatusType("read replication").withStatus(replicationStatus).withNormal(normal)));
+    return dbInstance;
+  }
+
+  private RdsReplicaLagProgressChecker makeProgressChecker(DBInstance initialInstance)
+  {
+    when(mockSourceDbClient.getMasterStatus()).thenReturn(TARGET_POSITION);
+    return new RdsReplicaLagProgressChecker(INSTANCE_ID, SOURCE_INSTANCE_ID, LOG_CONTEXT, mockRdsClient, rdsAnalyzer,
+        mockSourceDbClient, mockReplicaDbClient, initialInstance);
+  }
+
+  /**
+   * Replica executed the source binlog up to the position read after the freeze = done.
+   */
+  @Test
+  public void testInitialCheck_CaughtUp()
+  {
+    DBInstance initialInstance = fakeReplica(SOURCE_INSTANCE_ID, RdsInstanceStatus.AVAILABLE, "replicating", true);
+    when(mockReplicaDbClient.getReplicaExecutedPosition()).thenReturn(TARGET_POSITION);
+    RdsReplicaLagProgressChecker progressChecker = makeProgressChecker(initialInstance);
+    progressChecker.initialCheck();
+    assertTrue(progressChecker.isDone());
+    assertEquals(initialInstance, progressChecker.getResult());
+  }
+
+  /**
+   * Replicating normally but still behind the target position = keep waiting.
+   */
+  @Test
+  public void testInitialCheck_Behind()
+  {
+    when(mockReplicaDbClient.getReplicaExecutedPosition()).thenReturn(BEHIND_POSITION);
+    RdsReplicaLagProgressChecker progressChecker = makeProgressChecker(
+        fakeReplica(SOURCE_INSTANCE_ID, RdsInstanceStatus.AVAILABLE, "replicating", true));
+    progressChecker.initialCheck();
+    assertFalse(progressChecker.isDone());
+  }
+
+  /**
+   * RDS says replica but the server has no replica status = throw.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testInitialCheck_NoReplicaStatus()
+  {
+    when(mockReplicaDbClient.getReplicaExecutedPosition()).thenReturn(null);
+    makeProgressChecker(fakeReplica(SOURCE_INSTANCE_ID, RdsInstanceStatus.AVAILABLE, "replicating", true)).initialCheck();
+  }
+
+  /**
+   * Broken replication = done with error (null result).
+   */
+  @Test
+  public void testInitialCheck_Broken()
+  {
+    RdsReplicaLagProgressChecker progressChecker = makeProgressChecker(
+        fakeReplica(SOURCE_INSTANCE_ID, RdsInstanceStatus.AVAILABLE, "error", false));
+    progressChecker.initialCheck();
+    assertTrue(progressChecker.isDone());
+    assertNull(progressChecker.getResult());
+  }
+
+  /**
+   * Instance replicating from some other source = throw.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testInitialCheck_WrongSource()
+  {
+    makeProgressChecker(fakeReplica("rds-other", RdsInstanceStatus.AVAILABLE, "replicating", true)).initialCheck();
+  }
+
+  /**
+   * Followup shows the replica past the target, into the next binlog file = done.
+   */
+  @Test
+  public void testFollowupCheck_CaughtUp()
+  {
+    RdsReplicaLagProgressChecker progressChecker = makeProgressChecker(
+        fakeReplica(SOURCE_INSTANCE_ID, RdsInstanceStatus.AVAILABLE, "replicating", true));
+    DBInstance followupInstance = fakeReplica(SOURCE_INSTANCE_ID, RdsInstanceStatus.AVAILABLE, "replicating", true);
+    when(mockRdsClient.describeInstance(INSTANCE_ID)).thenReturn(followupInstance);
+    when(mockReplicaDbClient.getReplicaExecutedPosition()).thenReturn(BEHIND_POSITION, NEXT_FILE_POSITION);
+    progressChecker.initialCheck();
+    assertFalse(progressChecker.isDone());
+    progressChecker.followupCheck(WAIT_NUM);
+    assertTrue(progressChecker.isDone());
+    assertEquals(followupInstance, progressChecker.getResult());
+  }
+}
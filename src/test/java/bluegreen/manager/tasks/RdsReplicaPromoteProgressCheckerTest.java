@@ -0,0 +1,98 @@
+package bluegreen.manager.tasks;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.amazonaws.services.rds.model.DBInstance;
+
+import bluegreen.manager.client.aws.RdsClient;
+import bluegreen.manager.client.aws.RdsInstanceStatus;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RdsReplicaPromoteProgressCheckerTest
+{
+  private static final String LOG_CONTEXT = "(Log Context) ";
+  private static final int WAIT_NUM = 1;
+  private static final String INSTANCE_ID = "rds-replica-hello";
+  private static final String SOURCE_INSTANCE_ID = "rds-live-hello";
+
+  @Mock
+  private RdsClient mockRdsClient;
+
+  private DBInstance fakeInstance(RdsInstanceStatus instanceStatus, String sourceInstanceId)
+  {
+    DBInstance dbInstance = new DBInstance();
+    dbInstance.setDBInstanceIdentifier(INSTANCE_ID);
+    dbInstance.setDBInstanceStatus(instanceStatus.toString());
+    dbInstance.setReadReplicaSourceDBInstanceIdentifier(sourceInstanceId);
+    return dbInstance;
+  }
+
+  private RdsReplicaPromoteProgressChecker makeProgressChecker(DBInstance initialInstance)
+  {
+    return new RdsReplicaPromoteProgressChecker(INSTANCE_ID, LOG_CONTEXT, mockRdsClient, initialInstance);
+  }
+
+  @Test
+  public void testGetDescription()
+  {
+    assertTrue(makeProgressChecker(fakeInstance(RdsInstanceStatus.AVAILABLE, null)).getDescription().contains("Promote"));
+  }
+
+  /**
+   * Promotion not begun yet: still an available replica = not done.
+   */
+  @Test
+  public void testInitialCheck_NotBegun()
+  {
+    RdsReplicaPromoteProgressChecker progressChecker = makeProgressChecker(fakeInstance(RdsInstanceStatus.AVAILABLE, SOURCE_INSTANCE_ID));
+    progressChecker.initialCheck();
+    assertFalse(progressChecker.isDone());
+  }
+
+  /**
+   * Rebooting during promotion = not done.
+   */
+  @Test
+  public void testFollowupCheck_Rebooting()
+  {
+    RdsReplicaPromoteProgressChecker progressChecker = makeProgressChecker(fakeInstance(RdsInstanceStatus.MODIFYING, SOURCE_INSTANCE_ID));
+    when(mockRdsClient.describeInstance(INSTANCE_ID)).thenReturn(fakeInstance(RdsInstanceStatus.REBOOTING, null));
+    progressChecker.followupCheck(WAIT_NUM);
+    assertFalse(progressChecker.isDone());
+  }
+
+  /**
+   * Available without a replica source = done.
+   */
+  @Test
+  public void testFollowupCheck_Promoted()
+  {
+    RdsReplicaPromoteProgressChecker progressChecker = makeProgressChecker(fakeInstance(RdsInstanceStatus.MODIFYING, SOURCE_INSTANCE_ID));
+    DBInstance followupInstance = fakeInstance(RdsInstanceStatus.AVAILABLE, null);
+    when(mockRdsClient.describeInstance(INSTANCE_ID)).thenReturn(followupInstance);
+    progressChecker.followupCheck(WAIT_NUM);
+    assertTrue(progressChecker.isDone());
+    assertEquals(followupInstance, progressChecker.getResult());
+  }
+
+  /**
+   * Unexpected status = done with error (null result).
+   */
+  @Test
+  public void testFollowupCheck_BadStatus()
+  {
+    RdsReplicaPromoteProgressChecker progressChecker = makeProgressChecker(fakeInstance(RdsInstanceStatus.MODIFYING, SOURCE_INSTANCE_ID));
+    when(mockRdsClient.describeInstance(INSTANCE_ID)).thenReturn(fakeInstance(RdsInstanceStatus.FAILED, SOURCE_INSTANCE_ID));
+    progressChecker.followupCheck(WAIT_NUM);
+    assertTrue(progressChecker.isDone());
+    assertNull(progressChecker.getResult());
+  }
+}
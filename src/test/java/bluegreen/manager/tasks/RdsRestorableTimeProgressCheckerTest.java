@@ -0,0 +1,99 @@
+package bluegreen.manager.tasks;
+
+import java.util.Date;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.amazonaws.services.rds.model.DBInstance;
+
+import bluegreen.manager.client.aws.RdsClient;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RdsRestorableTimeProgressCheckerTest
+{
+  private static final String LOG_CONTEXT = "(Log Context) ";
+  private static final int WAIT_NUM = 1;
+  private static final String INSTANCE_ID = "rds-instance-hello";
+  private static final Date RESTORE_TIME = new Date(1400000001000L);
+  private static final Date EARLIER_TIME = new Date(RESTORE_TIME.getTime() - 60000L);
+
+  @Mock
+  private RdsClient mockRdsClient;
+
+  private DBInstance fakeInstance(String instanceId, Integer backupRetentionPeriod, Date latestRestorableTime)
+  {
+    DBInstance dbInstance = new DBInstance();
+    dbInstance.setDBInstanceIdentifier(instanceId);
+    dbInstance.setBackupRetentionPeriod(backupRetentionPeriod);
+    dbInstance.setLatestRestorableTime(latestRestorableTime);
+    return dbInstance;
+  }
+
+  private RdsRestorableTimeProgressChecker makeProgressChecker(DBInstance initialInstance)
+  {
+    return new RdsRestorableTimeProgressChecker(INSTANCE_ID, RESTORE_TIME, LOG_CONTEXT, mockRdsClient, initialInstance);
+  }
+
+  /**
+   * Backups have not caught up yet = not done.
+   */
+  @Test
+  public void testInitialCheck_NotYet()
+  {
+    RdsRestorableTimeProgressChecker progressChecker = makeProgressChecker(fakeInstance(INSTANCE_ID, 7, EARLIER_TIME));
+    progressChecker.initialCheck();
+    assertFalse(progressChecker.isDone());
+    assertNull(progressChecker.getResult());
+  }
+
+  /**
+   * Backups already reach the restore time = done.
+   */
+  @Test
+  public void testInitialCheck_DoneAlready()
+  {
+    DBInstance initialInstance = fakeInstance(INSTANCE_ID, 7, RESTORE_TIME);
+    RdsRestorableTimeProgressChecker progressChecker = makeProgressChecker(initialInstance);
+    progressChecker.initialCheck();
+    assertTrue(progressChecker.isDone());
+    assertEquals(initialInstance, progressChecker.getResult());
+  }
+
+  /**
+   * No automated backups = can never be restored to a point in time.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testInitialCheck_BackupsDisabled()
+  {
+    makeProgressChecker(fakeInstance(INSTANCE_ID, 0, EARLIER_TIME)).initialCheck();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testInitialCheck_WrongId()
+  {
+    makeProgressChecker(fakeInstance("rds-instance-goodbye", 7, EARLIER_TIME)).initialCheck();
+  }
+
+  /**
+   * Followup shows backups caught up = done.
+   */
+  @Test
+  public void testFollowupCheck_Done()
+  {
+    RdsRestorableTimeProgressChecker progressChecker = makeProgressChecker(fakeInstance(INSTANCE_ID, 7, EARLIER_TIME));
+    DBInstance followupInstance = fakeInstance(INSTANCE_ID, 7, new Date(RESTORE_TIME.getTime() + 1000L));
+    when(mockRdsClient.describeInstance(INSTANCE_ID)).thenReturn(followupInstance);
+    progressChecker.initialCheck();
+    progressChecker.followupCheck(WAIT_NUM);
+    assertTrue(progressChecker.isDone());
+    assertEquals(followupInstance, progressChecker.getResult());
+  }
+}
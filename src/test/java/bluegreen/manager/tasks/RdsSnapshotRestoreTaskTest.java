@@ -3,10 +3,12 @@ package bluegreen.manager.tasks;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InOrder;
@@ -16,6 +18,7 @@ import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import com.amazonaws.services.rds.model.DBInstance;
+import com.amazonaws.services.rds.model.DBInstanceStatusInfo;
 import com.amazonaws.services.rds.model.DBParameterGroup;
 import com.amazonaws.services.rds.model.DBParameterGroupStatus;
 import com.amazonaws.services.rds.model.DBSnapshot;
@@ -26,6 +29,9 @@ import com.amazonaws.services.rds.model.Endpoint;
 import bluegreen.manager.client.aws.RdsAnalyzer;
 import bluegreen.manager.client.aws.RdsClient;
 import bluegreen.manager.client.aws.RdsClientFactory;
+import bluegreen.manager.client.db.BinlogPosition;
+import bluegreen.manager.client.db.MysqlClient;
+import bluegreen.manager.client.db.MysqlClientFactory;
 import bluegreen.manager.client.aws.RdsInstanceStatus;
 import bluegreen.manager.client.aws.RdsParameterApplyStatus;
 import bluegreen.manager.client.aws.RdsSnapshotStatus;
@@ -40,9 +46,12 @@ import bluegreen.manager.model.domain.TaskStatus;
 import bluegreen.manager.model.tx.EnvironmentTx;
 import bluegreen.manager.utils.ThreadSleeper;
 import bluegreen.manager.utils.WaiterParameters;
+import bluegreen.manager.utils.WaiterScheduler;
+import static bluegreen.manager.utils.WaiterTestHelper.runWaitsOnCallerThread;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.inOrder;
@@ -94,15 +103,43 @@ public class RdsSnapshotRestoreTaskTest
   @Mock
   private ThreadSleeper mockThreadSleeper;
 
+  @Mock
+  private WaiterScheduler mockWaiterScheduler;
+
+  @Mock
+  private MysqlClientFactory mockMysqlClientFactory;
+
+  @Mock
+  private MysqlClient mockLiveDbClient;
+
+  @Mock
+  private MysqlClient mockReplicaDbClient;
+
+  @Before
+  public void setUp()
+  {
+    runWaitsOnCallerThread(mockWaiterScheduler);
+  }
+
   /**
    * Initializes the object-under-test for the "normal" case where live/stage envs meet preconditions.
    */
   private void normalSetup()
+  {
+    normalSetup(RdsSnapshotRestorePhase.SNAPSHOT_AND_RESTORE);
+  }
+
+  private void normalSetup(RdsSnapshotRestorePhase phase)
+  {
+    normalSetup(phase, null);
+  }
+
+  private void normalSetup(RdsSnapshotRestorePhase phase, RdsRestoreTimeMark restoreTimeMark)
   {
     when(mockEnvironmentTx.findNamedEnv(LIVE_ENV_NAME)).thenReturn(FAKE_PHYSICAL_DATABASE.getLogicalDatabase().getEnvironment());
     when(mockEnvironmentTx.findNamedEnv(STAGE_ENV_NAME)).thenReturn(null);
     when(mockRdsClientFactory.create()).thenReturn(mockRdsClient);
-    rdsSnapshotRestoreTask.assign(1, LIVE_ENV_NAME, STAGE_ENV_NAME, DB_MAP);
+    rdsSnapshotRestoreTask.assign(1, LIVE_ENV_NAME, STAGE_ENV_NAME, DB_MAP, phase, restoreTimeMark);
     rdsSnapshotRestoreTask.loadDataModel();
   }
 
@@ -522,7 +559,17 @@ public class RdsSnapshotRestoreTaskTest
                                      RdsParameterApplyStatus stageModifyParamStatus,
                                      boolean noop)
   {
-    normalSetup();
+    return testProcess(stageRestoreInstanceStatus, stageModifyInstanceStatus, stageModifyParamStatus, noop,
+        RdsSnapshotRestorePhase.SNAPSHOT_AND_RESTORE);
+  }
+
+  private ProcessResults testProcess(RdsInstanceStatus stageRestoreInstanceStatus,
+                                     RdsInstanceStatus stageModifyInstanceStatus,
+                                     RdsParameterApplyStatus stageModifyParamStatus,
+                                     boolean noop,
+                                     RdsSnapshotRestorePhase phase)
+  {
+    normalSetup(phase);
     String snapshotId = rdsSnapshotRestoreTask.makeSnapshotId();
     RestoreStageFakeData data = restoreSetup(snapshotId, UGLY_STAGE_PARAM_GROUP_NAME,
         stageRestoreInstanceStatus, stageModifyInstanceStatus, stageModifyParamStatus);
@@ -589,4 +636,269 @@ public class RdsSnapshotRestoreTaskTest
     verify(mockRdsClient).describeInstance(LIVE_PHYSICAL_NAME);
     verifyNoMoreInteractions(mockRdsClient);
   }
-}
\ No newline at end of file
+
+  /**
+   * Snapshot phase: takes the snapshot but leaves the stage restore for a later task.
+   */
+  @Test
+  public void testProcess_SnapshotPhase() throws Throwable
+  {
+    ProcessResults results = testProcess(RdsInstanceStatus.AVAILABLE, RdsInstanceStatus.AVAILABLE,
+        RdsParameterApplyStatus.PENDING_REBOOT, false, RdsSnapshotRestorePhase.SNAPSHOT);
+
+    assertNoException(results.getException());
+    assertEquals(TaskStatus.DONE, results.getTaskStatus());
+    assertEquals("RdsSnapshotRestoreTask-snapshot", rdsSnapshotRestoreTask.getName());
+    verify(mockRdsClient).createSnapshot(anyString(), eq(LIVE_PHYSICAL_NAME));
+    verify(mockRdsClient, never()).copyParameterGroup(anyString(), anyString());
+    verify(mockRdsClient, never()).restoreInstanceFromSnapshot(anyString(), anyString(), anyString());
+    verify(mockEnvironmentTx, never()).attachLogicalDatabase(anyString(), any(LogicalDatabase.class));
+  }
+
+  /**
+   * Restore phase: restores the snapshot taken by the snapshot phase, without taking a new one.
+   */
+  @Test
+  public void testProcess_RestorePhase() throws Throwable
+  {
+    normalSetup(RdsSnapshotRestorePhase.RESTORE);
+    String snapshotId = rdsSnapshotRestoreTask.makeSnapshotId();
+    RestoreStageFakeData data = restoreSetup(snapshotId, UGLY_STAGE_PARAM_GROUP_NAME,
+        RdsInstanceStatus.AVAILABLE, RdsInstanceStatus.AVAILABLE, RdsParameterApplyStatus.PENDING_REBOOT);
+    when(mockRdsClient.describeInstance(LIVE_PHYSICAL_NAME)).thenReturn(data.getLiveInstance());
+    when(mockRdsClient.describeSnapshot(snapshotId)).thenReturn(data.getDbSnapshot());
+    when(mockRdsAnalyzer.findSelfNamedOrDefaultParamGroupName(data.getLiveInstance())).thenReturn(LIVE_PARAM_GROUP_NAME);
+    when(mockRdsClient.copyParameterGroup(LIVE_PARAM_GROUP_NAME, UGLY_STAGE_PARAM_GROUP_NAME)).thenReturn(data.getStageParamGroup());
+
+    assertEquals(TaskStatus.DONE, rdsSnapshotRestoreTask.process(false));
+
+    assertEquals("RdsSnapshotRestoreTask-restore", rdsSnapshotRestoreTask.getName());
+    verify(mockRdsClient, never()).deleteSnapshot(anyString());
+    verify(mockRdsClient, never()).createSnapshot(anyString(), anyString());
+    verify(mockRdsClient).restoreInstanceFromSnapshot(eq(STAGE_PHYSICAL_NAME), eq(snapshotId), eq(SUBNET_GROUP));
+  }
+
+  /**
+   * Fresh run records every checkpoint along the way.
+   */
+  @Test
+  public void testProcess_RecordsCheckpoints() throws Throwable
+  {
+    TaskCheckpoints checkpoints = TaskCheckpoints.inMemory();
+    rdsSnapshotRestoreTask.setCheckpoints(checkpoints);
+    ProcessResults results = testProcess(RdsInstanceStatus.AVAILABLE, RdsInstanceStatus.AVAILABLE,
+        RdsParameterApplyStatus.PENDING_REBOOT, false);
+
+    assertNoException(results.getException());
+    assertEquals(rdsSnapshotRestoreTask.makeSnapshotId(),
+        checkpoints.getValue(RdsSnapshotRestoreTask.CHECKPOINT_SNAPSHOT_AVAILABLE));
+    assertEquals(UGLY_STAGE_PARAM_GROUP_NAME, checkpoints.getValue(RdsSnapshotRestoreTask.CHECKPOINT_PARAMGROUP_COPIED));
+    assertEquals(STAGE_PHYSICAL_NAME, checkpoints.getValue(RdsSnapshotRestoreTask.CHECKPOINT_RESTORE_REQUESTED));
+    assertTrue(checkpoints.isReached(RdsSnapshotRestoreTask.CHECKPOINT_PARAMGROUP_APPLIED));
+    assertTrue(checkpoints.isReached(RdsSnapshotRestoreTask.CHECKPOINT_REBOOT_ISSUED));
+  }
+
+  /**
+   * Resuming a prior run that got as far as applying the paramgroup: only the reboot remains.
+   */
+  @Test
+  public void testProcess_ResumeAfterParamGroupApplied() throws Throwable
+  {
+    normalSetup();
+    String snapshotId = rdsSnapshotRestoreTask.makeSnapshotId();
+    TaskCheckpoints checkpoints = TaskCheckpoints.inMemory();
+    checkpoints.reach(RdsSnapshotRestoreTask.CHECKPOINT_SNAPSHOT_AVAILABLE, snapshotId);
+    checkpoints.reach(RdsSnapshotRestoreTask.CHECKPOINT_PARAMGROUP_COPIED, UGLY_STAGE_PARAM_GROUP_NAME);
+    checkpoints.reach(RdsSnapshotRestoreTask.CHECKPOINT_RESTORE_REQUESTED, STAGE_PHYSICAL_NAME);
+    checkpoints.reach(RdsSnapshotRestoreTask.CHECKPOINT_PARAMGROUP_APPLIED, UGLY_STAGE_PARAM_GROUP_NAME);
+    rdsSnapshotRestoreTask.setCheckpoints(checkpoints);
+    RestoreStageFakeData data = restoreSetup(snapshotId, UGLY_STAGE_PARAM_GROUP_NAME,
+        RdsInstanceStatus.AVAILABLE, RdsInstanceStatus.AVAILABLE, RdsParameterApplyStatus.PENDING_REBOOT);
+    when(mockRdsClient.describeInstance(LIVE_PHYSICAL_NAME)).thenReturn(data.getLiveInstance());
+    when(mockRdsClient.describeInstance(STAGE_PHYSICAL_NAME)).thenReturn(data.getStageModifyInstance());
+    when(mockRdsClient.describeSnapshot(snapshotId)).thenReturn(data.getDbSnapshot());
+
+    assertEquals(TaskStatus.DONE, rdsSnapshotRestoreTask.process(false));
+
+    verify(mockRdsClient, never()).deleteSnapshot(anyString());
+    verify(mockRdsClient, never()).createSnapshot(anyString(), anyString());
+    verify(mockRdsClient, never()).copyParameterGroup(anyString(), anyString());
+    verify(mockRdsClient, never()).restoreInstanceFromSnapshot(anyString(), anyString(), anyString());
+    verify(mockRdsClient, never()).modifyInstanceWithSecgrpParamgrp(anyString(), any(Collection.class), anyString());
+    verify(mockRdsClient).rebootInstance(STAGE_PHYSICAL_NAME);
+    assertTrue(checkpoints.isReached(RdsSnapshotRestoreTask.CHECKPOINT_REBOOT_ISSUED));
+  }
+
+  /**
+   * Point-in-time mark phase: marks the live database's next whole second and holds the freeze past it plus the
+   * margin, without touching RDS.  Checkpoints the mark.
+   */
+  @Test
+  public void testProcess_PointInTimeMarkPhase() throws Exception
+  {
+    RdsRestoreTimeMark restoreTimeMark = new RdsRestoreTimeMark();
+    normalSetup(RdsSnapshotRestorePhase.POINT_IN_TIME_MARK, restoreTimeMark);
+    TaskCheckpoints checkpoints = TaskCheckpoints.inMemory();
+    rdsSnapshotRestoreTask.setCheckpoints(checkpoints);
+    rdsSnapshotRestoreTask.setRestoreTimeMarginMilliseconds(2000L);
+    when(mockMysqlClientFactory.create(FAKE_PHYSICAL_DATABASE)).thenReturn(mockLiveDbClient);
+    when(mockLiveDbClient.getServerTime()).thenReturn(new Date(1400000000000L));
+
+    assertEquals(TaskStatus.DONE, rdsSnapshotRestoreTask.process(false));
+
+    assertEquals("RdsSnapshotRestoreTask-point_in_time_mark", rdsSnapshotRestoreTask.getName());
+    assertEquals(new Date(1400000001000L), restoreTimeMark.getRestoreTime());
+    assertEquals("1400000001000", checkpoints.getValue(RdsSnapshotRestoreTask.CHECKPOINT_RESTORE_TIME_MARKED));
+    verify(mockThreadSleeper).sleep(3000L);
+    verifyNoMoreInteractions(mockRdsClient);
+  }
+
+  /**
+   * Point-in-time mark phase skipped on retry: hands on the restore time checkpointed by the prior run.
+   */
+  @Test
+  public void testSetSkippedCheckpoints_PointInTimeMarkPhase()
+  {
+    RdsRestoreTimeMark restoreTimeMark = new RdsRestoreTimeMark();
+    normalSetup(RdsSnapshotRestorePhase.POINT_IN_TIME_MARK, restoreTimeMark);
+    TaskCheckpoints checkpoints = TaskCheckpoints.inMemory();
+    checkpoints.reach(RdsSnapshotRestoreTask.CHECKPOINT_RESTORE_TIME_MARKED, "1400000001000");
+
+    rdsSnapshotRestoreTask.setSkippedCheckpoints(checkpoints);
+
+    assertEquals(new Date(1400000001000L), restoreTimeMark.getRestoreTime());
+  }
+
+  /**
+   * Point-in-time restore phase: waits for live backups to reach the marked time, then restores as of that time.
+   */
+  @Test
+  public void testProcess_PointInTimeRestorePhase() throws Throwable
+  {
+    Date restoreTime = new Date(1400000001000L);
+    RdsRestoreTimeMark restoreTimeMark = new RdsRestoreTimeMark();
+    restoreTimeMark.setRestoreTime(restoreTime);
+    normalSetup(RdsSnapshotRestorePhase.POINT_IN_TIME_RESTORE, restoreTimeMark);
+    TaskCheckpoints checkpoints = TaskCheckpoints.inMemory();
+    rdsSnapshotRestoreTask.setCheckpoints(checkpoints);
+    RestoreStageFakeData data = restoreSetup(FAKE_SNAPSHOT_ID, UGLY_STAGE_PARAM_GROUP_NAME,
+        RdsInstanceStatus.AVAILABLE, RdsInstanceStatus.AVAILABLE, RdsParameterApplyStatus.PENDING_REBOOT);
+    DBInstance liveInstance = data.getLiveInstance();
+    liveInstance.setBackupRetentionPeriod(7);
+    liveInstance.setLatestRestorableTime(new Date(restoreTime.getTime() - 60000L));
+    DBInstance caughtUpLiveInstance = data.makeInstance(LIVE_PHYSICAL_NAME, RdsInstanceStatus.AVAILABLE);
+    caughtUpLiveInstance.setLatestRestorableTime(restoreTime);
+    when(mockRdsClient.describeInstance(LIVE_PHYSICAL_NAME)).thenReturn(liveInstance).thenReturn(caughtUpLiveInstance);
+    when(mockRdsAnalyzer.findSelfNamedOrDefaultParamGroupName(liveInstance)).thenReturn(LIVE_PARAM_GROUP_NAME);
+    when(mockRdsClient.copyParameterGroup(LIVE_PARAM_GROUP_NAME, UGLY_STAGE_PARAM_GROUP_NAME)).thenReturn(data.getStageParamGroup());
+    when(mockRdsClient.restoreInstanceToPointInTime(LIVE_PHYSICAL_NAME, STAGE_PHYSICAL_NAME, restoreTime, SUBNET_GROUP))
+        .thenReturn(data.getStageRestoreInstance());
+
+    assertEquals(TaskStatus.DONE, rdsSnapshotRestoreTask.process(false));
+
+    verify(mockRdsClient, times(2)).describeInstance(LIVE_PHYSICAL_NAME);
+    verify(mockRdsClient).restoreInstanceToPointInTime(LIVE_PHYSICAL_NAME, STAGE_PHYSICAL_NAME, restoreTime, SUBNET_GROUP);
+    verify(mockRdsClient, never()).createSnapshot(anyString(), anyString());
+    verify(mockRdsClient, never()).restoreInstanceFromSnapshot(anyString(), anyString(), anyString());
+    verify(mockEnvironmentTx).attachLogicalDatabase(eq(STAGE_ENV_NAME), any(LogicalDatabase.class));
+    assertEquals(Long.toString(restoreTime.getTime()), checkpoints.getValue(RdsSnapshotRestoreTask.CHECKPOINT_RESTORE_TIME_MARKED));
+  }
+
+  /**
+   * Point-in-time restore phase cannot proceed if the mark phase did not run in this job.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testProcess_PointInTimeRestorePhase_NotMarked()
+  {
+    normalSetup(RdsSnapshotRestorePhase.POINT_IN_TIME_RESTORE, new RdsRestoreTimeMark());
+    rdsSnapshotRestoreTask.process(false);
+  }
+
+  /**
+   * Point-in-time phases need a shared restore time mark.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testAssign_PointInTimeWithoutMark()
+  {
+    rdsSnapshotRestoreTask.assign(1, LIVE_ENV_NAME, STAGE_ENV_NAME, DB_MAP, RdsSnapshotRestorePhase.POINT_IN_TIME_RESTORE);
+  }
+
+  /**
+   * Replica create phase: makes the stage instance a read replica of live, with its own paramgroup, but does not
+   * register the stage database yet.
+   */
+  @Test
+  public void testProcess_ReplicaCreatePhase() throws Throwable
+  {
+    normalSetup(RdsSnapshotRestorePhase.REPLICA_CREATE);
+    RestoreStageFakeData data = restoreSetup(FAKE_SNAPSHOT_ID, UGLY_STAGE_PARAM_GROUP_NAME,
+        RdsInstanceStatus.AVAILABLE, RdsInstanceStatus.AVAILABLE, RdsParameterApplyStatus.PENDING_REBOOT);
+    when(mockRdsClient.describeInstance(LIVE_PHYSICAL_NAME)).thenReturn(data.getLiveInstance());
+    when(mockRdsAnalyzer.findSelfNamedOrDefaultParamGroupName(data.getLiveInstance())).thenReturn(LIVE_PARAM_GROUP_NAME);
+    when(mockRdsClient.copyParameterGroup(LIVE_PARAM_GROUP_NAME, UGLY_STAGE_PARAM_GROUP_NAME)).thenReturn(data.getStageParamGroup());
+    when(mockRdsClient.createReadReplica(STAGE_PHYSICAL_NAME, LIVE_PHYSICAL_NAME)).thenReturn(data.getStageRestoreInstance());
+
+    assertEquals(TaskStatus.DONE, rdsSnapshotRestoreTask.process(false));
+
+    assertEquals("RdsSnapshotRestoreTask-replica_create", rdsSnapshotRestoreTask.getName());
+    verify(mockRdsClient).createReadReplica(STAGE_PHYSICAL_NAME, LIVE_PHYSICAL_NAME);
+    verify(mockRdsClient).modifyInstanceWithSecgrpParamgrp(STAGE_PHYSICAL_NAME, data.getSecurityGroups(), UGLY_STAGE_PARAM_GROUP_NAME);
+    verify(mockRdsClient).rebootInstance(STAGE_PHYSICAL_NAME);
+    verify(mockRdsClient, never()).createSnapshot(anyString(), anyString());
+    verify(mockRdsClient, never()).restoreInstanceFromSnapshot(anyString(), anyString(), anyString());
+    verify(mockEnvironmentTx, never()).attachLogicalDatabase(anyString(), any(LogicalDatabase.class));
+  }
+
+  /**
+   * Replica promote phase: waits for the replica to execute live's binlog up to its position after the freeze,
+   * promotes it, then registers the stage database.
+   */
+  @Test
+  public void testProcess_ReplicaPromotePhase() throws Throwable
+  {
+    normalSetup(RdsSnapshotRestorePhase.REPLICA_PROMOTE);
+    TaskCheckpoints checkpoints = TaskCheckpoints.inMemory();
+    rdsSnapshotRestoreTask.setCheckpoints(checkpoints);
+    RestoreStageFakeData data = restoreSetup(FAKE_SNAPSHOT_ID, UGLY_STAGE_PARAM_GROUP_NAME,
+        RdsInstanceStatus.AVAILABLE, RdsInstanceStatus.AVAILABLE, RdsParameterApplyStatus.IN_SYNC);
+    DBInstance replicaInstance = data.makeInstance(STAGE_PHYSICAL_NAME, RdsInstanceStatus.AVAILABLE);
+    replicaInstance.setReadReplicaSourceDBInstanceIdentifier(LIVE_PHYSICAL_NAME);
+    replicaInstance.setStatusInfos(Arrays.asList(new DBInstanceStatusInfo()
+        .withStatusType("read replication").withStatus("replicating").withNormal(true)));
+    DBInstance promotingInstance = data.makeInstance(STAGE_PHYSICAL_NAME, RdsInstanceStatus.MODIFYING);
+    promotingInstance.setReadReplicaSourceDBInstanceIdentifier(LIVE_PHYSICAL_NAME);
+    DBInstance promotedInstance = data.makeInstance(STAGE_PHYSICAL_NAME, RdsInstanceStatus.AVAILABLE);
+    when(mockRdsClient.describeInstance(LIVE_PHYSICAL_NAME)).thenReturn(data.getLiveInstance());
+    when(mockRdsClient.describeInstance(STAGE_PHYSICAL_NAME)).thenReturn(replicaInstance).thenReturn(promotedInstance);
+    when(mockRdsClient.promoteReadReplica(STAGE_PHYSICAL_NAME)).thenReturn(promotingInstance);
+    when(mockMysqlClientFactory.create(any(PhysicalDatabase.class))).thenReturn(mockLiveDbClient);
+    when(mockMysqlClientFactory.create(any(PhysicalDatabase.class), eq("jdbc:mysql://" + STAGE_ENDPOINT_ADDRESS
+        + ":3306/hellodb?zeroDateTimeBehavior=convertToNull"))).thenReturn(mockReplicaDbClient);
+    BinlogPosition livePosition = new BinlogPosition("mysql-bin-changelog.000123", 4567L);
+    when(mockLiveDbClient.getMasterStatus()).thenReturn(livePosition);
+    when(mockReplicaDbClient.getReplicaExecutedPosition()).thenReturn(livePosition);
+
+    assertEquals(TaskStatus.DONE, rdsSnapshotRestoreTask.process(false));
+
+    InOrder inOrder = inOrder(mockRdsClient);
+    inOrder.verify(mockRdsClient).describeInstance(STAGE_PHYSICAL_NAME);
+    inOrder.verify(mockRdsClient).promoteReadReplica(STAGE_PHYSICAL_NAME);
+    inOrder.verify(mockRdsClient).describeInstance(STAGE_PHYSICAL_NAME);
+    verify(mockReplicaDbClient).getReplicaExecutedPosition();
+    verify(mockRdsClient, never()).copyParameterGroup(anyString(), anyString());
+    verify(mockRdsClient, never()).createReadReplica(anyString(), anyString());
+    verify(mockEnvironmentTx).attachLogicalDatabase(eq(STAGE_ENV_NAME), any(LogicalDatabase.class));
+    assertEquals(STAGE_PHYSICAL_NAME, checkpoints.getValue(RdsSnapshotRestoreTask.CHECKPOINT_PROMOTE_REQUESTED));
+  }
+
+  /**
+   * Restore phase requires the snapshot to be available already.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testFindAvailableLiveSnapshot_NotAvailable()
+  {
+    normalSetup(RdsSnapshotRestorePhase.RESTORE);
+    when(mockRdsClient.describeSnapshot(anyString())).thenReturn(makeFakeSnapshot(RdsSnapshotStatus.CREATING));
+    rdsSnapshotRestoreTask.process(false);
+  }
+}
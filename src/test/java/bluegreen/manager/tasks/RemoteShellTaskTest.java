@@ -1,22 +1,45 @@
 package bluegreen.manager.tasks;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import bluegreen.manager.client.ssh.SshClient;
+import bluegreen.manager.client.ssh.SshClientFactory;
 import bluegreen.manager.client.ssh.SshTarget;
+import bluegreen.manager.model.domain.ApplicationVm;
+import bluegreen.manager.model.domain.Environment;
+import bluegreen.manager.model.domain.EnvironmentTestHelper;
 import bluegreen.manager.model.domain.TaskStatus;
+import bluegreen.manager.model.tx.EnvLoaderFactory;
+import bluegreen.manager.model.tx.OneEnvLoader;
 import bluegreen.manager.substituter.OneEnvStringSubstituter;
 import bluegreen.manager.substituter.StringSubstituterFactory;
 import bluegreen.manager.substituter.SubstituterResult;
+import static bluegreen.manager.substituter.SubstitutionKeys.STOP_SERVICES;
+import bluegreen.manager.substituter.ZeroEnvStringSubstituter;
+import bluegreen.manager.utils.LineListener;
 import bluegreen.manager.utils.ShellResult;
+import static bluegreen.manager.utils.StreamedOutput.streams;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -27,13 +50,18 @@ public class RemoteShellTaskTest
   private static final String COMMAND = "run some stuff";
   private static final SubstituterResult SUBSTITUTED_COMMAND = new SubstituterResult(COMMAND, COMMAND);
   private static final String OUTPUT = "hello, there was SUCCESS";
+  private static final String ERROR_OUTPUT = "hello\nThere was an Error\nnever read";
   private static final String REGEXP_ERROR = "There was an Error";
   private static final int EXIT_VALUE = 0;
   private static final String ENV_NAME = "env1";
+  private static final String FANOUT_COMMAND = "restart stuff on %{vmHostname}";
 
   @InjectMocks
   private RemoteShellTask remoteShellTask;
 
+  @InjectMocks
+  private RemoteShellTask otherRemoteShellTask;
+
   @Mock
   private SshTarget mockSshTarget;
 
@@ -46,12 +74,20 @@ public class RemoteShellTaskTest
   @Mock
   private OneEnvStringSubstituter mockOneEnvStringSubstituter;
 
+  @Mock
+  private SshClientFactory mockSshClientFactory;
+
+  @Mock
+  private EnvLoaderFactory mockEnvLoaderFactory;
+
+  @Mock
+  private OneEnvLoader mockOneEnvLoader;
+
   @Before
   public void setUp()
   {
     when(mockStringSubstituterFactory.createOne(anyString(), anyMap())).thenReturn(mockOneEnvStringSubstituter);
     when(mockOneEnvStringSubstituter.substituteVariables(anyString())).thenReturn(SUBSTITUTED_COMMAND);
-    when(mockSshClient.execCommand(SUBSTITUTED_COMMAND)).thenReturn(new ShellResult(OUTPUT, EXIT_VALUE));
     remoteShellTask.assign(1, ENV_NAME, new ShellConfig(COMMAND, REGEXP_ERROR, null, null));
   }
 
@@ -68,8 +104,136 @@ public class RemoteShellTaskTest
   @Test
   public void testProcess_Done()
   {
+    whenExecCommandStreams(OUTPUT);
+    assertEquals(TaskStatus.DONE, remoteShellTask.process(false));
+    verify(mockSshClient).execCommand(eq(SUBSTITUTED_COMMAND), any(LineListener.class));
+  }
+
+  /**
+   * Error line in the streamed output fails the task.
+   */
+  @Test
+  public void testProcess_Error()
+  {
+    whenExecCommandStreams(ERROR_OUTPUT);
+    assertEquals(TaskStatus.ERROR, remoteShellTask.process(false));
+  }
+
+  private void whenExecCommandStreams(String output)
+  {
+    when(mockSshClient.execCommand(eq(SUBSTITUTED_COMMAND), any(LineListener.class)))
+        .thenAnswer(streams(new ShellResult(output, EXIT_VALUE)));
+  }
+
+  /**
+   * Makes an env with two vms, and per-vm substitution of the fan-out command.
+   */
+  private Environment setupFanOut()
+  {
+    Environment environment = EnvironmentTestHelper.makeFakeEnvironment();
+    environment.setApplicationVms(Arrays.asList(EnvironmentTestHelper.makeFakeApplicationVm(0),
+        EnvironmentTestHelper.makeFakeApplicationVm(1)));
+    when(mockEnvLoaderFactory.createOne(ENV_NAME)).thenReturn(mockOneEnvLoader);
+    when(mockOneEnvLoader.getEnvironment()).thenReturn(environment);
+    when(mockSshClientFactory.create()).thenReturn(mockSshClient);
+    when(mockStringSubstituterFactory.createZero(anyMap())).thenAnswer(new Answer<ZeroEnvStringSubstituter>()
+    {
+      @Override
+      public ZeroEnvStringSubstituter answer(InvocationOnMock invocation) throws Throwable
+      {
+        return new ZeroEnvStringSubstituter((Map<String, String>) invocation.getArguments()[0]);
+      }
+    });
+    remoteShellTask.setMaxConcurrency(2);
+    remoteShellTask.assignFanOut(1, ENV_NAME, new ShellConfig(FANOUT_COMMAND, REGEXP_ERROR, null, null));
+    return environment;
+  }
+
+  /**
+   * Makes the mock ssh client print an error only when running on the named host.
+   */
+  private void whenExecCommandErrsOn(final String errorHostname)
+  {
+    when(mockSshClient.execCommand(any(SubstituterResult.class), any(LineListener.class))).thenAnswer(new Answer<ShellResult>()
+    {
+      @Override
+      public ShellResult answer(InvocationOnMock invocation) throws Throwable
+      {
+        SubstituterResult command = (SubstituterResult) invocation.getArguments()[0];
+        String output = command.getSubstituted().endsWith(" " + errorHostname) ? ERROR_OUTPUT : OUTPUT;
+        return streams(new ShellResult(output, EXIT_VALUE)).answer(invocation);
+      }
+    });
+  }
+
+  /**
+   * Fan-out runs the command on every vm, each with its own hostname.
+   */
+  @Test
+  public void testProcess_FanOutDone()
+  {
+    Environment environment = setupFanOut();
+    whenExecCommandErrsOn("no-such-host");
+    assertEquals(TaskStatus.DONE, remoteShellTask.process(false));
+    verify(mockSshClientFactory, times(2)).create();
+    ArgumentCaptor<SubstituterResult> commandCaptor = ArgumentCaptor.forClass(SubstituterResult.class);
+    verify(mockSshClient, times(2)).execCommand(commandCaptor.capture(), any(LineListener.class));
+    Set<String> commands = new HashSet<String>();
+    for (SubstituterResult command : commandCaptor.getAllValues())
+    {
+      commands.add(command.getSubstituted());
+    }
+    for (ApplicationVm applicationVm : environment.getApplicationVms())
+    {
+      assertTrue(commands.contains("restart stuff on " + applicationVm.getHostname()));
+    }
+  }
+
+  /**
+   * Like two teardown jobs of a fleet, built one after the other before either runs.  Each job puts its own
+   * substitutions in the shared shell config, and each task still runs with the ones it was assigned with.
+   */
+  @Test
+  public void testProcess_FanOutKeepsSubstitutionsOfItsJob()
+  {
+    setupFanOut();
+    whenExecCommandErrsOn("no-such-host");
+    ShellConfig sharedConfig = new ShellConfig("shutdown %{stopServices} on %{vmHostname}", REGEXP_ERROR, null, null);
+    sharedConfig.setExtraSubstitutions(Collections.singletonMap(STOP_SERVICES, "first"));
+    remoteShellTask.assignFanOut(1, ENV_NAME, sharedConfig);
+    sharedConfig.setExtraSubstitutions(Collections.singletonMap(STOP_SERVICES, "second"));
+    otherRemoteShellTask.setMaxConcurrency(2);
+    otherRemoteShellTask.assignFanOut(1, ENV_NAME, sharedConfig);
+
     assertEquals(TaskStatus.DONE, remoteShellTask.process(false));
-    verify(mockSshClient).execCommand(SUBSTITUTED_COMMAND);
+
+    ArgumentCaptor<SubstituterResult> commandCaptor = ArgumentCaptor.forClass(SubstituterResult.class);
+    verify(mockSshClient, times(2)).execCommand(commandCaptor.capture(), any(LineListener.class));
+    for (SubstituterResult command : commandCaptor.getAllValues())
+    {
+      assertTrue(command.getSubstituted(), command.getSubstituted().startsWith("shutdown first on "));
+    }
+  }
+
+  /**
+   * Fan-out fails if any one vm fails.
+   */
+  @Test
+  public void testProcess_FanOutOneVmError()
+  {
+    Environment environment = setupFanOut();
+    whenExecCommandErrsOn(environment.getApplicationVms().get(1).getHostname());
+    assertEquals(TaskStatus.ERROR, remoteShellTask.process(false));
   }
 
-}
\ No newline at end of file
+  /**
+   * Fan-out noop looks up the vms but doesn't invoke ssh.
+   */
+  @Test
+  public void testProcess_FanOutNoop()
+  {
+    setupFanOut();
+    assertEquals(TaskStatus.NOOP, remoteShellTask.process(true));
+    verifyZeroInteractions(mockSshClient, mockSshClientFactory);
+  }
+}
@@ -0,0 +1,27 @@
+package bluegreen.manager.tasks;
+
+import org.junit.Test;
+
+/**
+ * Tests the startup check of a remote command's config.
+ */
+public class ShellConfigTest
+{
+  private static final String COMMAND = "shutdownMyApps.sh --arg1 %{env}";
+  private static final String REGEXP_ERROR = "Shutdown Failed";
+
+  @Test
+  public void testCheckRemote_Pass()
+  {
+    new ShellConfig(COMMAND, REGEXP_ERROR, null, null).checkRemote();
+  }
+
+  /**
+   * An old properties file still setting exitvalue.success must fail at startup, not at teardown time.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCheckRemote_ExitValue()
+  {
+    new ShellConfig(COMMAND, REGEXP_ERROR, 0, null).checkRemote();
+  }
+}
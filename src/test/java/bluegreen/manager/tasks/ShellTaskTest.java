@@ -11,7 +11,6 @@ import bluegreen.manager.model.domain.TaskStatus;
 import bluegreen.manager.substituter.OneEnvStringSubstituter;
 import bluegreen.manager.substituter.StringSubstituterFactory;
 import bluegreen.manager.substituter.TwoEnvStringSubstituter;
-import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyMap;
@@ -29,8 +28,6 @@ public class ShellTaskTest
   private static final String ENV2 = "env2";
   private static final String COMMAND = "runStuff --arg %{arg}";
   private static final String REGEXP_ERROR = "(FATAL|There was an ERROR)";
-  private static final String GOOD_OUTPUT = "This output\nIs just fine!";
-  private static final String BAD_OUTPUT = "This line is ok but now...\nFATAL: something bad happened";
   private static final Integer EXITCODE_SUCCESS = 0;
   private static final Integer EXITCODE_ERROR = 1;
 
@@ -120,25 +117,6 @@ public class ShellTaskTest
     shellTask.checkConfig();
   }
 
-  @Test
-  public void testCheckOutput_Match()
-  {
-    setupTwoEnvProperly();
-    assertTrue(shellTask.checkOutput(GOOD_OUTPUT));
-    assertFalse(shellTask.checkOutput(BAD_OUTPUT));
-  }
-
-  /**
-   * Errors go unnoticed if no error-regexp was specified.
-   */
-  @Test
-  public void testCheckOutput_NoRegexp()
-  {
-    setupTwoEnv();
-    assertTrue(shellTask.checkOutput(GOOD_OUTPUT));
-    assertTrue(shellTask.checkOutput(BAD_OUTPUT));
-  }
-
   @Test
   public void testCheckExitValue_Match()
   {
@@ -158,14 +136,6 @@ public class ShellTaskTest
     assertTrue(shellTask.checkExitValue(EXITCODE_ERROR));
   }
 
-  @Test
-  public void testCheckForErrors()
-  {
-    setupTwoEnvProperly();
-    assertEquals(TaskStatus.DONE, shellTask.checkForErrors(GOOD_OUTPUT, EXITCODE_SUCCESS));
-    assertEquals(TaskStatus.ERROR, shellTask.checkForErrors(GOOD_OUTPUT, EXITCODE_ERROR));
-  }
-
   /**
    * Nothing to assert, except that it doesn't throw.
    */
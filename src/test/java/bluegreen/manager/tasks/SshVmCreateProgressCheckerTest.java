@@ -3,7 +3,6 @@ package bluegreen.manager.tasks;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
-import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import bluegreen.manager.client.ssh.SshClient;
@@ -11,14 +10,19 @@ import bluegreen.manager.client.ssh.SshTarget;
 import bluegreen.manager.substituter.StringSubstituterFactory;
 import bluegreen.manager.substituter.SubstituterResult;
 import bluegreen.manager.substituter.ZeroEnvStringSubstituter;
-import bluegreen.manager.utils.RegexHelper;
+import bluegreen.manager.utils.LineListener;
+import bluegreen.manager.utils.PatternLineListener;
 import bluegreen.manager.utils.ShellResult;
+import bluegreen.manager.utils.StreamedOutput;
+import static bluegreen.manager.utils.StreamedOutput.streams;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -57,19 +61,21 @@ public class SshVmCreateProgressCheckerTest
   @Mock
   private SshClient mockSshClient;
 
-  @Spy
-  private RegexHelper spyRegexHelper;
-
   @Mock
   private StringSubstituterFactory mockStringSubstituterFactory;
 
   @Mock
   private ZeroEnvStringSubstituter mockZeroEnvStringSubstituter;
 
+  /**
+   * Makes a progress checker after streaming the initial output through its initial listener.
+   */
   private SshVmCreateProgressChecker makeProgressChecker(ShellResult initialResult, SshVmCreateConfig sshVmCreateConfig)
   {
-    return new SshVmCreateProgressChecker(initialResult, LOG_CONTEXT, mockSshClient, FAKE_SSH_TARGET, sshVmCreateConfig,
-        spyRegexHelper, mockStringSubstituterFactory);
+    PatternLineListener initialListener = SshVmCreateProgressChecker.makeInitialListener(sshVmCreateConfig);
+    StreamedOutput.feedLines(initialResult.getOutput(), initialListener);
+    return new SshVmCreateProgressChecker(initialResult, initialListener, LOG_CONTEXT, mockSshClient, FAKE_SSH_TARGET,
+        sshVmCreateConfig, mockStringSubstituterFactory);
   }
 
   /**
@@ -120,7 +126,7 @@ public class SshVmCreateProgressCheckerTest
   {
     when(mockStringSubstituterFactory.createZero(anyMap())).thenReturn(mockZeroEnvStringSubstituter);
     when(mockZeroEnvStringSubstituter.substituteVariables(anyString())).thenReturn(SUBSTITUTED_FOLLOWUP_CMD);
-    when(mockSshClient.execCommand(SUBSTITUTED_FOLLOWUP_CMD)).thenReturn(followupResult);
+    when(mockSshClient.execCommand(eq(SUBSTITUTED_FOLLOWUP_CMD), any(LineListener.class))).thenAnswer(streams(followupResult));
   }
 
   /**
@@ -140,7 +146,7 @@ public class SshVmCreateProgressCheckerTest
    */
   private void verifyFollowupCommand()
   {
-    verify(mockSshClient).execCommand(SUBSTITUTED_FOLLOWUP_CMD);
+    verify(mockSshClient).execCommand(eq(SUBSTITUTED_FOLLOWUP_CMD), any(LineListener.class));
   }
 
   /**
@@ -20,14 +20,19 @@ import bluegreen.manager.substituter.OneEnvStringSubstituter;
 import bluegreen.manager.substituter.StringSubstituterFactory;
 import bluegreen.manager.substituter.SubstituterResult;
 import bluegreen.manager.substituter.ZeroEnvStringSubstituter;
-import bluegreen.manager.utils.RegexHelper;
+import bluegreen.manager.utils.LineListener;
 import bluegreen.manager.utils.ShellResult;
 import bluegreen.manager.utils.ThreadSleeper;
 import bluegreen.manager.utils.WaiterParameters;
+import bluegreen.manager.utils.WaiterScheduler;
+import static bluegreen.manager.utils.WaiterTestHelper.runWaitsOnCallerThread;
+import static bluegreen.manager.utils.StreamedOutput.streams;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -64,6 +69,9 @@ public class SshVmCreateTaskTest
   @Mock
   private ThreadSleeper mockThreadSleeper;
 
+  @Mock
+  private WaiterScheduler mockWaiterScheduler;
+
   @Mock
   private EnvLoaderFactory mockEnvLoaderFactory;
 
@@ -83,9 +91,6 @@ public class SshVmCreateTaskTest
   @Mock
   private SshClient mockSshClient;
 
-  @Spy
-  private RegexHelper spyRegexHelper;
-
   @Mock
   private StringSubstituterFactory mockStringSubstituterFactory;
 
@@ -101,6 +106,7 @@ public class SshVmCreateTaskTest
   @Before
   public void setUp()
   {
+    runWaitsOnCallerThread(mockWaiterScheduler);
     when(mockEnvLoaderFactory.createOne(FAKE_EMPTY_ENV_NAME)).thenReturn(mockOneEnvLoader);
     when(mockOneEnvLoader.getEnvironment()).thenReturn(FAKE_EMPTY_ENVIRONMENT);
     when(mockOneEnvLoader.context()).thenReturn("(Context) ");
@@ -120,12 +126,12 @@ public class SshVmCreateTaskTest
                                                               Class<? extends Throwable> expectedExceptionType)
       throws InterruptedException
   {
-    when(mockSshClient.execCommand(mockSubstituterResult))
-        .thenReturn(INITIAL_RESULT)           //progress #0
-        .thenReturn(NOTDONE_FOLLOWUP_RESULT)  //progress #1, after 1st wait
-        .thenReturn(NOTDONE_FOLLOWUP_RESULT)  //progress #2, after 2nd wait
-        .thenReturn(NOTDONE_FOLLOWUP_RESULT)  //progress #3, after 3rd wait
-        .thenReturn(finalResult);
+    when(mockSshClient.execCommand(eq(mockSubstituterResult), any(LineListener.class)))
+        .thenAnswer(streams(INITIAL_RESULT))           //progress #0
+        .thenAnswer(streams(NOTDONE_FOLLOWUP_RESULT))  //progress #1, after 1st wait
+        .thenAnswer(streams(NOTDONE_FOLLOWUP_RESULT))  //progress #2, after 2nd wait
+        .thenAnswer(streams(NOTDONE_FOLLOWUP_RESULT))  //progress #3, after 3rd wait
+        .thenAnswer(streams(finalResult));
 
     RuntimeException exception = null;
     try
@@ -140,7 +146,7 @@ public class SshVmCreateTaskTest
       }
     }
 
-    verify(mockSshClient, times(5)).execCommand(mockSubstituterResult);
+    verify(mockSshClient, times(5)).execCommand(eq(mockSubstituterResult), any(LineListener.class));
     verify(mockThreadSleeper, times(4)).sleep(anyLong());
   }
 
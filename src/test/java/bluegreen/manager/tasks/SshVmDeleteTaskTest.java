@@ -19,9 +19,12 @@ import bluegreen.manager.model.tx.OneEnvLoader;
 import bluegreen.manager.substituter.OneEnvStringSubstituter;
 import bluegreen.manager.substituter.StringSubstituterFactory;
 import bluegreen.manager.substituter.SubstituterResult;
-import bluegreen.manager.utils.RegexHelper;
+import bluegreen.manager.utils.LineListener;
 import bluegreen.manager.utils.ShellResult;
+import static bluegreen.manager.utils.StreamedOutput.streams;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -59,9 +62,6 @@ public class SshVmDeleteTaskTest
   @Mock
   private SshClient mockSshClient;
 
-  @Spy
-  private RegexHelper spyRegexHelper;
-
   @Mock
   private StringSubstituterFactory mockStringSubstituterFactory;
 
@@ -98,11 +98,11 @@ public class SshVmDeleteTaskTest
   @Test
   public void testProcess_Pass()
   {
-    when(mockSshClient.execCommand(INITIAL_CMD_SUBST)).thenReturn(DONE_RESULT);
+    whenExecCommandStreams(DONE_RESULT);
     assertEquals(TaskStatus.DONE, sshVmDeleteTask.process(false));
     verify(mockOneEnvLoader).loadApplicationVm(false);
     verify(mockSshClient).init(mockSshTarget);
-    verify(mockSshClient).execCommand(INITIAL_CMD_SUBST);
+    verify(mockSshClient).execCommand(eq(INITIAL_CMD_SUBST), any(LineListener.class));
     verify(mockEnvironmentTx).updateEnvironment(fullEnv);
   }
 
@@ -112,7 +112,12 @@ public class SshVmDeleteTaskTest
   @Test(expected = RuntimeException.class)
   public void testProcess_Fail()
   {
-    when(mockSshClient.execCommand(INITIAL_CMD_SUBST)).thenReturn(ERROR_RESULT);
+    whenExecCommandStreams(ERROR_RESULT);
     sshVmDeleteTask.process(false);
   }
+
+  private void whenExecCommandStreams(ShellResult result)
+  {
+    when(mockSshClient.execCommand(eq(INITIAL_CMD_SUBST), any(LineListener.class))).thenAnswer(streams(result));
+  }
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package bluegreen.manager.tasks;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
@@ -10,13 +13,18 @@ import org.mockito.runners.MockitoJUnitRunner;
 import bluegreen.manager.jobs.JobFakery;
 import bluegreen.manager.jobs.SkipRemarkHelper;
 import bluegreen.manager.model.domain.JobHistory;
+import bluegreen.manager.model.domain.TaskCheckpoint;
 import bluegreen.manager.model.domain.TaskHistory;
 import bluegreen.manager.model.domain.TaskStatus;
+import bluegreen.manager.model.tx.TaskCheckpointTx;
 import bluegreen.manager.model.tx.TaskHistoryTx;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -37,6 +45,9 @@ public class TaskRunProcessorTest
   @Mock
   private TaskHistoryTx mockTaskHistoryTx;
 
+  @Mock
+  private TaskCheckpointTx mockTaskCheckpointTx;
+
   private TaskFakery taskFakery = new TaskFakery();
   private JobFakery jobFakery = new JobFakery(taskFakery);
 
@@ -234,4 +245,82 @@ public class TaskRunProcessorTest
     assertEquals(taskStatus, TaskStatus.SKIPPED);
     verify(mockTaskHistoryTx).newTaskHistorySkipped(task, newJobHistory);
   }
+
+  /**
+   * Tests that a skipped checkpointed task gets the checkpoints of the prior run that finished it, carried forward to
+   * the skipped task history.
+   */
+  @Test
+  public void testSkipTaskHistory_Checkpointed()
+  {
+    JobHistory oldJobHistory = jobFakery.makeFakeJobHistory(new TaskStatus[] { TaskStatus.DONE });
+    CheckpointedTask task = mock(CheckpointedTask.class);
+    when(task.getPosition()).thenReturn(1);
+    when(task.getName()).thenReturn(oldJobHistory.getTaskHistories().get(0).getTaskName());
+    TaskHistory skippedTaskHistory = new TaskHistory();
+    when(mockTaskHistoryTx.newTaskHistorySkipped(task, null)).thenReturn(skippedTaskHistory);
+    TaskCheckpoint priorCheckpoint = new TaskCheckpoint();
+    priorCheckpoint.setName("restoreTimeMarked");
+    priorCheckpoint.setValue("1400000001000");
+    when(mockTaskCheckpointTx.findTaskCheckpoints(any(TaskHistory.class))).thenReturn(Arrays.asList(priorCheckpoint));
+    TaskRun taskRun = new TaskRun(task, false/*noop*/, false/*force*/, null, oldJobHistory);
+
+    assertEquals(TaskStatus.SKIPPED, taskRunProcessor.skipTaskHistory(taskRun));
+
+    ArgumentCaptor<TaskCheckpoints> captor = ArgumentCaptor.forClass(TaskCheckpoints.class);
+    verify(task).setSkippedCheckpoints(captor.capture());
+    assertEquals("1400000001000", captor.getValue().getValue("restoreTimeMarked"));
+    verify(mockTaskCheckpointTx).newTaskCheckpoint(skippedTaskHistory, "restoreTimeMarked", "1400000001000");
+  }
+
+  /**
+   * Tests that checkpoints of a prior failed run are carried forward to the new task history.
+   */
+  @Test
+  public void testMakeCheckpoints_ResumePriorError()
+  {
+    JobHistory oldJobHistory = jobFakery.makeFakeJobHistory(new TaskStatus[] { TaskStatus.ERROR });
+    Task task = taskFakery.makeFakeTask(0);
+    TaskHistory newTaskHistory = new TaskHistory();
+    TaskCheckpoint priorCheckpoint = new TaskCheckpoint();
+    priorCheckpoint.setName("snapshotAvailable");
+    priorCheckpoint.setValue("the-snapshot");
+    when(mockTaskCheckpointTx.findTaskCheckpoints(any(TaskHistory.class))).thenReturn(Arrays.asList(priorCheckpoint));
+    TaskRun taskRun = new TaskRun(task, false/*noop*/, false/*force*/, null, oldJobHistory);
+
+    TaskCheckpoints checkpoints = taskRunProcessor.makeCheckpoints(taskRun, newTaskHistory);
+
+    assertEquals("the-snapshot", checkpoints.getValue("snapshotAvailable"));
+    verify(mockTaskCheckpointTx).newTaskCheckpoint(newTaskHistory, "snapshotAvailable", "the-snapshot");
+  }
+
+  /**
+   * Tests that force starts the task over, ignoring checkpoints of the prior run.
+   */
+  @Test
+  public void testMakeCheckpoints_Force()
+  {
+    JobHistory oldJobHistory = jobFakery.makeFakeJobHistory(new TaskStatus[] { TaskStatus.ERROR });
+    Task task = taskFakery.makeFakeTask(0);
+    TaskRun taskRun = new TaskRun(task, false/*noop*/, true/*force*/, null, oldJobHistory);
+
+    TaskCheckpoints checkpoints = taskRunProcessor.makeCheckpoints(taskRun, new TaskHistory());
+
+    assertTrue(checkpoints.isEmpty());
+    verify(mockTaskCheckpointTx, never()).findTaskCheckpoints(any(TaskHistory.class));
+  }
+
+  /**
+   * Tests that a prior successful run is not resumed (it is skipped instead, unless forced).
+   */
+  @Test
+  public void testMakeCheckpoints_PriorDone()
+  {
+    JobHistory oldJobHistory = jobFakery.makeFakeJobHistory(new TaskStatus[] { TaskStatus.DONE });
+    Task task = taskFakery.makeFakeTask(0);
+    TaskRun taskRun = new TaskRun(task, false/*noop*/, false/*force*/, null, oldJobHistory);
+
+    assertFalse(taskRunProcessor.makeCheckpoints(taskRun, new TaskHistory()).isReached("snapshotAvailable"));
+    verify(mockTaskCheckpointTx, never()).findTaskCheckpoints(any(TaskHistory.class));
+  }
 }
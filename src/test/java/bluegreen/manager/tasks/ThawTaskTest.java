@@ -122,6 +122,15 @@ public class ThawTaskTest extends TransitionTaskBaseTest
     testWaitForTransition_ThreeFlushingThenEnd(thawTask, DbFreezeMode.THAW, fourthProgress, expectSuccess);
   }
 
+  /**
+   * Tests that a long-poll capable application ends the wait as soon as it reaches destination mode.
+   */
+  @Test
+  public void testWaitForTransition_LongPoll() throws InterruptedException
+  {
+    testWaitForTransition_LongPoll(thawTask, DbFreezeMode.THAW, DbFreezeMode.NORMAL);
+  }
+
   /**
    * Tests the success case where we get freeze confirmation after the third wait (4th progress object).
    */
@@ -14,6 +14,10 @@ import static bluegreen.manager.tasks.TransitionTestHelper.TRANSITION_PARAMETERS
 import static bluegreen.manager.tasks.TransitionTestHelper.VERB;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -191,6 +195,45 @@ public class TransitionProgressCheckerTest
     testFollowupCheck_DoneBadResult(fakeTransitionErrorProgress(DbFreezeMode.THAW_ERROR));
   }
 
+  /**
+   * Application advertises long poll: followup check long-polls while in transitional mode.
+   */
+  @Test
+  public void testFollowupCheck_LongPoll()
+  {
+    DbFreezeProgress initialProgress = fakeProgress(DbFreezeMode.THAW);
+    initialProgress.setLongPollSupported(true);
+    TransitionProgressChecker progressChecker = new TransitionProgressChecker(TRANSITION_PARAMETERS, LOG_CONTEXT,
+        initialProgress, mockApplicationClient, mockApplicationSession, mockApplication, 20);
+    when(mockApplicationClient.getDbFreezeProgressLongPoll(mockApplication, mockApplicationSession,
+        DbFreezeMode.THAW, 20, WAIT_NUM)).thenReturn(fakeProgress(DbFreezeMode.NORMAL));
+
+    assertTrue(progressChecker.isLongPoll());
+    progressChecker.followupCheck(WAIT_NUM);
+
+    assertTrue(progressChecker.isDone());
+    assertTrue(progressChecker.getResult());
+    verify(mockApplicationClient, never()).getDbFreezeProgress(any(Application.class), any(ApplicationSession.class), anyInt());
+  }
+
+  /**
+   * Application does not advertise long poll: followup check falls back to regular polling.
+   */
+  @Test
+  public void testFollowupCheck_LongPollNotSupported()
+  {
+    TransitionProgressChecker progressChecker = new TransitionProgressChecker(TRANSITION_PARAMETERS, LOG_CONTEXT,
+        fakeProgress(DbFreezeMode.THAW), mockApplicationClient, mockApplicationSession, mockApplication, 20);
+    whenGetDbFreezeProgress(fakeProgress(DbFreezeMode.NORMAL));
+
+    assertFalse(progressChecker.isLongPoll());
+    progressChecker.followupCheck(WAIT_NUM);
+
+    assertTrue(progressChecker.isDone());
+    verify(mockApplicationClient, never()).getDbFreezeProgressLongPoll(any(Application.class),
+        any(ApplicationSession.class), any(DbFreezeMode.class), anyInt(), anyInt());
+  }
+
   /**
    * Followup progress = null.  Done, bad result.
    */
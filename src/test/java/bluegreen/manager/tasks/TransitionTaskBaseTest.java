@@ -1,5 +1,8 @@
 package bluegreen.manager.tasks;
 
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.fluent.Executor;
@@ -20,6 +23,7 @@ import bluegreen.manager.utils.ThreadSleeper;
 import bluegreen.manager.utils.WaiterParameters;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -40,6 +44,7 @@ public abstract class TransitionTaskBaseTest
   private static final Integer NO_OUTER_TRY = null;
   private static final Integer OUTER_FIRST_TRY = 0;
   protected static final Application FAKE_APPLICATION = EnvironmentTestHelper.makeFakeApplication();
+  private static final Application SECOND_FAKE_APPLICATION = makeSecondFakeApplication();
 
   @Spy
   protected WaiterParameters fakeWaiterParameters = new WaiterParameters(10L, 10L, 2, 20);
@@ -67,8 +72,20 @@ public abstract class TransitionTaskBaseTest
 
   protected ApplicationSession fakeSession;
 
+  protected TransitionTask.TransitionTarget target;
+
   private TransitionTestHelper transitionTestHelper = new TransitionTestHelper();
 
+  /**
+   * Makes another application in a different vm, with its own identity.
+   */
+  private static Application makeSecondFakeApplication()
+  {
+    Application application = EnvironmentTestHelper.makeFakeApplication(1);
+    application.setId(1L);
+    return application;
+  }
+
   /**
    * Common test setup.
    */
@@ -78,12 +95,12 @@ public abstract class TransitionTaskBaseTest
     String envName = FAKE_APPLICATION.getApplicationVm().getEnvironment().getEnvName();
     when(mockEnvLoaderFactory.createOne(envName)).thenReturn(mockOneEnvLoader);
     when(mockOneEnvLoader.getEnvironment()).thenReturn(FAKE_APPLICATION.getApplicationVm().getEnvironment());
-    when(mockOneEnvLoader.getApplication()).thenReturn(FAKE_APPLICATION);
+    when(mockOneEnvLoader.getApplications()).thenReturn(Arrays.asList(FAKE_APPLICATION));
     when(mockApplicationClientFactory.create(anyString(), anyString())).thenReturn(mockApplicationClient);
-    when(mockApplicationClient.authenticate(FAKE_APPLICATION)).thenReturn(fakeSession);
+    when(mockApplicationClient.authenticateAsync(FAKE_APPLICATION)).thenReturn(CompletableFuture.completedFuture(fakeSession));
     transitionTask.assignTransition(1, envName);
     transitionTask.loadDataModel();
-    transitionTask.initApplicationSession();
+    target = transitionTask.initTransitionTargets().get(0);
   }
 
   protected DbFreezeProgress fakeLockErrorProgress()
@@ -102,19 +119,42 @@ public abstract class TransitionTaskBaseTest
   }
 
   /**
-   * Prepares mock to return this progress after call to getDbFreezeProgress.
+   * Prepares mock to return this progress after the initial (async) call to getDbFreezeProgress.
    */
   private void whenGetDbFreezeProgress(DbFreezeProgress progress)
   {
-    when(mockApplicationClient.getDbFreezeProgress(FAKE_APPLICATION, fakeSession, NO_OUTER_TRY)).thenReturn(progress);
+    whenGetDbFreezeProgress(FAKE_APPLICATION, progress);
+  }
+
+  protected void whenGetDbFreezeProgress(Application application, DbFreezeProgress progress)
+  {
+    when(mockApplicationClient.getDbFreezeProgressAsync(application, fakeSession, NO_OUTER_TRY))
+        .thenReturn(CompletableFuture.completedFuture(progress));
   }
 
   /**
-   * Verifies the mock received a call to getDbFreezeProgress.
+   * Verifies the mock received the initial (async) call to getDbFreezeProgress.
    */
   private void verifyGetDbFreezeProgress()
   {
-    verify(mockApplicationClient).getDbFreezeProgress(FAKE_APPLICATION, fakeSession, NO_OUTER_TRY);
+    verify(mockApplicationClient).getDbFreezeProgressAsync(FAKE_APPLICATION, fakeSession, NO_OUTER_TRY);
+  }
+
+  /**
+   * Checks readiness of the one test target.
+   */
+  protected boolean appIsReadyToTransition(TransitionTask transitionTask)
+  {
+    return transitionTask.checkAllReadyToTransition(Arrays.asList(target)).get(0);
+  }
+
+  /**
+   * Requests the transition of the one test target, and returns its progress checker.
+   */
+  private TransitionProgressChecker requestTransition(TransitionTask transitionTask, boolean noop)
+  {
+    transitionTask.requestAllTransitions(Arrays.asList(target), noop);
+    return target.getProgressChecker();
   }
 
   /**
@@ -124,7 +164,7 @@ public abstract class TransitionTaskBaseTest
   {
     whenGetDbFreezeProgress(null);
 
-    boolean isReady = transitionTask.appIsReadyToTransition();
+    boolean isReady = appIsReadyToTransition(transitionTask);
 
     assertFalse(isReady);
     verifyGetDbFreezeProgress();
@@ -137,7 +177,7 @@ public abstract class TransitionTaskBaseTest
   {
     whenGetDbFreezeProgress(fakeLockErrorProgress());
 
-    boolean isReady = transitionTask.appIsReadyToTransition();
+    boolean isReady = appIsReadyToTransition(transitionTask);
 
     assertFalse(isReady);
     verifyGetDbFreezeProgress();
@@ -150,7 +190,7 @@ public abstract class TransitionTaskBaseTest
   {
     whenGetDbFreezeProgress(fakeProgress(wrongMode));
 
-    boolean isReady = transitionTask.appIsReadyToTransition();
+    boolean isReady = appIsReadyToTransition(transitionTask);
 
     assertFalse(isReady);
     verifyGetDbFreezeProgress();
@@ -164,7 +204,7 @@ public abstract class TransitionTaskBaseTest
   {
     whenGetDbFreezeProgress(fakeProgress(allowedStartMode));
 
-    boolean isReady = transitionTask.appIsReadyToTransition();
+    boolean isReady = appIsReadyToTransition(transitionTask);
 
     assertTrue(isReady);
     verifyGetDbFreezeProgress();
@@ -175,28 +215,28 @@ public abstract class TransitionTaskBaseTest
    */
   protected void testRequestTransition_Noop(TransitionTask transitionTask, String transitionMethodPath)
   {
-    TransitionProgressChecker progressChecker = transitionTask.requestTransition(true);
+    TransitionProgressChecker progressChecker = requestTransition(transitionTask, true);
 
     assertNull(progressChecker);
-    verify(mockApplicationClient, never()).putRequestTransition(any(Application.class), any(ApplicationSession.class),
-        eq(transitionMethodPath), eq(NO_OUTER_TRY));
+    verify(mockApplicationClient, never()).putRequestTransitionAsync(any(Application.class), any(ApplicationSession.class),
+        eq(transitionMethodPath), anyInt());
   }
 
   /**
-   * Prepares mock to return the given progress after putRequestTransition.
+   * Prepares mock to return the given progress after putRequestTransitionAsync.
    */
   private void whenPutRequestTransition(String transitionMethodPath, DbFreezeProgress progress)
   {
-    when(mockApplicationClient.putRequestTransition(FAKE_APPLICATION, fakeSession, transitionMethodPath, OUTER_FIRST_TRY))
-        .thenReturn(progress);
+    when(mockApplicationClient.putRequestTransitionAsync(FAKE_APPLICATION, fakeSession, transitionMethodPath, OUTER_FIRST_TRY))
+        .thenReturn(CompletableFuture.completedFuture(progress));
   }
 
   /**
-   * Verifies mock received call to putRequestTransition.
+   * Verifies mock received call to putRequestTransitionAsync.
    */
   private void verifyPutRequestTransition(String transitionMethodPath)
   {
-    verify(mockApplicationClient).putRequestTransition(FAKE_APPLICATION, fakeSession, transitionMethodPath, OUTER_FIRST_TRY);
+    verify(mockApplicationClient).putRequestTransitionAsync(FAKE_APPLICATION, fakeSession, transitionMethodPath, OUTER_FIRST_TRY);
   }
 
   /**
@@ -206,7 +246,7 @@ public abstract class TransitionTaskBaseTest
   {
     whenPutRequestTransition(transitionMethodPath, null);
 
-    TransitionProgressChecker progressChecker = transitionTask.requestTransition(false);
+    TransitionProgressChecker progressChecker = requestTransition(transitionTask, false);
 
     assertNull(progressChecker.getInitialProgress());
     verifyPutRequestTransition(transitionMethodPath);
@@ -219,7 +259,7 @@ public abstract class TransitionTaskBaseTest
   {
     whenPutRequestTransition(transitionMethodPath, fakeLockErrorProgress());
 
-    TransitionProgressChecker progressChecker = transitionTask.requestTransition(false);
+    TransitionProgressChecker progressChecker = requestTransition(transitionTask, false);
 
     assertTrue(progressChecker.getInitialProgress().isLockError());
     verifyPutRequestTransition(transitionMethodPath);
@@ -232,7 +272,7 @@ public abstract class TransitionTaskBaseTest
   {
     whenPutRequestTransition(transitionMethodPath, fakeTransitionErrorProgress(DbFreezeMode.FLUSH_ERROR));
 
-    TransitionProgressChecker progressChecker = transitionTask.requestTransition(false);
+    TransitionProgressChecker progressChecker = requestTransition(transitionTask, false);
 
     assertTrue(StringUtils.isNotBlank(progressChecker.getInitialProgress().getTransitionError()));
     verifyPutRequestTransition(transitionMethodPath);
@@ -245,7 +285,7 @@ public abstract class TransitionTaskBaseTest
   {
     whenPutRequestTransition(transitionMethodPath, fakeProgress(DbFreezeMode.FLUSHING));
 
-    TransitionProgressChecker progressChecker = transitionTask.requestTransition(false);
+    TransitionProgressChecker progressChecker = requestTransition(transitionTask, false);
 
     assertEquals(DbFreezeMode.FLUSHING, progressChecker.getInitialProgress().getMode());
     verifyPutRequestTransition(transitionMethodPath);
@@ -257,7 +297,7 @@ public abstract class TransitionTaskBaseTest
    */
   protected void testWaitForTransition_Noop(TransitionTask transitionTask, String transitionMethodPath)
   {
-    assertTrue(transitionTask.waitForTransition(null, true));
+    assertTrue(transitionTask.waitForTransition(target, null, true));
   }
 
   /**
@@ -284,13 +324,37 @@ public abstract class TransitionTaskBaseTest
         .thenReturn(fakeProgress(transitionalMode)) //progress #2, after 2nd wait
         .thenReturn(fourthProgress);                //progress #3, after 3rd wait
 
-    boolean transitionSuccess = transitionTask.waitForTransition(progressChecker, false);
+    boolean transitionSuccess = transitionTask.waitForTransition(target, progressChecker, false);
 
     assertEquals(expectSuccess, transitionSuccess);
     verify(mockApplicationClient, times(3)).getDbFreezeProgress(eq(FAKE_APPLICATION), eq(fakeSession), anyInt());
     verify(mockThreadSleeper, times(3)).sleep(anyLong());
   }
 
+  /**
+   * Tests the case where the application advertises long poll: one long-poll followup reaches destination mode,
+   * and the only sleep is the brief gap after the initial check.
+   */
+  protected void testWaitForTransition_LongPoll(TransitionTask transitionTask,
+                                                DbFreezeMode transitionalMode,
+                                                DbFreezeMode destinationMode) throws InterruptedException
+  {
+    DbFreezeProgress initialProgress = fakeProgress(transitionalMode);
+    initialProgress.setLongPollSupported(true);
+    transitionTask.setLongPollSeconds(20);
+    TransitionProgressChecker progressChecker = new TransitionProgressChecker(transitionTask.getTransitionParameters(),
+        transitionTask.context(), initialProgress, mockApplicationClient, fakeSession, FAKE_APPLICATION, 20);
+    when(mockApplicationClient.getDbFreezeProgressLongPoll(eq(FAKE_APPLICATION), eq(fakeSession), eq(transitionalMode),
+        eq(20), anyInt())).thenReturn(fakeProgress(destinationMode));
+
+    assertTrue(transitionTask.waitForTransition(target, progressChecker, false));
+    verify(mockApplicationClient, never()).getDbFreezeProgress(eq(FAKE_APPLICATION), eq(fakeSession), anyInt());
+    verify(mockThreadSleeper, times(1)).sleep(anyLong());
+    WaiterParameters longPollParameters = transitionTask.chooseWaiterParameters(target, progressChecker);
+    assertNotSame(fakeWaiterParameters, longPollParameters);
+    assertEquals(fakeWaiterParameters.getMaxWaitMilliseconds(), longPollParameters.getMaxWaitMilliseconds());
+  }
+
   /**
    * Tests the case where noop returns NOOP.
    */
@@ -328,19 +392,109 @@ public abstract class TransitionTaskBaseTest
                                                   DbFreezeProgress fourthProgress,
                                                   TaskStatus expectedStatus) throws InterruptedException
   {
+    whenGetDbFreezeProgress(fakeProgress(startMode)); //initial state ...before requestTransition
     when(mockApplicationClient.getDbFreezeProgress(eq(FAKE_APPLICATION), eq(fakeSession), anyInt()))
-        .thenReturn(fakeProgress(startMode))        //initial state ...before requestTransition
         .thenReturn(fakeProgress(transitionalMode)) //progress #1, after 1st wait
         .thenReturn(fakeProgress(transitionalMode)) //progress #2, after 2nd wait
-        .thenReturn(fourthProgress);                                     //progress #3, after 3rd wait
-    when(mockApplicationClient.putRequestTransition(eq(FAKE_APPLICATION), eq(fakeSession), eq(transitionMethodPath), anyInt()))
-        .thenReturn(fakeProgress(transitionalMode)/*progress #0*/);
+        .thenReturn(fourthProgress);                //progress #3, after 3rd wait
+    whenPutRequestTransition(transitionMethodPath, fakeProgress(transitionalMode)/*progress #0*/);
 
     TaskStatus taskStatus = transitionTask.process(false);
 
     assertEquals(expectedStatus, taskStatus);
-    verify(mockApplicationClient, times(4)).getDbFreezeProgress(eq(FAKE_APPLICATION), eq(fakeSession), anyInt());
+    verify(mockApplicationClient, times(3)).getDbFreezeProgress(eq(FAKE_APPLICATION), eq(fakeSession), anyInt());
     verify(mockThreadSleeper, times(3)).sleep(anyLong());
   }
 
+  /**
+   * Prepares mocks for an env with two applications, both ready in startMode, each transitioning to its given end
+   * progress after one wait.
+   */
+  private void whenTwoApplications(TransitionTask transitionTask,
+                                   DbFreezeMode startMode,
+                                   DbFreezeMode transitionalMode,
+                                   String transitionMethodPath,
+                                   DbFreezeProgress firstEndProgress,
+                                   DbFreezeProgress secondEndProgress)
+  {
+    transitionTask.setMaxParallelApplications(2);
+    when(mockOneEnvLoader.getApplications()).thenReturn(Arrays.asList(FAKE_APPLICATION, SECOND_FAKE_APPLICATION));
+    when(mockApplicationClient.authenticateAsync(SECOND_FAKE_APPLICATION)).thenReturn(CompletableFuture.completedFuture(fakeSession));
+    whenGetDbFreezeProgress(FAKE_APPLICATION, fakeProgress(startMode));
+    whenGetDbFreezeProgress(SECOND_FAKE_APPLICATION, fakeProgress(startMode));
+    when(mockApplicationClient.getDbFreezeProgress(eq(FAKE_APPLICATION), eq(fakeSession), anyInt()))
+        .thenReturn(firstEndProgress);
+    when(mockApplicationClient.getDbFreezeProgress(eq(SECOND_FAKE_APPLICATION), eq(fakeSession), anyInt()))
+        .thenReturn(secondEndProgress);
+    when(mockApplicationClient.putRequestTransitionAsync(any(Application.class), eq(fakeSession), eq(transitionMethodPath), anyInt()))
+        .thenReturn(CompletableFuture.completedFuture(fakeProgress(transitionalMode)));
+  }
+
+  /**
+   * Tests that every application in the env is transitioned, and the task is done only if all of them reach the
+   * destination mode.
+   */
+  protected void testProcess_TwoApplications(TransitionTask transitionTask,
+                                             DbFreezeMode startMode,
+                                             DbFreezeMode transitionalMode,
+                                             String transitionMethodPath,
+                                             DbFreezeProgress firstEndProgress,
+                                             DbFreezeProgress secondEndProgress,
+                                             TaskStatus expectedStatus)
+  {
+    whenTwoApplications(transitionTask, startMode, transitionalMode, transitionMethodPath, firstEndProgress, secondEndProgress);
+
+    TaskStatus taskStatus = transitionTask.process(false);
+
+    assertEquals(expectedStatus, taskStatus);
+    verify(mockApplicationClient).putRequestTransitionAsync(FAKE_APPLICATION, fakeSession, transitionMethodPath, OUTER_FIRST_TRY);
+    verify(mockApplicationClient).putRequestTransitionAsync(SECOND_FAKE_APPLICATION, fakeSession, transitionMethodPath, OUTER_FIRST_TRY);
+  }
+
+  /**
+   * Tests that when one application fails the transition, the other one that made it is reverted.
+   */
+  protected void testProcess_TwoApplicationsOneFailsOtherReverted(TransitionTask transitionTask,
+                                                                  DbFreezeMode startMode,
+                                                                  DbFreezeMode transitionalMode,
+                                                                  String transitionMethodPath,
+                                                                  DbFreezeProgress failedEndProgress,
+                                                                  DbFreezeMode revertTransitionalMode,
+                                                                  String revertMethodPath)
+  {
+    whenTwoApplications(transitionTask, startMode, transitionalMode, transitionMethodPath,
+        fakeProgress(transitionTask.getTransitionParameters().getDestinationMode()), failedEndProgress);
+    when(mockApplicationClient.getDbFreezeProgress(eq(FAKE_APPLICATION), eq(fakeSession), anyInt()))
+        .thenReturn(fakeProgress(transitionTask.getTransitionParameters().getDestinationMode()))
+        .thenReturn(fakeProgress(startMode));
+    when(mockApplicationClient.putRequestTransitionAsync(FAKE_APPLICATION, fakeSession, revertMethodPath, OUTER_FIRST_TRY))
+        .thenReturn(CompletableFuture.completedFuture(fakeProgress(revertTransitionalMode)));
+
+    TaskStatus taskStatus = transitionTask.process(false);
+
+    assertEquals(TaskStatus.ERROR, taskStatus);
+    verify(mockApplicationClient).putRequestTransitionAsync(FAKE_APPLICATION, fakeSession, revertMethodPath, OUTER_FIRST_TRY);
+    verify(mockApplicationClient, never()).putRequestTransitionAsync(SECOND_FAKE_APPLICATION, fakeSession,
+        revertMethodPath, OUTER_FIRST_TRY);
+    verify(mockApplicationClient, times(2)).getDbFreezeProgress(eq(FAKE_APPLICATION), eq(fakeSession), anyInt());
+  }
+
+  /**
+   * Tests that if any application is not ready, the transition is requested of none of them.
+   */
+  protected void testProcess_TwoApplicationsOneNotReady(TransitionTask transitionTask,
+                                                        DbFreezeMode startMode,
+                                                        DbFreezeMode wrongMode,
+                                                        String transitionMethodPath)
+  {
+    whenTwoApplications(transitionTask, startMode, startMode, transitionMethodPath, null, null);
+    whenGetDbFreezeProgress(SECOND_FAKE_APPLICATION, fakeProgress(wrongMode));
+
+    TaskStatus taskStatus = transitionTask.process(false);
+
+    assertEquals(TaskStatus.ERROR, taskStatus);
+    verify(mockApplicationClient, never()).putRequestTransitionAsync(any(Application.class), any(ApplicationSession.class),
+        anyString(), anyInt());
+  }
+
 }
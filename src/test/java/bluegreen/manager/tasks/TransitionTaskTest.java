@@ -1,5 +1,7 @@
 package bluegreen.manager.tasks;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -7,8 +9,10 @@ import org.mockito.InjectMocks;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import bluegreen.manager.client.app.DbFreezeMode;
+import bluegreen.manager.client.app.DbFreezeProgress;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests the part of TransitionTask that doesn't need real freeze/thaw configuration.
@@ -42,4 +46,17 @@ public class TransitionTaskTest extends TransitionTaskBaseTest
     assertTrue(transitionTask.isAllowedStartMode(DbFreezeMode.THAW_ERROR));
     assertFalse(transitionTask.isAllowedStartMode(DbFreezeMode.NORMAL));
   }
-}
\ No newline at end of file
+
+  /**
+   * An application whose progress request fails is not ready.
+   */
+  @Test
+  public void testAppIsReadyToTransition_RequestFailed()
+  {
+    CompletableFuture<DbFreezeProgress> failed = new CompletableFuture<DbFreezeProgress>();
+    failed.completeExceptionally(new RuntimeException("Connection refused"));
+    when(mockApplicationClient.getDbFreezeProgressAsync(FAKE_APPLICATION, fakeSession, null)).thenReturn(failed);
+
+    assertFalse(appIsReadyToTransition(transitionTask));
+  }
+}
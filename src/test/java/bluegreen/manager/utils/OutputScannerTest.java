@@ -0,0 +1,115 @@
+package bluegreen.manager.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OutputScannerTest
+{
+  /**
+   * Collects the lines it is given, and never stops.
+   */
+  private static class CollectingListener implements LineListener
+  {
+    private List<String> lines = new ArrayList<String>();
+
+    @Override
+    public boolean onLine(String line)
+    {
+      lines.add(line);
+      return true;
+    }
+  }
+
+  /**
+   * Any mix of line terminators; empty lines are skipped, and the last line needs no terminator.
+   */
+  @Test
+  public void testScan_Lines()
+  {
+    CollectingListener lineListener = new CollectingListener();
+    assertFalse(OutputScanner.scan("\none\r\ntwo\n\n\rthree", lineListener));
+    assertEquals(Arrays.asList("one", "two", "three"), lineListener.lines);
+  }
+
+  @Test
+  public void testScan_Empty()
+  {
+    CollectingListener lineListener = new CollectingListener();
+    assertFalse(OutputScanner.scan("", lineListener));
+    assertFalse(OutputScanner.scan((String) null, lineListener));
+    assertTrue(lineListener.lines.isEmpty());
+  }
+
+  /**
+   * Captures and verdicts come out of the same pass, which stops at the verdict.
+   */
+  @Test
+  public void testScan_StopsAtVerdict()
+  {
+    PatternLineListener lineListener = new PatternLineListener(Pattern.compile("^READY"), Pattern.compile("^Error"))
+        .addCapture("hostname", Pattern.compile("^Hostname=(.*)"));
+    assertTrue(OutputScanner.scan("Starting\nHostname=box1\nREADY\nError after ready", lineListener));
+    assertTrue(lineListener.isDone());
+    assertFalse(lineListener.isError());
+    assertEquals("box1", lineListener.getCapture("hostname"));
+  }
+
+  /**
+   * Same lines from a reader, including a line split across reads and a \r\n split across reads.
+   */
+  @Test
+  public void testScan_Reader() throws IOException
+  {
+    CollectingListener lineListener = new CollectingListener();
+    assertFalse(OutputScanner.scan(new TrickleReader("\none\r\ntwo\n\n\rthree"), lineListener));
+    assertEquals(Arrays.asList("one", "two", "three"), lineListener.lines);
+  }
+
+  /**
+   * Stops reading at the verdict.
+   */
+  @Test
+  public void testScan_ReaderStopsAtVerdict() throws IOException
+  {
+    PatternLineListener lineListener = new PatternLineListener(null, Pattern.compile("^Error"));
+    StringReader reader = new StringReader("Starting\nError\nmore\n");
+    assertTrue(OutputScanner.scan(reader, lineListener));
+    assertTrue(lineListener.isError());
+  }
+
+  /**
+   * Hands out its text two chars per read, the way a slow stream would.
+   */
+  private static class TrickleReader extends Reader
+  {
+    private StringReader delegate;
+
+    private TrickleReader(String text)
+    {
+      this.delegate = new StringReader(text);
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException
+    {
+      return delegate.read(buffer, offset, Math.min(length, 2));
+    }
+
+    @Override
+    public void close()
+    {
+      delegate.close();
+    }
+  }
+}
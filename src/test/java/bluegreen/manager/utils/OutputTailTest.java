@@ -0,0 +1,40 @@
+package bluegreen.manager.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class OutputTailTest
+{
+  @Test
+  public void testGetText_NotFull()
+  {
+    OutputTail outputTail = new OutputTail(3);
+    outputTail.add("one");
+    outputTail.add("two");
+    assertEquals("one\ntwo\n", outputTail.getText());
+    assertEquals(0L, outputTail.getNumDroppedLines());
+  }
+
+  /**
+   * Oldest lines are dropped, and the text says how many.
+   */
+  @Test
+  public void testGetText_Dropped()
+  {
+    OutputTail outputTail = new OutputTail(2);
+    for (String line : new String[] { "one", "two", "three", "four", "five" })
+    {
+      outputTail.add(line);
+    }
+    assertEquals(5L, outputTail.getNumLines());
+    assertEquals(3L, outputTail.getNumDroppedLines());
+    assertEquals("(... 3 earlier lines not kept ...)\nfour\nfive\n", outputTail.getText());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCtor_NoLines()
+  {
+    new OutputTail(0);
+  }
+}
@@ -0,0 +1,95 @@
+package bluegreen.manager.utils;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PatternLineListenerTest
+{
+  private static final Pattern DONE_PATTERN = Pattern.compile("^All done");
+  private static final Pattern ERROR_PATTERN = Pattern.compile("[Ee]rror");
+  private static final Pattern HOSTNAME_PATTERN = Pattern.compile("^Hostname=(.*)");
+
+  /**
+   * Lines that match nothing keep the listener reading.
+   */
+  @Test
+  public void testOnLine_NoMatch()
+  {
+    PatternLineListener lineListener = new PatternLineListener(DONE_PATTERN, ERROR_PATTERN);
+    assertTrue(lineListener.onLine("Still working"));
+    assertFalse(lineListener.isDone());
+    assertFalse(lineListener.isError());
+  }
+
+  @Test
+  public void testOnLine_Done()
+  {
+    PatternLineListener lineListener = new PatternLineListener(DONE_PATTERN, ERROR_PATTERN);
+    assertTrue(lineListener.onLine("Still working"));
+    assertFalse(lineListener.onLine("All done now"));
+    assertTrue(lineListener.isDone());
+    assertEquals("All done now", lineListener.getDoneLine());
+  }
+
+  /**
+   * Error wins when one line matches both.
+   */
+  @Test
+  public void testOnLine_Error()
+  {
+    PatternLineListener lineListener = new PatternLineListener(DONE_PATTERN, ERROR_PATTERN);
+    assertFalse(lineListener.onLine("All done with 1 error"));
+    assertTrue(lineListener.isError());
+    assertFalse(lineListener.isDone());
+  }
+
+  /**
+   * Capture keeps the first non-blank value, and never concludes the output.
+   */
+  @Test
+  public void testGetCapture()
+  {
+    PatternLineListener lineListener = new PatternLineListener(null, null).addCapture("hostname", HOSTNAME_PATTERN);
+    assertNull(lineListener.getCapture("hostname"));
+    assertTrue(lineListener.onLine("Hostname="));
+    assertTrue(lineListener.onLine("Hostname=first.com"));
+    assertTrue(lineListener.onLine("Hostname=second.com"));
+    assertEquals("first.com", lineListener.getCapture("hostname"));
+  }
+
+  /**
+   * The combined prefilter finds a capture added after the first line was seen.
+   */
+  @Test
+  public void testOnLine_CaptureAddedLate()
+  {
+    PatternLineListener lineListener = new PatternLineListener(DONE_PATTERN, ERROR_PATTERN);
+    assertTrue(lineListener.onLine("Hostname=early.com"));
+    lineListener.addCapture("hostname", HOSTNAME_PATTERN);
+    assertTrue(lineListener.onLine("Hostname=late.com"));
+    assertEquals("late.com", lineListener.getCapture("hostname"));
+  }
+
+  /**
+   * Patterns that cannot be combined into one alternation are still matched, one by one.
+   */
+  @Test
+  public void testOnLine_Uncombinable()
+  {
+    PatternLineListener lineListener = new PatternLineListener(Pattern.compile("^(all) done, \\1 of it"),
+        Pattern.compile("failed", Pattern.CASE_INSENSITIVE));
+    assertTrue(lineListener.onLine("all done, some of it"));
+    assertFalse(lineListener.onLine("all done, all of it"));
+    assertTrue(lineListener.isDone());
+
+    lineListener = new PatternLineListener(DONE_PATTERN, Pattern.compile("failed", Pattern.CASE_INSENSITIVE));
+    assertFalse(lineListener.onLine("FAILED to start"));
+    assertTrue(lineListener.isError());
+  }
+}
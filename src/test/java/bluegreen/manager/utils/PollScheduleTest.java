@@ -0,0 +1,104 @@
+package bluegreen.manager.utils;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the delays computed by the PollSchedule implementations.
+ */
+public class PollScheduleTest
+{
+  @Test
+  public void testFixed()
+  {
+    FixedPollSchedule schedule = new FixedPollSchedule(100L, 7L);
+    assertEquals(100L, schedule.nextDelayMilliseconds(1, 0L, 0L));
+    assertEquals(7L, schedule.nextDelayMilliseconds(2, 100L, 100L));
+    assertEquals(7L, schedule.nextDelayMilliseconds(3, 7L, 107L));
+  }
+
+  @Test
+  public void testExponential()
+  {
+    ExponentialPollSchedule schedule = new ExponentialPollSchedule(100L, 1.5, 300L);
+    assertEquals(100L, schedule.nextDelayMilliseconds(1, 0L, 0L));
+    assertEquals(150L, schedule.nextDelayMilliseconds(2, 100L, 100L));
+    assertEquals(225L, schedule.nextDelayMilliseconds(3, 150L, 250L));
+    assertEquals(300L, schedule.nextDelayMilliseconds(4, 225L, 475L));
+    assertEquals(300L, schedule.nextDelayMilliseconds(5, 300L, 775L));
+  }
+
+  @Test
+  public void testDecorrelatedJitter_bounds()
+  {
+    DecorrelatedJitterPollSchedule schedule = new DecorrelatedJitterPollSchedule(100L, 1000L);
+    schedule.setRandom(new Random(42L));
+    long previousDelay = 0L;
+    for (int waitNum = 1; waitNum < 50; ++waitNum)
+    {
+      long delay = schedule.nextDelayMilliseconds(waitNum, previousDelay, 0L);
+      assertTrue(100L <= delay && delay <= 1000L);
+      assertTrue(waitNum == 1 || delay <= 3L * previousDelay);
+      previousDelay = delay;
+    }
+  }
+
+  @Test
+  public void testDecorrelatedJitter_firstIsBase()
+  {
+    DecorrelatedJitterPollSchedule schedule = new DecorrelatedJitterPollSchedule(100L, 1000L);
+    assertEquals(100L, schedule.nextDelayMilliseconds(1, 0L, 0L));
+  }
+
+  @Test
+  public void testFastThenSlow()
+  {
+    FastThenSlowPollSchedule schedule = new FastThenSlowPollSchedule(5L, 20L, 50L);
+    assertEquals(5L, schedule.nextDelayMilliseconds(1, 0L, 0L));
+    assertEquals(5L, schedule.nextDelayMilliseconds(4, 5L, 15L));
+    assertEquals(50L, schedule.nextDelayMilliseconds(5, 5L, 20L));
+    assertEquals(50L, schedule.nextDelayMilliseconds(6, 50L, 70L));
+  }
+
+  /**
+   * Percent progress is extrapolated to a predicted finish, and the delay wakes up lead time before it.
+   */
+  @Test
+  public void testPredictive_percentProgress()
+  {
+    PredictivePollSchedule schedule = new PredictivePollSchedule(0L, 10L, 1000L, 50L);
+    schedule.reportPercentProgress(20);
+    assertEquals(400L, schedule.estimateRemainingMilliseconds(100L));
+    assertEquals(350L, schedule.nextDelayMilliseconds(1, 0L, 100L));
+    schedule.reportPercentProgress(90);
+    assertEquals(10L, schedule.nextDelayMilliseconds(2, 350L, 450L)); //50ms remaining, poll tightly
+  }
+
+  /**
+   * Expected duration predicts the finish when there is no percent progress; overrun polls proportionally.
+   */
+  @Test
+  public void testPredictive_expectedDuration()
+  {
+    PredictivePollSchedule schedule = new PredictivePollSchedule(600L, 10L, 1000L, 50L);
+    assertEquals(550L, schedule.nextDelayMilliseconds(1, 0L, 0L));
+    assertEquals(10L, schedule.nextDelayMilliseconds(2, 550L, 580L));
+    assertEquals(100L, schedule.nextDelayMilliseconds(3, 10L, 700L));
+  }
+
+  /**
+   * No prediction: exponential backoff from the min delay.
+   */
+  @Test
+  public void testPredictive_noPrediction()
+  {
+    PredictivePollSchedule schedule = new PredictivePollSchedule(0L, 10L, 30L, 50L);
+    assertEquals(10L, schedule.nextDelayMilliseconds(1, 0L, 0L));
+    assertEquals(20L, schedule.nextDelayMilliseconds(2, 10L, 10L));
+    assertEquals(30L, schedule.nextDelayMilliseconds(3, 20L, 30L));
+  }
+}
@@ -0,0 +1,72 @@
+package bluegreen.manager.utils;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProcessKillerTest
+{
+  private static final String PS_OUTPUT = "    1     0\n"
+      + "  100     1\n"
+      + "  101   100\n"
+      + "  102   100\n"
+      + "  103   102\n"
+      + "  200     1\n"
+      + "  201   200\n";
+
+  @InjectMocks
+  private ProcessKiller processKiller;
+
+  @Mock
+  private ProcessBuilderAdapterFactory mockProcessBuilderAdapterFactory;
+
+  @Mock
+  private Process mockProcess;
+
+  /**
+   * Lists children and grandchildren, parents first, and nothing from other trees.
+   */
+  @Test
+  public void testParseDescendants()
+  {
+    assertEquals(Arrays.asList(101, 102, 103), processKiller.parseDescendants(100, PS_OUTPUT));
+  }
+
+  @Test
+  public void testParseDescendants_None()
+  {
+    assertTrue(processKiller.parseDescendants(103, PS_OUTPUT).isEmpty());
+  }
+
+  /**
+   * Header lines and junk are skipped.
+   */
+  @Test
+  public void testParseDescendants_Junk()
+  {
+    assertEquals(Arrays.asList(201), processKiller.parseDescendants(200, "  PID  PPID\nhello\n" + PS_OUTPUT));
+  }
+
+  /**
+   * A process without a unix pid (here, a mock) is killed by itself, without running 'ps'.
+   */
+  @Test
+  public void testDestroyTree_NoPid()
+  {
+    assertNull(processKiller.getPid(mockProcess));
+    processKiller.destroyTree(mockProcess);
+    verify(mockProcess).destroyForcibly();
+    verifyZeroInteractions(mockProcessBuilderAdapterFactory);
+  }
+}
@@ -0,0 +1,42 @@
+package bluegreen.manager.utils;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Fakes the streaming of command output to a {@link LineListener}, for tests that mock the command runner.
+ */
+public class StreamedOutput
+{
+  /**
+   * Hands each line of the output to the listener, until the listener deems it conclusive.
+   */
+  public static void feedLines(String output, LineListener lineListener)
+  {
+    for (String line : output.split("\n"))
+    {
+      if (!lineListener.onLine(line))
+      {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Answer for a mock execCommand(command, lineListener): streams the result's output to the listener (the last
+   * argument), then returns the result.
+   */
+  public static Answer<ShellResult> streams(final ShellResult result)
+  {
+    return new Answer<ShellResult>()
+    {
+      @Override
+      public ShellResult answer(InvocationOnMock invocation) throws Throwable
+      {
+        Object[] arguments = invocation.getArguments();
+        feedLines(result.getOutput(), (LineListener) arguments[arguments.length - 1]);
+        return result;
+      }
+    };
+  }
+}
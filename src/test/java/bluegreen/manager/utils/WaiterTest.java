@@ -0,0 +1,201 @@
+package bluegreen.manager.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.mockito.InOrder;
+
+@RunWith(MockitoJUnitRunner.class)
+public class WaiterTest
+{
+  private static final String RESULT = "done";
+  private static final String TIMEOUT = "timeout";
+
+  @Mock
+  private ThreadSleeper mockThreadSleeper;
+
+  @Mock
+  private ProgressChecker<String> mockProgressChecker;
+
+  private ScheduledExecutorService scheduler;
+
+  @Before
+  public void setUp()
+  {
+    when(mockProgressChecker.getResult()).thenReturn(RESULT);
+    when(mockProgressChecker.timeout()).thenReturn(TIMEOUT);
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @After
+  public void tearDown()
+  {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Done on the initial check: no sleep.
+   */
+  @Test
+  public void testWaitTilDone_doneImmediately() throws InterruptedException
+  {
+    when(mockProgressChecker.isDone()).thenReturn(true);
+    Waiter<String> waiter = new Waiter<String>(new WaiterParameters(10L, 20L, 1, 3), mockThreadSleeper, mockProgressChecker);
+    assertEquals(RESULT, waiter.waitTilDone());
+    verify(mockThreadSleeper, never()).sleep(anyLong());
+    verify(mockProgressChecker, never()).followupCheck(anyInt());
+  }
+
+  /**
+   * Default schedule and budget match the classic fixed-delay waiter: maxNumWaits sleeps, then timeout.
+   */
+  @Test
+  public void testWaitTilDone_defaultScheduleTimeout() throws InterruptedException
+  {
+    Waiter<String> waiter = new Waiter<String>(new WaiterParameters(10L, 20L, 1, 3), mockThreadSleeper, mockProgressChecker);
+    assertEquals(TIMEOUT, waiter.waitTilDone());
+    InOrder inOrder = inOrder(mockThreadSleeper);
+    inOrder.verify(mockThreadSleeper).sleep(10L);
+    inOrder.verify(mockThreadSleeper, times(2)).sleep(20L);
+    verify(mockProgressChecker, times(3)).followupCheck(anyInt());
+  }
+
+  /**
+   * Exponential schedule: delays grow til capped, and the last sleep is clamped to the remaining time budget.
+   */
+  @Test
+  public void testWaitTilDone_exponentialScheduleClampsToBudget() throws InterruptedException
+  {
+    WaiterParameters waiterParameters = new WaiterParameters(0L, 0L, 1, 0);
+    waiterParameters.setPollSchedule(new ExponentialPollSchedule(10L, 2.0, 40L));
+    waiterParameters.setMaxWaitMilliseconds(100L);
+    Waiter<String> waiter = new Waiter<String>(waiterParameters, mockThreadSleeper, mockProgressChecker);
+    assertEquals(TIMEOUT, waiter.waitTilDone());
+    InOrder inOrder = inOrder(mockThreadSleeper);
+    inOrder.verify(mockThreadSleeper).sleep(10L);
+    inOrder.verify(mockThreadSleeper).sleep(20L);
+    inOrder.verify(mockThreadSleeper).sleep(40L);
+    inOrder.verify(mockThreadSleeper).sleep(30L);
+    verify(mockThreadSleeper, times(4)).sleep(anyLong());
+  }
+
+  /**
+   * Timeout is driven by wall clock time, even if little time was spent sleeping.
+   */
+  @Test
+  public void testWaitTilDone_wallClockTimeout() throws InterruptedException
+  {
+    when(mockThreadSleeper.currentTimeMillis()).thenReturn(1000L, 1000L, 1500L);
+    Waiter<String> waiter = new Waiter<String>(new WaiterParameters(10L, 10L, 1, 50), mockThreadSleeper, mockProgressChecker);
+    assertEquals(TIMEOUT, waiter.waitTilDone());
+    verify(mockThreadSleeper, times(1)).sleep(anyLong());
+    verify(mockProgressChecker, times(1)).followupCheck(1);
+  }
+
+  /**
+   * Async wait runs the same checks as the blocking wait, but schedules the delays instead of sleeping.
+   */
+  @Test
+  public void testWaitAsync_doneOnThirdFollowup() throws Exception
+  {
+    when(mockProgressChecker.isDone()).thenReturn(false, false, false, true);
+    Waiter<String> waiter = new Waiter<String>(new WaiterParameters(1L, 1L, 1, 10), mockThreadSleeper, mockProgressChecker);
+    CompletableFuture<String> future = waiter.waitAsync(scheduler);
+    assertEquals(RESULT, future.get(5, TimeUnit.SECONDS));
+    verify(mockProgressChecker).initialCheck();
+    verify(mockProgressChecker, times(3)).followupCheck(anyInt());
+    verify(mockThreadSleeper, never()).sleep(anyLong());
+  }
+
+  @Test
+  public void testWaitAsync_timeout() throws Exception
+  {
+    Waiter<String> waiter = new Waiter<String>(new WaiterParameters(1L, 1L, 1, 3), mockThreadSleeper, mockProgressChecker);
+    assertEquals(TIMEOUT, waiter.waitAsync(scheduler).get(5, TimeUnit.SECONDS));
+    verify(mockProgressChecker, times(3)).followupCheck(anyInt());
+  }
+
+  /**
+   * An exception from the progress checker completes the future exceptionally.
+   */
+  @Test
+  public void testWaitAsync_checkerThrows() throws Exception
+  {
+    RuntimeException error = new RuntimeException("aws is down");
+    doThrow(error).when(mockProgressChecker).followupCheck(1);
+    Waiter<String> waiter = new Waiter<String>(new WaiterParameters(1L, 1L, 1, 3), mockThreadSleeper, mockProgressChecker);
+    try
+    {
+      waiter.waitAsync(scheduler).get(5, TimeUnit.SECONDS);
+      fail();
+    }
+    catch (ExecutionException e)
+    {
+      assertSame(error, e.getCause());
+    }
+  }
+
+  /**
+   * The blocking wait rethrows the progress checker's exception as is, not wrapped by the future.
+   */
+  @Test
+  public void testWaitTilDone_checkerThrows()
+  {
+    RuntimeException error = new RuntimeException("aws is down");
+    doThrow(error).when(mockProgressChecker).followupCheck(2);
+    Waiter<String> waiter = new Waiter<String>(new WaiterParameters(1L, 1L, 1, 3), mockThreadSleeper, mockProgressChecker);
+    try
+    {
+      waiter.waitTilDone();
+      fail();
+    }
+    catch (RuntimeException e)
+    {
+      assertSame(error, e);
+    }
+  }
+
+  /**
+   * The shared scheduler runs the checks on its own threads and hands back the result.
+   */
+  @Test
+  public void testWaiterScheduler_waitTilDone()
+  {
+    when(mockProgressChecker.isDone()).thenReturn(false, true);
+    WaiterScheduler waiterScheduler = new WaiterScheduler();
+    waiterScheduler.setNumThreads(1);
+    waiterScheduler.init();
+    try
+    {
+      Waiter<String> waiter = new Waiter<String>(new WaiterParameters(1L, 1L, 1, 10), mockThreadSleeper, mockProgressChecker);
+      assertEquals(RESULT, waiterScheduler.waitTilDone(waiter));
+      verify(mockProgressChecker).followupCheck(1);
+    }
+    finally
+    {
+      waiterScheduler.shutdown();
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package bluegreen.manager.utils;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Stubs a mock waiter scheduler to run the waits of a task under test on the calling thread, so the waits still
+ * sleep with the mock threadSleeper.
+ */
+public class WaiterTestHelper
+{
+  public static void runWaitsOnCallerThread(WaiterScheduler mockWaiterScheduler)
+  {
+    when(mockWaiterScheduler.waitTilDone(any(Waiter.class))).thenAnswer(new Answer<Object>()
+    {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable
+      {
+        return ((Waiter) invocation.getArguments()[0]).waitTilDone();
+      }
+    });
+  }
+}